@@ -0,0 +1,156 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 闭环压测（与 wrk 相同的模型：每个并发连接收到响应后立即发下一个请求），只依赖 JDK，直接以源码运行：
+ *
+ * <pre>
+ * java scripts/bench/LoadBench.java --base http://localhost:8082 --concurrency 400 --duration 30 \
+ *     --user alice:123456 /api/guides/1 "/api/guides?size=10"
+ * </pre>
+ *
+ * 多个路径时各并发轮流请求；先预热 --warmup 秒（不计入结果），再统计 --duration 秒内的吞吐与延迟分位。
+ * 非 2xx/304 与请求异常记为错误，不计入延迟。
+ */
+public class LoadBench {
+
+  public static void main(String[] args) throws Exception {
+    String base = "http://localhost:8082";
+    int concurrency = 200;
+    int durationSec = 30;
+    int warmupSec = 10;
+    String user = null;
+    List<String> paths = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--base" -> base = args[++i];
+        case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+        case "--duration" -> durationSec = Integer.parseInt(args[++i]);
+        case "--warmup" -> warmupSec = Integer.parseInt(args[++i]);
+        case "--user" -> user = args[++i];
+        default -> paths.add(args[i]);
+      }
+    }
+    if (paths.isEmpty()) {
+      paths = List.of("/api/guides/1", "/api/guides?size=10");
+    }
+
+    HttpClient client =
+        HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+    String auth = user == null ? null : "Bearer " + loginWhenReady(client, base, user);
+    List<HttpRequest> requests = new ArrayList<>();
+    for (String p : paths) {
+      HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(base + p)).timeout(Duration.ofSeconds(30)).GET();
+      if (auth != null) {
+        b.header("Authorization", auth);
+      }
+      requests.add(b.build());
+    }
+
+    long now = System.nanoTime();
+    long measureFrom = now + warmupSec * 1_000_000_000L;
+    long measureTo = measureFrom + durationSec * 1_000_000_000L;
+    LongAdder errors = new LongAdder();
+    long[][] latencies = new long[concurrency][];
+    CountDownLatch done = new CountDownLatch(concurrency);
+    for (int t = 0; t < concurrency; t++) {
+      int worker = t;
+      Thread thread = new Thread(() -> {
+        long[] samples = new long[1024];
+        int n = 0;
+        int next = worker;
+        try {
+          while (true) {
+            long start = System.nanoTime();
+            if (start >= measureTo) {
+              break;
+            }
+            boolean ok;
+            try {
+              int status = client.send(requests.get(next++ % requests.size()), HttpResponse.BodyHandlers.discarding())
+                  .statusCode();
+              ok = status / 100 == 2 || status == 304;
+            } catch (Exception e) {
+              ok = false;
+            }
+            long end = System.nanoTime();
+            if (start < measureFrom) {
+              continue;
+            }
+            if (!ok) {
+              errors.increment();
+            } else {
+              if (n == samples.length) {
+                samples = Arrays.copyOf(samples, n * 2);
+              }
+              samples[n++] = end - start;
+            }
+          }
+        } finally {
+          latencies[worker] = Arrays.copyOf(samples, n);
+          done.countDown();
+        }
+      });
+      thread.setDaemon(true);
+      thread.start();
+    }
+    done.await();
+
+    long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+    System.out.printf(
+        "concurrency=%d duration=%ds paths=%s%n", concurrency, durationSec, String.join(",", paths));
+    System.out.printf(
+        "requests=%d errors=%d throughput=%.0f req/s%n", all.length, errors.sum(), all.length / (double) durationSec);
+    if (all.length > 0) {
+      System.out.printf(
+          "latency ms: p50=%.1f p90=%.1f p99=%.1f max=%.1f%n",
+          pct(all, 0.50), pct(all, 0.90), pct(all, 0.99), all[all.length - 1] / 1e6);
+    }
+  }
+
+  private static double pct(long[] sorted, double p) {
+    int i = (int) Math.ceil(sorted.length * p) - 1;
+    return sorted[Math.max(0, i)] / 1e6;
+  }
+
+  /** 服务刚启动时示例数据可能还没写完（启动日志先于 ApplicationRunner 输出），登录失败时重试，最多等 120 秒 */
+  private static String loginWhenReady(HttpClient client, String base, String user) throws Exception {
+    long deadline = System.nanoTime() + 120_000_000_000L;
+    while (true) {
+      try {
+        return login(client, base, user);
+      } catch (Exception e) {
+        if (System.nanoTime() > deadline) {
+          throw e;
+        }
+        Thread.sleep(2000);
+      }
+    }
+  }
+
+  private static String login(HttpClient client, String base, String user) throws Exception {
+    String[] up = user.split(":", 2);
+    String body = "{\"username\":\"" + up[0] + "\",\"password\":\"" + up[1] + "\"}";
+    HttpResponse<String> resp = client.send(
+        HttpRequest.newBuilder(URI.create(base + "/api/auth/login"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build(),
+        HttpResponse.BodyHandlers.ofString());
+    Matcher m = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"").matcher(resp.body());
+    if (resp.statusCode() != 200 || !m.find()) {
+      throw new IllegalStateException("登录失败: " + resp.statusCode() + " " + resp.body());
+    }
+    return m.group(1);
+  }
+}
@@ -2,8 +2,10 @@ package com.yitong.guides;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class YitongGuidesApplication {
   public static void main(String[] args) {
     SpringApplication.run(YitongGuidesApplication.class, args);
@@ -8,10 +8,14 @@ import com.yitong.guides.repo.GuideRepository;
 import com.yitong.guides.repo.UserRepository;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
+/** 先于各内存索引的启动重建执行，保证示例数据能被索引到 */
 @Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
 public class DemoDataInitializer implements ApplicationRunner {
   private final UserRepository userRepository;
   private final GuideRepository guideRepository;
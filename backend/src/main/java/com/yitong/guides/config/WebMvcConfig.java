@@ -1,20 +0,0 @@
-package com.yitong.guides.config;
-
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
-
-@Configuration
-public class WebMvcConfig implements WebMvcConfigurer {
-
-  @Value("${app.upload.dir:./uploads}")
-  private String uploadDir;
-
-  @Override
-  public void addResourceHandlers(ResourceHandlerRegistry registry) {
-    String path = java.nio.file.Paths.get(uploadDir).toAbsolutePath().normalize() + java.io.File.separator;
-    registry.addResourceHandler("/uploads/**")
-        .addResourceLocations("file:" + path);
-  }
-}
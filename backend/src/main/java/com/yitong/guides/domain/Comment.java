@@ -6,13 +6,16 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
 import java.time.Instant;
 
 @Entity
-@Table(name = "comments")
+@Table(
+    name = "comments",
+    indexes = {@Index(name = "idx_comment_guide_created", columnList = "guide_id, created_at, id")})
 public class Comment {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
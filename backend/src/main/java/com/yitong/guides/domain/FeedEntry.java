@@ -0,0 +1,59 @@
+package com.yitong.guides.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.time.Instant;
+
+/** 关注动态收件箱：一行表示 owner 的时间线中有一篇攻略（发布时推送，按攻略发布时间排序） */
+@Entity
+@Table(
+    name = "feed_entries",
+    uniqueConstraints = {@UniqueConstraint(name = "uk_feed_owner_guide", columnNames = {"owner_id", "guide_id"})},
+    indexes = {
+      @Index(name = "idx_feed_owner_created", columnList = "owner_id, created_at, guide_id"),
+      @Index(name = "idx_feed_guide", columnList = "guide_id")
+    })
+public class FeedEntry {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "owner_id", nullable = false)
+  private Long ownerId;
+
+  @Column(name = "guide_id", nullable = false)
+  private Long guideId;
+
+  @Column(name = "author_id", nullable = false)
+  private Long authorId;
+
+  /** 攻略发布时间（冗余，用于排序与游标） */
+  @Column(name = "created_at", nullable = false)
+  private Instant createdAt;
+
+  public Long getId() {
+    return id;
+  }
+
+  public Long getOwnerId() {
+    return ownerId;
+  }
+
+  public Long getGuideId() {
+    return guideId;
+  }
+
+  public Long getAuthorId() {
+    return authorId;
+  }
+
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+}
@@ -5,6 +5,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import jakarta.persistence.UniqueConstraint;
 import java.time.Instant;
@@ -14,7 +15,8 @@ import java.time.Instant;
     name = "follows",
     uniqueConstraints = {
       @UniqueConstraint(name = "uk_follow_user_followed", columnNames = {"user_id", "follow_user_id"})
-    })
+    },
+    indexes = {@Index(name = "idx_follow_followed", columnList = "follow_user_id, user_id")})
 public class Follow {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
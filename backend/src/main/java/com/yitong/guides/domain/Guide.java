@@ -8,13 +8,22 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
 import java.time.Instant;
 
 @Entity
-@Table(name = "guides")
+@Table(
+    name = "guides",
+    indexes = {
+      @Index(name = "idx_guide_created", columnList = "deleted, created_at, id"),
+      @Index(name = "idx_guide_updated", columnList = "deleted, updated_at, id"),
+      @Index(name = "idx_guide_category_created", columnList = "category, deleted, created_at, id"),
+      @Index(name = "idx_guide_category_updated", columnList = "category, deleted, updated_at, id"),
+      @Index(name = "idx_guide_author_created", columnList = "author_id, deleted, created_at, id")
+    })
 public class Guide {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -47,6 +56,18 @@ public class Guide {
   @Column(nullable = false)
   private boolean deleted = false;
 
+  /** 点赞数（冗余计数，由 GuideService 维护、GuideStatsReconciler 定期校准；旧数据为 null 视为 0） */
+  @Column(name = "like_count", nullable = true)
+  private Long likeCount = 0L;
+
+  /** 收藏数（冗余计数，同上） */
+  @Column(name = "favorite_count", nullable = true)
+  private Long favoriteCount = 0L;
+
+  /** 评论数（冗余计数，同上） */
+  @Column(name = "comment_count", nullable = true)
+  private Long commentCount = 0L;
+
   public Long getId() {
     return id;
   }
@@ -110,5 +131,16 @@ public class Guide {
   public void setDeleted(boolean deleted) {
     this.deleted = deleted;
   }
-}
 
+  public long getLikeCount() {
+    return likeCount == null ? 0 : likeCount;
+  }
+
+  public long getFavoriteCount() {
+    return favoriteCount == null ? 0 : favoriteCount;
+  }
+
+  public long getCommentCount() {
+    return commentCount == null ? 0 : commentCount;
+  }
+}
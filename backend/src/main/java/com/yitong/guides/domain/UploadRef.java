@@ -0,0 +1,55 @@
+package com.yitong.guides.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.time.Instant;
+
+/** 上传文件引用：一行表示某攻略正文中引用了某个上传文件（path 为相对上传目录的路径，不含派生宽度） */
+@Entity
+@Table(
+    name = "upload_refs",
+    uniqueConstraints = {@UniqueConstraint(name = "uk_upload_ref_path_guide", columnNames = {"path", "guide_id"})},
+    indexes = {@Index(name = "idx_upload_ref_guide", columnList = "guide_id")})
+public class UploadRef {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(nullable = false, length = 200)
+  private String path;
+
+  @Column(name = "guide_id", nullable = false)
+  private Long guideId;
+
+  @Column(nullable = false)
+  private final Instant createdAt = Instant.now();
+
+  protected UploadRef() {}
+
+  public UploadRef(String path, Long guideId) {
+    this.path = path;
+    this.guideId = guideId;
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public Long getGuideId() {
+    return guideId;
+  }
+
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+}
@@ -7,11 +7,17 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import java.time.Instant;
 
 @Entity
-@Table(name = "users")
+@Table(
+    name = "users",
+    indexes = {
+      @Index(name = "idx_user_status", columnList = "status, id"),
+      @Index(name = "idx_user_role", columnList = "role, id")
+    })
 public class User {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -44,6 +50,10 @@ public class User {
   @Column(name = "password_changed_at")
   private Instant passwordChangedAt;
 
+  /** 令牌版本：改密码、重置密码、封禁/注销、改角色时递增，旧版本令牌随即失效；旧数据为 null 视为 0 */
+  @Column(name = "token_version", nullable = true)
+  private Integer tokenVersion;
+
   public Long getId() {
     return id;
   }
@@ -107,6 +117,11 @@ public class User {
 
   /** 对外展示名：已注销显示「已注销用户」 */
   public String getDisplayNamePublic() {
+    return displayNamePublic(status, displayName);
+  }
+
+  /** 按状态计算对外展示名，供不加载 User 实体的投影查询使用 */
+  public static String displayNamePublic(int status, String displayName) {
     return status == 2 ? "已注销用户" : displayName;
   }
 
@@ -117,5 +132,14 @@ public class User {
   public void setPasswordChangedAt(Instant passwordChangedAt) {
     this.passwordChangedAt = passwordChangedAt;
   }
+
+  public int getTokenVersion() {
+    return tokenVersion == null ? 0 : tokenVersion;
+  }
+
+  /** 使已签发的令牌全部失效 */
+  public void bumpTokenVersion() {
+    this.tokenVersion = getTokenVersion() + 1;
+  }
 }
 
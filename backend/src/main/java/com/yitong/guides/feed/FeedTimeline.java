@@ -0,0 +1,167 @@
+package com.yitong.guides.feed;
+
+import com.yitong.guides.domain.FeedEntry;
+import com.yitong.guides.repo.FeedEntryRepository;
+import com.yitong.guides.repo.FollowRepository;
+import com.yitong.guides.repo.GuideCardView;
+import com.yitong.guides.repo.GuideRepository;
+import com.yitong.guides.service.FollowChangedEvent;
+import com.yitong.guides.service.GuideChangedEvent;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 关注动态时间线：写扩散为主，大V读扩散兜底。
+ *
+ * <p>攻略发布时用一条 insert-select 把攻略写入作者每个粉丝的收件箱（feed_entries）；关注时回填作者最近的攻略，
+ * 取消关注删除该作者的条目，攻略删除时删除其全部条目。这些写入监听 GuideChangedEvent / FollowChangedEvent，
+ * 与业务操作处于同一事务。粉丝数达到 pullThreshold 的作者不再推送，读取时对“已关注的大V”单独按作者查询
+ * 后与收件箱归并，因此读一页的代价与关注人数无关。收件箱按 inboxSize 定期裁剪。
+ */
+@Component
+public class FeedTimeline implements ApplicationRunner {
+  private static final Logger log = LoggerFactory.getLogger(FeedTimeline.class);
+
+  private static final Comparator<GuideCardView> NEWEST_FIRST =
+      Comparator.comparing(GuideCardView::createdAt).thenComparing(GuideCardView::id).reversed();
+
+  private final FeedEntryRepository feedRepository;
+  private final FollowRepository followRepository;
+  private final GuideRepository guideRepository;
+  private final TransactionTemplate tx;
+  private final int inboxSize;
+  private final long pullThreshold;
+  private final int backfill;
+
+  /** 读扩散的作者（粉丝数达到阈值）；只增不减，重启时按当前粉丝数重算 */
+  private final Set<Long> pullAuthors = ConcurrentHashMap.newKeySet();
+
+  public FeedTimeline(
+      FeedEntryRepository feedRepository,
+      FollowRepository followRepository,
+      GuideRepository guideRepository,
+      PlatformTransactionManager txManager,
+      @Value("${app.feed.inboxSize:500}") int inboxSize,
+      @Value("${app.feed.pullThreshold:5000}") long pullThreshold,
+      @Value("${app.feed.backfill:50}") int backfill) {
+    this.feedRepository = feedRepository;
+    this.followRepository = followRepository;
+    this.guideRepository = guideRepository;
+    this.tx = new TransactionTemplate(txManager);
+    this.inboxSize = inboxSize;
+    this.pullThreshold = pullThreshold;
+    this.backfill = backfill;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    pullAuthors.addAll(followRepository.findFollowUserIdsWithAtLeast(pullThreshold));
+    if (feedRepository.count() == 0 && followRepository.count() > 0) {
+      Integer n = tx.execute(status -> feedRepository.buildAll());
+      log.info("关注动态收件箱初始化完成，写入 {} 条", n);
+      trim();
+    }
+  }
+
+  @EventListener
+  public void onGuideChanged(GuideChangedEvent event) {
+    switch (event.type()) {
+      case CREATED -> {
+        Long authorId = guideRepository.findAuthorIdById(event.guideId());
+        if (authorId != null && !pullAuthors.contains(authorId)) {
+          feedRepository.fanOut(event.guideId());
+        }
+      }
+      case DELETED -> feedRepository.deleteByGuideId(event.guideId());
+      default -> {}
+    }
+  }
+
+  @EventListener
+  public void onFollowChanged(FollowChangedEvent event) {
+    if (!event.followed()) {
+      feedRepository.deleteByOwnerIdAndAuthorId(event.userId(), event.followUserId());
+      return;
+    }
+    if (!pullAuthors.contains(event.followUserId())
+        && followRepository.countByFollowUserId(event.followUserId()) >= pullThreshold) {
+      pullAuthors.add(event.followUserId());
+    }
+    if (!pullAuthors.contains(event.followUserId())) {
+      feedRepository.backfill(event.userId(), event.followUserId(), backfill);
+    }
+  }
+
+  /**
+   * 游标读取：收件箱与已关注大V的攻略按（发布时间, id）倒序归并，最多返回 limit 条。
+   * ts/id 为 null 表示第一页。
+   */
+  public List<GuideCardView> seek(Long userId, Instant ts, Long id, int limit) {
+    PageRequest page = PageRequest.of(0, limit);
+    List<GuideCardView> inbox = feedRepository.seekInbox(userId, ts, id, page);
+    List<Long> pulled = pullAuthors.isEmpty() ? List.of() : followRepository.findFollowedAmong(userId, pullAuthors);
+    if (pulled.isEmpty()) {
+      return inbox;
+    }
+    // 作者成为大V之前推送的条目仍在收件箱中，按攻略 id 去重
+    Map<Long, GuideCardView> merged = new LinkedHashMap<>();
+    for (GuideCardView v : inbox) {
+      merged.put(v.id(), v);
+    }
+    for (GuideCardView v : guideRepository.seekByAuthorIn(pulled, ts, id, page)) {
+      merged.putIfAbsent(v.id(), v);
+    }
+    List<GuideCardView> out = new ArrayList<>(merged.values());
+    out.sort(NEWEST_FIRST);
+    return out.size() > limit ? out.subList(0, limit) : out;
+  }
+
+  /** 偏移分页（兼容旧接口）：最多翻到收件箱容量为止 */
+  public List<GuideCardView> page(Long userId, int page, int size) {
+    int from = page * size;
+    if (from >= inboxSize) {
+      return List.of();
+    }
+    List<GuideCardView> rows = seek(userId, null, null, Math.min(from + size, inboxSize));
+    return from >= rows.size() ? List.of() : rows.subList(from, rows.size());
+  }
+
+  /** 把每个收件箱裁剪到 inboxSize 条 */
+  @Scheduled(cron = "${app.feed.trimCron:0 0 4 * * *}")
+  public void trim() {
+    int trimmed = 0;
+    for (Long ownerId : feedRepository.findOwnersOver(inboxSize)) {
+      Integer n = tx.execute(
+          status -> {
+            List<FeedEntry> cutoff =
+                feedRepository.findByOwnerIdOrderByCreatedAtDescGuideIdDesc(ownerId, PageRequest.of(inboxSize, 1));
+            if (cutoff.isEmpty()) {
+              return 0;
+            }
+            FeedEntry c = cutoff.get(0);
+            return feedRepository.deleteUpTo(ownerId, c.getCreatedAt(), c.getGuideId());
+          });
+      trimmed += n == null ? 0 : n;
+    }
+    if (trimmed > 0) {
+      log.info("关注动态收件箱裁剪完成，删除 {} 条", trimmed);
+    }
+  }
+}
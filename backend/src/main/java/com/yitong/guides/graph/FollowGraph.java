@@ -0,0 +1,344 @@
+package com.yitong.guides.graph;
+
+import com.yitong.guides.repo.FollowRepository;
+import com.yitong.guides.service.FollowChangedEvent;
+import com.yitong.guides.support.LongIntHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * 关注关系的内存邻接索引。
+ *
+ * <p>每个用户占一个槽位（LongIntHashMap: userId -> slot），槽位上各有一个按用户 id 升序排列的 long 数组，
+ * 分别存“关注了谁”和“被谁关注”。计数是数组长度，是否关注是一次二分查找，分页按 id 游标截取数组。
+ * 启动时从数据库分批重建；之后随 FollowService 的事件在事务提交后增量更新。
+ * 重建期间到达的事件照常作用于旧索引，同时记下，换上新索引前按顺序重放（增删都是幂等的）。
+ * 首次重建完成前（{@link #isReady()} 为 false）各查询直接查库，不用空索引作答。
+ */
+@Component
+public class FollowGraph implements ApplicationRunner {
+  private static final Logger log = LoggerFactory.getLogger(FollowGraph.class);
+
+  private static final int REBUILD_BATCH = 5000;
+  private static final long[] EMPTY = new long[0];
+
+  private final FollowRepository followRepository;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private Adjacency adj = new Adjacency(16);
+  /** 重建进行中时记录期间到达的事件，否则为 null；由写锁保护 */
+  private List<FollowChangedEvent> replay;
+  private volatile boolean ready;
+  private final ReentrantLock rebuildLock = new ReentrantLock();
+
+  public FollowGraph(FollowRepository followRepository) {
+    this.followRepository = followRepository;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    rebuild();
+  }
+
+  /** 首次重建是否已完成 */
+  public boolean isReady() {
+    return ready;
+  }
+
+  /** 从数据库全量重建：先按行追加，最后逐个数组排序，再重放重建期间的变更 */
+  public void rebuild() {
+    rebuildLock.lock();
+    try {
+      lock.writeLock().lock();
+      try {
+        replay = new ArrayList<>();
+      } finally {
+        lock.writeLock().unlock();
+      }
+      Adjacency fresh = new Adjacency(1024);
+      long edges = 0;
+      try {
+        long lastId = 0;
+        while (true) {
+          List<Object[]> batch = followRepository.findEdgesAfter(lastId, PageRequest.of(0, REBUILD_BATCH));
+          if (batch.isEmpty()) {
+            break;
+          }
+          for (Object[] row : batch) {
+            fresh.append((Long) row[1], (Long) row[2]);
+            lastId = (Long) row[0];
+            edges++;
+          }
+        }
+        fresh.sortAll();
+      } catch (RuntimeException e) {
+        lock.writeLock().lock();
+        try {
+          replay = null;
+        } finally {
+          lock.writeLock().unlock();
+        }
+        throw e;
+      }
+      int replayed;
+      lock.writeLock().lock();
+      try {
+        replayed = replay.size();
+        for (FollowChangedEvent event : replay) {
+          apply(fresh, event);
+        }
+        replay = null;
+        adj = fresh;
+        ready = true;
+      } finally {
+        lock.writeLock().unlock();
+      }
+      log.info("关注关系索引重建完成，{} 个用户，{} 条关系，重放 {} 个变更", fresh.slots.size(), edges, replayed);
+    } finally {
+      rebuildLock.unlock();
+    }
+  }
+
+  @TransactionalEventListener
+  public void onFollowChanged(FollowChangedEvent event) {
+    lock.writeLock().lock();
+    try {
+      apply(adj, event);
+      if (replay != null) {
+        replay.add(event);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private static void apply(Adjacency a, FollowChangedEvent event) {
+    if (event.followed()) {
+      a.add(event.userId(), event.followUserId());
+    } else {
+      a.remove(event.userId(), event.followUserId());
+    }
+  }
+
+  /** userId 是否关注了 targetId */
+  public boolean follows(long userId, long targetId) {
+    if (!ready) {
+      return followRepository.existsByUserIdAndFollowUserId(userId, targetId);
+    }
+    lock.readLock().lock();
+    try {
+      int slot = adj.slots.get(userId);
+      return slot != LongIntHashMap.MISSING
+          && Arrays.binarySearch(adj.following[slot], 0, adj.followingSize[slot], targetId) >= 0;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int followingCount(long userId) {
+    if (!ready) {
+      return (int) followRepository.countByUserId(userId);
+    }
+    lock.readLock().lock();
+    try {
+      int slot = adj.slots.get(userId);
+      return slot == LongIntHashMap.MISSING ? 0 : adj.followingSize[slot];
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int followerCount(long userId) {
+    if (!ready) {
+      return (int) followRepository.countByFollowUserId(userId);
+    }
+    lock.readLock().lock();
+    try {
+      int slot = adj.slots.get(userId);
+      return slot == LongIntHashMap.MISSING ? 0 : adj.followerSize[slot];
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** userId 关注的人，按 id 升序取 afterId 之后的最多 limit 个（afterId 为 null 表示从头开始） */
+  public long[] following(long userId, Long afterId, int limit) {
+    if (!ready) {
+      return toArray(followRepository.findFollowingIdsAfter(userId, afterId == null ? 0L : afterId, PageRequest.of(0, limit)));
+    }
+    lock.readLock().lock();
+    try {
+      int slot = adj.slots.get(userId);
+      return slot == LongIntHashMap.MISSING
+          ? EMPTY
+          : slice(adj.following[slot], adj.followingSize[slot], afterId, limit);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** 关注 userId 的人，分页方式同上 */
+  public long[] followers(long userId, Long afterId, int limit) {
+    if (!ready) {
+      return toArray(followRepository.findFollowerIdsAfter(userId, afterId == null ? 0L : afterId, PageRequest.of(0, limit)));
+    }
+    lock.readLock().lock();
+    try {
+      int slot = adj.slots.get(userId);
+      return slot == LongIntHashMap.MISSING
+          ? EMPTY
+          : slice(adj.followers[slot], adj.followerSize[slot], afterId, limit);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** userId 关注的人中最多取 max 个，超出时按下标等距抽样（用于图遍历时限制扇出） */
+  public long[] sampleFollowing(long userId, int max) {
+    if (!ready) {
+      return following(userId, null, max);
+    }
+    lock.readLock().lock();
+    try {
+      int slot = adj.slots.get(userId);
+      if (slot == LongIntHashMap.MISSING) {
+        return EMPTY;
+      }
+      long[] ids = adj.following[slot];
+      int size = adj.followingSize[slot];
+      if (size <= max) {
+        return Arrays.copyOf(ids, size);
+      }
+      long[] out = new long[max];
+      for (int i = 0; i < max; i++) {
+        out[i] = ids[(int) ((long) i * size / max)];
+      }
+      return out;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private static long[] toArray(List<Long> ids) {
+    return ids.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  private static long[] slice(long[] ids, int size, Long afterId, int limit) {
+    int from = 0;
+    if (afterId != null) {
+      int pos = Arrays.binarySearch(ids, 0, size, afterId);
+      from = pos >= 0 ? pos + 1 : -pos - 1;
+    }
+    return Arrays.copyOfRange(ids, from, Math.min(size, from + limit));
+  }
+
+  /** 槽位化的邻接表：following/followers 为每个槽位上的有序 id 数组，*Size 为有效长度 */
+  private static final class Adjacency {
+    final LongIntHashMap slots;
+    long[][] following;
+    int[] followingSize;
+    long[][] followers;
+    int[] followerSize;
+
+    Adjacency(int capacity) {
+      slots = new LongIntHashMap(capacity);
+      following = new long[capacity][];
+      followingSize = new int[capacity];
+      followers = new long[capacity][];
+      followerSize = new int[capacity];
+    }
+
+    int slotOf(long userId) {
+      int slot = slots.get(userId);
+      if (slot != LongIntHashMap.MISSING) {
+        return slot;
+      }
+      slot = slots.size();
+      if (slot == following.length) {
+        int cap = slot + (slot >> 1) + 1;
+        following = Arrays.copyOf(following, cap);
+        followingSize = Arrays.copyOf(followingSize, cap);
+        followers = Arrays.copyOf(followers, cap);
+        followerSize = Arrays.copyOf(followerSize, cap);
+      }
+      following[slot] = EMPTY;
+      followers[slot] = EMPTY;
+      slots.put(userId, slot);
+      return slot;
+    }
+
+    /** 重建时使用：不保证有序，结束后调用 sortAll */
+    void append(long userId, long targetId) {
+      int u = slotOf(userId);
+      following[u] = push(following[u], followingSize[u]++, targetId);
+      int t = slotOf(targetId);
+      followers[t] = push(followers[t], followerSize[t]++, userId);
+    }
+
+    void sortAll() {
+      for (int i = 0; i < slots.size(); i++) {
+        Arrays.sort(following[i], 0, followingSize[i]);
+        Arrays.sort(followers[i], 0, followerSize[i]);
+      }
+    }
+
+    void add(long userId, long targetId) {
+      int u = slotOf(userId);
+      int pos = Arrays.binarySearch(following[u], 0, followingSize[u], targetId);
+      if (pos >= 0) {
+        return;
+      }
+      following[u] = insert(following[u], followingSize[u]++, -pos - 1, targetId);
+      int t = slotOf(targetId);
+      int p2 = Arrays.binarySearch(followers[t], 0, followerSize[t], userId);
+      if (p2 < 0) {
+        followers[t] = insert(followers[t], followerSize[t]++, -p2 - 1, userId);
+      }
+    }
+
+    void remove(long userId, long targetId) {
+      int u = slots.get(userId);
+      int t = slots.get(targetId);
+      if (u == LongIntHashMap.MISSING || t == LongIntHashMap.MISSING) {
+        return;
+      }
+      int pos = Arrays.binarySearch(following[u], 0, followingSize[u], targetId);
+      if (pos >= 0) {
+        System.arraycopy(following[u], pos + 1, following[u], pos, followingSize[u] - pos - 1);
+        followingSize[u]--;
+      }
+      int p2 = Arrays.binarySearch(followers[t], 0, followerSize[t], userId);
+      if (p2 >= 0) {
+        System.arraycopy(followers[t], p2 + 1, followers[t], p2, followerSize[t] - p2 - 1);
+        followerSize[t]--;
+      }
+    }
+
+    private static long[] push(long[] arr, int size, long v) {
+      if (size == arr.length) {
+        arr = Arrays.copyOf(arr, Math.max(4, size + (size >> 1)));
+      }
+      arr[size] = v;
+      return arr;
+    }
+
+    private static long[] insert(long[] arr, int size, int pos, long v) {
+      if (size == arr.length) {
+        arr = Arrays.copyOf(arr, Math.max(4, size + (size >> 1)));
+      }
+      System.arraycopy(arr, pos, arr, pos + 1, size - pos);
+      arr[pos] = v;
+      return arr;
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package com.yitong.guides.graph;
+
+import com.yitong.guides.domain.GuideCategory;
+import com.yitong.guides.repo.GuideRepository;
+import com.yitong.guides.service.FollowChangedEvent;
+import com.yitong.guides.support.LongIntHashMap;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * “可能感兴趣的人”：你关注的人还关注了谁（二跳），再按分类偏好加权。
+ *
+ * <p>二跳遍历在 FollowGraph 上进行：第一跳、第二跳各最多取 fanOut 个（超出时等距抽样），第一跳的节点在
+ * ForkJoinPool 中按区间拆分并行统计，各子任务用 LongIntHashMap 计数后归并。得分 = 二跳命中次数 ×
+ * (1 + 分类契合度)，契合度为“我点赞/收藏的分类占比”与“候选作者发布的分类占比”的点积，只对计数最高的
+ * 若干候选查一次库。结果按用户缓存 refreshSeconds 秒，自己关注/取关时失效。
+ */
+@Component
+public class FollowSuggestions {
+  /** 子任务处理的第一跳节点数下限，低于此值不再拆分 */
+  private static final int SPLIT_THRESHOLD = 16;
+  /** 参与分类加权的候选数 = limit × 该倍数 */
+  private static final int RERANK_FACTOR = 5;
+
+  private final FollowGraph graph;
+  private final GuideRepository guideRepository;
+  private final int fanOut;
+  private final int maxEntries;
+  private final long refreshMillis;
+  private final ForkJoinPool pool;
+  private final ConcurrentHashMap<Long, Cached> cache = new ConcurrentHashMap<>();
+
+  /** 一条推荐：用户 id、你关注的人中有几人关注了 TA、综合得分 */
+  public record Suggestion(long userId, int mutualCount, double score) {}
+
+  /** 缓存项；computedFor 为计算时使用的上限，结果条数少于它说明候选已全部列出 */
+  private record Cached(List<Suggestion> items, int computedFor, long expiresAt) {
+    boolean covers(int limit) {
+      return limit <= computedFor || items.size() < computedFor;
+    }
+  }
+
+  public FollowSuggestions(
+      FollowGraph graph,
+      GuideRepository guideRepository,
+      @Value("${app.suggest.fanOut:200}") int fanOut,
+      @Value("${app.suggest.maxEntries:10000}") int maxEntries,
+      @Value("${app.suggest.refreshSeconds:600}") long refreshSeconds,
+      @Value("${app.suggest.parallelism:0}") int parallelism) {
+    this.graph = graph;
+    this.guideRepository = guideRepository;
+    this.fanOut = fanOut;
+    this.maxEntries = maxEntries;
+    this.refreshMillis = refreshSeconds * 1000;
+    this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  @TransactionalEventListener
+  public void onFollowChanged(FollowChangedEvent event) {
+    cache.remove(event.userId());
+  }
+
+  /** 为 userId 推荐最多 limit 个用户（已关注的、自己不在其中） */
+  public List<Suggestion> suggest(long userId, int limit) {
+    if (!graph.isReady()) {
+      // 关注索引尚在启动重建，二跳遍历逐个查库代价过高；推荐可缺省，先返回空且不缓存
+      return List.of();
+    }
+    long now = System.currentTimeMillis();
+    Cached c = cache.get(userId);
+    if (c == null || c.expiresAt() < now || !c.covers(limit)) {
+      int computedFor = Math.max(limit, 20);
+      c = new Cached(compute(userId, computedFor), computedFor, now + refreshMillis);
+      if (cache.size() >= maxEntries) {
+        cache.values().removeIf(e -> e.expiresAt() < now);
+        if (cache.size() >= maxEntries) {
+          cache.clear();
+        }
+      }
+      cache.put(userId, c);
+    }
+    List<Suggestion> out = new ArrayList<>(limit);
+    for (Suggestion s : c.items()) {
+      // 缓存期间可能已在别处关注，读时再过滤一次
+      if (!graph.follows(userId, s.userId())) {
+        out.add(s);
+        if (out.size() == limit) {
+          break;
+        }
+      }
+    }
+    return out;
+  }
+
+  private List<Suggestion> compute(long userId, int limit) {
+    long[] firstHop = graph.sampleFollowing(userId, fanOut);
+    if (firstHop.length == 0) {
+      return List.of();
+    }
+    LongIntHashMap hits = pool.invoke(new TwoHopTask(firstHop, 0, firstHop.length));
+    hits.remove(userId);
+    for (long f : firstHop) {
+      hits.remove(f);
+    }
+    if (hits.size() == 0) {
+      return List.of();
+    }
+
+    List<long[]> ranked = new ArrayList<>(hits.size());
+    hits.forEach((id, n) -> {
+      if (!graph.follows(userId, id)) {
+        ranked.add(new long[] {id, n});
+      }
+    });
+    ranked.sort(Comparator.comparingLong((long[] r) -> r[1]).reversed().thenComparingLong(r -> r[0]));
+    List<long[]> head = ranked.subList(0, Math.min(ranked.size(), limit * RERANK_FACTOR));
+
+    double[] mine = categoryShares(guideRepository.countInteractedByCategory(userId), 0);
+    Map<Long, double[]> authorCats = new HashMap<>();
+    if (mine != null) {
+      List<Long> ids = head.stream().map(r -> r[0]).toList();
+      Map<Long, List<Object[]>> rows = new HashMap<>();
+      for (Object[] row : guideRepository.countByAuthorAndCategory(ids)) {
+        rows.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add(row);
+      }
+      rows.forEach((id, r) -> authorCats.put(id, categoryShares(r, 1)));
+    }
+
+    List<Suggestion> out = new ArrayList<>(head.size());
+    for (long[] r : head) {
+      double affinity = 0;
+      double[] theirs = authorCats.get(r[0]);
+      if (mine != null && theirs != null) {
+        for (int i = 0; i < mine.length; i++) {
+          affinity += mine[i] * theirs[i];
+        }
+      }
+      out.add(new Suggestion(r[0], (int) r[1], r[1] * (1 + affinity)));
+    }
+    out.sort(Comparator.comparingDouble(Suggestion::score).reversed().thenComparingLong(Suggestion::userId));
+    return out.size() > limit ? List.copyOf(out.subList(0, limit)) : out;
+  }
+
+  /** [.., category, count] 行转为按 GuideCategory.ordinal() 排列的占比；没有数据返回 null */
+  private static double[] categoryShares(List<Object[]> rows, int categoryCol) {
+    double[] shares = new double[GuideCategory.values().length];
+    long total = 0;
+    for (Object[] row : rows) {
+      long n = ((Number) row[categoryCol + 1]).longValue();
+      shares[((GuideCategory) row[categoryCol]).ordinal()] += n;
+      total += n;
+    }
+    if (total == 0) {
+      return null;
+    }
+    for (int i = 0; i < shares.length; i++) {
+      shares[i] /= total;
+    }
+    return shares;
+  }
+
+  /** 对第一跳节点区间 [from, to) 统计第二跳命中次数 */
+  private final class TwoHopTask extends RecursiveTask<LongIntHashMap> {
+    private final long[] nodes;
+    private final int from;
+    private final int to;
+
+    TwoHopTask(long[] nodes, int from, int to) {
+      this.nodes = nodes;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected LongIntHashMap compute() {
+      if (to - from <= SPLIT_THRESHOLD) {
+        LongIntHashMap counts = new LongIntHashMap();
+        for (int i = from; i < to; i++) {
+          for (long g : graph.sampleFollowing(nodes[i], fanOut)) {
+            counts.addTo(g, 1);
+          }
+        }
+        return counts;
+      }
+      int mid = (from + to) >>> 1;
+      TwoHopTask left = new TwoHopTask(nodes, from, mid);
+      left.fork();
+      LongIntHashMap right = new TwoHopTask(nodes, mid, to).compute();
+      LongIntHashMap merged = left.join();
+      right.forEach(merged::addTo);
+      return merged;
+    }
+  }
+}
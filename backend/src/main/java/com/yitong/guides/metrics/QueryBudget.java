@@ -0,0 +1,19 @@
+package com.yitong.guides.metrics;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 声明接口单次请求最多执行的 SQL 语句数（经 Hibernate 执行的语句，含事务提交后监听器中的查询）。
+ * 标在方法上优先于类上；未标注时使用 app.sqlstats.budget.defaultMax。
+ * app.sqlstats.budget.enforce 为 true 时超出即让请求失败，否则只计数并告警。
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface QueryBudget {
+  int value();
+}
@@ -0,0 +1,9 @@
+package com.yitong.guides.metrics;
+
+/** 强制模式下请求执行的语句数超出 {@link QueryBudget} 时抛出，由 Hibernate 向上传到调用方 */
+public class QueryBudgetExceededException extends RuntimeException {
+
+  public QueryBudgetExceededException(String endpoint, int budget, String sql) {
+    super(endpoint + " 超出 SQL 语句预算 " + budget + "，第 " + (budget + 1) + " 条: " + SqlRequestContext.abbreviate(sql));
+  }
+}
@@ -0,0 +1,59 @@
+package com.yitong.guides.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 单个请求的 SQL 计数状态，经 ThreadLocal 绑定在处理请求的线程上（异步请求交给异步任务线程，重新派发时接回）。
+ * 同一时刻只由一个线程读写，无需同步。
+ */
+final class SqlRequestContext {
+  private static final ThreadLocal<SqlRequestContext> CURRENT = new ThreadLocal<>();
+  private static final int SQL_PREVIEW_CHARS = 200;
+
+  /** 请求方法与映射模式，如 GET /api/guides/{id} */
+  final String endpoint;
+  /** 语句数上限，0 为不限制 */
+  final int budget;
+  int statements;
+  long dbNanos;
+  boolean overBudget;
+  private long executeStartedAt;
+  /** 本请求内各语句文本的执行次数，用于发现 N+1 */
+  final Map<String, Integer> repeats = new HashMap<>();
+
+  SqlRequestContext(String endpoint, int budget) {
+    this.endpoint = endpoint;
+    this.budget = budget;
+  }
+
+  static SqlRequestContext current() {
+    return CURRENT.get();
+  }
+
+  static void bind(SqlRequestContext ctx) {
+    CURRENT.set(ctx);
+  }
+
+  static SqlRequestContext unbind() {
+    SqlRequestContext ctx = CURRENT.get();
+    CURRENT.remove();
+    return ctx;
+  }
+
+  void executeStarted() {
+    executeStartedAt = System.nanoTime();
+  }
+
+  void executeEnded() {
+    if (executeStartedAt != 0) {
+      dbNanos += System.nanoTime() - executeStartedAt;
+      executeStartedAt = 0;
+    }
+  }
+
+  static String abbreviate(String sql) {
+    String s = sql.replaceAll("\\s+", " ").trim();
+    return s.length() <= SQL_PREVIEW_CHARS ? s : s.substring(0, SQL_PREVIEW_CHARS) + "...";
+  }
+}
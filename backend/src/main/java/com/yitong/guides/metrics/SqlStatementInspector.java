@@ -0,0 +1,39 @@
+package com.yitong.guides.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hibernate 在准备每条 SQL 前回调：计入当前请求的语句数与同文本重复次数，检查语句预算，
+ * 并（可选）把来源接口（如 GET /api/guides/{id}）作为块注释加在语句前，方便在数据库慢日志与 processlist 中定位。不在请求线程上的语句（定时任务等）原样放行。
+ */
+public class SqlStatementInspector implements StatementInspector {
+
+  private final boolean tagStatements;
+  private final boolean enforceBudget;
+
+  public SqlStatementInspector(boolean tagStatements, boolean enforceBudget) {
+    this.tagStatements = tagStatements;
+    this.enforceBudget = enforceBudget;
+  }
+
+  @Override
+  public String inspect(String sql) {
+    SqlRequestContext ctx = SqlRequestContext.current();
+    if (ctx == null) {
+      return sql;
+    }
+    ctx.statements++;
+    ctx.repeats.merge(sql, 1, Integer::sum);
+    if (ctx.budget > 0 && ctx.statements > ctx.budget) {
+      ctx.overBudget = true;
+      if (enforceBudget) {
+        throw new QueryBudgetExceededException(ctx.endpoint, ctx.budget, sql);
+      }
+    }
+    if (!tagStatements) {
+      return sql;
+    }
+    // 映射模式里的 ** 可能拼出注释结束符
+    return "/* " + ctx.endpoint.replace("*/", "* /") + " */ " + sql;
+  }
+}
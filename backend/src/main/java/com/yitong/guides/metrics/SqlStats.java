@@ -0,0 +1,221 @@
+package com.yitong.guides.metrics;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按接口（请求方法 + 映射模式）汇总每个请求的 SQL 语句数与 JDBC 执行耗时，各自记为固定分桶的直方图；
+ * 同一请求内同一语句文本执行次数达到 nPlusOneThreshold 的记为疑似 N+1，首次发现时告警一次。
+ * 接口数由代码决定，另设上限防止异常请求撑大统计表。
+ */
+@Component
+public class SqlStats {
+  private static final Logger log = LoggerFactory.getLogger(SqlStats.class);
+
+  /** 语句数分桶上界（含），最后一个桶为“更多” */
+  private static final long[] STATEMENT_BOUNDS = {0, 1, 2, 3, 5, 8, 13, 21, 34, 55};
+  /** 耗时分桶上界（毫秒，含） */
+  private static final long[] MILLIS_BOUNDS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000};
+  private static final int MAX_ENDPOINTS = 500;
+  private static final int MAX_SUSPECTS = 200;
+
+  public record Bucket(String le, long count) {}
+
+  public record EndpointReport(
+      String endpoint,
+      int budget,
+      long requests,
+      double avgStatements,
+      long p95Statements,
+      long maxStatements,
+      double avgDbMillis,
+      long p95DbMillis,
+      double maxDbMillis,
+      long overBudget,
+      long nPlusOneRequests,
+      List<Bucket> statements,
+      List<Bucket> dbMillis) {}
+
+  /** 疑似 N+1：接口、语句（截断）、单个请求内的最大重复次数、发现次数 */
+  public record Suspect(String endpoint, String sql, long maxRepeats, long requests, String lastSeenAt) {}
+
+  public record Report(String since, List<EndpointReport> endpoints, List<Suspect> suspects) {}
+
+  private final int nPlusOneThreshold;
+  private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, SuspectStats> suspects = new ConcurrentHashMap<>();
+  private volatile Instant since = Instant.now();
+
+  public SqlStats(@Value("${app.sqlstats.nPlusOneThreshold:5}") int nPlusOneThreshold) {
+    this.nPlusOneThreshold = nPlusOneThreshold;
+  }
+
+  /** 请求结束时记入统计 */
+  void record(SqlRequestContext ctx) {
+    Endpoint e = endpoints.get(ctx.endpoint);
+    if (e == null) {
+      if (endpoints.size() >= MAX_ENDPOINTS) {
+        return;
+      }
+      e = endpoints.computeIfAbsent(ctx.endpoint, k -> new Endpoint(ctx.budget));
+    }
+    e.add(ctx.statements, ctx.dbNanos);
+    if (ctx.overBudget) {
+      if (e.overBudget.getAndIncrement() == 0) {
+        log.warn("{} 执行了 {} 条 SQL，超出预算 {}", ctx.endpoint, ctx.statements, ctx.budget);
+      }
+    }
+    if (nPlusOneThreshold > 0 && ctx.statements >= nPlusOneThreshold) {
+      boolean found = false;
+      for (Map.Entry<String, Integer> r : ctx.repeats.entrySet()) {
+        if (r.getValue() >= nPlusOneThreshold) {
+          found = true;
+          suspect(ctx.endpoint, r.getKey(), r.getValue());
+        }
+      }
+      if (found) {
+        e.nPlusOne.increment();
+      }
+    }
+  }
+
+  private void suspect(String endpoint, String sql, int repeats) {
+    String key = endpoint + "\n" + sql;
+    SuspectStats s = suspects.get(key);
+    if (s == null) {
+      if (suspects.size() >= MAX_SUSPECTS) {
+        return;
+      }
+      s = suspects.computeIfAbsent(key, k -> new SuspectStats(endpoint, SqlRequestContext.abbreviate(sql)));
+    }
+    if (s.requests.getAndIncrement() == 0) {
+      log.warn("疑似 N+1：{} 单个请求内同一语句执行 {} 次: {}", endpoint, repeats, s.sql);
+    }
+    s.maxRepeats.accumulateAndGet(repeats, Math::max);
+    s.lastSeenAt = Instant.now();
+  }
+
+  public Report report() {
+    List<EndpointReport> list = new ArrayList<>();
+    endpoints.forEach((name, e) -> list.add(e.report(name)));
+    // 总语句数多的接口排在前面
+    list.sort(Comparator.comparingDouble((EndpointReport r) -> r.avgStatements() * r.requests()).reversed());
+    List<Suspect> ss = new ArrayList<>();
+    suspects.values().forEach(s ->
+        ss.add(new Suspect(s.endpoint, s.sql, s.maxRepeats.get(), s.requests.get(), s.lastSeenAt.toString())));
+    ss.sort(Comparator.comparingLong(Suspect::maxRepeats).reversed());
+    return new Report(since.toString(), list, ss);
+  }
+
+  public void reset() {
+    endpoints.clear();
+    suspects.clear();
+    since = Instant.now();
+  }
+
+  private static int bucketOf(long[] bounds, long v) {
+    for (int i = 0; i < bounds.length; i++) {
+      if (v <= bounds[i]) {
+        return i;
+      }
+    }
+    return bounds.length;
+  }
+
+  private static List<Bucket> buckets(long[] bounds, AtomicLongArray counts) {
+    List<Bucket> out = new ArrayList<>(bounds.length + 1);
+    for (int i = 0; i <= bounds.length; i++) {
+      out.add(new Bucket(i < bounds.length ? Long.toString(bounds[i]) : "+Inf", counts.get(i)));
+    }
+    return out;
+  }
+
+  /** 直方图估算的 p95：落入的分桶上界；落在最后一个桶时返回已知最大值 */
+  private static long p95(long[] bounds, AtomicLongArray counts, long total, long max) {
+    long rank = (long) Math.ceil(total * 0.95);
+    long seen = 0;
+    for (int i = 0; i < bounds.length; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(bounds[i], max);
+      }
+    }
+    return max;
+  }
+
+  private static final class Endpoint {
+    final int budget;
+    final LongAdder requests = new LongAdder();
+    final LongAdder statements = new LongAdder();
+    final LongAdder dbNanos = new LongAdder();
+    final AtomicLong maxStatements = new AtomicLong();
+    final AtomicLong maxDbNanos = new AtomicLong();
+    final AtomicLong overBudget = new AtomicLong();
+    final LongAdder nPlusOne = new LongAdder();
+    final AtomicLongArray statementCounts = new AtomicLongArray(STATEMENT_BOUNDS.length + 1);
+    final AtomicLongArray millisCounts = new AtomicLongArray(MILLIS_BOUNDS.length + 1);
+
+    Endpoint(int budget) {
+      this.budget = budget;
+    }
+
+    void add(int n, long nanos) {
+      requests.increment();
+      statements.add(n);
+      dbNanos.add(nanos);
+      maxStatements.accumulateAndGet(n, Math::max);
+      maxDbNanos.accumulateAndGet(nanos, Math::max);
+      statementCounts.incrementAndGet(bucketOf(STATEMENT_BOUNDS, n));
+      millisCounts.incrementAndGet(bucketOf(MILLIS_BOUNDS, (nanos + 999_999) / 1_000_000));
+    }
+
+    EndpointReport report(String name) {
+      long req = requests.sum();
+      long maxN = maxStatements.get();
+      long maxNanos = maxDbNanos.get();
+      double div = Math.max(1, req);
+      return new EndpointReport(
+          name,
+          budget,
+          req,
+          round(statements.sum() / div),
+          p95(STATEMENT_BOUNDS, statementCounts, req, maxN),
+          maxN,
+          round(dbNanos.sum() / div / 1e6),
+          p95(MILLIS_BOUNDS, millisCounts, req, (maxNanos + 999_999) / 1_000_000),
+          round(maxNanos / 1e6),
+          overBudget.get(),
+          nPlusOne.sum(),
+          buckets(STATEMENT_BOUNDS, statementCounts),
+          buckets(MILLIS_BOUNDS, millisCounts));
+    }
+
+    private static double round(double v) {
+      return Math.round(v * 100) / 100.0;
+    }
+  }
+
+  private static final class SuspectStats {
+    final String endpoint;
+    final String sql;
+    final AtomicLong maxRepeats = new AtomicLong();
+    final AtomicLong requests = new AtomicLong();
+    volatile Instant lastSeenAt = Instant.now();
+
+    SuspectStats(String endpoint, String sql) {
+      this.endpoint = endpoint;
+      this.sql = sql;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.yitong.guides.metrics;
+
+import java.util.concurrent.Callable;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+/**
+ * 把请求的 SQL 计数上下文带到执行 Callable / StreamingResponseBody 的异步线程上（如 NDJSON 导出边写边查的语句），
+ * 否则这些语句不在请求线程上，既不计数也不受预算约束。
+ * 提交任务前在请求线程上把上下文放进请求属性，任务线程执行前接上、结束后解绑，重新派发时再由 {@link SqlStatsInterceptor} 接回。
+ * 同一时刻只有一个线程持有该上下文，交接经由容器的异步派发，保证可见性。
+ */
+class SqlStatsCallableInterceptor implements CallableProcessingInterceptor {
+
+  @Override
+  public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+    SqlRequestContext ctx = SqlRequestContext.current();
+    if (ctx != null) {
+      request.setAttribute(SqlStatsInterceptor.ASYNC_ATTR, ctx, RequestAttributes.SCOPE_REQUEST);
+    }
+  }
+
+  @Override
+  public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+    if (request.getAttribute(SqlStatsInterceptor.ASYNC_ATTR, RequestAttributes.SCOPE_REQUEST)
+        instanceof SqlRequestContext ctx) {
+      SqlRequestContext.bind(ctx);
+    }
+  }
+
+  @Override
+  public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+    SqlRequestContext.unbind();
+  }
+}
@@ -0,0 +1,62 @@
+package com.yitong.guides.metrics;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * 每请求 SQL 统计的装配（app.sqlstats.enabled）：向 Hibernate 注册语句检查器与计时监听器，向 Spring MVC 注册拦截器。
+ * 只统计经 Hibernate 执行的语句，JdbcTemplate 直接执行的批量写入不在其中；
+ * Callable / StreamingResponseBody 在异步线程上执行的语句计入发起它的请求，请求之外另起的线程（@Async、定时任务）不计。
+ */
+@Configuration
+public class SqlStatsConfig implements WebMvcConfigurer {
+
+  private final SqlStats stats;
+  private final boolean enabled;
+  private final boolean tagStatements;
+  private final int defaultBudget;
+  private final boolean enforceBudget;
+
+  public SqlStatsConfig(
+      SqlStats stats,
+      @Value("${app.sqlstats.enabled:true}") boolean enabled,
+      @Value("${app.sqlstats.tagStatements:true}") boolean tagStatements,
+      @Value("${app.sqlstats.budget.defaultMax:0}") int defaultBudget,
+      @Value("${app.sqlstats.budget.enforce:false}") boolean enforceBudget) {
+    this.stats = stats;
+    this.enabled = enabled;
+    this.tagStatements = tagStatements;
+    this.defaultBudget = defaultBudget;
+    this.enforceBudget = enforceBudget;
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer sqlStatsHibernateCustomizer() {
+    return props -> {
+      if (enabled) {
+        props.put(AvailableSettings.STATEMENT_INSPECTOR, new SqlStatementInspector(tagStatements, enforceBudget));
+        props.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SqlTimingListener.class.getName());
+      }
+    };
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    if (enabled) {
+      registry.addInterceptor(new SqlStatsInterceptor(stats, defaultBudget));
+    }
+  }
+
+  @Override
+  public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+    if (enabled) {
+      configurer.registerCallableInterceptors(new SqlStatsCallableInterceptor());
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.yitong.guides.metrics;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * 为每个进入控制器方法的请求建立 SQL 计数上下文，请求结束时交给 {@link SqlStats}。
+ * 接口名为“请求方法 + 映射模式”，带 params 条件的映射追加条件（如 GET /api/guides?cursor），与无条件的同路径接口分开统计。
+ * 异步请求在开始异步处理时把上下文暂存进请求属性，重新派发时接回，整个请求只记一次；
+ * 异步线程上执行的语句由 {@link SqlStatsCallableInterceptor} 计入同一上下文。
+ */
+class SqlStatsInterceptor implements AsyncHandlerInterceptor {
+  static final String ASYNC_ATTR = SqlStatsInterceptor.class.getName() + ".context";
+
+  private record Mapping(String paramsSuffix, int budget) {}
+
+  private final SqlStats stats;
+  private final int defaultBudget;
+  private final ConcurrentHashMap<Method, Mapping> mappings = new ConcurrentHashMap<>();
+
+  SqlStatsInterceptor(SqlStats stats, int defaultBudget) {
+    this.stats = stats;
+    this.defaultBudget = defaultBudget;
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    if (!(handler instanceof HandlerMethod hm)) {
+      return true;
+    }
+    if (request.getDispatcherType() == DispatcherType.ASYNC
+        && request.getAttribute(ASYNC_ATTR) instanceof SqlRequestContext resumed) {
+      request.removeAttribute(ASYNC_ATTR);
+      SqlRequestContext.bind(resumed);
+      return true;
+    }
+    Mapping m = mappings.computeIfAbsent(hm.getMethod(), this::mappingOf);
+    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    String endpoint = request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI()) + m.paramsSuffix();
+    SqlRequestContext.bind(new SqlRequestContext(endpoint, m.budget()));
+    return true;
+  }
+
+  @Override
+  public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    SqlRequestContext ctx = SqlRequestContext.unbind();
+    if (ctx != null) {
+      request.setAttribute(ASYNC_ATTR, ctx);
+    }
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    SqlRequestContext ctx = SqlRequestContext.unbind();
+    if (ctx != null) {
+      stats.record(ctx);
+    }
+  }
+
+  private Mapping mappingOf(Method method) {
+    RequestMapping rm = AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class);
+    String suffix = rm == null || rm.params().length == 0 ? "" : "?" + String.join("&", rm.params());
+    QueryBudget budget = AnnotatedElementUtils.findMergedAnnotation(method, QueryBudget.class);
+    if (budget == null) {
+      budget = AnnotatedElementUtils.findMergedAnnotation(method.getDeclaringClass(), QueryBudget.class);
+    }
+    return new Mapping(suffix, budget != null ? budget.value() : defaultBudget);
+  }
+}
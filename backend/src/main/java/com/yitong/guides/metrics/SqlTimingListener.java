@@ -0,0 +1,44 @@
+package com.yitong.guides.metrics;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * 统计当前请求在 JDBC 执行（executeQuery/executeUpdate/executeBatch）上花费的时间；
+ * 不含连接获取与结果集读取。由 Hibernate 为每个 Session 按类名实例化，因此状态全部放在请求上下文中。
+ */
+public class SqlTimingListener implements SessionEventListener {
+
+  @Override
+  public void jdbcExecuteStatementStart() {
+    started();
+  }
+
+  @Override
+  public void jdbcExecuteStatementEnd() {
+    ended();
+  }
+
+  @Override
+  public void jdbcExecuteBatchStart() {
+    started();
+  }
+
+  @Override
+  public void jdbcExecuteBatchEnd() {
+    ended();
+  }
+
+  private static void started() {
+    SqlRequestContext ctx = SqlRequestContext.current();
+    if (ctx != null) {
+      ctx.executeStarted();
+    }
+  }
+
+  private static void ended() {
+    SqlRequestContext ctx = SqlRequestContext.current();
+    if (ctx != null) {
+      ctx.executeEnded();
+    }
+  }
+}
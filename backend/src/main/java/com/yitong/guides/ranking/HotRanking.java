@@ -0,0 +1,476 @@
+package com.yitong.guides.ranking;
+
+import com.yitong.guides.domain.GuideCategory;
+import com.yitong.guides.repo.CommentRepository;
+import com.yitong.guides.repo.GuideRepository;
+import com.yitong.guides.repo.GuideStatRow;
+import com.yitong.guides.repo.StudyCheckInRepository;
+import com.yitong.guides.service.GuideChangedEvent;
+import com.yitong.guides.service.GuideInteractionEvent;
+import com.yitong.guides.support.LongIntHashMap;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * 热门排行：按点赞/收藏/评论/打卡加权，并随发布时间衰减。
+ *
+ * <p>得分 = log10(1 + 加权互动数) + (发布时间 - 基准时间) / 衰减周期，即每晚发布一个衰减周期，
+ * 需要 10 倍互动量才能排在同一位置。得分只取决于计数和发布时间，不随“当前时间”变化，
+ * 因此互动发生时只需重算该攻略一条得分，无需全量重排。
+ *
+ * <p>全部攻略的计数存放在按槽位排列的基本类型数组中（无逐条对象），每个分类及“全部”各维护一个
+ * 容量为 topK 的有序榜单。启动时从数据库重建；之后随 GuideService 的事件增量更新；
+ * 定时任务用内存计数重算榜单，修正因取消点赞等导致的榜外遗漏。
+ *
+ * <p>重建期间事件照常作用于旧状态（读请求仍用它），同时记下涉及的攻略 id；新状态建好后按 id 从数据库重读这些攻略
+ * 再切换。计数事件是增量，重放可能与已读到的行重复计入，重读当前值则不会；事件在提交后才送达，重读一定能看到它。
+ */
+@Component
+public class HotRanking implements ApplicationRunner {
+  private static final Logger log = LoggerFactory.getLogger(HotRanking.class);
+
+  /** 时间衰减基准：2024-01-01T00:00:00Z */
+  private static final long EPOCH_SECOND = 1704067200L;
+  private static final int REBUILD_BATCH = 2000;
+  private static final int LIKE_WEIGHT = 1;
+  private static final int FAVORITE_WEIGHT = 2;
+  private static final int COMMENT_WEIGHT = 2;
+  private static final int CHECKIN_WEIGHT = 1;
+  /** “全部分类”榜单的下标，其余下标为 GuideCategory.ordinal() */
+  private static final int ALL = GuideCategory.values().length;
+
+  private final GuideRepository guideRepository;
+  private final CommentRepository commentRepository;
+  private final StudyCheckInRepository checkInRepository;
+  private final int topK;
+  private final double decaySeconds;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private State state;
+  /** 重建期间有变更的攻略 id；不在重建时为 null。由写锁保护 */
+  private Set<Long> touched;
+  private final ReentrantLock rebuildLock = new ReentrantLock();
+
+  /** 一页热门结果：按得分排好序的攻略 id 以及榜单长度 */
+  public record Result(List<Long> ids, long total) {}
+
+  public HotRanking(
+      GuideRepository guideRepository,
+      CommentRepository commentRepository,
+      StudyCheckInRepository checkInRepository,
+      @Value("${app.hot.topK:500}") int topK,
+      @Value("${app.hot.decayHours:12}") double decayHours) {
+    this.guideRepository = guideRepository;
+    this.commentRepository = commentRepository;
+    this.checkInRepository = checkInRepository;
+    this.topK = topK;
+    this.decaySeconds = decayHours * 3600;
+    this.state = new State(16);
+    this.state.boards = newBoards();
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    rebuild();
+  }
+
+  /** 从数据库全量重建：按 id 分批读取排序字段，评论/打卡数各用一次分组统计；重建期间的变更在切换前重读 */
+  public void rebuild() {
+    rebuildLock.lock();
+    try {
+      lock.writeLock().lock();
+      try {
+        touched = new HashSet<>();
+      } finally {
+        lock.writeLock().unlock();
+      }
+      State fresh;
+      try {
+        fresh = load();
+      } catch (RuntimeException e) {
+        lock.writeLock().lock();
+        try {
+          touched = null;
+        } finally {
+          lock.writeLock().unlock();
+        }
+        throw e;
+      }
+      int refreshed = 0;
+      while (true) {
+        Set<Long> ids;
+        lock.writeLock().lock();
+        try {
+          if (touched.isEmpty()) {
+            state = fresh;
+            touched = null;
+            break;
+          }
+          ids = touched;
+          touched = new HashSet<>();
+        } finally {
+          lock.writeLock().unlock();
+        }
+        // 读库不持锁；这期间的新变更进入下一轮 touched
+        refresh(fresh, ids);
+        refreshed += ids.size();
+      }
+      log.info("热门排行重建完成，共 {} 篇，重读变更 {} 篇", fresh.slots.size(), refreshed);
+    } finally {
+      rebuildLock.unlock();
+    }
+  }
+
+  private State load() {
+    State fresh = new State(1024);
+    fresh.boards = newBoards();
+    long lastId = 0;
+    while (true) {
+      List<GuideStatRow> batch = guideRepository.findStatRowsAfter(lastId, PageRequest.of(0, REBUILD_BATCH));
+      if (batch.isEmpty()) {
+        break;
+      }
+      for (GuideStatRow r : batch) {
+        int slot = fresh.upsert(r.id(), r.category(), r.createdAt());
+        fresh.likes[slot] = clampInt(r.likeCount());
+        fresh.favorites[slot] = clampInt(r.favoriteCount());
+        lastId = r.id();
+      }
+    }
+    for (Object[] row : commentRepository.countGroupByGuideId()) {
+      int slot = fresh.slots.get((Long) row[0]);
+      if (slot != LongIntHashMap.MISSING) {
+        fresh.comments[slot] = clampInt((Long) row[1]);
+      }
+    }
+    for (Object[] row : checkInRepository.countGroupByGuideId()) {
+      int slot = fresh.slots.get((Long) row[0]);
+      if (slot != LongIntHashMap.MISSING) {
+        fresh.checkins[slot] = clampInt((Long) row[1]);
+      }
+    }
+    fresh.boards = buildBoards(fresh);
+    return fresh;
+  }
+
+  /** 把指定攻略在 s 中的计数更新为数据库当前值（已删除的移除），并重新放入榜单 */
+  private void refresh(State s, Set<Long> ids) {
+    Map<Long, Long> comments = countsOf(commentRepository.countGroupByGuideIdIn(ids));
+    Map<Long, Long> checkins = countsOf(checkInRepository.countGroupByGuideIdIn(ids));
+    Set<Long> missing = new HashSet<>(ids);
+    for (GuideStatRow r : guideRepository.findStatRowsByIdIn(ids)) {
+      missing.remove(r.id());
+      int slot = s.upsert(r.id(), r.category(), r.createdAt());
+      s.likes[slot] = clampInt(r.likeCount());
+      s.favorites[slot] = clampInt(r.favoriteCount());
+      s.comments[slot] = clampInt(comments.get(r.id()));
+      s.checkins[slot] = clampInt(checkins.get(r.id()));
+      reoffer(s, slot);
+    }
+    missing.forEach(s::remove);
+  }
+
+  private static Map<Long, Long> countsOf(List<Object[]> rows) {
+    Map<Long, Long> out = new HashMap<>();
+    for (Object[] row : rows) {
+      out.put((Long) row[0], (Long) row[1]);
+    }
+    return out;
+  }
+
+  /** 定时用内存中的计数重算各榜单（不查库） */
+  @Scheduled(fixedDelayString = "${app.hot.refreshMs:600000}", initialDelayString = "${app.hot.refreshMs:600000}")
+  public void refreshBoards() {
+    State s;
+    Board[] boards;
+    lock.readLock().lock();
+    try {
+      s = state;
+      boards = buildBoards(s);
+    } finally {
+      lock.readLock().unlock();
+    }
+    lock.writeLock().lock();
+    try {
+      if (state == s) {
+        s.boards = boards;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private Board[] buildBoards(State s) {
+    Board[] boards = newBoards();
+    for (int slot = 0; slot < s.used; slot++) {
+      if (s.category[slot] < 0) {
+        continue;
+      }
+      double score = s.score(slot, decaySeconds);
+      boards[s.category[slot]].offer(s.ids[slot], score);
+      boards[ALL].offer(s.ids[slot], score);
+    }
+    return boards;
+  }
+
+  private Board[] newBoards() {
+    Board[] boards = new Board[ALL + 1];
+    for (int i = 0; i < boards.length; i++) {
+      boards[i] = new Board(topK);
+    }
+    return boards;
+  }
+
+  /** 取一页热门攻略 id；category 为 null 表示全部分类 */
+  public Result page(GuideCategory category, int offset, int limit) {
+    lock.readLock().lock();
+    try {
+      Board b = state.boards[category == null ? ALL : category.ordinal()];
+      return new Result(b.page(offset, limit), b.size());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @TransactionalEventListener
+  public void onGuideChanged(GuideChangedEvent event) {
+    if (event.type() == GuideChangedEvent.Type.DELETED) {
+      remove(event.guideId());
+      return;
+    }
+    guideRepository
+        .findById(event.guideId())
+        .filter(g -> !g.isDeleted())
+        .ifPresentOrElse(
+            g -> {
+              lock.writeLock().lock();
+              try {
+                int slot = state.upsert(g.getId(), g.getCategory(), g.getCreatedAt());
+                reoffer(state, slot);
+                touch(g.getId());
+              } finally {
+                lock.writeLock().unlock();
+              }
+            },
+            () -> remove(event.guideId()));
+  }
+
+  @TransactionalEventListener
+  public void onInteraction(GuideInteractionEvent event) {
+    lock.writeLock().lock();
+    try {
+      touch(event.guideId());
+      State s = state;
+      int slot = s.slots.get(event.guideId());
+      if (slot == LongIntHashMap.MISSING) {
+        return;
+      }
+      int[] counter =
+          switch (event.type()) {
+            case LIKE -> s.likes;
+            case FAVORITE -> s.favorites;
+            case COMMENT -> s.comments;
+            case CHECKIN -> s.checkins;
+          };
+      counter[slot] = Math.max(0, counter[slot] + event.delta());
+      reoffer(s, slot);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void remove(Long guideId) {
+    lock.writeLock().lock();
+    try {
+      state.remove(guideId);
+      touch(guideId);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** 在持有写锁时调用：重建进行中时记下变更的攻略 */
+  private void touch(Long guideId) {
+    if (touched != null) {
+      touched.add(guideId);
+    }
+  }
+
+  /** 把某槽位的最新得分写入所属分类榜单和总榜；s 为当前状态时须持有写锁 */
+  private void reoffer(State s, int slot) {
+    long id = s.ids[slot];
+    double score = s.score(slot, decaySeconds);
+    for (int i = 0; i < ALL; i++) {
+      if (i != s.category[slot]) {
+        s.boards[i].remove(id);
+      }
+    }
+    s.boards[s.category[slot]].offer(id, score);
+    s.boards[ALL].offer(id, score);
+  }
+
+  private static int clampInt(Long v) {
+    return v == null ? 0 : (int) Math.min(Integer.MAX_VALUE, Math.max(0, v));
+  }
+
+  /** 全部攻略的排序状态：id -> 槽位，各计数按槽位存放在基本类型数组中 */
+  private static final class State {
+    final LongIntHashMap slots;
+    long[] ids;
+    int[] createdSec;
+    /** 分类 ordinal；-1 表示空闲槽位 */
+    byte[] category;
+    int[] likes;
+    int[] favorites;
+    int[] comments;
+    int[] checkins;
+    int used;
+    int[] free = new int[16];
+    int freeCount;
+    Board[] boards;
+
+    State(int capacity) {
+      slots = new LongIntHashMap(capacity);
+      ids = new long[capacity];
+      createdSec = new int[capacity];
+      category = new byte[capacity];
+      likes = new int[capacity];
+      favorites = new int[capacity];
+      comments = new int[capacity];
+      checkins = new int[capacity];
+      boards = new Board[0];
+    }
+
+    int upsert(long id, GuideCategory cat, Instant createdAt) {
+      int slot = slots.get(id);
+      if (slot == LongIntHashMap.MISSING) {
+        slot = freeCount > 0 ? free[--freeCount] : used++;
+        if (slot >= ids.length) {
+          grow();
+        }
+        slots.put(id, slot);
+        ids[slot] = id;
+        likes[slot] = 0;
+        favorites[slot] = 0;
+        comments[slot] = 0;
+        checkins[slot] = 0;
+      }
+      createdSec[slot] = (int) (createdAt.getEpochSecond() - EPOCH_SECOND);
+      category[slot] = (byte) cat.ordinal();
+      return slot;
+    }
+
+    void remove(long id) {
+      int slot = slots.remove(id);
+      if (slot == LongIntHashMap.MISSING) {
+        return;
+      }
+      category[slot] = -1;
+      if (freeCount == free.length) {
+        free = Arrays.copyOf(free, free.length * 2);
+      }
+      free[freeCount++] = slot;
+      for (Board b : boards) {
+        b.remove(id);
+      }
+    }
+
+    double score(int slot, double decaySeconds) {
+      long points =
+          1L
+              + (long) likes[slot] * LIKE_WEIGHT
+              + (long) favorites[slot] * FAVORITE_WEIGHT
+              + (long) comments[slot] * COMMENT_WEIGHT
+              + (long) checkins[slot] * CHECKIN_WEIGHT;
+      return Math.log10(points) + createdSec[slot] / decaySeconds;
+    }
+
+    private void grow() {
+      int cap = ids.length * 2;
+      ids = Arrays.copyOf(ids, cap);
+      createdSec = Arrays.copyOf(createdSec, cap);
+      category = Arrays.copyOf(category, cap);
+      likes = Arrays.copyOf(likes, cap);
+      favorites = Arrays.copyOf(favorites, cap);
+      comments = Arrays.copyOf(comments, cap);
+      checkins = Arrays.copyOf(checkins, cap);
+    }
+  }
+
+  /** 容量受限的有序榜单（得分降序，同分 id 降序） */
+  private static final class Board {
+    private final int capacity;
+    private final TreeSet<Entry> ranked = new TreeSet<>();
+    private final Map<Long, Entry> members = new HashMap<>();
+
+    Board(int capacity) {
+      this.capacity = capacity;
+    }
+
+    void offer(long id, double score) {
+      Entry old = members.remove(id);
+      if (old != null) {
+        ranked.remove(old);
+      }
+      if (ranked.size() >= capacity && ranked.last().score() >= score) {
+        return;
+      }
+      Entry e = new Entry(score, id);
+      ranked.add(e);
+      members.put(id, e);
+      if (ranked.size() > capacity) {
+        members.remove(ranked.pollLast().id());
+      }
+    }
+
+    void remove(long id) {
+      Entry old = members.remove(id);
+      if (old != null) {
+        ranked.remove(old);
+      }
+    }
+
+    int size() {
+      return ranked.size();
+    }
+
+    List<Long> page(int offset, int limit) {
+      List<Long> out = new ArrayList<>(limit);
+      Iterator<Entry> it = ranked.iterator();
+      for (int i = 0; it.hasNext() && out.size() < limit; i++) {
+        Entry e = it.next();
+        if (i >= offset) {
+          out.add(e.id());
+        }
+      }
+      return out;
+    }
+  }
+
+  private record Entry(double score, long id) implements Comparable<Entry> {
+    @Override
+    public int compareTo(Entry o) {
+      int c = Double.compare(o.score, score);
+      return c != 0 ? c : Long.compare(o.id, id);
+    }
+  }
+}
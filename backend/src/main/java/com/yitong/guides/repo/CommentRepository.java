@@ -1,14 +1,43 @@
 package com.yitong.guides.repo;
 
 import com.yitong.guides.domain.Comment;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
-  @Query("SELECT c FROM Comment c WHERE c.guide.id = :guideId ORDER BY c.createdAt ASC")
-  List<Comment> findByGuideIdOrderByCreatedAtAsc(@Param("guideId") Long guideId);
+  String VIEW_SELECT =
+      """
+      select new com.yitong.guides.repo.CommentView(
+        c.id, c.user.id, c.content, c.createdAt)
+      from Comment c
+      """;
+
+  /**
+   * 评论游标分页（按时间正序）：ts/id 为 null 表示第一页；Pageable 只用于限制条数。
+   * 评论者展示名由调用方经 UserSummaryCache 批量补齐。
+   */
+  @Query(
+      VIEW_SELECT
+          + """
+      where c.guide.id = :guideId
+        and (:ts is null or c.createdAt > :ts or (c.createdAt = :ts and c.id > :id))
+      order by c.createdAt asc, c.id asc
+      """)
+  List<CommentView> seekByGuideId(
+      @Param("guideId") Long guideId, @Param("ts") Instant ts, @Param("id") Long id, Pageable limit);
+
+  /** 各攻略评论数：[guideId, count]，仅用于启动时重建热门排行 */
+  @Query("SELECT c.guide.id, COUNT(c) FROM Comment c GROUP BY c.guide.id")
+  List<Object[]> countGroupByGuideId();
+
+  /** 指定攻略的评论数：[guideId, count]（无评论的不返回） */
+  @Query("SELECT c.guide.id, COUNT(c) FROM Comment c WHERE c.guide.id IN :guideIds GROUP BY c.guide.id")
+  List<Object[]> countGroupByGuideIdIn(@Param("guideIds") Collection<Long> guideIds);
   void deleteByGuide_Id(Long guideId);
   void deleteByUser_Id(Long userId);
 }
@@ -0,0 +1,6 @@
+package com.yitong.guides.repo;
+
+import java.time.Instant;
+
+/** 评论投影：不 join users，评论者展示名由 UserSummaryCache 按 userId 批量补齐 */
+public record CommentView(Long id, Long userId, String content, Instant createdAt) {}
@@ -0,0 +1,93 @@
+package com.yitong.guides.repo;
+
+import com.yitong.guides.domain.FeedEntry;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface FeedEntryRepository extends JpaRepository<FeedEntry, Long> {
+
+  /** 推送：把新攻略写入作者全部粉丝的收件箱（一条 insert-select） */
+  @Modifying
+  @Query(
+      value =
+          """
+          insert into feed_entries (owner_id, guide_id, author_id, created_at)
+          select f.user_id, g.id, g.author_id, g.created_at
+          from guides g join follows f on f.follow_user_id = g.author_id
+          where g.id = :guideId and g.deleted = false
+          """,
+      nativeQuery = true)
+  int fanOut(@Param("guideId") Long guideId);
+
+  /** 关注后回填：把作者最近 limit 篇攻略写入关注者收件箱 */
+  @Modifying
+  @Query(
+      value =
+          """
+          insert into feed_entries (owner_id, guide_id, author_id, created_at)
+          select :ownerId, g.id, g.author_id, g.created_at
+          from guides g
+          where g.author_id = :authorId and g.deleted = false
+            and not exists (select 1 from feed_entries e where e.owner_id = :ownerId and e.guide_id = g.id)
+          order by g.created_at desc, g.id desc
+          limit :limit
+          """,
+      nativeQuery = true)
+  int backfill(@Param("ownerId") Long ownerId, @Param("authorId") Long authorId, @Param("limit") int limit);
+
+  /** 收件箱为空时的一次性全量构建（旧数据迁移） */
+  @Modifying
+  @Query(
+      value =
+          """
+          insert into feed_entries (owner_id, guide_id, author_id, created_at)
+          select f.user_id, g.id, g.author_id, g.created_at
+          from follows f join guides g on g.author_id = f.follow_user_id
+          where g.deleted = false
+          """,
+      nativeQuery = true)
+  int buildAll();
+
+  @Modifying
+  @Query("delete from FeedEntry e where e.ownerId = :ownerId and e.authorId = :authorId")
+  int deleteByOwnerIdAndAuthorId(@Param("ownerId") Long ownerId, @Param("authorId") Long authorId);
+
+  @Modifying
+  @Query("delete from FeedEntry e where e.guideId = :guideId")
+  int deleteByGuideId(@Param("guideId") Long guideId);
+
+  /** 收件箱游标读取（发布时间倒序）：ts/id 为 null 表示第一页；Pageable 只用于限制条数 */
+  @Query(
+      """
+      select new com.yitong.guides.repo.GuideCardView(
+        g.id, g.author.id, g.title, g.category, g.templateKey,
+        g.createdAt, g.updatedAt, g.likeCount, g.favoriteCount, g.commentCount)
+      from FeedEntry e join Guide g on g.id = e.guideId
+      where e.ownerId = :ownerId and g.deleted = false
+        and (:ts is null or e.createdAt < :ts or (e.createdAt = :ts and e.guideId < :id))
+      order by e.createdAt desc, e.guideId desc
+      """)
+  List<GuideCardView> seekInbox(
+      @Param("ownerId") Long ownerId, @Param("ts") Instant ts, @Param("id") Long id, Pageable limit);
+
+  // ---- 收件箱裁剪 ----
+
+  @Query("select e.ownerId from FeedEntry e group by e.ownerId having count(e) > :max")
+  List<Long> findOwnersOver(@Param("max") long max);
+
+  /** 按新到旧遍历某收件箱；裁剪时用 PageRequest.of(inboxSize, 1) 取第 inboxSize+1 新的条目 */
+  List<FeedEntry> findByOwnerIdOrderByCreatedAtDescGuideIdDesc(Long ownerId, Pageable pageable);
+
+  @Modifying
+  @Query(
+      """
+      delete from FeedEntry e where e.ownerId = :ownerId
+        and (e.createdAt < :ts or (e.createdAt = :ts and e.guideId <= :guideId))
+      """)
+  int deleteUpTo(@Param("ownerId") Long ownerId, @Param("ts") Instant ts, @Param("guideId") Long guideId);
+}
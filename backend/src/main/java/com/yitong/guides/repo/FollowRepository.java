@@ -1,7 +1,9 @@
 package com.yitong.guides.repo;
 
 import com.yitong.guides.domain.Follow;
+import java.util.Collection;
 import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -9,7 +11,17 @@ import org.springframework.data.repository.query.Param;
 
 public interface FollowRepository extends JpaRepository<Follow, Long> {
   boolean existsByUserIdAndFollowUserId(Long userId, Long followUserId);
-  void deleteByUserIdAndFollowUserId(Long userId, Long followUserId);
+  long deleteByUserIdAndFollowUserId(Long userId, Long followUserId);
+  long countByFollowUserId(Long followUserId);
+  long countByUserId(Long userId);
+
+  /** 粉丝数达到 threshold 的作者 */
+  @Query("SELECT f.followUserId FROM Follow f GROUP BY f.followUserId HAVING COUNT(f) >= :threshold")
+  List<Long> findFollowUserIdsWithAtLeast(@Param("threshold") long threshold);
+
+  /** userId 在给定作者中已关注的那些 */
+  @Query("SELECT f.followUserId FROM Follow f WHERE f.userId = :userId AND f.followUserId IN :ids")
+  List<Long> findFollowedAmong(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
 
   @Modifying
   @Query("DELETE FROM Follow f WHERE f.userId = :userId")
@@ -19,6 +31,18 @@ public interface FollowRepository extends JpaRepository<Follow, Long> {
   @Query("DELETE FROM Follow f WHERE f.followUserId = :followUserId")
   void deleteByFollowUserId(@Param("followUserId") Long followUserId);
 
+  /** 按 id 分批遍历关注关系：[id, userId, followUserId]（用于重建内存关注索引） */
+  @Query("SELECT f.id, f.userId, f.followUserId FROM Follow f WHERE f.id > :afterId ORDER BY f.id")
+  List<Object[]> findEdgesAfter(@Param("afterId") Long afterId, Pageable limit);
+
+  /** userId 关注的人，按 id 升序取 afterId 之后的（内存关注索引就绪前的回退查询） */
+  @Query("SELECT f.followUserId FROM Follow f WHERE f.userId = :userId AND f.followUserId > :afterId ORDER BY f.followUserId")
+  List<Long> findFollowingIdsAfter(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable limit);
+
+  /** 关注 userId 的人，分页方式同上 */
+  @Query("SELECT f.userId FROM Follow f WHERE f.followUserId = :userId AND f.userId > :afterId ORDER BY f.userId")
+  List<Long> findFollowerIdsAfter(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable limit);
+
   List<Follow> findByUserIdOrderByCreatedAtDesc(Long userId);
   List<Follow> findByFollowUserIdOrderByCreatedAtDesc(Long followUserId);
 }
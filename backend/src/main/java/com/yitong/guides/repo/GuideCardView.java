@@ -0,0 +1,33 @@
+package com.yitong.guides.repo;
+
+import com.yitong.guides.domain.GuideCategory;
+import java.time.Instant;
+
+/**
+ * 攻略卡片投影：列表类接口只查询卡片所需列，不加载 contentMarkdown（TEXT）。
+ * 由 GuideRepository 中的 JPQL 构造表达式直接生成。
+ */
+public record GuideCardView(
+    Long id,
+    Long authorId,
+    String title,
+    GuideCategory category,
+    String templateKey,
+    Instant createdAt,
+    Instant updatedAt,
+    Long likeCount,
+    Long favoriteCount,
+    Long commentCount) {
+
+  public long likes() {
+    return likeCount == null ? 0 : likeCount;
+  }
+
+  public long favorites() {
+    return favoriteCount == null ? 0 : favoriteCount;
+  }
+
+  public long comments() {
+    return commentCount == null ? 0 : commentCount;
+  }
+}
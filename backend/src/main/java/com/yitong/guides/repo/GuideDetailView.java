@@ -0,0 +1,31 @@
+package com.yitong.guides.repo;
+
+import com.yitong.guides.domain.GuideCategory;
+import java.time.Instant;
+
+/** 攻略详情的公共部分（与当前查看者无关），由一条 JPQL 构造表达式查询生成 */
+public record GuideDetailView(
+    Long id,
+    Long authorId,
+    String title,
+    GuideCategory category,
+    String templateKey,
+    String contentMarkdown,
+    Instant createdAt,
+    Instant updatedAt,
+    Long likeCount,
+    Long favoriteCount,
+    Long checkinCount) {
+
+  public long likes() {
+    return likeCount == null ? 0 : likeCount;
+  }
+
+  public long favorites() {
+    return favoriteCount == null ? 0 : favoriteCount;
+  }
+
+  public long checkins() {
+    return checkinCount == null ? 0 : checkinCount;
+  }
+}
@@ -7,7 +7,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 public interface GuideFavoriteRepository extends JpaRepository<GuideFavorite, Long> {
   long countByGuideId(Long guideId);
   boolean existsByUserIdAndGuideId(Long userId, Long guideId);
-  void deleteByUserIdAndGuideId(Long userId, Long guideId);
+  long deleteByUserIdAndGuideId(Long userId, Long guideId);
   List<GuideFavorite> findByUserIdOrderByCreatedAtDesc(Long userId);
   void deleteByGuideId(Long guideId);
   void deleteByUserId(Long userId);
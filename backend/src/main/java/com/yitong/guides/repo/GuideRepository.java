@@ -2,44 +2,262 @@ package com.yitong.guides.repo;
 
 import com.yitong.guides.domain.Guide;
 import com.yitong.guides.domain.GuideCategory;
+import java.time.Instant;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 public interface GuideRepository extends JpaRepository<Guide, Long> {
+  /** 卡片投影的公共 select/from 部分：只取卡片列，不加载 contentMarkdown，也不 join 作者（展示名走 UserSummaryCache） */
+  String CARD_SELECT =
+      """
+      select new com.yitong.guides.repo.GuideCardView(
+        g.id, g.author.id, g.title, g.category, g.templateKey,
+        g.createdAt, g.updatedAt, g.likeCount, g.favoriteCount, g.commentCount)
+      from Guide g
+      """;
+
   @EntityGraph(attributePaths = {"author"})
   Page<Guide> findByCategoryAndDeletedFalse(GuideCategory category, Pageable pageable);
 
-  @EntityGraph(attributePaths = {"author"})
   @Query(
-      """
-      select g from Guide g
-      where g.deleted = false
-        and (:category is null or g.category = :category)
-        and (:q is null or lower(g.title) like concat('%', lower(:q), '%')
-          or lower(g.contentMarkdown) like concat('%', lower(:q), '%'))
-      """)
-  Page<Guide> search(
+      value =
+          CARD_SELECT
+              + """
+              where g.deleted = false
+                and (:category is null or g.category = :category)
+                and (:q is null or lower(g.title) like concat('%', lower(:q), '%')
+                  or lower(g.contentMarkdown) like concat('%', lower(:q), '%'))
+              """,
+      countQuery =
+          """
+          select count(g) from Guide g
+          where g.deleted = false
+            and (:category is null or g.category = :category)
+            and (:q is null or lower(g.title) like concat('%', lower(:q), '%')
+              or lower(g.contentMarkdown) like concat('%', lower(:q), '%'))
+          """)
+  Page<GuideCardView> search(
       @Param("category") GuideCategory category, @Param("q") String q, Pageable pageable);
 
-  @EntityGraph(attributePaths = {"author"})
-  Page<Guide> findByAuthorIdAndDeletedFalseOrderByCreatedAtDesc(Long authorId, Pageable pageable);
+  @Query(
+      value = CARD_SELECT + "where g.deleted = false and g.author.id = :authorId order by g.createdAt desc",
+      countQuery = "select count(g) from Guide g where g.deleted = false and g.author.id = :authorId")
+  Page<GuideCardView> findByAuthorIdAndDeletedFalseOrderByCreatedAtDesc(
+      @Param("authorId") Long authorId, Pageable pageable);
 
   /** 查询某用户全部攻略（含已逻辑删除），用于管理员删除用户时级联删除 */
   Page<Guide> findByAuthor_IdOrderByCreatedAtDesc(Long authorId, Pageable pageable);
 
-  @EntityGraph(attributePaths = {"author"})
-  @Query("select g from Guide g where g.deleted = false and g.author.id in :authorIds order by g.createdAt desc")
-  Page<Guide> findByAuthor_IdInAndDeletedFalseOrderByCreatedAtDesc(
-      @Param("authorIds") java.util.List<Long> authorIds, Pageable pageable);
-
   @Query("select g from Guide g join fetch g.author where g.id = :id and g.deleted = false")
   Optional<Guide> findByIdWithAuthor(@Param("id") Long id);
 
   boolean existsByIdAndDeletedFalse(Long id);
-}
 
+  /** 详情公共部分：攻略、冗余计数与打卡人数一次查出（作者展示名走 UserSummaryCache） */
+  @Query(
+      """
+      select new com.yitong.guides.repo.GuideDetailView(
+        g.id, g.author.id, g.title, g.category, g.templateKey, g.contentMarkdown,
+        g.createdAt, g.updatedAt, g.likeCount, g.favoriteCount,
+        (select count(distinct c.userId) from StudyCheckIn c where c.guideId = g.id))
+      from Guide g
+      where g.id = :id and g.deleted = false
+      """)
+  Optional<GuideDetailView> findDetailView(@Param("id") Long id);
+
+  /** 当前查看者对某攻略的状态：一次查询返回 LIKE / FAVORITE / CHECKIN 中已成立的标记 */
+  @Query(
+      value =
+          """
+          select 'LIKE' from guide_likes where user_id = :userId and guide_id = :guideId
+          union all
+          select 'FAVORITE' from guide_favorites where user_id = :userId and guide_id = :guideId
+          union all
+          select 'CHECKIN' from study_checkins
+          where user_id = :userId and guide_id = :guideId and check_day = :day
+          """,
+      nativeQuery = true)
+  java.util.List<String> findViewerFlags(
+      @Param("guideId") Long guideId, @Param("userId") Long userId, @Param("day") java.time.LocalDate day);
+
+  /**
+   * 当前查看者对一批攻略的状态：每种关系一个 IN 查询，合并为一次往返；
+   * 每行为 (guide_id, LIKE / FAVORITE / CHECKIN / FOLLOW)，FOLLOW 表示已关注该攻略作者
+   */
+  @Query(
+      value =
+          """
+          select guide_id, 'LIKE' from guide_likes where user_id = :userId and guide_id in (:ids)
+          union all
+          select guide_id, 'FAVORITE' from guide_favorites where user_id = :userId and guide_id in (:ids)
+          union all
+          select guide_id, 'CHECKIN' from study_checkins
+          where user_id = :userId and guide_id in (:ids) and check_day = :day
+          union all
+          select g.id, 'FOLLOW' from guides g
+          join follows f on f.follow_user_id = g.author_id and f.user_id = :userId
+          where g.id in (:ids)
+          """,
+      nativeQuery = true)
+  java.util.List<Object[]> findViewerFlagsIn(
+      @Param("ids") java.util.Collection<Long> ids, @Param("userId") Long userId, @Param("day") java.time.LocalDate day);
+
+  @Query("select g.author.id from Guide g where g.id = :id")
+  Long findAuthorIdById(@Param("id") Long id);
+
+  /** 用户点赞或收藏过的攻略按分类计数：[category, count] */
+  @Query(
+      """
+      select g.category, count(g) from Guide g
+      where g.deleted = false
+        and (g.id in (select l.guideId from GuideLike l where l.userId = :userId)
+          or g.id in (select f.guideId from GuideFavorite f where f.userId = :userId))
+      group by g.category
+      """)
+  java.util.List<Object[]> countInteractedByCategory(@Param("userId") Long userId);
+
+  /** 一批作者已发布攻略按分类计数：[authorId, category, count] */
+  @Query(
+      """
+      select g.author.id, g.category, count(g) from Guide g
+      where g.deleted = false and g.author.id in :authorIds
+      group by g.author.id, g.category
+      """)
+  java.util.List<Object[]> countByAuthorAndCategory(@Param("authorIds") java.util.Collection<Long> authorIds);
+
+  /** 按 id 批量取未删除攻略的卡片，顺序不保证 */
+  @Query(CARD_SELECT + "where g.id in :ids and g.deleted = false")
+  java.util.List<GuideCardView> findCardsByIdIn(@Param("ids") java.util.Collection<Long> ids);
+
+  /** 按 id 分批遍历未删除攻略（用于重建内存索引） */
+  java.util.List<Guide> findByDeletedFalseAndIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+  /** 按 id 分批遍历未删除攻略的排序字段（用于重建热门排行） */
+  @Query(
+      """
+      select new com.yitong.guides.repo.GuideStatRow(g.id, g.category, g.createdAt, g.likeCount, g.favoriteCount)
+      from Guide g where g.deleted = false and g.id > :afterId order by g.id
+      """)
+  java.util.List<GuideStatRow> findStatRowsAfter(@Param("afterId") Long afterId, Pageable limit);
+
+  /** 指定攻略中未删除者的排序字段（热门排行重建期间有变更的攻略，在切换前按此重读） */
+  @Query(
+      """
+      select new com.yitong.guides.repo.GuideStatRow(g.id, g.category, g.createdAt, g.likeCount, g.favoriteCount)
+      from Guide g where g.deleted = false and g.id in :ids
+      """)
+  java.util.List<GuideStatRow> findStatRowsByIdIn(@Param("ids") java.util.Collection<Long> ids);
+
+  /** 冗余计数：点赞数增减（delta 可为负） */
+  @Modifying
+  @Query("update Guide g set g.likeCount = coalesce(g.likeCount, 0) + :delta where g.id = :id")
+  int addLikeCount(@Param("id") Long id, @Param("delta") long delta);
+
+  /** 冗余计数：收藏数增减（delta 可为负） */
+  @Modifying
+  @Query("update Guide g set g.favoriteCount = coalesce(g.favoriteCount, 0) + :delta where g.id = :id")
+  int addFavoriteCount(@Param("id") Long id, @Param("delta") long delta);
+
+  /** 冗余计数：评论数增减（delta 可为负） */
+  @Modifying
+  @Query("update Guide g set g.commentCount = coalesce(g.commentCount, 0) + :delta where g.id = :id")
+  int addCommentCount(@Param("id") Long id, @Param("delta") long delta);
+
+  /** 校准点赞数：仅改写与 guide_likes 实际行数不一致的攻略，返回修正条数 */
+  @Modifying
+  @Query(
+      value =
+          """
+          update guides g
+          set like_count = (select count(*) from guide_likes l where l.guide_id = g.id)
+          where coalesce(g.like_count, -1) <> (select count(*) from guide_likes l where l.guide_id = g.id)
+          """,
+      nativeQuery = true)
+  int reconcileLikeCounts();
+
+  /** 校准收藏数：同上 */
+  @Modifying
+  @Query(
+      value =
+          """
+          update guides g
+          set favorite_count = (select count(*) from guide_favorites f where f.guide_id = g.id)
+          where coalesce(g.favorite_count, -1) <> (select count(*) from guide_favorites f where f.guide_id = g.id)
+          """,
+      nativeQuery = true)
+  int reconcileFavoriteCounts();
+
+  /** 校准评论数：同上 */
+  @Modifying
+  @Query(
+      value =
+          """
+          update guides g
+          set comment_count = (select count(*) from comments c where c.guide_id = g.id)
+          where coalesce(g.comment_count, -1) <> (select count(*) from comments c where c.guide_id = g.id)
+          """,
+      nativeQuery = true)
+  int reconcileCommentCounts();
+
+  // ---- 游标（keyset）分页：ts/id 为 null 表示第一页；Pageable 只用于限制条数，不做 count ----
+
+  @Query(
+      CARD_SELECT
+          + """
+      where g.deleted = false
+        and (:category is null or g.category = :category)
+        and (:ts is null or g.createdAt < :ts or (g.createdAt = :ts and g.id < :id))
+      order by g.createdAt desc, g.id desc
+      """)
+  java.util.List<GuideCardView> seekByCreatedAt(
+      @Param("category") GuideCategory category,
+      @Param("ts") Instant ts,
+      @Param("id") Long id,
+      Pageable limit);
+
+  @Query(
+      CARD_SELECT
+          + """
+      where g.deleted = false
+        and (:category is null or g.category = :category)
+        and (:ts is null or g.updatedAt < :ts or (g.updatedAt = :ts and g.id < :id))
+      order by g.updatedAt desc, g.id desc
+      """)
+  java.util.List<GuideCardView> seekByUpdatedAt(
+      @Param("category") GuideCategory category,
+      @Param("ts") Instant ts,
+      @Param("id") Long id,
+      Pageable limit);
+
+  @Query(
+      CARD_SELECT
+          + """
+      where g.deleted = false and g.author.id = :authorId
+        and (:ts is null or g.createdAt < :ts or (g.createdAt = :ts and g.id < :id))
+      order by g.createdAt desc, g.id desc
+      """)
+  java.util.List<GuideCardView> seekByAuthor(
+      @Param("authorId") Long authorId,
+      @Param("ts") Instant ts,
+      @Param("id") Long id,
+      Pageable limit);
+
+  @Query(
+      CARD_SELECT
+          + """
+      where g.deleted = false and g.author.id in :authorIds
+        and (:ts is null or g.createdAt < :ts or (g.createdAt = :ts and g.id < :id))
+      order by g.createdAt desc, g.id desc
+      """)
+  java.util.List<GuideCardView> seekByAuthorIn(
+      @Param("authorIds") java.util.Collection<Long> authorIds,
+      @Param("ts") Instant ts,
+      @Param("id") Long id,
+      Pageable limit);
+}
@@ -0,0 +1,8 @@
+package com.yitong.guides.repo;
+
+import com.yitong.guides.domain.GuideCategory;
+import java.time.Instant;
+
+/** 攻略排序所需的最小字段集（用于重建内存排行，不加载标题和正文） */
+public record GuideStatRow(
+    Long id, GuideCategory category, Instant createdAt, Long likeCount, Long favoriteCount) {}
@@ -2,6 +2,7 @@ package com.yitong.guides.repo;
 
 import com.yitong.guides.domain.StudyCheckIn;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -15,6 +16,13 @@ public interface StudyCheckInRepository extends JpaRepository<StudyCheckIn, Long
   /** 某攻略下去重后的打卡人数 */
   @Query("select count(distinct c.userId) from StudyCheckIn c where c.guideId = :guideId")
   long countDistinctUserIdByGuideId(@Param("guideId") Long guideId);
+  /** 各攻略打卡记录数：[guideId, count]，仅用于启动时重建热门排行 */
+  @Query("select c.guideId, count(c) from StudyCheckIn c group by c.guideId")
+  List<Object[]> countGroupByGuideId();
+
+  /** 指定攻略的打卡记录数：[guideId, count]（无打卡的不返回） */
+  @Query("select c.guideId, count(c) from StudyCheckIn c where c.guideId in :guideIds group by c.guideId")
+  List<Object[]> countGroupByGuideIdIn(@Param("guideIds") Collection<Long> guideIds);
   void deleteByGuideId(Long guideId);
   void deleteByUserId(Long userId);
 }
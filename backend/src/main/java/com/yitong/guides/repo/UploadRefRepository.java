@@ -0,0 +1,33 @@
+package com.yitong.guides.repo;
+
+import com.yitong.guides.domain.UploadRef;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface UploadRefRepository extends JpaRepository<UploadRef, Long> {
+
+  @Query("select r.path from UploadRef r where r.guideId = :guideId")
+  List<String> findPathsByGuideId(@Param("guideId") Long guideId);
+
+  @Modifying
+  @Query("delete from UploadRef r where r.guideId = :guideId and r.path in :paths")
+  int deleteByGuideIdAndPathIn(@Param("guideId") Long guideId, @Param("paths") Collection<String> paths);
+
+  boolean existsByPath(String path);
+
+  /** 引用某文件的攻略 id */
+  @Query("select r.guideId from UploadRef r where r.path = :path order by r.guideId")
+  List<Long> findGuideIdsByPath(@Param("path") String path);
+
+  /** paths 中仍被未删除攻略引用的路径（已逻辑删除攻略的引用不算） */
+  @Query(
+      """
+      select distinct r.path from UploadRef r, Guide g
+      where g.id = r.guideId and g.deleted = false and r.path in :paths
+      """)
+  List<String> findLivePathsIn(@Param("paths") Collection<String> paths);
+}
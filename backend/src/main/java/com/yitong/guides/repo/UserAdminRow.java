@@ -0,0 +1,23 @@
+package com.yitong.guides.repo;
+
+import com.yitong.guides.domain.UserRole;
+import java.time.Instant;
+
+/** 管理端导出用的用户投影（不含密码哈希） */
+public record UserAdminRow(
+    Long id,
+    String username,
+    String displayName,
+    UserRole role,
+    Boolean enabled,
+    int status,
+    Instant createdAt) {
+
+  public String roleName() {
+    return role == null ? UserRole.USER.name() : role.name();
+  }
+
+  public boolean isEnabled() {
+    return enabled == null || enabled;
+  }
+}
@@ -1,11 +1,75 @@
 package com.yitong.guides.repo;
 
 import com.yitong.guides.domain.User;
+import com.yitong.guides.domain.UserRole;
+import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface UserRepository extends JpaRepository<User, Long> {
   Optional<User> findByUsername(String username);
   boolean existsByUsername(String username);
-}
 
+  /** 只替换密码哈希，且仅当哈希仍是 oldHash 时（登录时重算哈希用，不覆盖并发修改的其他字段）；返回影响行数 */
+  @Modifying
+  @Query("update User u set u.passwordHash = :newHash where u.id = :id and u.passwordHash = :oldHash")
+  int replacePasswordHash(@Param("id") Long id, @Param("oldHash") String oldHash, @Param("newHash") String newHash);
+
+  /**
+   * 管理端筛选条件（参数为 null 表示不限）：role 为 null 的旧数据按 USER、enabled 为 null 的旧数据按启用计；
+   * usernamePrefix 须已转义并带上 % 结尾
+   */
+  String ADMIN_FILTER =
+      """
+      (:status is null or u.status = :status)
+        and (:role is null or u.role = :role
+          or (:role = com.yitong.guides.domain.UserRole.USER and u.role is null))
+        and (:enabled is null or (:enabled = true and (u.enabled is null or u.enabled = true))
+          or (:enabled = false and u.enabled = false))
+        and (:usernamePrefix is null or u.username like :usernamePrefix escape '!')
+      """;
+
+  /** 管理端分页筛选（按 id 升序） */
+  @Query(
+      value = "select u from User u where " + ADMIN_FILTER + " order by u.id",
+      countQuery = "select count(u) from User u where " + ADMIN_FILTER)
+  Page<User> searchForAdmin(
+      @Param("status") Integer status,
+      @Param("role") UserRole role,
+      @Param("enabled") Boolean enabled,
+      @Param("usernamePrefix") String usernamePrefix,
+      Pageable pageable);
+
+  /** 管理端导出：按 id 游标分批读取（不含密码哈希）；Pageable 只用于限制条数 */
+  @Query(
+      "select new com.yitong.guides.repo.UserAdminRow("
+          + "u.id, u.username, u.displayName, u.role, u.enabled, u.status, u.createdAt) "
+          + "from User u where u.id > :afterId and "
+          + ADMIN_FILTER
+          + " order by u.id")
+  List<UserAdminRow> exportForAdmin(
+      @Param("afterId") Long afterId,
+      @Param("status") Integer status,
+      @Param("role") UserRole role,
+      @Param("enabled") Boolean enabled,
+      @Param("usernamePrefix") String usernamePrefix,
+      Pageable limit);
+
+  /** 令牌校验所需字段：[id, status, enabled, tokenVersion]，按 id 分批遍历 */
+  @Query("select u.id, u.status, u.enabled, u.tokenVersion from User u where u.id > :afterId order by u.id")
+  List<Object[]> findTokenStatesAfter(@Param("afterId") Long afterId, Pageable limit);
+
+  @Query("select u.id, u.status, u.enabled, u.tokenVersion from User u where u.id = :id")
+  List<Object[]> findTokenState(@Param("id") Long id);
+
+  /** 批量取用户摘要，供 UserSummaryCache 一次性加载未命中的 id */
+  @Query(
+      "select new com.yitong.guides.repo.UserSummary(u.id, u.username, u.displayName, u.status, u.enabled) "
+          + "from User u where u.id in :ids")
+  List<UserSummary> findSummariesByIdIn(@Param("ids") java.util.Collection<Long> ids);
+}
@@ -0,0 +1,16 @@
+package com.yitong.guides.repo;
+
+import com.yitong.guides.domain.User;
+
+/** 用户摘要投影：卡片、评论、关注列表展示作者/用户所需的少量字段 */
+public record UserSummary(Long id, String username, String displayName, int status, Boolean enabled) {
+
+  /** 对外展示名（已注销显示「已注销用户」） */
+  public String publicName() {
+    return User.displayNamePublic(status, displayName);
+  }
+
+  public boolean isEnabled() {
+    return enabled == null || enabled;
+  }
+}
@@ -0,0 +1,278 @@
+package com.yitong.guides.search;
+
+import com.yitong.guides.domain.Guide;
+import com.yitong.guides.domain.GuideCategory;
+import com.yitong.guides.repo.GuideRepository;
+import com.yitong.guides.service.GuideChangedEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * 攻略全文检索的内存倒排索引（BM25 打分）。
+ * 启动时从数据库全量重建；之后随 GuideService 的新增/修改/删除事件增量更新。
+ *
+ * <p>重建写入一份新索引，旧索引在此期间照常查询与更新；事件同时记下涉及的攻略 id，
+ * 新索引建好后按 id 重读这些攻略（已删除的移除）再切换，重读期间的新变更再重读一轮，直到没有遗漏。
+ */
+@Component
+public class GuideSearchIndex implements ApplicationRunner {
+  private static final Logger log = LoggerFactory.getLogger(GuideSearchIndex.class);
+
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+  /** 标题词频加权倍数 */
+  private static final int TITLE_BOOST = 3;
+  private static final int MAX_QUERY_TERMS = 32;
+  private static final int REBUILD_BATCH = 500;
+
+  private final GuideRepository guideRepository;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private Index index = new Index();
+  /** 重建期间有变更的攻略 id；不在重建时为 null。由写锁保护 */
+  private Set<Long> touched;
+  private final ReentrantLock rebuildLock = new ReentrantLock();
+  private volatile boolean ready;
+
+  private record Doc(GuideCategory category, int length, String[] terms) {}
+
+  /** 一篇攻略分词后的词频，在锁外计算 */
+  private record Tokens(Long guideId, GuideCategory category, Map<String, Integer> tf, int length) {}
+
+  /** 一页检索结果：按相关度排好序的攻略 id 以及命中总数 */
+  public record Result(List<Long> ids, long total) {}
+
+  public GuideSearchIndex(GuideRepository guideRepository) {
+    this.guideRepository = guideRepository;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    rebuild();
+  }
+
+  /** 从数据库全量重建（按 id 分批读取未删除攻略），完成后整体切换 */
+  public void rebuild() {
+    rebuildLock.lock();
+    try {
+      lock.writeLock().lock();
+      try {
+        touched = new HashSet<>();
+      } finally {
+        lock.writeLock().unlock();
+      }
+      Index fresh = new Index();
+      try {
+        long lastId = 0;
+        while (true) {
+          List<Guide> batch =
+              guideRepository.findByDeletedFalseAndIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, REBUILD_BATCH));
+          if (batch.isEmpty()) {
+            break;
+          }
+          for (Guide g : batch) {
+            fresh.put(tokenize(g));
+            lastId = g.getId();
+          }
+        }
+      } catch (RuntimeException e) {
+        lock.writeLock().lock();
+        try {
+          touched = null;
+        } finally {
+          lock.writeLock().unlock();
+        }
+        throw e;
+      }
+      int refreshed = 0;
+      while (true) {
+        Set<Long> ids;
+        lock.writeLock().lock();
+        try {
+          if (touched.isEmpty()) {
+            index = fresh;
+            touched = null;
+            break;
+          }
+          ids = touched;
+          touched = new HashSet<>();
+        } finally {
+          lock.writeLock().unlock();
+        }
+        // 读库不持锁；这期间的新变更进入下一轮 touched
+        Set<Long> missing = new HashSet<>(ids);
+        for (Guide g : guideRepository.findAllById(ids)) {
+          if (!g.isDeleted()) {
+            missing.remove(g.getId());
+            fresh.put(tokenize(g));
+          }
+        }
+        missing.forEach(fresh::remove);
+        refreshed += ids.size();
+      }
+      ready = true;
+      log.info("攻略检索索引重建完成，共 {} 篇，重读变更 {} 篇", fresh.docs.size(), refreshed);
+    } finally {
+      rebuildLock.unlock();
+    }
+  }
+
+  /** 索引是否已可用（首次重建完成前返回 false，调用方应退回数据库查询） */
+  public boolean isReady() {
+    return ready;
+  }
+
+  @TransactionalEventListener
+  public void onGuideChanged(GuideChangedEvent event) {
+    if (event.type() == GuideChangedEvent.Type.DELETED) {
+      remove(event.guideId());
+      return;
+    }
+    guideRepository
+        .findById(event.guideId())
+        .filter(g -> !g.isDeleted())
+        .ifPresentOrElse(this::put, () -> remove(event.guideId()));
+  }
+
+  /** 新增或覆盖一篇攻略的索引 */
+  public void put(Guide g) {
+    Tokens t = tokenize(g);
+    lock.writeLock().lock();
+    try {
+      index.put(t);
+      touch(g.getId());
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(Long guideId) {
+    lock.writeLock().lock();
+    try {
+      index.remove(guideId);
+      touch(guideId);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** 在持有写锁时调用：重建进行中时记下变更的攻略 */
+  private void touch(Long guideId) {
+    if (touched != null) {
+      touched.add(guideId);
+    }
+  }
+
+  private static Tokens tokenize(Guide g) {
+    Map<String, Integer> tf = new HashMap<>();
+    for (String t : GuideTokenizer.tokenizeForIndex(g.getTitle())) {
+      tf.merge(t, TITLE_BOOST, Integer::sum);
+    }
+    for (String t : GuideTokenizer.tokenizeForIndex(g.getContentMarkdown())) {
+      tf.merge(t, 1, Integer::sum);
+    }
+    int length = tf.values().stream().mapToInt(Integer::intValue).sum();
+    return new Tokens(g.getId(), g.getCategory(), tf, length);
+  }
+
+  /** 倒排表与文档表；当前索引由 lock 保护，重建中的新索引只由重建线程访问 */
+  private static final class Index {
+    /** term -> (guideId -> 词频) */
+    final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    final Map<Long, Doc> docs = new HashMap<>();
+    long totalLength;
+
+    void put(Tokens t) {
+      remove(t.guideId());
+      for (Map.Entry<String, Integer> e : t.tf().entrySet()) {
+        postings.computeIfAbsent(e.getKey(), k -> new HashMap<>()).put(t.guideId(), e.getValue());
+      }
+      docs.put(t.guideId(), new Doc(t.category(), t.length(), t.tf().keySet().toArray(String[]::new)));
+      totalLength += t.length();
+    }
+
+    void remove(Long guideId) {
+      Doc old = docs.remove(guideId);
+      if (old == null) {
+        return;
+      }
+      for (String t : old.terms()) {
+        Map<Long, Integer> p = postings.get(t);
+        if (p != null) {
+          p.remove(guideId);
+          if (p.isEmpty()) {
+            postings.remove(t);
+          }
+        }
+      }
+      totalLength -= old.length();
+    }
+  }
+
+  /**
+   * 按相关度检索。category 为 null 表示不限分类；offset/limit 用于分页。
+   * 同分按 id 倒序（新攻略优先）。
+   */
+  public Result search(String q, GuideCategory category, int offset, int limit) {
+    Set<String> terms = new LinkedHashSet<>(GuideTokenizer.tokenizeForQuery(q));
+    if (terms.isEmpty()) {
+      return new Result(List.of(), 0);
+    }
+    Map<Long, double[]> scores = new HashMap<>();
+    lock.readLock().lock();
+    try {
+      Index idx = index;
+      int n = idx.docs.size();
+      if (n == 0) {
+        return new Result(List.of(), 0);
+      }
+      double avgdl = (double) idx.totalLength / n;
+      int used = 0;
+      for (String term : terms) {
+        if (used++ >= MAX_QUERY_TERMS) {
+          break;
+        }
+        Map<Long, Integer> p = idx.postings.get(term);
+        if (p == null) {
+          continue;
+        }
+        double idf = Math.log(1 + (n - p.size() + 0.5) / (p.size() + 0.5));
+        for (Map.Entry<Long, Integer> e : p.entrySet()) {
+          Doc d = idx.docs.get(e.getKey());
+          if (category != null && d.category() != category) {
+            continue;
+          }
+          double tf = e.getValue();
+          double s = idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * d.length() / avgdl));
+          scores.computeIfAbsent(e.getKey(), k -> new double[1])[0] += s;
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    List<Map.Entry<Long, double[]>> ranked = new ArrayList<>(scores.entrySet());
+    ranked.sort(
+        (a, b) -> {
+          int c = Double.compare(b.getValue()[0], a.getValue()[0]);
+          return c != 0 ? c : Long.compare(b.getKey(), a.getKey());
+        });
+    int from = Math.min(offset, ranked.size());
+    int to = Math.min(from + limit, ranked.size());
+    List<Long> ids = ranked.subList(from, to).stream().map(Map.Entry::getKey).toList();
+    return new Result(ids, ranked.size());
+  }
+}
@@ -0,0 +1,77 @@
+package com.yitong.guides.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 中英混合分词：连续的中日韩字符按二元组（bigram）切分，拉丁字母/数字按单词切分并转小写
+ * （字母与数字的交界处也切开，如 vue3 -> vue、3）。
+ * 索引时额外输出中日韩单字，便于单字查询命中；查询时仅在单字片段上使用单字。
+ */
+public final class GuideTokenizer {
+  private GuideTokenizer() {}
+
+  /** 索引用分词：中日韩片段输出单字 + 二元组 */
+  public static List<String> tokenizeForIndex(String text) {
+    return tokenize(text, true);
+  }
+
+  /** 查询用分词：中日韩片段长度 ≥ 2 时只输出二元组，长度为 1 时输出单字 */
+  public static List<String> tokenizeForQuery(String text) {
+    return tokenize(text, false);
+  }
+
+  private static List<String> tokenize(String text, boolean forIndex) {
+    List<String> out = new ArrayList<>();
+    if (text == null || text.isEmpty()) {
+      return out;
+    }
+    int len = text.length();
+    int i = 0;
+    while (i < len) {
+      int cp = text.codePointAt(i);
+      if (isCjk(cp)) {
+        int start = i;
+        while (i < len && isCjk(text.codePointAt(i))) {
+          i += Character.charCount(text.codePointAt(i));
+        }
+        emitCjk(text.substring(start, i), forIndex, out);
+      } else if (Character.isLetterOrDigit(cp)) {
+        int start = i;
+        boolean digit = Character.isDigit(cp);
+        while (i < len) {
+          int c = text.codePointAt(i);
+          if (!Character.isLetterOrDigit(c) || isCjk(c) || Character.isDigit(c) != digit) {
+            break;
+          }
+          i += Character.charCount(c);
+        }
+        out.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+      } else {
+        i += Character.charCount(cp);
+      }
+    }
+    return out;
+  }
+
+  private static void emitCjk(String run, boolean forIndex, List<String> out) {
+    int[] cps = run.codePoints().toArray();
+    if (cps.length == 1 || forIndex) {
+      for (int cp : cps) {
+        out.add(new String(Character.toChars(cp)));
+      }
+    }
+    for (int k = 0; k + 1 < cps.length; k++) {
+      out.add(new String(cps, k, 2));
+    }
+  }
+
+  private static boolean isCjk(int cp) {
+    Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+    return script == Character.UnicodeScript.HAN
+        || script == Character.UnicodeScript.HIRAGANA
+        || script == Character.UnicodeScript.KATAKANA
+        || script == Character.UnicodeScript.HANGUL;
+  }
+}
@@ -1,4 +1,5 @@
 package com.yitong.guides.security;
 
-public record AuthUser(Long id, String username) {}
+/** 当前登录用户（来自 JWT）；tokenVersion 为令牌签发时的用户令牌版本 */
+public record AuthUser(Long id, String username, int tokenVersion) {}
 
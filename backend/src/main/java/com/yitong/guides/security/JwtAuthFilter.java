@@ -10,17 +10,23 @@ import java.io.IOException;
 import java.util.List;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
   private final JwtService jwtService;
+  private final VerifiedTokenCache tokenCache;
+  private final UserTokenStates tokenStates;
 
-  public JwtAuthFilter(JwtService jwtService) {
+  public JwtAuthFilter(JwtService jwtService, VerifiedTokenCache tokenCache, UserTokenStates tokenStates) {
     this.jwtService = jwtService;
+    this.tokenCache = tokenCache;
+    this.tokenStates = tokenStates;
   }
 
   @Override
@@ -30,25 +36,45 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     String auth = request.getHeader(HttpHeaders.AUTHORIZATION);
     if (auth != null && auth.startsWith("Bearer ")) {
       String token = auth.substring("Bearer ".length());
-      try {
-        DecodedJWT jwt = jwtService.verify(token);
-        Long userId = Long.valueOf(jwt.getSubject());
-        String username = jwt.getClaim("username").asString();
-        String role = jwt.getClaim("role").asString();
-        AuthUser principal = new AuthUser(userId, username);
-        var authorities =
-            (role != null && !role.isBlank())
-                ? List.of(new org.springframework.security.core.authority.SimpleGrantedAuthority("ROLE_" + role))
-                : List.<org.springframework.security.core.GrantedAuthority>of();
-        UsernamePasswordAuthenticationToken authentication =
-            new UsernamePasswordAuthenticationToken(principal, null, authorities);
-        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+      Authentication authentication = tokenCache.get(token);
+      if (authentication == null) {
+        authentication = authenticate(token);
+      }
+      // 已封禁/注销/禁用或令牌版本落后（改密码、改角色等）的用户按匿名处理，只查内存
+      if (authentication != null
+          && authentication.getPrincipal() instanceof AuthUser u
+          && tokenStates.isCurrent(u.id(), u.tokenVersion())) {
         SecurityContextHolder.getContext().setAuthentication(authentication);
-      } catch (JWTVerificationException | NumberFormatException ignored) {
-        // invalid token -> treat as anonymous
       }
     }
     filterChain.doFilter(request, response);
   }
+
+  /**
+   * 验签并组装 Authentication（不含按请求变化的 details，便于跨请求复用），成功后写入缓存；
+   * 令牌无效返回 null，按匿名处理。
+   */
+  private Authentication authenticate(String token) {
+    try {
+      DecodedJWT jwt = jwtService.verify(token);
+      Long userId = Long.valueOf(jwt.getSubject());
+      String username = jwt.getClaim("username").asString();
+      String role = jwt.getClaim("role").asString();
+      Integer ver = jwt.getClaim("ver").asInt();
+      AuthUser principal = new AuthUser(userId, username, ver == null ? 0 : ver);
+      List<GrantedAuthority> authorities =
+          (role != null && !role.isBlank())
+              ? List.of(new SimpleGrantedAuthority("ROLE_" + role))
+              : List.of();
+      Authentication authentication = new UsernamePasswordAuthenticationToken(principal, null, authorities);
+      if (jwt.getExpiresAt() != null) {
+        tokenCache.put(token, authentication, jwt.getExpiresAt().getTime());
+      }
+      return authentication;
+    } catch (JWTVerificationException | NumberFormatException ignored) {
+      // invalid token -> treat as anonymous
+      return null;
+    }
+  }
 }
 
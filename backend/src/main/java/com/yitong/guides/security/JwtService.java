@@ -27,7 +27,7 @@ public class JwtService {
     this.verifier = JWT.require(algorithm).withIssuer(issuer).build();
   }
 
-  public String issueToken(Long userId, String username, String role) {
+  public String issueToken(Long userId, String username, String role, int tokenVersion) {
     Instant now = Instant.now();
     Instant exp = now.plusSeconds(expiresMinutes * 60);
     return JWT.create()
@@ -37,6 +37,7 @@ public class JwtService {
         .withSubject(String.valueOf(userId))
         .withClaim("username", username)
         .withClaim("role", role)
+        .withClaim("ver", tokenVersion)
         .sign(algorithm);
   }
 
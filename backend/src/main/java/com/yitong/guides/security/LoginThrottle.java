@@ -0,0 +1,99 @@
+package com.yitong.guides.security;
+
+import com.yitong.guides.web.api.ApiException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 登录/注册限流：按用户名与按 IP 各一组令牌桶。
+ *
+ * <p>每个桶是一个 AtomicLong：高 44 位为上次补充时间（毫秒），低 20 位为剩余令牌（千分之一个为单位），
+ * 取令牌用 CAS 循环完成，无锁；桶放在 ConcurrentHashMap 中（内部分段，读写互不阻塞）。
+ * 每次尝试各消耗一个令牌，登录成功后清空该用户名的桶，因此只有连续失败才会被限流。
+ * 已补满的桶由定时任务清理，避免表无限增长。
+ */
+@Component
+public class LoginThrottle {
+  private static final int MILLI = 1000;
+  private static final int TOKEN_BITS = 20;
+  private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+
+  private final Limit perUser;
+  private final Limit perIp;
+  private final ConcurrentHashMap<String, AtomicLong> userBuckets = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, AtomicLong> ipBuckets = new ConcurrentHashMap<>();
+
+  /** 桶容量（个）与每分钟补充数 */
+  private record Limit(long capacityMilli, double refillMilliPerMs) {
+    static Limit of(int capacity, int refillPerMinute) {
+      int cap = Math.min(Math.max(capacity, 1), (int) (TOKEN_MASK / MILLI));
+      return new Limit((long) cap * MILLI, refillPerMinute * (double) MILLI / 60_000);
+    }
+  }
+
+  public LoginThrottle(
+      @Value("${app.security.login.perUser.capacity:5}") int userCapacity,
+      @Value("${app.security.login.perUser.refillPerMinute:5}") int userRefill,
+      @Value("${app.security.login.perIp.capacity:30}") int ipCapacity,
+      @Value("${app.security.login.perIp.refillPerMinute:30}") int ipRefill) {
+    this.perUser = Limit.of(userCapacity, userRefill);
+    this.perIp = Limit.of(ipCapacity, ipRefill);
+  }
+
+  /** 登录前调用：IP 或用户名的令牌用尽时抛出 429 */
+  public void acquireLogin(String ip, String username) {
+    if (!tryAcquire(ipBuckets, ip, perIp) || !tryAcquire(userBuckets, username.toLowerCase(), perUser)) {
+      throw new ApiException(HttpStatus.TOO_MANY_REQUESTS, "尝试过于频繁，请稍后再试");
+    }
+  }
+
+  /** 注册前调用：只按 IP 限流 */
+  public void acquireRegister(String ip) {
+    if (!tryAcquire(ipBuckets, ip, perIp)) {
+      throw new ApiException(HttpStatus.TOO_MANY_REQUESTS, "尝试过于频繁，请稍后再试");
+    }
+  }
+
+  /** 登录成功：清空该用户名的失败计数 */
+  public void onLoginSuccess(String username) {
+    userBuckets.remove(username.toLowerCase());
+  }
+
+  @Scheduled(fixedDelay = 60_000)
+  public void purgeFullBuckets() {
+    long now = System.currentTimeMillis();
+    userBuckets.values().removeIf(b -> tokens(b.get(), now, perUser) >= perUser.capacityMilli());
+    ipBuckets.values().removeIf(b -> tokens(b.get(), now, perIp) >= perIp.capacityMilli());
+  }
+
+  private static boolean tryAcquire(ConcurrentHashMap<String, AtomicLong> buckets, String key, Limit limit) {
+    long now = System.currentTimeMillis();
+    AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(pack(now, limit.capacityMilli())));
+    while (true) {
+      long state = bucket.get();
+      long available = tokens(state, now, limit);
+      if (available < MILLI) {
+        return false;
+      }
+      if (bucket.compareAndSet(state, pack(now, available - MILLI))) {
+        return true;
+      }
+    }
+  }
+
+  /** 补充到 now 时的令牌数（千分之一个为单位） */
+  private static long tokens(long state, long now, Limit limit) {
+    long last = state >>> TOKEN_BITS;
+    long stored = state & TOKEN_MASK;
+    long elapsed = Math.max(0, now - last);
+    return Math.min(limit.capacityMilli(), stored + (long) (elapsed * limit.refillMilliPerMs()));
+  }
+
+  private static long pack(long millis, long tokensMilli) {
+    return (millis << TOKEN_BITS) | tokensMilli;
+  }
+}
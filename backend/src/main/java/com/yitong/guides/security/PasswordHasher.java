@@ -0,0 +1,93 @@
+package com.yitong.guides.security;
+
+import com.yitong.guides.web.api.ApiException;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+/**
+ * 在独立的有界线程池中执行密码哈希（bcrypt），避免登录/注册洪峰占满全部 CPU、拖慢其他接口。
+ * 线程数与排队上限可配置；队列满或等待超时直接返回 503，由调用方稍后重试。
+ */
+@Component
+public class PasswordHasher {
+  private final PasswordEncoder passwordEncoder;
+  private final ThreadPoolExecutor executor;
+  private final long timeoutMillis;
+
+  public PasswordHasher(
+      PasswordEncoder passwordEncoder,
+      @Value("${app.security.bcrypt.threads:0}") int threads,
+      @Value("${app.security.bcrypt.queueSize:64}") int queueSize,
+      @Value("${app.security.bcrypt.timeoutMs:5000}") long timeoutMillis) {
+    this.passwordEncoder = passwordEncoder;
+    this.timeoutMillis = timeoutMillis;
+    int n = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    AtomicInteger seq = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(
+        n,
+        n,
+        0,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        r -> {
+          Thread t = new Thread(r, "bcrypt-" + seq.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        },
+        new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  public String encode(String rawPassword) {
+    return call(() -> passwordEncoder.encode(rawPassword));
+  }
+
+  public boolean matches(String rawPassword, String encodedPassword) {
+    return call(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+  }
+
+  /** 已存哈希的强度是否低于当前配置（登录成功后据此透明重算） */
+  public boolean needsRehash(String encodedPassword) {
+    return passwordEncoder.upgradeEncoding(encodedPassword);
+  }
+
+  private <T> T call(Callable<T> task) {
+    Future<T> f;
+    try {
+      f = executor.submit(task);
+    } catch (RejectedExecutionException e) {
+      throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "服务繁忙，请稍后再试");
+    }
+    try {
+      return f.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      f.cancel(true);
+      throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "服务繁忙，请稍后再试");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      f.cancel(true);
+      throw new ApiException(HttpStatus.SERVICE_UNAVAILABLE, "服务繁忙，请稍后再试");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+}
@@ -1,5 +1,7 @@
 package com.yitong.guides.security;
 
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -33,11 +35,14 @@ public class SecurityConfig {
     http.sessionManagement(s -> s.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
 
     // 顺序：先放行登录/注册与静态资源，再要求角色，最后其余需认证
+    // 异步派发（如流式导出写完后的回调）沿用首次请求的鉴权结果，直接放行
     http.authorizeHttpRequests(auth -> auth
+        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
         .requestMatchers("/api/auth/**").permitAll()
         .requestMatchers("/swagger-ui.html", "/swagger-ui/**", "/v3/api-docs/**", "/h2-console/**").permitAll()
         .requestMatchers(HttpMethod.GET, "/api/guides/**", "/api/templates", "/uploads/**").permitAll()
+        .requestMatchers(HttpMethod.HEAD, "/uploads/**").permitAll()
         .requestMatchers("/api/admin/**").hasRole("ADMIN")
         .anyRequest().authenticated());
 
@@ -51,9 +56,10 @@ public class SecurityConfig {
     return new InMemoryUserDetailsManager();
   }
 
+  /** bcrypt 强度（cost）可配置；调高后旧哈希在用户下次登录成功时透明重算 */
   @Bean
-  public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+  public PasswordEncoder passwordEncoder(@Value("${app.security.bcrypt.strength:10}") int strength) {
+    return new BCryptPasswordEncoder(strength);
   }
 
   @Bean
@@ -62,6 +68,7 @@ public class SecurityConfig {
     cfg.addAllowedOriginPattern("*");
     cfg.addAllowedHeader("*");
     cfg.addAllowedMethod("*");
+    cfg.addExposedHeader("X-Total-Count");
     cfg.setAllowCredentials(true);
     UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
     source.registerCorsConfiguration("/**", cfg);
@@ -0,0 +1,122 @@
+package com.yitong.guides.security;
+
+import com.yitong.guides.repo.UserRepository;
+import com.yitong.guides.service.UserChangedEvent;
+import com.yitong.guides.support.LongIntHashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * 用户令牌状态表：userId -> 打包的 int（低 2 位 status，第 3 位“已禁用”，其余为令牌版本），
+ * 存放在 LongIntHashMap 中，百万用户约占二十余 MB。JwtAuthFilter 据此拒绝已封禁/注销/禁用用户
+ * 以及版本落后的令牌，不查库。启动时从数据库分批加载；之后随 UserChangedEvent 在事务提交后重读单个用户。
+ * 表中没有的用户（加载完成前、或错过了注册事件）回退查库一次并记入表中；库中不存在的按已禁用处理。
+ * 批量加载与回退查询只填补空缺，不覆盖事件写入的较新状态。
+ */
+@Component
+public class UserTokenStates implements ApplicationRunner {
+  private static final Logger log = LoggerFactory.getLogger(UserTokenStates.class);
+
+  private static final int LOAD_BATCH = 5000;
+  private static final int STATUS_MASK = 0b11;
+  private static final int DISABLED = 0b100;
+  private static final int VERSION_SHIFT = 3;
+
+  private final UserRepository userRepository;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final LongIntHashMap states = new LongIntHashMap(1024);
+
+  public UserTokenStates(UserRepository userRepository) {
+    this.userRepository = userRepository;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    long lastId = 0;
+    int n = 0;
+    while (true) {
+      List<Object[]> batch = userRepository.findTokenStatesAfter(lastId, PageRequest.of(0, LOAD_BATCH));
+      if (batch.isEmpty()) {
+        break;
+      }
+      lock.writeLock().lock();
+      try {
+        for (Object[] row : batch) {
+          putIfAbsent((Long) row[0], pack(row));
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+      lastId = (Long) batch.get(batch.size() - 1)[0];
+      n += batch.size();
+    }
+    log.info("用户令牌状态加载完成，共 {} 个用户", n);
+  }
+
+  @TransactionalEventListener
+  public void onUserChanged(UserChangedEvent event) {
+    List<Object[]> rows = userRepository.findTokenState(event.userId());
+    lock.writeLock().lock();
+    try {
+      if (rows.isEmpty()) {
+        states.put(event.userId(), DISABLED);
+      } else {
+        states.put(event.userId(), pack(rows.get(0)));
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** 令牌是否仍然有效：用户状态正常、未禁用，且令牌版本等于当前版本 */
+  public boolean isCurrent(long userId, int tokenVersion) {
+    int packed;
+    lock.readLock().lock();
+    try {
+      packed = states.get(userId);
+    } finally {
+      lock.readLock().unlock();
+    }
+    if (packed == LongIntHashMap.MISSING) {
+      packed = load(userId);
+    }
+    return (packed & STATUS_MASK) == 0 && (packed & DISABLED) == 0 && (packed >>> VERSION_SHIFT) == tokenVersion;
+  }
+
+  /** 表中缺失的用户：查库并记入（已被事件写入则以事件为准） */
+  private int load(long userId) {
+    List<Object[]> rows = userRepository.findTokenState(userId);
+    int packed = rows.isEmpty() ? DISABLED : pack(rows.get(0));
+    lock.writeLock().lock();
+    try {
+      return putIfAbsent(userId, packed);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** 调用方持有写锁；返回表中最终的值 */
+  private int putIfAbsent(long userId, int packed) {
+    int existing = states.get(userId);
+    if (existing != LongIntHashMap.MISSING) {
+      return existing;
+    }
+    states.put(userId, packed);
+    return packed;
+  }
+
+  /** [id, status, enabled, tokenVersion] -> 打包值（enabled/tokenVersion 为 null 时分别视为 true/0） */
+  private static int pack(Object[] row) {
+    int status = ((Number) row[1]).intValue() & STATUS_MASK;
+    boolean disabled = Boolean.FALSE.equals(row[2]);
+    int version = row[3] == null ? 0 : ((Number) row[3]).intValue();
+    return (version << VERSION_SHIFT) | (disabled ? DISABLED : 0) | status;
+  }
+}
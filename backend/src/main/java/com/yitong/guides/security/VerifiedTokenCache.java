@@ -0,0 +1,79 @@
+package com.yitong.guides.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+/**
+ * 已验签 JWT 的进程内缓存：键为令牌 SHA-256 摘要的前 128 位（不保存令牌原文），值为组装好的 Authentication，
+ * 到令牌 exp 为止有效。命中时跳过 base64 解码、JSON 解析与 HMAC 校验。验签失败的令牌不缓存。
+ */
+@Component
+public class VerifiedTokenCache {
+
+  private record Key(long hi, long lo) {}
+
+  private record Entry(Authentication authentication, long expiresAt) {}
+
+  private final boolean enabled;
+  private final int maxEntries;
+  private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+
+  public VerifiedTokenCache(
+      @Value("${app.jwt.cache.enabled:true}") boolean enabled,
+      @Value("${app.jwt.cache.maxEntries:10000}") int maxEntries) {
+    this.enabled = enabled;
+    this.maxEntries = maxEntries;
+  }
+
+  /** 命中且未过期返回缓存的 Authentication，否则返回 null */
+  public Authentication get(String token) {
+    if (!enabled) {
+      return null;
+    }
+    Key key = keyOf(token);
+    Entry e = entries.get(key);
+    if (e == null) {
+      return null;
+    }
+    if (e.expiresAt() <= System.currentTimeMillis()) {
+      entries.remove(key, e);
+      return null;
+    }
+    return e.authentication();
+  }
+
+  public void put(String token, Authentication authentication, long expiresAt) {
+    if (!enabled || expiresAt <= System.currentTimeMillis()) {
+      return;
+    }
+    if (entries.size() >= maxEntries) {
+      long now = System.currentTimeMillis();
+      entries.values().removeIf(e -> e.expiresAt() <= now);
+      if (entries.size() >= maxEntries) {
+        entries.clear();
+      }
+    }
+    entries.put(keyOf(token), new Entry(authentication, expiresAt));
+  }
+
+  /** 清空缓存（令牌被吊销等场景） */
+  public void clear() {
+    entries.clear();
+  }
+
+  private static Key keyOf(String token) {
+    try {
+      byte[] d = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+      ByteBuffer buf = ByteBuffer.wrap(d);
+      return new Key(buf.getLong(), buf.getLong());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,4 @@
+package com.yitong.guides.service;
+
+/** 关注/取消关注事件，由 FollowService 在关系实际变化时发布 */
+public record FollowChangedEvent(Long userId, Long followUserId, boolean followed) {}
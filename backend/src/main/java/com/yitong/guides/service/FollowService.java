@@ -4,6 +4,7 @@ import com.yitong.guides.domain.Follow;
 import com.yitong.guides.repo.FollowRepository;
 import com.yitong.guides.repo.UserRepository;
 import com.yitong.guides.web.api.ApiException;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -13,10 +14,13 @@ public class FollowService {
 
   private final FollowRepository followRepository;
   private final UserRepository userRepository;
+  private final ApplicationEventPublisher events;
 
-  public FollowService(FollowRepository followRepository, UserRepository userRepository) {
+  public FollowService(
+      FollowRepository followRepository, UserRepository userRepository, ApplicationEventPublisher events) {
     this.followRepository = followRepository;
     this.userRepository = userRepository;
+    this.events = events;
   }
 
   /** 关注用户 */
@@ -35,15 +39,14 @@ public class FollowService {
     f.setUserId(currentUserId);
     f.setFollowUserId(targetUserId);
     followRepository.save(f);
+    events.publishEvent(new FollowChangedEvent(currentUserId, targetUserId, true));
   }
 
   /** 取消关注 */
   @Transactional
   public void unfollow(Long currentUserId, Long targetUserId) {
-    followRepository.deleteByUserIdAndFollowUserId(currentUserId, targetUserId);
-  }
-
-  public boolean existsByUserIdAndFollowUserId(Long userId, Long followUserId) {
-    return followRepository.existsByUserIdAndFollowUserId(userId, followUserId);
+    if (followRepository.deleteByUserIdAndFollowUserId(currentUserId, targetUserId) > 0) {
+      events.publishEvent(new FollowChangedEvent(currentUserId, targetUserId, false));
+    }
   }
 }
@@ -0,0 +1,10 @@
+package com.yitong.guides.service;
+
+/** 攻略新增/修改/逻辑删除事件，由 GuideService 发布；内存索引类监听方在事务提交后处理，关注动态收件箱在同一事务内写入 */
+public record GuideChangedEvent(Long guideId, Type type) {
+  public enum Type {
+    CREATED,
+    UPDATED,
+    DELETED
+  }
+}
@@ -0,0 +1,121 @@
+package com.yitong.guides.service;
+
+import com.yitong.guides.repo.GuideDetailView;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * 攻略详情公共部分的进程内缓存（LRU + TTL）。
+ * 攻略修改/删除、点赞、收藏、评论、打卡提交后按攻略 id 精确失效。
+ * 每次加载取一个全局递增的版本号存进缓存项，ETag 由它推导：一个 ETag 只对应一次加载的结果，
+ * 失效后重新加载必然换 ETag（计数相同的“先赞后取消”也不例外）。版本号随缓存项一起被 LRU 淘汰，
+ * 不为每个失效过的攻略单独保留状态，占用与缓存条数同样有界。
+ */
+@Component
+public class GuideDetailCache {
+
+  /** 缓存项：详情视图及其强 ETag（不含引号） */
+  public record Entry(GuideDetailView view, String etag, long expiresAt) {}
+
+  private final int maxSize;
+  private final long ttlMillis;
+  private final LinkedHashMap<Long, Entry> entries;
+  /** 正在加载中的攻略及加载期间收到的失效次数；只在加载期间存在，与 entries 由同一把锁保护 */
+  private final HashMap<Long, Loading> loading = new HashMap<>();
+  /** 最近一次加载分配的版本号 */
+  private long lastVersion;
+  /** 进程启动时间，拼进 ETag，避免重启后版本号从 0 重新计数与旧 ETag 相撞 */
+  private final String epoch = Long.toHexString(System.currentTimeMillis());
+
+  public GuideDetailCache(
+      @Value("${app.cache.guideDetail.maxSize:2000}") int maxSize,
+      @Value("${app.cache.guideDetail.ttlSeconds:300}") long ttlSeconds) {
+    this.maxSize = maxSize;
+    this.ttlMillis = ttlSeconds * 1000;
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > GuideDetailCache.this.maxSize;
+          }
+        };
+  }
+
+  /**
+   * 命中且未过期直接返回；否则调用 loader 加载（loader 抛出的异常原样向上抛）。
+   * 加载在锁外进行，期间若该攻略被失效，加载结果只返回给本次调用、不写入缓存。
+   */
+  public Entry get(Long guideId, Supplier<GuideDetailView> loader) {
+    long now = System.currentTimeMillis();
+    long version;
+    Loading pending;
+    long seen;
+    synchronized (this) {
+      Entry e = entries.get(guideId);
+      if (e != null && e.expiresAt() > now) {
+        return e;
+      }
+      version = ++lastVersion;
+      pending = loading.computeIfAbsent(guideId, k -> new Loading());
+      pending.loads++;
+      seen = pending.invalidations;
+    }
+    Entry loaded = null;
+    try {
+      loaded = new Entry(loader.get(), etagOf(guideId, version), now + ttlMillis);
+      return loaded;
+    } finally {
+      synchronized (this) {
+        if (loaded != null && pending.invalidations == seen) {
+          entries.put(guideId, loaded);
+        }
+        if (--pending.loads == 0) {
+          loading.remove(guideId);
+        }
+      }
+    }
+  }
+
+  public synchronized void evict(Long guideId) {
+    entries.remove(guideId);
+    Loading pending = loading.get(guideId);
+    if (pending != null) {
+      pending.invalidations++;
+    }
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /** 在途加载的攻略数（加载结束即清除） */
+  synchronized int loadingCount() {
+    return loading.size();
+  }
+
+  @TransactionalEventListener
+  public void onGuideChanged(GuideChangedEvent event) {
+    evict(event.guideId());
+  }
+
+  @TransactionalEventListener
+  public void onInteraction(GuideInteractionEvent event) {
+    evict(event.guideId());
+  }
+
+  /** 强 ETag：攻略 id、进程启动时间与版本号（作者展示名由调用方另行拼接） */
+  private String etagOf(Long guideId, long version) {
+    return "g" + guideId + "-" + epoch + "-" + version;
+  }
+
+  /** 同一攻略的在途加载数与加载期间收到的失效次数 */
+  private static final class Loading {
+    int loads;
+    long invalidations;
+  }
+}
@@ -0,0 +1,11 @@
+package com.yitong.guides.service;
+
+/** 攻略互动计数变化事件（点赞/收藏/评论/打卡），delta 为 +1 / -1，监听方在事务提交后处理 */
+public record GuideInteractionEvent(Long guideId, Type type, int delta) {
+  public enum Type {
+    LIKE,
+    FAVORITE,
+    COMMENT,
+    CHECKIN
+  }
+}
@@ -8,15 +8,35 @@ import com.yitong.guides.domain.GuideLike;
 import com.yitong.guides.domain.StudyCheckIn;
 import com.yitong.guides.domain.User;
 import com.yitong.guides.repo.CommentRepository;
+import com.yitong.guides.repo.GuideCardView;
+import com.yitong.guides.repo.GuideDetailView;
 import com.yitong.guides.repo.GuideFavoriteRepository;
 import com.yitong.guides.repo.GuideLikeRepository;
 import com.yitong.guides.repo.GuideRepository;
 import com.yitong.guides.repo.StudyCheckInRepository;
 import com.yitong.guides.repo.UserRepository;
+import com.yitong.guides.ranking.HotRanking;
+import com.yitong.guides.search.GuideSearchIndex;
+import com.yitong.guides.upload.UploadRefs;
 import com.yitong.guides.web.api.ApiException;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -31,6 +51,12 @@ public class GuideService {
   private final GuideFavoriteRepository favoriteRepository;
   private final CommentRepository commentRepository;
   private final StudyCheckInRepository checkInRepository;
+  private final GuideSearchIndex searchIndex;
+  private final HotRanking hotRanking;
+  private final GuideDetailCache detailCache;
+  private final InteractionWriteBehind writeBehind;
+  private final UploadRefs uploadRefs;
+  private final ApplicationEventPublisher events;
 
   public GuideService(
       GuideRepository guideRepository,
@@ -38,13 +64,25 @@ public class GuideService {
       GuideLikeRepository likeRepository,
       GuideFavoriteRepository favoriteRepository,
       CommentRepository commentRepository,
-      StudyCheckInRepository checkInRepository) {
+      StudyCheckInRepository checkInRepository,
+      GuideSearchIndex searchIndex,
+      HotRanking hotRanking,
+      GuideDetailCache detailCache,
+      InteractionWriteBehind writeBehind,
+      UploadRefs uploadRefs,
+      ApplicationEventPublisher events) {
     this.guideRepository = guideRepository;
     this.userRepository = userRepository;
     this.likeRepository = likeRepository;
     this.favoriteRepository = favoriteRepository;
     this.commentRepository = commentRepository;
     this.checkInRepository = checkInRepository;
+    this.searchIndex = searchIndex;
+    this.hotRanking = hotRanking;
+    this.detailCache = detailCache;
+    this.writeBehind = writeBehind;
+    this.uploadRefs = uploadRefs;
+    this.events = events;
   }
 
   public Optional<Guide> findByIdWithAuthor(Long id) {
@@ -57,6 +95,74 @@ public class GuideService {
         .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "攻略不存在"));
   }
 
+  /** 详情公共部分（一次查询） */
+  public GuideDetailView getDetailView(Long id) {
+    return guideRepository
+        .findDetailView(id)
+        .orElseThrow(() -> new ApiException(HttpStatus.NOT_FOUND, "攻略不存在"));
+  }
+
+  /** 详情公共部分（经进程内缓存，附带 ETag） */
+  public GuideDetailCache.Entry getDetailCached(Long id) {
+    return detailCache.get(id, () -> getDetailView(id));
+  }
+
+  /** 查看者对攻略的点赞/收藏/今日打卡状态 */
+  public record ViewerFlags(boolean liked, boolean favorited, boolean checkinToday) {
+    public static final ViewerFlags NONE = new ViewerFlags(false, false, false);
+  }
+
+  /** 一次查询取回当前用户对某攻略的全部状态标记（叠加尚未落库的点赞/收藏） */
+  public ViewerFlags viewerFlags(Long guideId, Long userId) {
+    List<String> flags = guideRepository.findViewerFlags(guideId, userId, LocalDate.now());
+    return new ViewerFlags(
+        pendingOr(GuideInteractionEvent.Type.LIKE, userId, guideId, flags.contains("LIKE")),
+        pendingOr(GuideInteractionEvent.Type.FAVORITE, userId, guideId, flags.contains("FAVORITE")),
+        flags.contains("CHECKIN"));
+  }
+
+  /** 卡片列表用的查看者状态 */
+  public record ViewerState(
+      Long guideId, boolean liked, boolean favorited, boolean checkinToday, boolean followingAuthor) {}
+
+  /** 批量取当前用户对多篇攻略的状态，按传入顺序返回（去重） */
+  public List<ViewerState> viewerStates(Collection<Long> guideIds, Long userId) {
+    Set<Long> ids = new LinkedHashSet<>(guideIds);
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+    Map<Long, Set<String>> flags = new HashMap<>();
+    for (Object[] row : guideRepository.findViewerFlagsIn(ids, userId, LocalDate.now())) {
+      flags.computeIfAbsent(((Number) row[0]).longValue(), k -> new HashSet<>()).add(row[1].toString());
+    }
+    List<ViewerState> out = new ArrayList<>(ids.size());
+    for (Long id : ids) {
+      Set<String> f = flags.getOrDefault(id, Set.of());
+      out.add(new ViewerState(
+          id,
+          pendingOr(GuideInteractionEvent.Type.LIKE, userId, id, f.contains("LIKE")),
+          pendingOr(GuideInteractionEvent.Type.FAVORITE, userId, id, f.contains("FAVORITE")),
+          f.contains("CHECKIN"),
+          f.contains("FOLLOW")));
+    }
+    return out;
+  }
+
+  /** 写后合并模式下，查看者尚未落库的点赞/收藏状态摘要（拼进 ETag），没有积压时为空串 */
+  public String pendingTag(Long guideId, Long userId) {
+    Boolean like = writeBehind.pendingState(GuideInteractionEvent.Type.LIKE, userId, guideId);
+    Boolean fav = writeBehind.pendingState(GuideInteractionEvent.Type.FAVORITE, userId, guideId);
+    if (like == null && fav == null) {
+      return "";
+    }
+    return "-p" + (like == null ? "" : like ? "L" : "l") + (fav == null ? "" : fav ? "F" : "f");
+  }
+
+  private boolean pendingOr(GuideInteractionEvent.Type type, Long userId, Long guideId, boolean stored) {
+    Boolean p = writeBehind.pendingState(type, userId, guideId);
+    return p != null ? p : stored;
+  }
+
   public Guide getById(Long id) {
     return guideRepository
         .findById(id)
@@ -71,11 +177,46 @@ public class GuideService {
     return guideRepository.existsByIdAndDeletedFalse(id);
   }
 
-  public Page<Guide> search(GuideCategory category, String q, Pageable pageable) {
-    return guideRepository.search(
-        category,
-        (q == null || q.isBlank()) ? null : q,
-        pageable);
+  /** 有关键词时走内存倒排索引按相关度排序；索引重建期间退回数据库 LIKE 查询 */
+  public Page<GuideCardView> search(GuideCategory category, String q, Pageable pageable) {
+    if (q == null || q.isBlank()) {
+      return guideRepository.search(category, null, pageable);
+    }
+    if (!searchIndex.isReady()) {
+      return guideRepository.search(category, q, pageable);
+    }
+    GuideSearchIndex.Result r =
+        searchIndex.search(q, category, (int) pageable.getOffset(), pageable.getPageSize());
+    if (r.ids().isEmpty()) {
+      return new PageImpl<>(List.of(), pageable, r.total());
+    }
+    return new PageImpl<>(cardsInOrder(r.ids()), pageable, r.total());
+  }
+
+  /** 热门排序：从内存榜单取一页 id，再按 id 批量取卡片，不做聚合查询 */
+  public Page<GuideCardView> hot(GuideCategory category, Pageable pageable) {
+    HotRanking.Result r = hotRanking.page(category, (int) pageable.getOffset(), pageable.getPageSize());
+    if (r.ids().isEmpty()) {
+      return new PageImpl<>(List.of(), pageable, r.total());
+    }
+    return new PageImpl<>(cardsInOrder(r.ids()), pageable, r.total());
+  }
+
+  private List<GuideCardView> cardsInOrder(List<Long> ids) {
+    Map<Long, GuideCardView> byId = guideRepository.findCardsByIdIn(ids).stream()
+        .collect(Collectors.toMap(GuideCardView::id, Function.identity()));
+    return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+  }
+
+  /**
+   * 游标分页：按创建时间（或更新时间）倒序取 (ts, id) 之后的攻略，ts 为 null 表示第一页。
+   * 多取一条用于判断是否还有下一页，不做 count 查询。
+   */
+  public List<GuideCardView> seek(GuideCategory category, boolean byUpdatedAt, Instant ts, Long id, int size) {
+    PageRequest limit = PageRequest.of(0, size + 1);
+    return byUpdatedAt
+        ? guideRepository.seekByUpdatedAt(category, ts, id, limit)
+        : guideRepository.seekByCreatedAt(category, ts, id, limit);
   }
 
   /** 创建攻略 */
@@ -90,7 +231,10 @@ public class GuideService {
     g.setCategory(category);
     g.setTemplateKey(templateKey);
     g.setContentMarkdown(contentMarkdown);
-    return guideRepository.save(g);
+    Guide saved = guideRepository.save(g);
+    uploadRefs.sync(saved.getId(), contentMarkdown);
+    events.publishEvent(new GuideChangedEvent(saved.getId(), GuideChangedEvent.Type.CREATED));
+    return saved;
   }
 
   /** 更新攻略（校验作者） */
@@ -105,7 +249,10 @@ public class GuideService {
     g.setTemplateKey(templateKey);
     g.setContentMarkdown(contentMarkdown);
     g.touchUpdatedAt();
-    return guideRepository.save(g);
+    Guide saved = guideRepository.save(g);
+    uploadRefs.sync(saved.getId(), contentMarkdown);
+    events.publishEvent(new GuideChangedEvent(saved.getId(), GuideChangedEvent.Type.UPDATED));
+    return saved;
   }
 
   /** 逻辑删除攻略（校验作者） */
@@ -117,6 +264,7 @@ public class GuideService {
     }
     g.setDeleted(true);
     guideRepository.save(g);
+    events.publishEvent(new GuideChangedEvent(guideId, GuideChangedEvent.Type.DELETED));
   }
 
   /** 点赞 */
@@ -125,6 +273,10 @@ public class GuideService {
     if (!guideRepository.existsById(guideId)) {
       throw new ApiException(HttpStatus.NOT_FOUND, "攻略不存在");
     }
+    if (writeBehind.isEnabled()) {
+      writeBehind.submit(GuideInteractionEvent.Type.LIKE, userId, guideId, true);
+      return;
+    }
     if (likeRepository.existsByUserIdAndGuideId(userId, guideId)) {
       return;
     }
@@ -132,12 +284,22 @@ public class GuideService {
     l.setUserId(userId);
     l.setGuideId(guideId);
     likeRepository.save(l);
+    guideRepository.addLikeCount(guideId, 1);
+    events.publishEvent(new GuideInteractionEvent(guideId, GuideInteractionEvent.Type.LIKE, 1));
   }
 
   /** 取消点赞 */
   @Transactional
   public void unlike(Long guideId, Long userId) {
-    likeRepository.deleteByUserIdAndGuideId(userId, guideId);
+    if (writeBehind.isEnabled()) {
+      writeBehind.submit(GuideInteractionEvent.Type.LIKE, userId, guideId, false);
+      return;
+    }
+    long removed = likeRepository.deleteByUserIdAndGuideId(userId, guideId);
+    if (removed > 0) {
+      guideRepository.addLikeCount(guideId, -removed);
+      events.publishEvent(new GuideInteractionEvent(guideId, GuideInteractionEvent.Type.LIKE, -1));
+    }
   }
 
   /** 收藏 */
@@ -146,6 +308,10 @@ public class GuideService {
     if (!guideRepository.existsById(guideId)) {
       throw new ApiException(HttpStatus.NOT_FOUND, "攻略不存在");
     }
+    if (writeBehind.isEnabled()) {
+      writeBehind.submit(GuideInteractionEvent.Type.FAVORITE, userId, guideId, true);
+      return;
+    }
     if (favoriteRepository.existsByUserIdAndGuideId(userId, guideId)) {
       return;
     }
@@ -153,12 +319,22 @@ public class GuideService {
     f.setUserId(userId);
     f.setGuideId(guideId);
     favoriteRepository.save(f);
+    guideRepository.addFavoriteCount(guideId, 1);
+    events.publishEvent(new GuideInteractionEvent(guideId, GuideInteractionEvent.Type.FAVORITE, 1));
   }
 
   /** 取消收藏 */
   @Transactional
   public void unfavorite(Long guideId, Long userId) {
-    favoriteRepository.deleteByUserIdAndGuideId(userId, guideId);
+    if (writeBehind.isEnabled()) {
+      writeBehind.submit(GuideInteractionEvent.Type.FAVORITE, userId, guideId, false);
+      return;
+    }
+    long removed = favoriteRepository.deleteByUserIdAndGuideId(userId, guideId);
+    if (removed > 0) {
+      guideRepository.addFavoriteCount(guideId, -removed);
+      events.publishEvent(new GuideInteractionEvent(guideId, GuideInteractionEvent.Type.FAVORITE, -1));
+    }
   }
 
   /** 发表评论 */
@@ -172,7 +348,10 @@ public class GuideService {
     c.setGuide(g);
     c.setUser(user);
     c.setContent(content);
-    return commentRepository.save(c);
+    Comment saved = commentRepository.save(c);
+    guideRepository.addCommentCount(guideId, 1);
+    events.publishEvent(new GuideInteractionEvent(guideId, GuideInteractionEvent.Type.COMMENT, 1));
+    return saved;
   }
 
   /** 打卡（学习/游戏类攻略） */
@@ -190,27 +369,22 @@ public class GuideService {
     ci.setDay(day);
     ci.setProgress(progress);
     ci.setNote(note);
-    return checkInRepository.save(ci);
+    boolean created = ci.getId() == null;
+    StudyCheckIn saved = checkInRepository.save(ci);
+    if (created) {
+      events.publishEvent(new GuideInteractionEvent(guideId, GuideInteractionEvent.Type.CHECKIN, 1));
+    }
+    return saved;
   }
 
   // 以下供 Controller 组装 DTO 时使用
-  public long countLikesByGuideId(Long guideId) {
-    return likeRepository.countByGuideId(guideId);
-  }
-
-  public long countFavoritesByGuideId(Long guideId) {
-    return favoriteRepository.countByGuideId(guideId);
-  }
-
   public boolean existsLike(Long userId, Long guideId) {
-    return likeRepository.existsByUserIdAndGuideId(userId, guideId);
+    Boolean p = writeBehind.pendingState(GuideInteractionEvent.Type.LIKE, userId, guideId);
+    return p != null ? p : likeRepository.existsByUserIdAndGuideId(userId, guideId);
   }
 
   public boolean existsFavorite(Long userId, Long guideId) {
-    return favoriteRepository.existsByUserIdAndGuideId(userId, guideId);
-  }
-
-  public long countDistinctUserIdByGuideId(Long guideId) {
-    return checkInRepository.countDistinctUserIdByGuideId(guideId);
+    Boolean p = writeBehind.pendingState(GuideInteractionEvent.Type.FAVORITE, userId, guideId);
+    return p != null ? p : favoriteRepository.existsByUserIdAndGuideId(userId, guideId);
   }
 }
@@ -0,0 +1,45 @@
+package com.yitong.guides.service;
+
+import com.yitong.guides.repo.GuideRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 攻略点赞/收藏/评论冗余计数校准：启动时补齐旧数据（null 计数），之后按 cron 定期修正漂移。
+ * 日常计数由 GuideService 在点赞/收藏/评论的同一事务内增减维护。
+ */
+@Component
+public class GuideStatsReconciler implements ApplicationRunner {
+  private static final Logger log = LoggerFactory.getLogger(GuideStatsReconciler.class);
+
+  private final GuideRepository guideRepository;
+  private final TransactionTemplate tx;
+
+  public GuideStatsReconciler(GuideRepository guideRepository, PlatformTransactionManager txManager) {
+    this.guideRepository = guideRepository;
+    this.tx = new TransactionTemplate(txManager);
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    reconcile();
+  }
+
+  @Scheduled(cron = "${app.stats.reconcileCron:0 30 3 * * *}")
+  public void reconcile() {
+    Integer fixed = tx.execute(
+        status ->
+            guideRepository.reconcileLikeCounts()
+                + guideRepository.reconcileFavoriteCounts()
+                + guideRepository.reconcileCommentCounts());
+    if (fixed != null && fixed > 0) {
+      log.info("攻略计数校准完成，修正 {} 处", fixed);
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package com.yitong.guides.service;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 点赞/收藏的写后合并（可选，app.interactions.writeBehind.enabled）。
+ *
+ * <p>开启后 GuideService 只把“用户对攻略的目标状态”记入内存并立即返回；同一用户对同一攻略的反复
+ * 点赞/取消只保留最后一次。定时任务把积压状态以 JDBC 批量语句写入 guide_likes / guide_favorites，
+ * 按实际影响行数调整冗余计数并发布 GuideInteractionEvent。未落库期间，GuideService 查询当前用户状态时
+ * 先看这里（读己之写）；应用关闭前会再落库一次。
+ */
+@Component
+public class InteractionWriteBehind {
+  private static final Logger log = LoggerFactory.getLogger(InteractionWriteBehind.class);
+
+  private record Key(GuideInteractionEvent.Type type, long userId, long guideId) {}
+
+  private record Target(String table, String counterColumn) {}
+
+  private static final Map<GuideInteractionEvent.Type, Target> TARGETS =
+      Map.of(
+          GuideInteractionEvent.Type.LIKE, new Target("guide_likes", "like_count"),
+          GuideInteractionEvent.Type.FAVORITE, new Target("guide_favorites", "favorite_count"));
+
+  private final boolean enabled;
+  private final int maxPending;
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final ApplicationEventPublisher events;
+  private final ConcurrentHashMap<Key, Boolean> pending = new ConcurrentHashMap<>();
+  /** 落库期间持有（含 JDBC 往返）；不用 synchronized，避免在虚拟线程上钉住载体线程 */
+  private final ReentrantLock flushLock = new ReentrantLock();
+
+  public InteractionWriteBehind(
+      @Value("${app.interactions.writeBehind.enabled:false}") boolean enabled,
+      @Value("${app.interactions.writeBehind.maxPending:10000}") int maxPending,
+      JdbcTemplate jdbc,
+      PlatformTransactionManager txManager,
+      ApplicationEventPublisher events) {
+    this.enabled = enabled;
+    this.maxPending = maxPending;
+    this.jdbc = jdbc;
+    this.tx = new TransactionTemplate(txManager);
+    this.events = events;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /** 记录目标状态（on=true 点赞/收藏，false 取消）；积压过多时由调用线程直接落库 */
+  public void submit(GuideInteractionEvent.Type type, Long userId, Long guideId, boolean on) {
+    pending.put(new Key(type, userId, guideId), on);
+    if (pending.size() >= maxPending) {
+      flush();
+    }
+  }
+
+  /** 尚未落库的目标状态；没有积压时返回 null */
+  public Boolean pendingState(GuideInteractionEvent.Type type, Long userId, Long guideId) {
+    return enabled ? pending.get(new Key(type, userId, guideId)) : null;
+  }
+
+  @Scheduled(fixedDelayString = "${app.interactions.writeBehind.flushMs:500}")
+  public void scheduledFlush() {
+    if (enabled) {
+      flush();
+    }
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    if (enabled && !pending.isEmpty()) {
+      log.info("应用关闭，落库 {} 条积压的点赞/收藏", pending.size());
+      flush();
+    }
+  }
+
+  /**
+   * 把当前积压一次性批量落库（同一时刻只有一个线程在落库）。
+   * 落库期间积压项仍留在 pending 中，读己之写不受影响；提交成功后才逐项移除，
+   * 且只移除值未变的项，落库期间的新操作保留到下一次。落库失败时积压原样保留，下次重试。
+   */
+  public void flush() {
+    if (pending.isEmpty()) {
+      return;
+    }
+    flushLock.lock();
+    try {
+      Map<Key, Boolean> snapshot = new HashMap<>(pending);
+      Map<GuideInteractionEvent.Type, List<Key>> adds = new HashMap<>();
+      Map<GuideInteractionEvent.Type, List<Key>> removes = new HashMap<>();
+      snapshot.forEach((k, on) -> (on ? adds : removes).computeIfAbsent(k.type(), t -> new ArrayList<>()).add(k));
+      try {
+        tx.executeWithoutResult(
+            status -> {
+              for (GuideInteractionEvent.Type type : TARGETS.keySet()) {
+                Map<Long, Integer> deltas = new HashMap<>();
+                apply(type, adds.getOrDefault(type, List.of()), true, deltas);
+                apply(type, removes.getOrDefault(type, List.of()), false, deltas);
+                updateCounters(type, deltas);
+              }
+            });
+      } catch (RuntimeException e) {
+        log.error("点赞/收藏落库失败，{} 条积压保留到下次重试", snapshot.size(), e);
+        return;
+      }
+      snapshot.forEach(pending::remove);
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  private void apply(GuideInteractionEvent.Type type, List<Key> keys, boolean on, Map<Long, Integer> deltas) {
+    if (keys.isEmpty()) {
+      return;
+    }
+    Target t = TARGETS.get(type);
+    Timestamp now = Timestamp.from(Instant.now());
+    int[] counts;
+    if (on) {
+      counts = jdbc.batchUpdate(
+          "insert into " + t.table() + " (user_id, guide_id, created_at) select ?, ?, ? from dual"
+              + " where not exists (select 1 from " + t.table() + " where user_id = ? and guide_id = ?)",
+          keys,
+          keys.size(),
+          (ps, k) -> {
+            ps.setLong(1, k.userId());
+            ps.setLong(2, k.guideId());
+            ps.setTimestamp(3, now);
+            ps.setLong(4, k.userId());
+            ps.setLong(5, k.guideId());
+          })[0];
+    } else {
+      counts = jdbc.batchUpdate(
+          "delete from " + t.table() + " where user_id = ? and guide_id = ?",
+          keys,
+          keys.size(),
+          (ps, k) -> {
+            ps.setLong(1, k.userId());
+            ps.setLong(2, k.guideId());
+          })[0];
+    }
+    for (int i = 0; i < keys.size(); i++) {
+      // 驱动可能返回 SUCCESS_NO_INFO(-2)，此时按生效处理，由 GuideStatsReconciler 兜底校准
+      int affected = counts[i] < 0 ? 1 : counts[i];
+      if (affected > 0) {
+        deltas.merge(keys.get(i).guideId(), on ? affected : -affected, Integer::sum);
+      }
+    }
+  }
+
+  private void updateCounters(GuideInteractionEvent.Type type, Map<Long, Integer> deltas) {
+    List<Map.Entry<Long, Integer>> changed =
+        deltas.entrySet().stream().filter(e -> e.getValue() != 0).toList();
+    if (changed.isEmpty()) {
+      return;
+    }
+    Target t = TARGETS.get(type);
+    jdbc.batchUpdate(
+        "update guides set " + t.counterColumn() + " = coalesce(" + t.counterColumn() + ", 0) + ? where id = ?",
+        changed,
+        changed.size(),
+        (ps, e) -> {
+          ps.setInt(1, e.getValue());
+          ps.setLong(2, e.getKey());
+        });
+    for (Map.Entry<Long, Integer> e : changed) {
+      events.publishEvent(new GuideInteractionEvent(e.getKey(), type, e.getValue()));
+    }
+  }
+}
@@ -0,0 +1,4 @@
+package com.yitong.guides.service;
+
+/** 用户资料、状态或令牌版本变化事件，由 UserService 发布，监听方在事务提交后处理 */
+public record UserChangedEvent(Long userId) {}
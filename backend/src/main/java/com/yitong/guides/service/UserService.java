@@ -2,55 +2,90 @@ package com.yitong.guides.service;
 
 import com.yitong.guides.domain.User;
 import com.yitong.guides.domain.UserRole;
+import com.yitong.guides.repo.UserAdminRow;
 import com.yitong.guides.repo.UserRepository;
+import com.yitong.guides.security.PasswordHasher;
 import com.yitong.guides.web.api.ApiException;
 import java.time.Instant;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+/**
+ * 用户注册、登录校验与资料维护。密码哈希在有界线程池中计算、可能排队数秒，
+ * 因此涉及哈希的方法先在事务外算好哈希，再用 TransactionTemplate 开短事务写库，排队期间不占数据库连接。
+ */
 @Service
 public class UserService {
 
   private final UserRepository userRepository;
-  private final PasswordEncoder passwordEncoder;
+  private final PasswordHasher passwordHasher;
+  private final ApplicationEventPublisher events;
+  private final TransactionTemplate tx;
 
   @Value("${app.passwordChangeCooldownDays:7}")
   private int passwordChangeCooldownDays;
 
-  public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+  public UserService(
+      UserRepository userRepository,
+      PasswordHasher passwordHasher,
+      ApplicationEventPublisher events,
+      PlatformTransactionManager txManager) {
     this.userRepository = userRepository;
-    this.passwordEncoder = passwordEncoder;
+    this.passwordHasher = passwordHasher;
+    this.events = events;
+    this.tx = new TransactionTemplate(txManager);
   }
 
-  /** 注册新用户 */
-  @Transactional
+  /** 注册新用户（用户名先查一次，占用时不必计算哈希；写库前在事务内再查一次） */
   public User register(String username, String password, String displayName) {
     if (userRepository.existsByUsername(username)) {
       throw new ApiException(HttpStatus.CONFLICT, "用户名已存在");
     }
-    User u = new User();
-    u.setUsername(username);
-    u.setDisplayName(displayName);
-    u.setPasswordHash(passwordEncoder.encode(password));
-    u.setRole(UserRole.USER);
-    return userRepository.save(u);
+    String hash = passwordHasher.encode(password);
+    return tx.execute(status -> {
+      if (userRepository.existsByUsername(username)) {
+        throw new ApiException(HttpStatus.CONFLICT, "用户名已存在");
+      }
+      User u = new User();
+      u.setUsername(username);
+      u.setDisplayName(displayName);
+      u.setPasswordHash(hash);
+      u.setRole(UserRole.USER);
+      User saved = userRepository.save(u);
+      events.publishEvent(new UserChangedEvent(saved.getId()));
+      return saved;
+    });
   }
 
-  /** 校验登录：返回用户，失败抛异常 */
+  /** 校验登录：返回用户，失败抛异常；哈希强度低于当前配置时顺带重算（不影响令牌版本） */
   public User validateLogin(String username, String password) {
     User u = userRepository
         .findByUsername(username)
         .orElseThrow(() -> new ApiException(HttpStatus.UNAUTHORIZED, "用户名或密码错误"));
-    if (!u.isEnabled() || !passwordEncoder.matches(password, u.getPasswordHash())) {
+    if (!u.isEnabled() || !passwordHasher.matches(password, u.getPasswordHash())) {
       throw new ApiException(HttpStatus.UNAUTHORIZED, "用户名或密码错误");
     }
     if (u.getStatus() != 0) {
       throw new ApiException(HttpStatus.FORBIDDEN, "账号已封禁或已注销");
     }
+    if (passwordHasher.needsRehash(u.getPasswordHash())) {
+      String oldHash = u.getPasswordHash();
+      String newHash = passwordHasher.encode(password);
+      // 只改哈希列，且哈希未被并发修改时才生效；失败无妨，下次登录再重算
+      Integer updated = tx.execute(status -> userRepository.replacePasswordHash(u.getId(), oldHash, newHash));
+      if (updated != null && updated > 0) {
+        u.setPasswordHash(newHash);
+      }
+    }
     return u;
   }
 
@@ -66,8 +101,25 @@ public class UserService {
         .orElseThrow(() -> new ApiException(HttpStatus.UNAUTHORIZED, message));
   }
 
-  public List<User> findAll() {
-    return userRepository.findAll();
+  /** 管理端筛选条件，字段为 null 表示不限；usernamePrefix 按用户名前缀匹配 */
+  public record AdminUserFilter(Integer status, UserRole role, Boolean enabled, String usernamePrefix) {
+    String likePattern() {
+      if (usernamePrefix == null || usernamePrefix.isBlank()) {
+        return null;
+      }
+      return usernamePrefix.trim().replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
+  }
+
+  /** 管理端：分页筛选用户（按 id 升序） */
+  public Page<User> searchForAdmin(AdminUserFilter f, Pageable pageable) {
+    return userRepository.searchForAdmin(f.status(), f.role(), f.enabled(), f.likePattern(), pageable);
+  }
+
+  /** 管理端导出：取 afterId 之后最多 limit 个用户（不含密码哈希） */
+  public List<UserAdminRow> exportBatch(AdminUserFilter f, long afterId, int limit) {
+    return userRepository.exportForAdmin(
+        afterId, f.status(), f.role(), f.enabled(), f.likePattern(), PageRequest.of(0, limit));
   }
 
   /** 管理员：更新用户启用状态与角色 */
@@ -76,7 +128,9 @@ public class UserService {
     User u = findById(id);
     u.setEnabled(enabled);
     u.setRole(role);
+    u.bumpTokenVersion();
     userRepository.save(u);
+    events.publishEvent(new UserChangedEvent(id));
   }
 
   /** 管理员：修改用户状态 0-正常 1-封禁 2-已注销 */
@@ -84,15 +138,22 @@ public class UserService {
   public void setStatus(Long id, int status) {
     User u = findById(id);
     u.setStatus(status);
+    u.bumpTokenVersion();
     userRepository.save(u);
+    events.publishEvent(new UserChangedEvent(id));
   }
 
   /** 管理员：重置密码 */
-  @Transactional
   public void resetPassword(Long id, String newPassword) {
-    User u = findById(id);
-    u.setPasswordHash(passwordEncoder.encode(newPassword));
-    userRepository.save(u);
+    findById(id);
+    String hash = passwordHasher.encode(newPassword);
+    tx.executeWithoutResult(status -> {
+      User u = findById(id);
+      u.setPasswordHash(hash);
+      u.bumpTokenVersion();
+      userRepository.save(u);
+      events.publishEvent(new UserChangedEvent(id));
+    });
   }
 
   /** 管理员：逻辑注销用户（status=2），不物理删除 */
@@ -100,7 +161,9 @@ public class UserService {
   public void deactivateUser(Long id) {
     User u = findById(id);
     u.setStatus(2);
+    u.bumpTokenVersion();
     userRepository.save(u);
+    events.publishEvent(new UserChangedEvent(id));
   }
 
   /** 当前用户修改用户名 */
@@ -116,16 +179,41 @@ public class UserService {
     }
     user.setUsername(trimmed);
     userRepository.save(user);
+    events.publishEvent(new UserChangedEvent(userId));
   }
 
-  /** 当前用户修改密码（带 7 天冷却） */
-  @Transactional
-  public void updatePassword(Long userId, String oldPassword, String newPassword) {
+  /**
+   * 当前用户修改密码（带 7 天冷却）；成功后已签发的令牌全部失效，返回更新后的用户供调用方签发新令牌。
+   * 校验原密码与计算新哈希在事务外进行，写库时确认哈希在此期间未被改动。
+   */
+  public User updatePassword(Long userId, String oldPassword, String newPassword) {
     User user = findById(userId);
+    checkPasswordChangeAllowed(user, Instant.now());
+    if (!passwordHasher.matches(oldPassword, user.getPasswordHash())) {
+      throw new ApiException(HttpStatus.BAD_REQUEST, "原密码错误");
+    }
+    String verifiedHash = user.getPasswordHash();
+    String hash = passwordHasher.encode(newPassword);
+    return tx.execute(status -> {
+      User u = findById(userId);
+      Instant now = Instant.now();
+      checkPasswordChangeAllowed(u, now);
+      if (!verifiedHash.equals(u.getPasswordHash())) {
+        throw new ApiException(HttpStatus.CONFLICT, "密码已被修改，请重试");
+      }
+      u.setPasswordHash(hash);
+      u.setPasswordChangedAt(now);
+      u.bumpTokenVersion();
+      User saved = userRepository.save(u);
+      events.publishEvent(new UserChangedEvent(userId));
+      return saved;
+    });
+  }
+
+  private void checkPasswordChangeAllowed(User user, Instant now) {
     if (user.getStatus() != 0) {
       throw new ApiException(HttpStatus.FORBIDDEN, "账号异常");
     }
-    Instant now = Instant.now();
     if (user.getPasswordChangedAt() != null) {
       Instant allowedAfter = user.getPasswordChangedAt().plusSeconds(passwordChangeCooldownDays * 86400L);
       if (now.isBefore(allowedAfter)) {
@@ -133,11 +221,5 @@ public class UserService {
             "修改密码过于频繁，请 " + passwordChangeCooldownDays + " 天后再试");
       }
     }
-    if (!passwordEncoder.matches(oldPassword, user.getPasswordHash())) {
-      throw new ApiException(HttpStatus.BAD_REQUEST, "原密码错误");
-    }
-    user.setPasswordHash(passwordEncoder.encode(newPassword));
-    user.setPasswordChangedAt(now);
-    userRepository.save(user);
   }
 }
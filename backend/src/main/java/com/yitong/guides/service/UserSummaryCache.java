@@ -0,0 +1,88 @@
+package com.yitong.guides.service;
+
+import com.yitong.guides.domain.User;
+import com.yitong.guides.repo.UserRepository;
+import com.yitong.guides.repo.UserSummary;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * 用户摘要（用户名、展示名、状态）的进程内缓存。列表、动态、评论、关注等接口不再 join users 表，
+ * 而是收集本页涉及的用户 id，经 getAll 一次取回：命中的直接返回，未命中的合并成一条 in 查询。
+ * 用户改名、封禁、注销等变更发布 UserChangedEvent，事务提交后按 id 失效。
+ */
+@Component
+public class UserSummaryCache {
+
+  private final int maxEntries;
+  private final UserRepository userRepository;
+  private final ConcurrentHashMap<Long, UserSummary> entries = new ConcurrentHashMap<>();
+  /** 失效计数：加载期间若发生过失效，则本次加载结果不回填，避免把旧值写回缓存 */
+  private final AtomicLong invalidations = new AtomicLong();
+
+  public UserSummaryCache(
+      UserRepository userRepository, @Value("${app.cache.userSummary.maxEntries:50000}") int maxEntries) {
+    this.userRepository = userRepository;
+    this.maxEntries = maxEntries;
+  }
+
+  /** 批量取用户摘要（键为用户 id）；不存在的用户不出现在结果中 */
+  public Map<Long, UserSummary> getAll(Collection<Long> ids) {
+    Map<Long, UserSummary> result = new HashMap<>();
+    List<Long> misses = new ArrayList<>();
+    for (Long id : ids) {
+      if (id == null || result.containsKey(id)) {
+        continue;
+      }
+      UserSummary s = entries.get(id);
+      if (s != null) {
+        result.put(id, s);
+      } else if (!misses.contains(id)) {
+        misses.add(id);
+      }
+    }
+    if (misses.isEmpty()) {
+      return result;
+    }
+    long seen = invalidations.get();
+    List<UserSummary> loaded = userRepository.findSummariesByIdIn(misses);
+    boolean cacheable = invalidations.get() == seen;
+    if (cacheable && entries.size() + loaded.size() > maxEntries) {
+      entries.clear();
+    }
+    for (UserSummary s : loaded) {
+      result.put(s.id(), s);
+      if (cacheable) {
+        entries.put(s.id(), s);
+      }
+    }
+    return result;
+  }
+
+  public UserSummary get(Long id) {
+    return getAll(List.of(id)).get(id);
+  }
+
+  /** 对外展示名；用户不存在时按已注销处理 */
+  public static String publicName(UserSummary s) {
+    return s == null ? User.displayNamePublic(2, null) : s.publicName();
+  }
+
+  public void evict(Long userId) {
+    invalidations.incrementAndGet();
+    entries.remove(userId);
+  }
+
+  @TransactionalEventListener
+  public void onUserChanged(UserChangedEvent event) {
+    evict(event.userId());
+  }
+}
@@ -0,0 +1,75 @@
+package com.yitong.guides.support;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * 压测用（app.bench.dbLatencyMs，默认 0 不启用，见 application-bench.yml）：给每次 JDBC execute 前加固定等待，
+ * 模拟远程数据库的网络往返，让内存库也能测出“请求阻塞在数据库上”时平台线程与虚拟线程的差别。
+ * 等待发生在持有连接期间，与真实慢库一样占用连接池。
+ */
+@Component
+public class DbLatencyInjector implements BeanPostProcessor {
+  private static final Logger log = LoggerFactory.getLogger(DbLatencyInjector.class);
+
+  private final long latencyMs;
+
+  public DbLatencyInjector(@Value("${app.bench.dbLatencyMs:0}") long latencyMs) {
+    this.latencyMs = latencyMs;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) {
+    if (latencyMs <= 0 || !(bean instanceof DataSource ds)) {
+      return bean;
+    }
+    log.warn("数据源 {} 的每条语句将额外等待 {}ms（app.bench.dbLatencyMs），仅用于压测", beanName, latencyMs);
+    return new DelegatingDataSource(ds) {
+      @Override
+      public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, super.getConnection(), false);
+      }
+
+      @Override
+      public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class, super.getConnection(username, password), false);
+      }
+    };
+  }
+
+  /** 连接上创建的 Statement 同样包一层，execute* 前等待 */
+  private <T> T proxy(Class<T> type, T target, boolean delayExecute) {
+    InvocationHandler handler = (p, method, args) -> {
+      if (delayExecute && method.getName().startsWith("execute")) {
+        Thread.sleep(latencyMs);
+      }
+      Object result;
+      try {
+        result = method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+      if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+        return wrapStatement(method.getReturnType(), result);
+      }
+      return result;
+    };
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+  }
+
+  private <T> T wrapStatement(Class<T> type, Object statement) {
+    return proxy(type, type.cast(statement), true);
+  }
+}
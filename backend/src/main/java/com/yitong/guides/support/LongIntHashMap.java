@@ -0,0 +1,148 @@
+package com.yitong.guides.support;
+
+import java.util.Arrays;
+
+/**
+ * long -> int 的开放寻址哈希表（线性探测），不装箱，用于百万级 id 的内存索引。
+ * 非线程安全，由调用方加锁。值不能为 {@link #MISSING}。
+ */
+public final class LongIntHashMap {
+  public static final int MISSING = -1;
+
+  private static final long EMPTY = Long.MIN_VALUE;
+  private static final float LOAD_FACTOR = 0.6f;
+
+  private long[] keys;
+  private int[] values;
+  private int size;
+  private int resizeAt;
+
+  public LongIntHashMap() {
+    this(16);
+  }
+
+  public LongIntHashMap(int expected) {
+    int cap = Integer.highestOneBit(Math.max(4, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+    allocate(cap);
+  }
+
+  private void allocate(int cap) {
+    keys = new long[cap];
+    values = new int[cap];
+    Arrays.fill(keys, EMPTY);
+    resizeAt = (int) (cap * LOAD_FACTOR);
+  }
+
+  private static int mix(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int get(long key) {
+    int mask = keys.length - 1;
+    for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+      long k = keys[i];
+      if (k == key) {
+        return values[i];
+      }
+      if (k == EMPTY) {
+        return MISSING;
+      }
+    }
+  }
+
+  public boolean containsKey(long key) {
+    return get(key) != MISSING;
+  }
+
+  public void put(long key, int value) {
+    if (key == EMPTY) {
+      throw new IllegalArgumentException("key not supported: " + key);
+    }
+    int mask = keys.length - 1;
+    for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+      long k = keys[i];
+      if (k == key) {
+        values[i] = value;
+        return;
+      }
+      if (k == EMPTY) {
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= resizeAt) {
+          rehash(keys.length << 1);
+        }
+        return;
+      }
+    }
+  }
+
+  /** 在原值上累加（不存在时视为 0），返回新值 */
+  public int addTo(long key, int delta) {
+    int old = get(key);
+    int updated = (old == MISSING ? 0 : old) + delta;
+    put(key, updated);
+    return updated;
+  }
+
+  /** 删除并返回旧值，不存在返回 MISSING（采用回移删除，不留墓碑） */
+  public int remove(long key) {
+    int mask = keys.length - 1;
+    int i = mix(key) & mask;
+    while (keys[i] != key) {
+      if (keys[i] == EMPTY) {
+        return MISSING;
+      }
+      i = (i + 1) & mask;
+    }
+    int old = values[i];
+    int gap = i;
+    for (int j = (gap + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+      int home = mix(keys[j]) & mask;
+      // j 处的键若能移到 gap 而不越过其自身的起始槽位，则回移
+      if (((j - home) & mask) >= ((j - gap) & mask)) {
+        keys[gap] = keys[j];
+        values[gap] = values[j];
+        gap = j;
+      }
+    }
+    keys[gap] = EMPTY;
+    size--;
+    return old;
+  }
+
+  public void clear() {
+    Arrays.fill(keys, EMPTY);
+    size = 0;
+  }
+
+  /** 遍历所有键值对 */
+  public void forEach(Visitor visitor) {
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != EMPTY) {
+        visitor.visit(keys[i], values[i]);
+      }
+    }
+  }
+
+  @FunctionalInterface
+  public interface Visitor {
+    void visit(long key, int value);
+  }
+
+  private void rehash(int cap) {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    allocate(cap);
+    size = 0;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != EMPTY) {
+        put(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.yitong.guides.upload;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 上传文件的热点内存缓存：只缓存不超过 maxFileBytes 的小文件，总字节数不超过 maxBytes（LRU 淘汰）。
+ * 同一文件第二次被请求时才载入（一次性访问的文件不挤占缓存）。文件名不可变，无需校验修改时间；
+ * 文件被回收隔离时由 OrphanSweeper 主动失效。
+ */
+@Component
+public class HotFileCache {
+
+  /** 缓存项：完整内容与生成响应头所需的元数据 */
+  public record Entry(byte[] data, long lastModified, String etag) {}
+
+  private static final int MAX_CANDIDATES = 10_000;
+
+  private final boolean enabled;
+  private final long maxBytes;
+  private final int maxFileBytes;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+  /** 尚未载入的文件的访问计数（有界，满了清空） */
+  private final HashMap<String, Integer> candidates = new HashMap<>();
+  private long totalBytes;
+
+  public HotFileCache(
+      @Value("${app.upload.serve.hotCache.enabled:true}") boolean enabled,
+      @Value("${app.upload.serve.hotCache.maxBytes:33554432}") long maxBytes,
+      @Value("${app.upload.serve.hotCache.maxFileBytes:262144}") int maxFileBytes) {
+    this.enabled = enabled;
+    this.maxBytes = maxBytes;
+    this.maxFileBytes = maxFileBytes;
+  }
+
+  public synchronized Entry get(String path) {
+    return enabled ? entries.get(path) : null;
+  }
+
+  /** 记录一次未命中；返回 true 表示该文件足够热，调用方应读入内容并 put */
+  public synchronized boolean shouldAdmit(String path, long size) {
+    if (!enabled || size > maxFileBytes) {
+      return false;
+    }
+    if (candidates.size() >= MAX_CANDIDATES) {
+      candidates.clear();
+    }
+    int hits = candidates.merge(path, 1, Integer::sum);
+    return hits >= 2;
+  }
+
+  public synchronized void put(String path, Entry e) {
+    candidates.remove(path);
+    Entry old = entries.put(path, e);
+    if (old != null) {
+      totalBytes -= old.data().length;
+    }
+    totalBytes += e.data().length;
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (totalBytes > maxBytes && it.hasNext()) {
+      totalBytes -= it.next().getValue().data().length;
+      it.remove();
+    }
+  }
+
+  public synchronized void evict(String path) {
+    Entry old = entries.remove(path);
+    if (old != null) {
+      totalBytes -= old.data().length;
+    }
+  }
+}
@@ -0,0 +1,384 @@
+package com.yitong.guides.upload;
+
+import jakarta.annotation.PreDestroy;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 上传图片的多尺寸派生图：上传接口返回后提交到独立的有界线程池，按配置的宽度生成
+ * {@code <name>@<w>.<ext>}（与原图同目录、同格式），JPEG 按配置质量重新压缩。
+ * 只生成比原图窄且体积更小的派生图；派生图是否存在即是记录，读取时按 ?w= 选用（见 {@link #pick}）。
+ * jpg/png/gif/bmp 经 ImageIO 处理，多帧 GIF 与 webp/ico 原样保留、不派生；bmp/ico 另存 gzip 预压缩版本。
+ * 重新编码不保留 EXIF，因此 JPEG 先按 EXIF Orientation 把像素转正再缩放，派生图与原图显示方向一致。
+ * 队列满时丢弃任务（原图照常可用）。
+ */
+@Component
+public class ImageDerivatives {
+  private static final Logger log = LoggerFactory.getLogger(ImageDerivatives.class);
+
+  /** 派生结果统计，供管理端查看 */
+  public record Stats(
+      long processed,
+      long skipped,
+      long dropped,
+      long failed,
+      long derivatives,
+      long precompressed,
+      long bytesWritten,
+      long bytesSaved) {}
+
+  private final int[] widths;
+  private final float jpegQuality;
+  private final long maxPixels;
+  private final ThreadPoolExecutor executor;
+
+  private final AtomicLong processed = new AtomicLong();
+  private final AtomicLong skipped = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong derivatives = new AtomicLong();
+  private final AtomicLong precompressed = new AtomicLong();
+  private final AtomicLong bytesWritten = new AtomicLong();
+  private final AtomicLong bytesSaved = new AtomicLong();
+
+  public ImageDerivatives(
+      @Value("${app.upload.derivatives.widths:320,640,1280}") int[] widths,
+      @Value("${app.upload.derivatives.jpegQuality:0.82}") float jpegQuality,
+      @Value("${app.upload.derivatives.maxPixels:40000000}") long maxPixels,
+      @Value("${app.upload.derivatives.threads:2}") int threads,
+      @Value("${app.upload.derivatives.queueSize:200}") int queueSize) {
+    this.widths = Arrays.stream(widths).filter(w -> w > 0).sorted().distinct().toArray();
+    this.jpegQuality = jpegQuality;
+    this.maxPixels = maxPixels;
+    AtomicInteger seq = new AtomicInteger();
+    this.executor = new ThreadPoolExecutor(
+        threads,
+        threads,
+        0,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueSize),
+        r -> {
+          Thread t = new Thread(r, "image-derive-" + seq.incrementAndGet());
+          t.setDaemon(true);
+          t.setPriority(Thread.MIN_PRIORITY);
+          return t;
+        },
+        new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /** 异步为刚保存的原图生成派生图；file 为原图绝对路径 */
+  public void submit(Path file, ImageType type) {
+    if (widths.length == 0 && !type.compressible()) {
+      return;
+    }
+    try {
+      executor.execute(() -> derive(file, type));
+    } catch (RejectedExecutionException e) {
+      dropped.incrementAndGet();
+      log.warn("派生图队列已满，跳过: {}", file.getFileName());
+    }
+  }
+
+  /**
+   * 按请求宽度选派生图：不小于 w 的最小配置宽度（屏幕再宽也不会超过原图）；
+   * 没有合适档位返回 0，表示使用原图。是否真的存在该文件由调用方检查。
+   */
+  public int pick(int w) {
+    if (w <= 0) {
+      return 0;
+    }
+    for (int width : widths) {
+      if (width >= w) {
+        return width;
+      }
+    }
+    return 0;
+  }
+
+  /** 原图文件名对应某宽度的派生图文件名：a.jpg -> a@640.jpg */
+  public static String derivativeName(String filename, int width) {
+    int dot = filename.lastIndexOf('.');
+    return filename.substring(0, dot) + "@" + width + filename.substring(dot);
+  }
+
+  public Stats stats() {
+    return new Stats(
+        processed.get(),
+        skipped.get(),
+        dropped.get(),
+        failed.get(),
+        derivatives.get(),
+        precompressed.get(),
+        bytesWritten.get(),
+        bytesSaved.get());
+  }
+
+  private void derive(Path file, ImageType type) {
+    if (type.compressible()) {
+      try {
+        precompress(file);
+      } catch (IOException e) {
+        log.warn("生成预压缩文件失败: {}: {}", file.getFileName(), e.toString());
+      }
+    }
+    if (type != ImageType.JPG && type != ImageType.PNG && type != ImageType.GIF && type != ImageType.BMP) {
+      skipped.incrementAndGet();
+      return;
+    }
+    try {
+      BufferedImage src = read(file);
+      if (src == null) {
+        skipped.incrementAndGet();
+        return;
+      }
+      long originalBytes = Files.size(file);
+      String filename = file.getFileName().toString();
+      int orientation = type == ImageType.JPG ? exifOrientation(file) : 1;
+      // 5~8 为转 90 度的方向，转正后宽高互换
+      boolean swap = orientation >= 5;
+      int srcW = swap ? src.getHeight() : src.getWidth();
+      int srcH = swap ? src.getWidth() : src.getHeight();
+      for (int w : widths) {
+        if (w >= srcW) {
+          break;
+        }
+        int h = Math.max(1, (int) Math.round((double) srcH * w / srcW));
+        BufferedImage scaled = scale(src, orientation, srcW, srcH, w, h, type);
+        Path target = file.resolveSibling(derivativeName(filename, w));
+        Path tmp = file.resolveSibling(target.getFileName() + ".part");
+        try {
+          write(scaled, type, tmp);
+          long size = Files.size(tmp);
+          if (size >= originalBytes) {
+            // 缩小后反而不比原图小（例如原图已高度压缩），不值得单独提供
+            Files.delete(tmp);
+            continue;
+          }
+          move(tmp, target);
+          derivatives.incrementAndGet();
+          bytesWritten.addAndGet(size);
+          bytesSaved.addAndGet(originalBytes - size);
+        } finally {
+          Files.deleteIfExists(tmp);
+        }
+      }
+      processed.incrementAndGet();
+    } catch (IOException | RuntimeException e) {
+      failed.incrementAndGet();
+      log.warn("生成派生图失败: {}: {}", file.getFileName(), e.toString());
+    }
+  }
+
+  /** bmp/ico 等未压缩格式另存 gzip 版本（x.bmp.gz），压缩率不足 20% 时不保留 */
+  private void precompress(Path file) throws IOException {
+    Path gz = file.resolveSibling(file.getFileName() + ".gz");
+    Path tmp = file.resolveSibling(gz.getFileName() + ".part");
+    try {
+      try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+        Files.copy(file, out);
+      }
+      long original = Files.size(file);
+      long size = Files.size(tmp);
+      if (size * 10 > original * 8) {
+        return;
+      }
+      move(tmp, gz);
+      precompressed.incrementAndGet();
+      bytesWritten.addAndGet(size);
+      bytesSaved.addAndGet(original - size);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /** 先读尺寸再解码，像素数超限（解压炸弹）或多帧 GIF 返回 null */
+  private BufferedImage read(Path file) throws IOException {
+    try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+      if (in == null) {
+        return null;
+      }
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+      if (!readers.hasNext()) {
+        return null;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(in, false, true);
+        if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+          return null;
+        }
+        if ("gif".equalsIgnoreCase(reader.getFormatName()) && reader.getNumImages(true) > 1) {
+          return null;
+        }
+        return reader.read(0);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /** 按 EXIF 方向转正并缩放到 w x h；srcW/srcH 为转正后的尺寸 */
+  private static BufferedImage scale(
+      BufferedImage src, int orientation, int srcW, int srcH, int w, int h, ImageType type) {
+    boolean alpha = src.getColorModel().hasAlpha() && (type == ImageType.PNG || type == ImageType.GIF);
+    BufferedImage dst = new BufferedImage(w, h, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = dst.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      g.scale((double) w / srcW, (double) h / srcH);
+      g.transform(orientationTransform(orientation, src.getWidth(), src.getHeight()));
+      g.drawImage(src, 0, 0, null);
+    } finally {
+      g.dispose();
+    }
+    return dst;
+  }
+
+  /** EXIF Orientation 1~8 对应的像素变换（把存储方向映射到显示方向），w/h 为存储尺寸 */
+  private static AffineTransform orientationTransform(int orientation, int w, int h) {
+    return switch (orientation) {
+      case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);
+      case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);
+      case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);
+      case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+      case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);
+      case 7 -> new AffineTransform(0, -1, -1, 0, h, w);
+      case 8 -> new AffineTransform(0, -1, 1, 0, 0, w);
+      default -> new AffineTransform();
+    };
+  }
+
+  /**
+   * 从 JPEG 的 APP1(Exif) 段读出 IFD0 的 Orientation（0x0112），没有或无法解析时返回 1。
+   * 只扫描文件头 64KB 内、SOS 之前的段。
+   */
+  static int exifOrientation(Path file) {
+    byte[] b = new byte[64 * 1024];
+    int len;
+    try (InputStream in = Files.newInputStream(file)) {
+      len = in.readNBytes(b, 0, b.length);
+    } catch (IOException e) {
+      return 1;
+    }
+    if (len < 4 || (b[0] & 0xff) != 0xFF || (b[1] & 0xff) != 0xD8) {
+      return 1;
+    }
+    int pos = 2;
+    while (pos + 4 <= len && (b[pos] & 0xff) == 0xFF) {
+      int marker = b[pos + 1] & 0xff;
+      int segLen = ((b[pos + 2] & 0xff) << 8) | (b[pos + 3] & 0xff);
+      if (marker == 0xDA || segLen < 2) {
+        break;
+      }
+      int data = pos + 4;
+      // 段可能被截断（文件不完整或超出扫描范围），所有读取都不越过段尾
+      int end = Math.min(len, pos + 2 + segLen);
+      if (marker == 0xE1 && data + 6 <= end
+          && b[data] == 'E' && b[data + 1] == 'x' && b[data + 2] == 'i' && b[data + 3] == 'f'
+          && b[data + 4] == 0 && b[data + 5] == 0) {
+        return tiffOrientation(b, data + 6, end);
+      }
+      pos += 2 + segLen;
+    }
+    return 1;
+  }
+
+  /** 解析 [tiff, end) 内的 TIFF 头与 IFD0；任何偏移越过 end 都视为无法解析 */
+  private static int tiffOrientation(byte[] b, int tiff, int end) {
+    // 字节序 2 字节、魔数 2 字节、IFD0 偏移 4 字节
+    if (tiff + 8 > end) {
+      return 1;
+    }
+    boolean le = b[tiff] == 'I' && b[tiff + 1] == 'I';
+    if (!le && !(b[tiff] == 'M' && b[tiff + 1] == 'M')) {
+      return 1;
+    }
+    long ifd = tiff + readInt(b, tiff + 4, 4, le);
+    if (ifd < tiff || ifd + 2 > end) {
+      return 1;
+    }
+    int count = readInt(b, (int) ifd, 2, le);
+    for (int i = 0; i < count; i++) {
+      int entry = (int) ifd + 2 + i * 12;
+      if (entry + 12 > end) {
+        break;
+      }
+      if (readInt(b, entry, 2, le) == 0x0112) {
+        int v = readInt(b, entry + 8, 2, le);
+        return v >= 1 && v <= 8 ? v : 1;
+      }
+    }
+    return 1;
+  }
+
+  private static int readInt(byte[] b, int off, int n, boolean littleEndian) {
+    int v = 0;
+    for (int i = 0; i < n; i++) {
+      int shift = littleEndian ? 8 * i : 8 * (n - 1 - i);
+      v |= (b[off + i] & 0xff) << shift;
+    }
+    return v;
+  }
+
+  private void write(BufferedImage img, ImageType type, Path target) throws IOException {
+    Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(type.ext());
+    if (!writers.hasNext()) {
+      throw new IOException("no ImageIO writer for " + type.ext());
+    }
+    ImageWriter writer = writers.next();
+    try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+      writer.setOutput(out);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      if (type == ImageType.JPG) {
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+      }
+      writer.write(null, new IIOImage(img, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+  }
+
+  private static void move(Path from, Path to) throws IOException {
+    try {
+      Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.yitong.guides.upload;
+
+/** 允许上传的图片格式，按文件头魔数识别（不信任客户端 Content-Type 与文件名） */
+public enum ImageType {
+  JPG("jpg", "image/jpeg"),
+  PNG("png", "image/png"),
+  GIF("gif", "image/gif"),
+  WEBP("webp", "image/webp"),
+  BMP("bmp", "image/bmp"),
+  ICO("ico", "image/x-icon");
+
+  /** 识别所需的最少字节数（WEBP 需要读到第 12 字节） */
+  public static final int SNIFF_BYTES = 12;
+
+  private final String ext;
+  private final String mimeType;
+
+  ImageType(String ext, String mimeType) {
+    this.ext = ext;
+    this.mimeType = mimeType;
+  }
+
+  public String ext() {
+    return ext;
+  }
+
+  public String mimeType() {
+    return mimeType;
+  }
+
+  /** 由文件头识别格式；不是受支持的图片返回 null */
+  public static ImageType sniff(byte[] head, int len) {
+    if (startsWith(head, len, 0xFF, 0xD8, 0xFF)) {
+      return JPG;
+    }
+    if (startsWith(head, len, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+      return PNG;
+    }
+    if (startsWith(head, len, 'G', 'I', 'F', '8') && len >= 6 && (head[4] == '7' || head[4] == '9') && head[5] == 'a') {
+      return GIF;
+    }
+    if (startsWith(head, len, 'R', 'I', 'F', 'F')
+        && len >= 12
+        && head[8] == 'W'
+        && head[9] == 'E'
+        && head[10] == 'B'
+        && head[11] == 'P') {
+      return WEBP;
+    }
+    if (startsWith(head, len, 'B', 'M')) {
+      return BMP;
+    }
+    if (startsWith(head, len, 0x00, 0x00, 0x01, 0x00)) {
+      return ICO;
+    }
+    return null;
+  }
+
+  /** 由扩展名（小写）取格式；不支持的扩展名返回 null */
+  public static ImageType fromExt(String ext) {
+    for (ImageType t : values()) {
+      if (t.ext.equals(ext)) {
+        return t;
+      }
+    }
+    return null;
+  }
+
+  /** 未压缩或弱压缩的格式，值得额外提供 gzip 预压缩版本 */
+  public boolean compressible() {
+    return this == BMP || this == ICO;
+  }
+
+  private static boolean startsWith(byte[] head, int len, int... magic) {
+    if (len < magic.length) {
+      return false;
+    }
+    for (int i = 0; i < magic.length; i++) {
+      if ((head[i] & 0xFF) != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
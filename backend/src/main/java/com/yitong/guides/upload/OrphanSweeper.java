@@ -0,0 +1,409 @@
+package com.yitong.guides.upload;
+
+import com.yitong.guides.repo.UploadRefRepository;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 孤儿上传文件回收：上传后从未保存进攻略、被修改攻略移除、或所在攻略已逻辑删除的图片。
+ *
+ * <p>按“目录单元”增量扫描：上传目录根下的旧平铺文件算一个单元，内容寻址的每个 ab/cd 分片目录各算一个单元。
+ * 每次调度最多检查 filesPerRun 个文件（I/O 预算），处理不完的单元留到下次，一轮扫完再重新列目录。
+ * 文件修改时间超过宽限期且未被任何未删除攻略引用（upload_refs）的，连同其派生图移入 .quarantine 同名路径；
+ * 隔离区中重新被引用的文件移回原处，隔离超过 quarantineHours 的才真正删除。.incoming 中超过宽限期的残留临时文件直接删除。
+ *
+ * <p>upload_refs 是判断引用的唯一依据：UploadRefs 写入回填完成标记之前（首次启动回填中、或回填中途失败），不做任何处理。
+ *
+ * <p>攻略新引用的文件由 UploadRefs 在事务提交后调用 {@link #restore} 立即移回，不等下一轮。
+ * 移入隔离区前在 moveLock（UploadStorage 持有，上传落位也取同一把锁）内重查一次引用与修改时间，与 restore
+ * 和重复上传互斥：提交早于重查则不隔离，晚于重查则由 restore 移回；同内容重新上传刷新了修改时间的也不隔离。
+ */
+@Component
+public class OrphanSweeper {
+  private static final Logger log = LoggerFactory.getLogger(OrphanSweeper.class);
+
+  private static final String QUARANTINE_DIR = ".quarantine";
+  private static final String INCOMING_DIR = ".incoming";
+  private static final Pattern SHARD = Pattern.compile("[0-9a-f]{2}");
+  private static final Pattern DERIVATIVE = Pattern.compile("@\\d+(?=\\.[A-Za-z]+$)");
+  private static final Pattern PRECOMPRESSED = Pattern.compile("\\.gz$");
+  private static final int QUERY_BATCH = 500;
+
+  /** 回收统计（进程启动以来） */
+  public record Stats(
+      long rounds,
+      long scanned,
+      long quarantined,
+      long restored,
+      long deleted,
+      long reclaimedBytes,
+      long quarantinedBytes,
+      String lastRunAt) {}
+
+  private final Path dir;
+  private final UploadRefRepository refRepository;
+  private final HotFileCache hotCache;
+  private final boolean enabled;
+  private final int filesPerRun;
+  private final long graceMillis;
+  private final long quarantineMillis;
+  /** 保护下列扫描状态与统计；扫描时持锁做文件与数据库 I/O，用 ReentrantLock 而非 synchronized，虚拟线程下不钉住载体线程 */
+  private final ReentrantLock lock = new ReentrantLock();
+  /** UploadStorage 的移动锁：隔离（含重查）、restore 与上传落位互斥；只在移动文件时短暂持有 */
+  private final ReentrantLock moveLock;
+
+  /** 本轮待扫描的单元（相对上传目录，"" 表示根目录平铺文件）；当前单元未扫完的文件留在 pendingFiles */
+  private final Deque<String> pendingUnits = new ArrayDeque<>();
+  private final Deque<Path> pendingFiles = new ArrayDeque<>();
+  private boolean roundStarted;
+  /** 已看到 UploadRefs 的回填完成标记；标记只增不删，看到一次即可 */
+  private volatile boolean refsReady;
+
+  private long rounds;
+  private long scanned;
+  private long quarantined;
+  private final AtomicLong restored = new AtomicLong();
+  private long deleted;
+  private long reclaimedBytes;
+  private long quarantinedBytes;
+  private Instant lastRunAt;
+
+  public OrphanSweeper(
+      UploadStorage storage,
+      UploadRefRepository refRepository,
+      HotFileCache hotCache,
+      @Value("${app.upload.gc.enabled:true}") boolean enabled,
+      @Value("${app.upload.gc.filesPerRun:2000}") int filesPerRun,
+      @Value("${app.upload.gc.graceHours:24}") long graceHours,
+      @Value("${app.upload.gc.quarantineHours:168}") long quarantineHours) {
+    this.dir = storage.dir();
+    this.moveLock = storage.moveLock();
+    this.refRepository = refRepository;
+    this.hotCache = hotCache;
+    this.enabled = enabled;
+    this.filesPerRun = filesPerRun;
+    this.graceMillis = graceHours * 3600_000L;
+    this.quarantineMillis = quarantineHours * 3600_000L;
+  }
+
+  @Scheduled(
+      initialDelayString = "${app.upload.gc.intervalMs:60000}",
+      fixedDelayString = "${app.upload.gc.intervalMs:60000}")
+  public void scheduled() {
+    if (enabled) {
+      sweep();
+    }
+  }
+
+  public Stats stats() {
+    lock.lock();
+    try {
+      return new Stats(
+          rounds,
+          scanned,
+          quarantined,
+          restored.get(),
+          deleted,
+          reclaimedBytes,
+          quarantinedBytes,
+          lastRunAt == null ? null : lastRunAt.toString());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** 执行一次（受 filesPerRun 限制）增量扫描 */
+  public void sweep() {
+    lock.lock();
+    try {
+      if (!Files.isDirectory(dir) || !refsReady()) {
+        return;
+      }
+      lastRunAt = Instant.now();
+      try {
+        int budget = filesPerRun;
+        while (budget > 0) {
+          if (pendingFiles.isEmpty()) {
+            if (pendingUnits.isEmpty()) {
+              if (roundStarted) {
+                // 一轮扫完，下一轮留到下次调度再开始
+                rounds++;
+                roundStarted = false;
+                break;
+              }
+              listUnits();
+              roundStarted = true;
+            }
+            loadUnit(pendingUnits.poll());
+            continue;
+          }
+          List<Path> chunk = new ArrayList<>();
+          while (!pendingFiles.isEmpty() && chunk.size() < Math.min(budget, QUERY_BATCH)) {
+            chunk.add(pendingFiles.poll());
+          }
+          budget -= chunk.size();
+          scanned += chunk.size();
+          checkChunk(chunk);
+        }
+      } catch (IOException | RuntimeException e) {
+        log.warn("上传文件回收中断: {}", e.toString());
+        pendingUnits.clear();
+        pendingFiles.clear();
+        roundStarted = false;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean refsReady() {
+    if (!refsReady && refRepository.existsByPath(UploadRefs.BACKFILL_MARKER)) {
+      refsReady = true;
+    }
+    return refsReady;
+  }
+
+  /** 重新列出一轮的全部单元；隔离区与残留临时文件在每轮开始时处理 */
+  private void listUnits() throws IOException {
+    pendingUnits.clear();
+    pendingUnits.add("");
+    for (Path top : sortedDirs(dir)) {
+      for (Path leaf : sortedDirs(top)) {
+        pendingUnits.add(dir.relativize(leaf).toString().replace('\\', '/'));
+      }
+    }
+    sweepIncoming();
+    sweepQuarantine();
+  }
+
+  private static List<Path> sortedDirs(Path parent) throws IOException {
+    List<Path> out = new ArrayList<>();
+    try (DirectoryStream<Path> ds = Files.newDirectoryStream(parent, p -> Files.isDirectory(p))) {
+      for (Path p : ds) {
+        if (SHARD.matcher(p.getFileName().toString()).matches()) {
+          out.add(p);
+        }
+      }
+    }
+    out.sort(null);
+    return out;
+  }
+
+  private void loadUnit(String unit) throws IOException {
+    Path d = unit.isEmpty() ? dir : dir.resolve(unit);
+    if (!Files.isDirectory(d)) {
+      return;
+    }
+    try (DirectoryStream<Path> ds = Files.newDirectoryStream(d, p -> Files.isRegularFile(p))) {
+      for (Path p : ds) {
+        pendingFiles.add(p);
+      }
+    }
+  }
+
+  /** 超过宽限期的文件按原图路径批量查引用，未被引用的移入隔离区 */
+  private void checkChunk(List<Path> files) {
+    long cutoff = System.currentTimeMillis() - graceMillis;
+    List<Path> old = new ArrayList<>();
+    Set<String> originals = new HashSet<>();
+    for (Path p : files) {
+      try {
+        if (Files.getLastModifiedTime(p).toMillis() < cutoff) {
+          old.add(p);
+          originals.add(originalOf(p));
+        }
+      } catch (IOException e) {
+        // 文件已被并发删除或移动，跳过
+      }
+    }
+    if (old.isEmpty()) {
+      return;
+    }
+    Set<String> live = new HashSet<>(refRepository.findLivePathsIn(originals));
+    List<Path> orphans = new ArrayList<>();
+    Set<String> orphanOriginals = new HashSet<>();
+    for (Path p : old) {
+      if (!live.contains(originalOf(p))) {
+        orphans.add(p);
+        orphanOriginals.add(originalOf(p));
+      }
+    }
+    if (orphans.isEmpty()) {
+      return;
+    }
+    moveLock.lock();
+    try {
+      // 批量查询之后可能有攻略刚提交了对这些文件的引用，或同内容被重新上传（修改时间已刷新）
+      Set<String> nowLive = new HashSet<>(refRepository.findLivePathsIn(orphanOriginals));
+      for (Path p : orphans) {
+        if (!nowLive.contains(originalOf(p)) && modifiedBefore(p, cutoff)) {
+          quarantine(p);
+        }
+      }
+    } finally {
+      moveLock.unlock();
+    }
+  }
+
+  /** 把隔离区中属于这些原图（相对上传目录）的文件连同派生图、预压缩版本移回原处 */
+  public void restore(Collection<String> originals) {
+    Path q = dir.resolve(QUARANTINE_DIR);
+    if (originals.isEmpty() || !Files.isDirectory(q)) {
+      return;
+    }
+    moveLock.lock();
+    try {
+      for (String original : originals) {
+        Path parent = q.resolve(original).normalize().getParent();
+        if (parent == null || !parent.startsWith(q) || !Files.isDirectory(parent)) {
+          continue;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(parent, p -> Files.isRegularFile(p))) {
+          for (Path p : ds) {
+            if (original.equals(originalOf(q, p))) {
+              files.add(p);
+            }
+          }
+        }
+        for (Path p : files) {
+          Path back = dir.resolve(q.relativize(p));
+          Files.createDirectories(back.getParent());
+          move(p, back);
+          restored.incrementAndGet();
+          log.info("上传文件重新被引用，已移出隔离区: {}", q.relativize(p));
+        }
+      }
+    } catch (IOException e) {
+      log.warn("移出隔离区失败: {}", e.toString());
+    } finally {
+      moveLock.unlock();
+    }
+  }
+
+  private static boolean modifiedBefore(Path file, long cutoff) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis() < cutoff;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private void quarantine(Path file) {
+    String rel = dir.relativize(file).toString().replace('\\', '/');
+    Path target = dir.resolve(QUARANTINE_DIR).resolve(rel);
+    try {
+      long size = Files.size(file);
+      Files.createDirectories(target.getParent());
+      move(file, target);
+      // 先移走再失效：与 UploadFileServer 放入缓存后的存在性检查配合，不会留下已隔离文件的缓存
+      hotCache.evict(rel);
+      Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+      quarantined++;
+      quarantinedBytes += size;
+    } catch (IOException e) {
+      log.warn("隔离上传文件失败: {}: {}", file, e.toString());
+    }
+  }
+
+  /** 隔离区：重新被引用的移回，超过保留期的删除 */
+  private void sweepQuarantine() throws IOException {
+    Path q = dir.resolve(QUARANTINE_DIR);
+    if (!Files.isDirectory(q)) {
+      return;
+    }
+    List<Path> files;
+    try (Stream<Path> s = Files.walk(q)) {
+      files = s.filter(Files::isRegularFile).toList();
+    }
+    long expireBefore = System.currentTimeMillis() - quarantineMillis;
+    for (int i = 0; i < files.size(); i += QUERY_BATCH) {
+      List<Path> chunk = files.subList(i, Math.min(files.size(), i + QUERY_BATCH));
+      Set<String> originals = new HashSet<>();
+      for (Path p : chunk) {
+        originals.add(originalOf(q, p));
+      }
+      Set<String> live = new HashSet<>(refRepository.findLivePathsIn(originals));
+      for (Path p : chunk) {
+        try {
+          if (live.contains(originalOf(q, p))) {
+            Path back = dir.resolve(q.relativize(p));
+            Files.createDirectories(back.getParent());
+            move(p, back);
+            restored.incrementAndGet();
+          } else {
+            BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+            if (a.lastModifiedTime().toMillis() < expireBefore) {
+              Files.delete(p);
+              deleted++;
+              reclaimedBytes += a.size();
+            }
+          }
+        } catch (IOException e) {
+          log.warn("处理隔离文件失败: {}: {}", p, e.toString());
+        }
+      }
+    }
+  }
+
+  /** 上传中断留下的 .part 临时文件 */
+  private void sweepIncoming() throws IOException {
+    Path in = dir.resolve(INCOMING_DIR);
+    if (!Files.isDirectory(in)) {
+      return;
+    }
+    long cutoff = System.currentTimeMillis() - graceMillis;
+    try (DirectoryStream<Path> ds = Files.newDirectoryStream(in)) {
+      for (Path p : ds) {
+        BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+        if (a.isRegularFile() && a.lastModifiedTime().toMillis() < cutoff) {
+          Files.deleteIfExists(p);
+          deleted++;
+          reclaimedBytes += a.size();
+        }
+      }
+    }
+  }
+
+  private String originalOf(Path file) {
+    return originalOf(dir, file);
+  }
+
+  /** 文件相对 base 的路径，派生图（x@640.jpg）与预压缩版本（x.bmp.gz）归一为原图 */
+  private static String originalOf(Path base, Path file) {
+    String rel = base.relativize(file).toString().replace('\\', '/');
+    rel = PRECOMPRESSED.matcher(rel).replaceFirst("");
+    return DERIVATIVE.matcher(rel).replaceFirst("");
+  }
+
+  private static void move(Path from, Path to) throws IOException {
+    try {
+      Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package com.yitong.guides.upload;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+/**
+ * /uploads/** 的静态文件服务。文件名要么是内容哈希、要么是随机 UUID，内容永不改变，因此：
+ * 响应带一年期的 immutable Cache-Control 与强 ETag（内容寻址文件直接用哈希），支持 If-None-Match / If-Modified-Since；
+ * 支持单段 Range（多段请求按整文件返回）；大文件交给 Tomcat sendfile，否则经 FileChannel.transferTo 输出；
+ * 第二次被请求的小文件放进 {@link HotFileCache}，之后不再触盘。
+ * bmp/ico 存在 .gz 预压缩版本且客户端接受 gzip 时直接返回预压缩内容。?w= 选派生图的规则见 {@link ImageDerivatives#pick}。
+ */
+@Component
+public class UploadFileServer {
+
+  /** 平铺的旧文件名或 ab/cd/ 分片下的内容寻址文件名，可带 @宽度；不允许其他字符，杜绝路径穿越 */
+  private static final Pattern NAME =
+      Pattern.compile("(?:[0-9a-f]{2}/[0-9a-f]{2}/)?([0-9A-Za-z-]+)(@\\d+)?\\.([a-z]+)");
+  private static final Pattern CONTENT_ADDRESSED = Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}.*");
+  private static final Pattern RANGE = Pattern.compile("bytes=(\\d{0,18})-(\\d{0,18})");
+  private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+  /** ?w= 还没有对应派生图时回落原图，派生图稍后才生成，只短期缓存 */
+  private static final String FALLBACK = "public, max-age=3600";
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+  private final Path dir;
+  private final ImageDerivatives derivatives;
+  private final HotFileCache hotCache;
+  private final long sendfileMinBytes;
+
+  public UploadFileServer(
+      UploadStorage storage,
+      ImageDerivatives derivatives,
+      HotFileCache hotCache,
+      @Value("${app.upload.serve.sendfileMinBytes:49152}") long sendfileMinBytes) {
+    this.dir = storage.dir();
+    this.derivatives = derivatives;
+    this.hotCache = hotCache;
+    this.sendfileMinBytes = sendfileMinBytes;
+  }
+
+  /** path 为 /uploads/ 之后的部分；404/416 只设状态码、不转发错误页 */
+  public void serve(String path, HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Matcher m = NAME.matcher(path);
+    ImageType type = m.matches() ? ImageType.fromExt(m.group(3)) : null;
+    if (type == null) {
+      response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    String cacheControl = IMMUTABLE;
+    int w = m.group(2) == null ? derivatives.pick(parseWidth(request.getParameter("w"))) : 0;
+    if (w > 0) {
+      String d = ImageDerivatives.derivativeName(path, w);
+      if (Files.isRegularFile(dir.resolve(d))) {
+        path = d;
+      } else {
+        cacheControl = FALLBACK;
+      }
+    }
+
+    // 可预压缩的格式按 Accept-Encoding 选文件，不进热点缓存
+    HotFileCache.Entry hit = type.compressible() ? null : hotCache.get(path);
+    boolean gzip = false;
+    long size;
+    long lastModified;
+    String etag;
+    if (hit != null) {
+      size = hit.data().length;
+      lastModified = hit.lastModified();
+      etag = hit.etag();
+    } else {
+      Path file = dir.resolve(path);
+      BasicFileAttributes attrs = null;
+      if (type.compressible() && acceptsGzip(request)) {
+        attrs = attributes(dir.resolve(path + ".gz"));
+        gzip = attrs != null;
+      }
+      if (attrs == null) {
+        attrs = attributes(file);
+      }
+      if (attrs == null) {
+        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        return;
+      }
+      size = attrs.size();
+      lastModified = attrs.lastModifiedTime().toMillis();
+      etag = etagOf(path, size, lastModified, gzip);
+    }
+
+    response.setHeader(HttpHeaders.ETAG, etag);
+    response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+    response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+    if (type.compressible()) {
+      response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+    if (notModified(request, etag, lastModified)) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+    response.setContentType(type.mimeType());
+    if (gzip) {
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+    } else {
+      response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+    }
+
+    long start = 0;
+    long end = size - 1;
+    String range = gzip ? null : request.getHeader(HttpHeaders.RANGE);
+    if (range != null && ifRangeMatches(request, etag)) {
+      Matcher r = RANGE.matcher(range.trim());
+      if (r.matches() && !(r.group(1).isEmpty() && r.group(2).isEmpty())) {
+        if (r.group(1).isEmpty()) {
+          start = Math.max(0, size - Long.parseLong(r.group(2)));
+        } else {
+          start = Long.parseLong(r.group(1));
+          if (!r.group(2).isEmpty()) {
+            end = Math.min(end, Long.parseLong(r.group(2)));
+          }
+        }
+        if (start >= size || start > end) {
+          response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+          response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+          return;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+      }
+    }
+    long length = end - start + 1;
+    response.setContentLengthLong(length);
+    if ("HEAD".equals(request.getMethod())) {
+      return;
+    }
+
+    if (hit == null && !type.compressible() && hotCache.shouldAdmit(path, size)) {
+      try {
+        Path source = dir.resolve(path);
+        hit = new HotFileCache.Entry(Files.readAllBytes(source), lastModified, etag);
+        hotCache.put(path, hit);
+        if (!Files.exists(source)) {
+          // 读取后被回收隔离：OrphanSweeper 移走文件后才失效缓存，这里补一次，避免放回的内容继续被命中
+          hotCache.evict(path);
+        }
+      } catch (NoSuchFileException e) {
+        // 刚被回收隔离：照常走下面的文件分支，由其报错
+      }
+    }
+    if (hit != null) {
+      response.getOutputStream().write(hit.data(), (int) start, (int) length);
+      return;
+    }
+    Path file = dir.resolve(gzip ? path + ".gz" : path);
+    if (length >= sendfileMinBytes && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+      // Tomcat 在请求处理结束后用 sendfile 直接从页缓存发往 socket，不经用户态缓冲
+      request.setAttribute("org.apache.tomcat.sendfile.filename", file.toString());
+      request.setAttribute("org.apache.tomcat.sendfile.start", start);
+      request.setAttribute("org.apache.tomcat.sendfile.end", end + 1);
+      return;
+    }
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+      long pos = start;
+      long remaining = length;
+      while (remaining > 0) {
+        long n = ch.transferTo(pos, remaining, out);
+        if (n <= 0) {
+          break;
+        }
+        pos += n;
+        remaining -= n;
+      }
+    }
+  }
+
+  /** 内容寻址文件以哈希（及派生宽度）作 ETag；旧文件用大小与修改时间 */
+  private static String etagOf(String path, long size, long lastModified, boolean gzip) {
+    String tag;
+    if (CONTENT_ADDRESSED.matcher(path).matches()) {
+      String name = path.substring(path.lastIndexOf('/') + 1);
+      tag = name.substring(0, name.lastIndexOf('.'));
+    } else {
+      tag = Long.toHexString(size) + "-" + Long.toHexString(lastModified);
+    }
+    return "\"" + tag + (gzip ? "-gz" : "") + "\"";
+  }
+
+  private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+    String inm = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (inm != null) {
+      for (String t : inm.split(",")) {
+        String tag = t.trim();
+        if (tag.startsWith("W/")) {
+          tag = tag.substring(2);
+        }
+        if (tag.equals(etag) || tag.equals("*")) {
+          return true;
+        }
+      }
+      return false;
+    }
+    long ims;
+    try {
+      ims = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    return ims >= 0 && lastModified / 1000 <= ims / 1000;
+  }
+
+  /** 没有 If-Range，或 If-Range 与当前强 ETag 一致时才按 Range 返回 */
+  private static boolean ifRangeMatches(HttpServletRequest request, String etag) {
+    String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+    return ifRange == null || ifRange.trim().equals(etag);
+  }
+
+  private static boolean acceptsGzip(HttpServletRequest request) {
+    String ae = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+    return ae != null && ae.contains("gzip");
+  }
+
+  private static BasicFileAttributes attributes(Path file) {
+    try {
+      BasicFileAttributes a = Files.readAttributes(file, BasicFileAttributes.class);
+      return a.isRegularFile() ? a : null;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static int parseWidth(String w) {
+    if (w == null || w.isEmpty() || w.length() > 5) {
+      return 0;
+    }
+    try {
+      return Integer.parseInt(w);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
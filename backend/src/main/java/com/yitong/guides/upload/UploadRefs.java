@@ -0,0 +1,126 @@
+package com.yitong.guides.upload;
+
+import com.yitong.guides.domain.Guide;
+import com.yitong.guides.domain.UploadRef;
+import com.yitong.guides.repo.GuideRepository;
+import com.yitong.guides.repo.UploadRefRepository;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 攻略正文对上传文件的引用（upload_refs）。GuideService 创建/修改攻略时在同一事务内扫描 contentMarkdown 中的
+ * /uploads/ 地址并增量同步；派生图地址（a@640.jpg）与查询串归一到原图。
+ * 启动时若尚无回填完成标记，按 id 分批回填全部攻略（同步幂等，中断后下次启动从头再来），最后一批提交后再写入标记行；
+ * OrphanSweeper 在看到标记前不做任何处理，避免把尚未回填引用的文件当作孤儿隔离。
+ * 新增的引用在事务提交后交给 OrphanSweeper，已被隔离的文件立即移回。
+ */
+@Component
+public class UploadRefs implements ApplicationRunner {
+  private static final Logger log = LoggerFactory.getLogger(UploadRefs.class);
+
+  /** 回填完成标记：upload_refs 中 path 为该值、guide_id 为 0 的一行；正文扫描出的路径不会以 . 开头 */
+  public static final String BACKFILL_MARKER = ".backfilled";
+
+  private static final int BACKFILL_BATCH = 500;
+  private static final int MAX_PATH = 200;
+  private static final Pattern UPLOAD_URL =
+      Pattern.compile("/uploads/([0-9A-Za-z][0-9A-Za-z._/-]*?)(?:@\\d+)?\\.([A-Za-z]{2,4})(?![0-9A-Za-z.@])");
+
+  private final UploadRefRepository refRepository;
+  private final GuideRepository guideRepository;
+  private final OrphanSweeper orphanSweeper;
+  private final TransactionTemplate tx;
+
+  public UploadRefs(
+      UploadRefRepository refRepository,
+      GuideRepository guideRepository,
+      OrphanSweeper orphanSweeper,
+      PlatformTransactionManager txManager) {
+    this.refRepository = refRepository;
+    this.guideRepository = guideRepository;
+    this.orphanSweeper = orphanSweeper;
+    this.tx = new TransactionTemplate(txManager);
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (refRepository.existsByPath(BACKFILL_MARKER)) {
+      return;
+    }
+    long lastId = 0;
+    int guides = 0;
+    while (true) {
+      List<Guide> batch =
+          guideRepository.findByDeletedFalseAndIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, BACKFILL_BATCH));
+      if (batch.isEmpty()) {
+        break;
+      }
+      tx.executeWithoutResult(s -> batch.forEach(g -> sync(g.getId(), g.getContentMarkdown())));
+      lastId = batch.get(batch.size() - 1).getId();
+      guides += batch.size();
+    }
+    tx.executeWithoutResult(s -> refRepository.save(new UploadRef(BACKFILL_MARKER, 0L)));
+    log.info("上传文件引用回填完成，扫描攻略 {} 篇", guides);
+  }
+
+  /** 把某攻略的引用同步为正文当前引用的文件集合（须在事务内调用） */
+  public void sync(Long guideId, String markdown) {
+    Set<String> wanted = scan(markdown);
+    Set<String> existing = new HashSet<>(refRepository.findPathsByGuideId(guideId));
+    List<String> removed = existing.stream().filter(p -> !wanted.contains(p)).toList();
+    if (!removed.isEmpty()) {
+      refRepository.deleteByGuideIdAndPathIn(guideId, removed);
+    }
+    List<UploadRef> added = new ArrayList<>();
+    for (String p : wanted) {
+      if (!existing.contains(p)) {
+        added.add(new UploadRef(p, guideId));
+      }
+    }
+    if (!added.isEmpty()) {
+      refRepository.saveAll(added);
+      List<String> paths = added.stream().map(UploadRef::getPath).toList();
+      if (TransactionSynchronizationManager.isSynchronizationActive()) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            orphanSweeper.restore(paths);
+          }
+        });
+      } else {
+        orphanSweeper.restore(paths);
+      }
+    }
+  }
+
+  /** 正文中引用的上传文件（相对上传目录的原图路径） */
+  public static Set<String> scan(String markdown) {
+    Set<String> paths = new LinkedHashSet<>();
+    if (markdown == null || markdown.isEmpty()) {
+      return paths;
+    }
+    Matcher m = UPLOAD_URL.matcher(markdown);
+    while (m.find()) {
+      String p = m.group(1) + "." + m.group(2);
+      if (p.length() <= MAX_PATH && !p.contains("..") && !p.contains("//")) {
+        paths.add(p);
+      }
+    }
+    return paths;
+  }
+}
@@ -0,0 +1,171 @@
+package com.yitong.guides.upload;
+
+import com.yitong.guides.web.api.ApiException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+/**
+ * 图片落盘：边读边写。先读满文件头按魔数识别格式（不是图片立即拒绝，不再读剩余内容），
+ * 之后每块数据同时喂给 SHA-256 并经 FileChannel 写入上传目录下的临时文件，超过大小上限立即中止。
+ * 写完后按内容寻址改名为 {@code ab/cd/<sha256>.<ext>}（两级 256 路分片，单目录文件数有界）；
+ * 同内容文件已存在时直接丢弃临时文件复用已有文件，重复上传不额外占用磁盘。判断是否存在与改名/刷新修改时间
+ * 在 moveLock 内完成，并发上传同一内容或孤儿回收同时隔离该文件都不会丢失文件。
+ * 整个过程只持有一个固定大小的缓冲区，不在内存或额外临时文件中保存整张图片。
+ */
+@Component
+public class UploadStorage {
+  private static final Logger log = LoggerFactory.getLogger(UploadStorage.class);
+
+  private static final int BUFFER_BYTES = 64 * 1024;
+  private static final String INCOMING_DIR = ".incoming";
+
+  /** 落盘结果：路径（相对上传目录）、格式、字节数、内容 SHA-256（十六进制），以及是否命中已有的同内容文件 */
+  public record StoredFile(String path, ImageType type, long size, String sha256, boolean deduplicated) {}
+
+  private final Path dir;
+  private final long maxBytes;
+  /** 文件移入/移出内容寻址位置时持有：上传落位（含同内容命中时刷新修改时间）与 OrphanSweeper 的隔离、移回互斥 */
+  private final ReentrantLock moveLock = new ReentrantLock();
+
+  public UploadStorage(
+      @Value("${app.upload.dir:./uploads}") String uploadDir,
+      @Value("${app.upload.maxBytes:10485760}") long maxBytes) {
+    this.dir = Paths.get(uploadDir).toAbsolutePath().normalize();
+    this.maxBytes = maxBytes;
+  }
+
+  public Path dir() {
+    return dir;
+  }
+
+  ReentrantLock moveLock() {
+    return moveLock;
+  }
+
+  /** 客户端声明的长度（未知为 -1）已超过上限时直接拒绝，不读取请求体 */
+  public void checkDeclaredLength(long declared) {
+    if (declared > maxBytes) {
+      throw tooLarge();
+    }
+  }
+
+  /** 读取并保存一张图片；in 由调用方关闭 */
+  public StoredFile store(InputStream in) {
+    Path tmp = null;
+    try {
+      byte[] buf = new byte[BUFFER_BYTES];
+      int head = readAtLeast(in, buf, ImageType.SNIFF_BYTES);
+      if (head == 0) {
+        throw new ApiException(HttpStatus.BAD_REQUEST, "请选择文件");
+      }
+      ImageType type = ImageType.sniff(buf, head);
+      if (type == null) {
+        throw new ApiException(HttpStatus.BAD_REQUEST, "仅支持 jpg/png/gif/webp/bmp/ico 图片");
+      }
+      Path incoming = dir.resolve(INCOMING_DIR);
+      Files.createDirectories(incoming);
+      tmp = incoming.resolve(UUID.randomUUID() + ".part");
+      MessageDigest sha = MessageDigest.getInstance("SHA-256");
+      long size = 0;
+      try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+        int n = head;
+        while (n > 0) {
+          size += n;
+          if (size > maxBytes) {
+            throw tooLarge();
+          }
+          sha.update(buf, 0, n);
+          ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+          while (bb.hasRemaining()) {
+            ch.write(bb);
+          }
+          n = in.read(buf);
+        }
+      }
+      String hex = HexFormat.of().formatHex(sha.digest());
+      String path = pathOf(hex, type);
+      Path target = dir.resolve(path);
+      boolean deduplicated;
+      moveLock.lock();
+      try {
+        // 与孤儿回收的隔离互斥：已有文件要么在这里刷新修改时间（回收方重查时发现不再过期），要么已被移走、这里重新落位
+        deduplicated = Files.exists(target);
+        if (deduplicated) {
+          // 重新上传视同新文件：刷新修改时间，让孤儿回收的宽限期从现在起算
+          Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+        } else {
+          moveInto(tmp, target);
+          tmp = null;
+        }
+      } finally {
+        moveLock.unlock();
+      }
+      return new StoredFile(path, type, size, hex, deduplicated);
+    } catch (IOException e) {
+      log.error("上传失败: {}", e.getMessage(), e);
+      throw new ApiException(HttpStatus.INTERNAL_SERVER_ERROR, "上传失败");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      if (tmp != null) {
+        try {
+          Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+          log.warn("清理上传临时文件失败: {}", tmp, e);
+        }
+      }
+    }
+  }
+
+  private ApiException tooLarge() {
+    return new ApiException(HttpStatus.PAYLOAD_TOO_LARGE, "图片不能超过 " + (maxBytes / 1024 / 1024) + "MB");
+  }
+
+  /** 内容寻址路径：sha256 前两字节作两级目录 */
+  private static String pathOf(String sha256, ImageType type) {
+    return sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256 + "." + type.ext();
+  }
+
+  /** 移入目标位置；调用方持有 moveLock 并已确认目标不存在 */
+  private static void moveInto(Path from, Path to) throws IOException {
+    Files.createDirectories(to.getParent());
+    try {
+      Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(from, to);
+    }
+  }
+
+  /** 读到至少 min 字节或流结束为止，返回实际读到的字节数 */
+  private static int readAtLeast(InputStream in, byte[] buf, int min) throws IOException {
+    int off = 0;
+    while (off < min) {
+      int n = in.read(buf, off, buf.length - off);
+      if (n < 0) {
+        break;
+      }
+      off += n;
+    }
+    return off;
+  }
+}
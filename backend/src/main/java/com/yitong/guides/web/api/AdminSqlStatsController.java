@@ -0,0 +1,30 @@
+package com.yitong.guides.web.api;
+
+import com.yitong.guides.metrics.SqlStats;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/sql-stats")
+public class AdminSqlStatsController {
+  private final SqlStats sqlStats;
+
+  public AdminSqlStatsController(SqlStats sqlStats) {
+    this.sqlStats = sqlStats;
+  }
+
+  /** 各接口每请求的 SQL 语句数与 JDBC 执行耗时（均值、p95、最大值与直方图）、超预算次数，以及疑似 N+1 的语句 */
+  @GetMapping
+  public SqlStats.Report report() {
+    return sqlStats.report();
+  }
+
+  /** 清空统计，从现在重新累计 */
+  @DeleteMapping
+  public SqlStats.Report reset() {
+    sqlStats.reset();
+    return sqlStats.report();
+  }
+}
@@ -0,0 +1,53 @@
+package com.yitong.guides.web.api;
+
+import com.yitong.guides.repo.UploadRefRepository;
+import com.yitong.guides.upload.ImageDerivatives;
+import com.yitong.guides.upload.OrphanSweeper;
+import java.util.List;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/uploads")
+public class AdminUploadController {
+  private final ImageDerivatives derivatives;
+  private final UploadRefRepository refRepository;
+  private final OrphanSweeper orphanSweeper;
+
+  public AdminUploadController(
+      ImageDerivatives derivatives, UploadRefRepository refRepository, OrphanSweeper orphanSweeper) {
+    this.derivatives = derivatives;
+    this.refRepository = refRepository;
+    this.orphanSweeper = orphanSweeper;
+  }
+
+  /** 派生图统计（进程启动以来）：处理/跳过/丢弃/失败数、派生图数、写入字节数及相对原图节省的字节数 */
+  @GetMapping("/derivatives")
+  public ImageDerivatives.Stats derivatives() {
+    return derivatives.stats();
+  }
+
+  public record UploadRefsResp(String path, List<Long> guideIds) {}
+
+  /** 某上传文件被哪些攻略引用；path 为相对上传目录的路径（即 /uploads/ 之后的部分） */
+  @GetMapping("/refs")
+  public UploadRefsResp refs(@RequestParam String path) {
+    return new UploadRefsResp(path, refRepository.findGuideIdsByPath(path));
+  }
+
+  /** 孤儿文件回收统计：完成轮数、检查/隔离/恢复/删除文件数、已回收与隔离中的字节数 */
+  @GetMapping("/gc")
+  public OrphanSweeper.Stats gc() {
+    return orphanSweeper.stats();
+  }
+
+  /** 立即执行一次增量回收（同样受每次文件数预算限制） */
+  @PostMapping("/gc")
+  public OrphanSweeper.Stats runGc() {
+    orphanSweeper.sweep();
+    return orphanSweeper.stats();
+  }
+}
@@ -1,7 +1,9 @@
 package com.yitong.guides.web.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yitong.guides.domain.User;
 import com.yitong.guides.domain.UserRole;
+import com.yitong.guides.repo.UserAdminRow;
 import com.yitong.guides.security.AuthUser;
 import com.yitong.guides.service.UserService;
 import jakarta.validation.constraints.Max;
@@ -10,7 +12,12 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,16 +27,22 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/admin/users")
 public class AdminUserController {
+  private static final int EXPORT_BATCH = 500;
+
   private final UserService userService;
+  private final ObjectMapper objectMapper;
 
-  public AdminUserController(UserService userService) {
+  public AdminUserController(UserService userService, ObjectMapper objectMapper) {
     this.userService = userService;
+    this.objectMapper = objectMapper;
   }
 
   /** status: 0-正常 1-封禁 2-已注销 */
@@ -43,10 +56,19 @@ public class AdminUserController {
       String createdAt,
       String passwordHash) {}
 
+  /** 分页筛选；总数放在 X-Total-Count 响应头中，响应体仍为数组 */
   @GetMapping
-  public List<UserAdminResp> list() {
+  public ResponseEntity<List<UserAdminResp>> list(
+      @RequestParam(required = false) Integer status,
+      @RequestParam(required = false) UserRole role,
+      @RequestParam(required = false) Boolean enabled,
+      @RequestParam(required = false) String username,
+      @RequestParam(defaultValue = "0") @Min(0) int page,
+      @RequestParam(defaultValue = "50") @Min(1) @Max(200) int size) {
     DateTimeFormatter fmt = DateTimeFormatter.ISO_INSTANT;
-    return userService.findAll().stream()
+    Page<User> p = userService.searchForAdmin(
+        new UserService.AdminUserFilter(status, role, enabled, username), PageRequest.of(page, size));
+    List<UserAdminResp> body = p.stream()
         .map(
             u ->
                 new UserAdminResp(
@@ -59,6 +81,41 @@ public class AdminUserController {
                     fmt.format(u.getCreatedAt()),
                     u.getPasswordHash()))
         .toList();
+    return ResponseEntity.ok().header("X-Total-Count", String.valueOf(p.getTotalElements())).body(body);
+  }
+
+  public record UserExportLine(
+      Long id, String username, String displayName, String role, boolean enabled, int status, String createdAt) {}
+
+  /** 按筛选条件导出为 NDJSON（每行一个用户，不含密码哈希）；按 id 游标分批读取，内存占用与总数无关 */
+  @GetMapping("/export")
+  public ResponseEntity<StreamingResponseBody> export(
+      @RequestParam(required = false) Integer status,
+      @RequestParam(required = false) UserRole role,
+      @RequestParam(required = false) Boolean enabled,
+      @RequestParam(required = false) String username) {
+    UserService.AdminUserFilter filter = new UserService.AdminUserFilter(status, role, enabled, username);
+    StreamingResponseBody body = out -> {
+      long afterId = 0;
+      while (true) {
+        List<UserAdminRow> batch = userService.exportBatch(filter, afterId, EXPORT_BATCH);
+        for (UserAdminRow r : batch) {
+          out.write(objectMapper.writeValueAsBytes(new UserExportLine(
+              r.id(), r.username(), r.displayName(), r.roleName(), r.isEnabled(), r.status(),
+              r.createdAt().toString())));
+          out.write('\n');
+        }
+        out.flush();
+        if (batch.size() < EXPORT_BATCH) {
+          break;
+        }
+        afterId = batch.get(batch.size() - 1).id();
+      }
+    };
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType("application/x-ndjson"))
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.ndjson\"")
+        .body(body);
   }
 
   public record UpdateUserReq(@NotNull Boolean enabled, @NotNull UserRole role) {}
@@ -2,7 +2,9 @@ package com.yitong.guides.web.api;
 
 import com.yitong.guides.domain.User;
 import com.yitong.guides.security.JwtService;
+import com.yitong.guides.security.LoginThrottle;
 import com.yitong.guides.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
@@ -18,10 +20,12 @@ import org.springframework.web.bind.annotation.RestController;
 public class AuthController {
   private final UserService userService;
   private final JwtService jwtService;
+  private final LoginThrottle loginThrottle;
 
-  public AuthController(UserService userService, JwtService jwtService) {
+  public AuthController(UserService userService, JwtService jwtService, LoginThrottle loginThrottle) {
     this.userService = userService;
     this.jwtService = jwtService;
+    this.loginThrottle = loginThrottle;
   }
 
   public record RegisterReq(
@@ -37,17 +41,20 @@ public class AuthController {
 
   @PostMapping("/register")
   @ResponseStatus(HttpStatus.CREATED)
-  public UserResp register(@Valid @RequestBody RegisterReq req) {
+  public UserResp register(@Valid @RequestBody RegisterReq req, HttpServletRequest request) {
+    loginThrottle.acquireRegister(request.getRemoteAddr());
     User saved = userService.register(req.username(), req.password(), req.displayName());
     String roleName = saved.getRole() != null ? saved.getRole().name() : "USER";
     return new UserResp(saved.getId(), saved.getUsername(), saved.getDisplayName(), roleName);
   }
 
   @PostMapping("/login")
-  public AuthResp login(@Valid @RequestBody LoginReq req) {
+  public AuthResp login(@Valid @RequestBody LoginReq req, HttpServletRequest request) {
+    loginThrottle.acquireLogin(request.getRemoteAddr(), req.username());
     User u = userService.validateLogin(req.username(), req.password());
+    loginThrottle.onLoginSuccess(req.username());
     String roleName = u.getRole() != null ? u.getRole().name() : "USER";
-    String token = jwtService.issueToken(u.getId(), u.getUsername(), roleName);
+    String token = jwtService.issueToken(u.getId(), u.getUsername(), roleName, u.getTokenVersion());
     return new AuthResp(
         token,
         new UserResp(u.getId(), u.getUsername(), u.getDisplayName(), roleName));
@@ -0,0 +1,18 @@
+package com.yitong.guides.web.api;
+
+import java.util.List;
+import java.util.function.Function;
+
+/** 游标分页响应（Slice 风格，不返回总数）；hasNext 为 false 时 nextCursor 为 null */
+public record CursorResp<T>(List<T> items, String nextCursor, boolean hasNext) {
+
+  /**
+   * 由多查一条的结果构造：rows 最多 size + 1 条，多出的一条只用于判断是否还有下一页。
+   */
+  public static <R, T> CursorResp<T> of(List<R> rows, int size, Function<R, String> cursorOf, Function<R, T> mapper) {
+    boolean hasNext = rows.size() > size;
+    List<R> page = hasNext ? rows.subList(0, size) : rows;
+    String next = hasNext ? cursorOf.apply(page.get(page.size() - 1)) : null;
+    return new CursorResp<>(page.stream().map(mapper).toList(), next, hasNext);
+  }
+}
@@ -2,14 +2,20 @@ package com.yitong.guides.web.api;
 
 import com.yitong.guides.domain.Follow;
 import com.yitong.guides.domain.GuideCategory;
+import com.yitong.guides.feed.FeedTimeline;
+import com.yitong.guides.graph.FollowGraph;
+import com.yitong.guides.graph.FollowSuggestions;
+import com.yitong.guides.metrics.QueryBudget;
 import com.yitong.guides.repo.FollowRepository;
-import com.yitong.guides.repo.GuideRepository;
-import com.yitong.guides.repo.UserRepository;
+import com.yitong.guides.repo.GuideCardView;
+import com.yitong.guides.repo.UserSummary;
 import com.yitong.guides.security.AuthUser;
 import com.yitong.guides.service.FollowService;
-import com.yitong.guides.service.GuideService;
+import com.yitong.guides.service.UserSummaryCache;
+import java.util.Arrays;
 import java.util.List;
-import org.springframework.data.domain.PageRequest;
+import java.util.Map;
+import java.util.stream.Collectors;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -26,21 +32,24 @@ import org.springframework.web.bind.annotation.RestController;
 public class FollowController {
   private final FollowService followService;
   private final FollowRepository followRepo;
-  private final UserRepository userRepo;
-  private final GuideRepository guideRepo;
-  private final GuideService guideService;
+  private final UserSummaryCache userSummaries;
+  private final FeedTimeline feedTimeline;
+  private final FollowGraph followGraph;
+  private final FollowSuggestions followSuggestions;
 
   public FollowController(
       FollowService followService,
       FollowRepository followRepo,
-      UserRepository userRepo,
-      GuideRepository guideRepo,
-      GuideService guideService) {
+      UserSummaryCache userSummaries,
+      FeedTimeline feedTimeline,
+      FollowGraph followGraph,
+      FollowSuggestions followSuggestions) {
     this.followService = followService;
     this.followRepo = followRepo;
-    this.userRepo = userRepo;
-    this.guideRepo = guideRepo;
-    this.guideService = guideService;
+    this.userSummaries = userSummaries;
+    this.feedTimeline = feedTimeline;
+    this.followGraph = followGraph;
+    this.followSuggestions = followSuggestions;
   }
 
   private static AuthUser mustAuth(Authentication auth) {
@@ -66,20 +75,103 @@ public class FollowController {
 
   public record UserBriefResp(Long id, String username, String displayName, boolean following) {}
 
+  @QueryBudget(3)
   @GetMapping("/me/following")
   public List<UserBriefResp> myFollowing(Authentication auth) {
     AuthUser u = mustAuth(auth);
     List<Long> ids = followRepo.findByUserIdOrderByCreatedAtDesc(u.id()).stream()
         .map(Follow::getFollowUserId)
         .toList();
-    return ids.stream()
-        .map(userRepo::findById)
-        .filter(java.util.Optional::isPresent)
-        .map(java.util.Optional::get)
-        .map(user -> new UserBriefResp(user.getId(), user.getUsername(), user.getDisplayName(), true))
+    return hydrate(ids).stream()
+        .map(user -> new UserBriefResp(user.id(), user.username(), user.displayName(), true))
         .toList();
   }
 
+  public record FollowStatsResp(int followers, int following, boolean followedByMe, boolean followsMe) {}
+
+  /** 关注/粉丝数，以及当前用户与对方的互相关注状态（内存索引，不查库） */
+  @GetMapping("/users/{id}/follow-stats")
+  public FollowStatsResp followStats(@PathVariable Long id, Authentication auth) {
+    Long me = (auth != null && auth.getPrincipal() instanceof AuthUser u) ? u.id() : null;
+    return new FollowStatsResp(
+        followGraph.followerCount(id),
+        followGraph.followingCount(id),
+        me != null && followGraph.follows(me, id),
+        me != null && followGraph.follows(id, me));
+  }
+
+  /** 某用户的粉丝（按用户 id 游标分页；cursor 为空串表示第一页） */
+  @GetMapping("/users/{id}/followers")
+  public CursorResp<UserBriefResp> followers(
+      @PathVariable Long id,
+      Authentication auth,
+      @RequestParam(defaultValue = "") String cursor,
+      @RequestParam(defaultValue = "20") int size) {
+    int limit = Math.max(1, Math.min(size, 50));
+    return userPage(followGraph.followers(id, afterId(cursor), limit + 1), limit, auth);
+  }
+
+  /** 某用户关注的人（分页方式同上） */
+  @GetMapping("/users/{id}/followings")
+  public CursorResp<UserBriefResp> followings(
+      @PathVariable Long id,
+      Authentication auth,
+      @RequestParam(defaultValue = "") String cursor,
+      @RequestParam(defaultValue = "20") int size) {
+    int limit = Math.max(1, Math.min(size, 50));
+    return userPage(followGraph.following(id, afterId(cursor), limit + 1), limit, auth);
+  }
+
+  public record SuggestedUserResp(Long id, String username, String displayName, int mutualCount) {}
+
+  /** 可能感兴趣的人：你关注的人还关注了谁，按分类偏好加权（结果按用户缓存） */
+  @GetMapping("/me/suggested-follows")
+  public List<SuggestedUserResp> suggestedFollows(
+      Authentication auth, @RequestParam(defaultValue = "10") int size) {
+    AuthUser u = mustAuth(auth);
+    List<FollowSuggestions.Suggestion> items = followSuggestions.suggest(u.id(), Math.max(1, Math.min(size, 50)));
+    Map<Long, Integer> mutual = items.stream()
+        .collect(Collectors.toMap(FollowSuggestions.Suggestion::userId, FollowSuggestions.Suggestion::mutualCount));
+    return hydrate(items.stream().map(FollowSuggestions.Suggestion::userId).toList()).stream()
+        .filter(user -> user.status() == 0 && user.isEnabled())
+        .map(user -> new SuggestedUserResp(user.id(), user.username(), user.displayName(), mutual.get(user.id())))
+        .toList();
+  }
+
+  private static Long afterId(String cursor) {
+    if (cursor == null || cursor.isBlank()) {
+      return null;
+    }
+    try {
+      return Long.parseLong(cursor);
+    } catch (NumberFormatException e) {
+      throw new ApiException(HttpStatus.BAD_REQUEST, "无效的分页游标");
+    }
+  }
+
+  private CursorResp<UserBriefResp> userPage(long[] ids, int limit, Authentication auth) {
+    boolean hasNext = ids.length > limit;
+    List<Long> page = Arrays.stream(ids, 0, Math.min(ids.length, limit)).boxed().toList();
+    Long me = (auth != null && auth.getPrincipal() instanceof AuthUser u) ? u.id() : null;
+    List<UserBriefResp> items = hydrate(page).stream()
+        .map(user -> new UserBriefResp(
+            user.id(),
+            user.username(),
+            user.displayName(),
+            me != null && followGraph.follows(me, user.id())))
+        .toList();
+    return new CursorResp<>(items, hasNext ? String.valueOf(page.get(page.size() - 1)) : null, hasNext);
+  }
+
+  /** 经 UserSummaryCache 批量取用户摘要，按 ids 顺序返回（不存在的跳过） */
+  private List<UserSummary> hydrate(List<Long> ids) {
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+    Map<Long, UserSummary> byId = userSummaries.getAll(ids);
+    return ids.stream().map(byId::get).filter(java.util.Objects::nonNull).toList();
+  }
+
   public record GuideCardResp(
       Long id,
       Long authorId,
@@ -88,35 +180,53 @@ public class FollowController {
       String authorName,
       String createdAt,
       long likeCount,
-      long favoriteCount) {}
+      long favoriteCount,
+      long commentCount) {}
 
+  /** 关注动态（偏移分页，兼容旧客户端；最多翻到收件箱容量） */
+  @QueryBudget(4)
   @GetMapping("/me/feed")
   public List<GuideCardResp> feed(
       Authentication auth,
       @RequestParam(defaultValue = "0") int page,
       @RequestParam(defaultValue = "20") int size) {
     AuthUser u = mustAuth(auth);
-    List<Long> authorIds = followRepo.findByUserIdOrderByCreatedAtDesc(u.id()).stream()
-        .map(Follow::getFollowUserId)
-        .toList();
-    if (authorIds.isEmpty()) return List.of();
-    PageRequest pr = PageRequest.of(page, size);
-    return guideRepo.findByAuthor_IdInAndDeletedFalseOrderByCreatedAtDesc(authorIds, pr).stream()
-        .map(g -> new GuideCardResp(
-            g.getId(),
-            g.getAuthor().getId(),
-            g.getTitle(),
-            g.getCategory(),
-            g.getAuthor().getDisplayNamePublic(),
-            g.getCreatedAt().toString(),
-            guideService.countLikesByGuideId(g.getId()),
-            guideService.countFavoritesByGuideId(g.getId())))
-        .toList();
+    int limit = Math.max(1, Math.min(size, 50));
+    List<GuideCardView> rows = feedTimeline.page(u.id(), Math.max(page, 0), limit);
+    Map<Long, UserSummary> authors = userSummaries.getAll(rows.stream().map(GuideCardView::authorId).toList());
+    return rows.stream().map(v -> toCard(v, authors)).toList();
+  }
+
+  /** 关注动态（游标分页，不做 count） */
+  @GetMapping(value = "/me/feed", params = "cursor")
+  public CursorResp<GuideCardResp> feedByCursor(
+      Authentication auth,
+      @RequestParam String cursor,
+      @RequestParam(defaultValue = "20") int size) {
+    AuthUser u = mustAuth(auth);
+    int limit = Math.max(1, Math.min(size, 50));
+    PageCursor c = PageCursor.decode(cursor);
+    List<GuideCardView> rows = feedTimeline.seek(u.id(), c.ts(), c.id(), limit + 1);
+    Map<Long, UserSummary> authors = userSummaries.getAll(rows.stream().map(GuideCardView::authorId).toList());
+    return CursorResp.of(rows, limit, v -> PageCursor.encode(v.createdAt(), v.id()), v -> toCard(v, authors));
+  }
+
+  private static GuideCardResp toCard(GuideCardView v, Map<Long, UserSummary> authors) {
+    return new GuideCardResp(
+        v.id(),
+        v.authorId(),
+        v.title(),
+        v.category(),
+        UserSummaryCache.publicName(authors.get(v.authorId())),
+        v.createdAt().toString(),
+        v.likes(),
+        v.favorites(),
+        v.comments());
   }
 
   @GetMapping("/users/{id}/following")
   public boolean isFollowing(@PathVariable Long id, Authentication auth) {
     if (auth == null || !(auth.getPrincipal() instanceof AuthUser u)) return false;
-    return followService.existsByUserIdAndFollowUserId(u.id(), id);
+    return followGraph.follows(u.id(), id);
   }
 }
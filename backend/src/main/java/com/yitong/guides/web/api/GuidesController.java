@@ -4,10 +4,18 @@ import com.yitong.guides.domain.Comment;
 import com.yitong.guides.domain.Guide;
 import com.yitong.guides.domain.GuideCategory;
 import com.yitong.guides.domain.StudyCheckIn;
+import com.yitong.guides.metrics.QueryBudget;
 import com.yitong.guides.repo.CommentRepository;
+import com.yitong.guides.repo.CommentView;
+import com.yitong.guides.repo.GuideCardView;
+import com.yitong.guides.repo.GuideDetailView;
 import com.yitong.guides.repo.StudyCheckInRepository;
+import com.yitong.guides.repo.UserSummary;
 import com.yitong.guides.security.AuthUser;
+import com.yitong.guides.service.GuideDetailCache;
 import com.yitong.guides.service.GuideService;
+import com.yitong.guides.service.UserSummaryCache;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
@@ -16,10 +24,13 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -31,6 +42,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/api/guides")
@@ -38,14 +50,17 @@ public class GuidesController {
   private final GuideService guideService;
   private final CommentRepository commentRepo;
   private final StudyCheckInRepository checkInRepo;
+  private final UserSummaryCache userSummaries;
 
   public GuidesController(
       GuideService guideService,
       CommentRepository commentRepo,
-      StudyCheckInRepository checkInRepo) {
+      StudyCheckInRepository checkInRepo,
+      UserSummaryCache userSummaries) {
     this.guideService = guideService;
     this.commentRepo = commentRepo;
     this.checkInRepo = checkInRepo;
+    this.userSummaries = userSummaries;
   }
 
   private static AuthUser mustAuth(Authentication auth) {
@@ -64,7 +79,8 @@ public class GuidesController {
       String authorName,
       String createdAt,
       long likeCount,
-      long favoriteCount) {}
+      long favoriteCount,
+      long commentCount) {}
 
   public record GuideDetailResp(
       Long id,
@@ -83,6 +99,7 @@ public class GuidesController {
       long checkinCount,
       boolean checkinToday) {}
 
+  @QueryBudget(4)
   @GetMapping
   public Page<GuideCardResp> list(
       @RequestParam(required = false) GuideCategory category,
@@ -90,56 +107,123 @@ public class GuidesController {
       @RequestParam(defaultValue = "0") @Min(0) int page,
       @RequestParam(defaultValue = "10") @Min(1) @Max(50) int size,
       @RequestParam(defaultValue = "latest") String sort) {
+    boolean search = q != null && !q.isBlank();
+    if ("hot".equalsIgnoreCase(sort) && !search) {
+      return toCards(guideService.hot(category, PageRequest.of(page, size)));
+    }
     Sort s = Sort.by(Sort.Direction.DESC, "createdAt");
     if ("updated".equalsIgnoreCase(sort)) {
       s = Sort.by(Sort.Direction.DESC, "updatedAt");
     }
     PageRequest pr = PageRequest.of(page, size, s);
-    Page<Guide> p = guideService.search(category, q, pr);
-    return p.map(
-        g ->
-            new GuideCardResp(
-                g.getId(),
-                g.getAuthor().getId(),
-                g.getTitle(),
-                g.getCategory(),
-                g.getTemplateKey(),
-                g.getAuthor().getDisplayNamePublic(),
-                g.getCreatedAt().toString(),
-                guideService.countLikesByGuideId(g.getId()),
-                guideService.countFavoritesByGuideId(g.getId())));
+    return toCards(guideService.search(category, q, pr));
   }
 
+  /** 游标分页版列表（不返回总数）：首屏传空 cursor，之后传上一页返回的 nextCursor */
+  @QueryBudget(3)
+  @GetMapping(params = "cursor")
+  public CursorResp<GuideCardResp> listByCursor(
+      @RequestParam(required = false) GuideCategory category,
+      @RequestParam(required = false) String q,
+      @RequestParam String cursor,
+      @RequestParam(defaultValue = "10") @Min(1) @Max(50) int size,
+      @RequestParam(defaultValue = "latest") String sort) {
+    if (q != null && !q.isBlank()) {
+      throw new ApiException(HttpStatus.BAD_REQUEST, "搜索结果按相关度排序，不支持游标分页");
+    }
+    if ("hot".equalsIgnoreCase(sort)) {
+      throw new ApiException(HttpStatus.BAD_REQUEST, "热门排序不支持游标分页");
+    }
+    boolean byUpdated = "updated".equalsIgnoreCase(sort);
+    PageCursor c = PageCursor.decode(cursor);
+    List<GuideCardView> rows = guideService.seek(category, byUpdated, c.ts(), c.id(), size);
+    Map<Long, UserSummary> authors = userSummaries.getAll(rows.stream().map(GuideCardView::authorId).toList());
+    return CursorResp.of(
+        rows,
+        size,
+        v -> PageCursor.encode(byUpdated ? v.updatedAt() : v.createdAt(), v.id()),
+        v -> toCard(v, authors));
+  }
+
+  /** 本页作者一次批量取回后再组装卡片 */
+  private Page<GuideCardResp> toCards(Page<GuideCardView> page) {
+    Map<Long, UserSummary> authors =
+        userSummaries.getAll(page.getContent().stream().map(GuideCardView::authorId).toList());
+    return page.map(v -> toCard(v, authors));
+  }
+
+  private static GuideCardResp toCard(GuideCardView v, Map<Long, UserSummary> authors) {
+    return new GuideCardResp(
+        v.id(),
+        v.authorId(),
+        v.title(),
+        v.category(),
+        v.templateKey(),
+        UserSummaryCache.publicName(authors.get(v.authorId())),
+        v.createdAt().toString(),
+        v.likes(),
+        v.favorites(),
+        v.comments());
+  }
+
+  /**
+   * 详情：公共部分走缓存；ETag 由缓存项推导，登录用户再拼上用户 id 与当天日期（今日打卡状态按天变化）。
+   * 查看者自己的点赞/收藏/打卡同样会让缓存项失效，所以 If-None-Match 命中时无需查库即可返回 304。
+   * 写后合并模式下尚未落库的点赞/收藏不影响缓存项，因此另把积压状态拼进 ETag。
+   * 作者展示名不在缓存项里，取自 UserSummaryCache，其哈希同样拼进 ETag，改名后立即生效。
+   */
+  @QueryBudget(5)
   @GetMapping("/{id}")
-  public GuideDetailResp detail(@PathVariable Long id, Authentication auth) {
-    Guide g = guideService.getByIdWithAuthor(id);
-    long likeCount = guideService.countLikesByGuideId(id);
-    long favoriteCount = guideService.countFavoritesByGuideId(id);
-    boolean liked = false;
-    boolean favorited = false;
-    boolean checkinToday = false;
-    if (auth != null && auth.getPrincipal() instanceof AuthUser u) {
-      liked = guideService.existsLike(u.id(), id);
-      favorited = guideService.existsFavorite(u.id(), id);
-      checkinToday = checkInRepo.findByUserIdAndGuideIdAndDay(u.id(), id, LocalDate.now()).isPresent();
+  public ResponseEntity<GuideDetailResp> detail(
+      @PathVariable Long id, Authentication auth, WebRequest request) {
+    GuideDetailCache.Entry entry = guideService.getDetailCached(id);
+    String authorName = UserSummaryCache.publicName(userSummaries.get(entry.view().authorId()));
+    Long viewerId = (auth != null && auth.getPrincipal() instanceof AuthUser u) ? u.id() : null;
+    String etag =
+        "\""
+            + entry.etag()
+            + "-"
+            + Integer.toHexString(authorName.hashCode())
+            + (viewerId == null
+                ? ""
+                : "-u" + viewerId + "-" + LocalDate.now() + guideService.pendingTag(id, viewerId))
+            + "\"";
+    if (request.checkNotModified(etag)) {
+      return null;
     }
-    long checkinCount = guideService.countDistinctUserIdByGuideId(id);
+    GuideService.ViewerFlags flags =
+        viewerId == null ? GuideService.ViewerFlags.NONE : guideService.viewerFlags(id, viewerId);
+    CacheControl cc = viewerId == null ? CacheControl.noCache() : CacheControl.noCache().cachePrivate();
+    return ResponseEntity.ok().eTag(etag).cacheControl(cc).body(toDetail(entry.view(), authorName, flags));
+  }
+
+  private static GuideDetailResp toDetail(GuideDetailView v, String authorName, GuideService.ViewerFlags flags) {
     return new GuideDetailResp(
-        g.getId(),
-        g.getAuthor().getId(),
-        g.getTitle(),
-        g.getCategory(),
-        g.getTemplateKey(),
-        g.getContentMarkdown(),
-        g.getAuthor().getDisplayNamePublic(),
-        g.getCreatedAt().toString(),
-        g.getUpdatedAt().toString(),
-        likeCount,
-        favoriteCount,
-        liked,
-        favorited,
-        checkinCount,
-        checkinToday);
+        v.id(),
+        v.authorId(),
+        v.title(),
+        v.category(),
+        v.templateKey(),
+        v.contentMarkdown(),
+        authorName,
+        v.createdAt().toString(),
+        v.updatedAt().toString(),
+        v.likes(),
+        v.favorites(),
+        flags.liked(),
+        flags.favorited(),
+        v.checkins(),
+        flags.checkinToday());
+  }
+
+  public record ViewerStateReq(@NotNull @Size(max = 100) List<@NotNull Long> ids) {}
+
+  /** 卡片列表的查看者状态：一次请求取回最多 100 篇攻略的点赞/收藏/今日打卡/关注作者标记 */
+  @PostMapping("/viewer-state")
+  public List<GuideService.ViewerState> viewerState(
+      @Valid @RequestBody ViewerStateReq req, Authentication auth) {
+    AuthUser u = mustAuth(auth);
+    return guideService.viewerStates(req.ids(), u.id());
   }
 
   public record UpsertGuideReq(
@@ -158,7 +242,23 @@ public class GuidesController {
         req.category(),
         req.templateKey(),
         req.contentMarkdown());
-    return detail(saved.getId(), auth);
+    // 新建攻略没有任何互动，直接由保存结果组装，不再回查详情
+    return new GuideDetailResp(
+        saved.getId(),
+        saved.getAuthor().getId(),
+        saved.getTitle(),
+        saved.getCategory(),
+        saved.getTemplateKey(),
+        saved.getContentMarkdown(),
+        saved.getAuthor().getDisplayNamePublic(),
+        saved.getCreatedAt().toString(),
+        saved.getUpdatedAt().toString(),
+        0,
+        0,
+        false,
+        false,
+        0,
+        false);
   }
 
   @PutMapping("/{id}")
@@ -172,7 +272,9 @@ public class GuidesController {
         req.category(),
         req.templateKey(),
         req.contentMarkdown());
-    return detail(id, auth);
+    GuideDetailView v = guideService.getDetailView(id);
+    String authorName = UserSummaryCache.publicName(userSummaries.get(v.authorId()));
+    return toDetail(v, authorName, guideService.viewerFlags(id, u.id()));
   }
 
   @DeleteMapping("/{id}")
@@ -213,14 +315,48 @@ public class GuidesController {
   public record CommentResp(Long id, String userName, String content, String createdAt) {}
   public record CreateCommentReq(@NotBlank @Size(max = 800) String content) {}
 
+  /** 不带 cursor 的旧版评论列表最多返回的条数 */
+  static final int LEGACY_COMMENT_LIMIT = 50;
+
+  /**
+   * 旧版评论列表（兼容未升级的客户端，已由游标分页取代）：只返回最早的 {@value #LEGACY_COMMENT_LIMIT} 条，
+   * 不再随评论数无界增长；还有更多时在响应头 X-Next-Cursor 给出游标，可接着用游标分页接口读取。
+   */
+  @QueryBudget(4)
   @GetMapping("/{id}/comments")
-  public List<CommentResp> listComments(@PathVariable Long id) {
+  public List<CommentResp> listComments(@PathVariable Long id, HttpServletResponse response) {
     if (!guideService.existsById(id)) {
       throw new ApiException(HttpStatus.NOT_FOUND, "攻略不存在");
     }
-    return commentRepo.findByGuideIdOrderByCreatedAtAsc(id).stream()
-        .map(c -> new CommentResp(c.getId(), c.getUser().getDisplayNamePublic(), c.getContent(), c.getCreatedAt().toString()))
-        .toList();
+    List<CommentView> rows =
+        commentRepo.seekByGuideId(id, null, null, PageRequest.of(0, LEGACY_COMMENT_LIMIT + 1));
+    Map<Long, UserSummary> users = userSummaries.getAll(rows.stream().map(CommentView::userId).toList());
+    CursorResp<CommentResp> page = CursorResp.of(
+        rows, LEGACY_COMMENT_LIMIT, v -> PageCursor.encode(v.createdAt(), v.id()), v -> toComment(v, users));
+    if (page.hasNext()) {
+      response.setHeader("X-Next-Cursor", page.nextCursor());
+    }
+    return page.items();
+  }
+
+  /** 评论游标分页（按时间正序）：cursor 为空串表示第一页，后续传上一页返回的 nextCursor */
+  @GetMapping(value = "/{id}/comments", params = "cursor")
+  public CursorResp<CommentResp> listCommentsByCursor(
+      @PathVariable Long id,
+      @RequestParam String cursor,
+      @RequestParam(defaultValue = "20") @Min(1) @Max(50) int size) {
+    PageCursor c = PageCursor.decode(cursor);
+    if (!guideService.existsById(id)) {
+      throw new ApiException(HttpStatus.NOT_FOUND, "攻略不存在");
+    }
+    List<CommentView> rows = commentRepo.seekByGuideId(id, c.ts(), c.id(), PageRequest.of(0, size + 1));
+    Map<Long, UserSummary> users = userSummaries.getAll(rows.stream().map(CommentView::userId).toList());
+    return CursorResp.of(rows, size, v -> PageCursor.encode(v.createdAt(), v.id()), v -> toComment(v, users));
+  }
+
+  private static CommentResp toComment(CommentView v, Map<Long, UserSummary> users) {
+    return new CommentResp(
+        v.id(), UserSummaryCache.publicName(users.get(v.userId())), v.content(), v.createdAt().toString());
   }
 
   @PostMapping("/{id}/comments")
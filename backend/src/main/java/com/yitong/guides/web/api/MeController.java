@@ -1,15 +1,19 @@
 package com.yitong.guides.web.api;
 
-import com.yitong.guides.domain.Guide;
 import com.yitong.guides.domain.GuideFavorite;
 import com.yitong.guides.domain.StudyCheckIn;
 import com.yitong.guides.domain.User;
+import com.yitong.guides.metrics.QueryBudget;
+import com.yitong.guides.repo.GuideCardView;
 import com.yitong.guides.repo.GuideFavoriteRepository;
 import com.yitong.guides.repo.GuideRepository;
 import com.yitong.guides.repo.StudyCheckInRepository;
 import com.yitong.guides.security.AuthUser;
+import com.yitong.guides.security.JwtService;
 import com.yitong.guides.service.UserService;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import java.util.List;
@@ -22,6 +26,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -32,16 +37,19 @@ public class MeController {
   private final GuideRepository guideRepo;
   private final GuideFavoriteRepository favoriteRepo;
   private final StudyCheckInRepository checkInRepo;
+  private final JwtService jwtService;
 
   public MeController(
       UserService userService,
       GuideRepository guideRepo,
       GuideFavoriteRepository favoriteRepo,
-      StudyCheckInRepository checkInRepo) {
+      StudyCheckInRepository checkInRepo,
+      JwtService jwtService) {
     this.userService = userService;
     this.guideRepo = guideRepo;
     this.favoriteRepo = favoriteRepo;
     this.checkInRepo = checkInRepo;
+    this.jwtService = jwtService;
   }
 
   private static AuthUser mustAuth(Authentication auth) {
@@ -76,11 +84,16 @@ public class MeController {
       @NotBlank String oldPassword,
       @NotBlank @Size(min = 6, max = 72) String newPassword) {}
 
+  public record PasswordChangedResp(String token) {}
+
+  /** 修改密码会让已签发的令牌全部失效，响应中带回新令牌，当前会话换用它继续 */
   @PatchMapping("/password")
-  @ResponseStatus(HttpStatus.NO_CONTENT)
-  public void updatePassword(Authentication auth, @Valid @RequestBody UpdatePasswordReq req) {
+  public PasswordChangedResp updatePassword(Authentication auth, @Valid @RequestBody UpdatePasswordReq req) {
     AuthUser u = mustAuth(auth);
-    userService.updatePassword(u.id(), req.oldPassword(), req.newPassword());
+    User user = userService.updatePassword(u.id(), req.oldPassword(), req.newPassword());
+    String roleName = user.getRole() != null ? user.getRole().name() : "USER";
+    return new PasswordChangedResp(
+        jwtService.issueToken(user.getId(), user.getUsername(), roleName, user.getTokenVersion()));
   }
 
   public record GuideSimpleResp(Long id, String title, String createdAt) {}
@@ -89,20 +102,45 @@ public class MeController {
   public List<GuideSimpleResp> myGuides(Authentication auth) {
     AuthUser u = mustAuth(auth);
     return guideRepo.findByAuthorIdAndDeletedFalseOrderByCreatedAtDesc(u.id(), PageRequest.of(0, 50)).stream()
-        .map(g -> new GuideSimpleResp(g.getId(), g.getTitle(), g.getCreatedAt().toString()))
+        .map(MeController::toSimple)
         .toList();
   }
 
+  /** 我的攻略（游标分页，不做 count） */
+  @GetMapping(value = "/guides", params = "cursor")
+  public CursorResp<GuideSimpleResp> myGuidesByCursor(
+      Authentication auth,
+      @RequestParam String cursor,
+      @RequestParam(defaultValue = "20") @Min(1) @Max(50) int size) {
+    AuthUser u = mustAuth(auth);
+    PageCursor c = PageCursor.decode(cursor);
+    List<GuideCardView> rows = guideRepo.seekByAuthor(u.id(), c.ts(), c.id(), PageRequest.of(0, size + 1));
+    return CursorResp.of(rows, size, v -> PageCursor.encode(v.createdAt(), v.id()), MeController::toSimple);
+  }
+
+  private static GuideSimpleResp toSimple(GuideCardView v) {
+    return new GuideSimpleResp(v.id(), v.title(), v.createdAt().toString());
+  }
+
+  /** 按 id 批量取未删除攻略的卡片（一条 IN 查询，不加载正文） */
+  private Map<Long, GuideCardView> visibleCards(List<Long> ids) {
+    if (ids.isEmpty()) {
+      return Map.of();
+    }
+    return guideRepo.findCardsByIdIn(ids).stream()
+        .collect(Collectors.toMap(GuideCardView::id, v -> v));
+  }
+
+  @QueryBudget(3)
   @GetMapping("/favorites")
   public List<GuideSimpleResp> myFavorites(Authentication auth) {
     AuthUser u = mustAuth(auth);
     List<Long> ids = favoriteRepo.findByUserIdOrderByCreatedAtDesc(u.id()).stream().map(GuideFavorite::getGuideId).toList();
+    Map<Long, GuideCardView> cards = visibleCards(ids);
     return ids.stream()
-        .map(guideRepo::findById)
-        .filter(java.util.Optional::isPresent)
-        .map(java.util.Optional::get)
-        .filter(g -> !g.isDeleted())
-        .map(g -> new GuideSimpleResp(g.getId(), g.getTitle(), g.getCreatedAt().toString()))
+        .map(cards::get)
+        .filter(java.util.Objects::nonNull)
+        .map(MeController::toSimple)
         .toList();
   }
 
@@ -114,18 +152,13 @@ public class MeController {
     AuthUser u = mustAuth(auth);
     List<StudyCheckIn> list = checkInRepo.findByUserIdOrderByCreatedAtDesc(u.id(), PageRequest.of(0, 200)).getContent();
     List<Long> guideIds = list.stream().map(StudyCheckIn::getGuideId).distinct().toList();
-    Map<Long, Guide> guides = guideIds.stream()
-        .map(guideRepo::findById)
-        .filter(java.util.Optional::isPresent)
-        .map(java.util.Optional::get)
-        .filter(g -> !g.isDeleted())
-        .collect(Collectors.toMap(Guide::getId, g -> g));
+    Map<Long, GuideCardView> guides = visibleCards(guideIds);
     return list.stream()
         .filter(c -> guides.containsKey(c.getGuideId()))
         .map(c -> new CheckInRecordResp(
             c.getId(),
             c.getGuideId(),
-            guides.get(c.getGuideId()).getTitle(),
+            guides.get(c.getGuideId()).title(),
             c.getDay().toString(),
             c.getCreatedAt().toString()))
         .toList();
@@ -0,0 +1,35 @@
+package com.yitong.guides.web.api;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import org.springframework.http.HttpStatus;
+
+/**
+ * 游标分页的续读位置：(时间, id)。对外编码为不透明的 base64url 字符串，
+ * 空字符串表示从第一页开始。
+ */
+public record PageCursor(Instant ts, Long id) {
+  public static final PageCursor FIRST = new PageCursor(null, null);
+
+  public static PageCursor decode(String token) {
+    if (token == null || token.isBlank()) {
+      return FIRST;
+    }
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      int colon = raw.indexOf(':');
+      int dot = raw.indexOf('.');
+      long seconds = Long.parseLong(raw.substring(0, dot));
+      long nanos = Long.parseLong(raw.substring(dot + 1, colon));
+      return new PageCursor(Instant.ofEpochSecond(seconds, nanos), Long.valueOf(raw.substring(colon + 1)));
+    } catch (RuntimeException e) {
+      throw new ApiException(HttpStatus.BAD_REQUEST, "无效的分页游标");
+    }
+  }
+
+  public static String encode(Instant ts, Long id) {
+    String raw = ts.getEpochSecond() + "." + ts.getNano() + ":" + id;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+}
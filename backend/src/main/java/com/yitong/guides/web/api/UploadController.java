@@ -1,15 +1,14 @@
 package com.yitong.guides.web.api;
 
+import com.yitong.guides.upload.ImageDerivatives;
+import com.yitong.guides.upload.UploadStorage;
+import jakarta.servlet.http.HttpServletRequest;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Set;
-import java.util.UUID;
+import java.io.InputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -22,49 +21,53 @@ public class UploadController {
 
   private static final Logger log = LoggerFactory.getLogger(UploadController.class);
 
-  /** 允许的图片扩展名（小写），用于过滤 contentType 解析结果，避免非法路径 */
-  private static final Set<String> ALLOWED_IMAGE_EXT =
-      Set.of("jpg", "jpeg", "png", "gif", "webp", "bmp", "ico");
+  private final UploadStorage storage;
+  private final ImageDerivatives derivatives;
 
-  @Value("${app.upload.dir:./uploads}")
-  private String uploadDir;
+  public UploadController(UploadStorage storage, ImageDerivatives derivatives) {
+    this.storage = storage;
+    this.derivatives = derivatives;
+  }
 
-  @PostMapping("/upload")
+  /** 表单上传（兼容旧客户端）：同样按文件头识别格式，客户端 Content-Type 与文件名只作参考 */
+  @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
   public UploadResp upload(@RequestParam("file") MultipartFile file) {
     if (file.isEmpty()) {
       throw new ApiException(HttpStatus.BAD_REQUEST, "请选择文件");
     }
-    String contentType = file.getContentType();
-    if (contentType == null || !contentType.toLowerCase().startsWith("image/")) {
-      throw new ApiException(HttpStatus.BAD_REQUEST, "仅支持图片");
-    }
-    // 去掉参数部分，例如 image/jpeg;charset=utf-8 -> image/jpeg
-    String mainType = contentType.split(";")[0].trim().toLowerCase();
-    if (!mainType.startsWith("image/")) {
-      throw new ApiException(HttpStatus.BAD_REQUEST, "仅支持图片");
-    }
-    String ext = mainType.substring("image/".length());
-    if (ext.isEmpty() || !ext.matches("[a-z]+")) {
-      throw new ApiException(HttpStatus.BAD_REQUEST, "不支持的图片类型");
-    }
-    if ("jpeg".equals(ext)) {
-      ext = "jpg";
-    }
-    if (!ALLOWED_IMAGE_EXT.contains(ext)) {
-      ext = "jpg";
+    storage.checkDeclaredLength(file.getSize());
+    try (InputStream in = file.getInputStream()) {
+      return stored(storage.store(in));
+    } catch (IOException e) {
+      log.error("上传失败: {}", e.getMessage(), e);
+      throw new ApiException(HttpStatus.INTERNAL_SERVER_ERROR, "上传失败");
     }
-    String filename = UUID.randomUUID().toString() + "." + ext;
-    try {
-      Path dir = Paths.get(uploadDir).toAbsolutePath().normalize();
-      Files.createDirectories(dir);
-      Path target = dir.resolve(filename);
-      file.transferTo(target);
-      return new UploadResp("/uploads/" + filename);
+  }
+
+  /**
+   * 流式上传：请求体即图片原始字节（Content-Type 为 image/* 或 application/octet-stream），
+   * 不经 multipart 解析与临时文件，边读边校验、计算摘要并写入上传目录。
+   */
+  @PostMapping(
+      value = "/upload",
+      consumes = {"image/*", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+  public UploadResp uploadStream(HttpServletRequest request) {
+    storage.checkDeclaredLength(request.getContentLengthLong());
+    try (InputStream in = request.getInputStream()) {
+      return stored(storage.store(in));
     } catch (IOException e) {
       log.error("上传失败: {}", e.getMessage(), e);
       throw new ApiException(HttpStatus.INTERNAL_SERVER_ERROR, "上传失败");
     }
   }
 
-  public record UploadResp(String url) {}
+  /** 原图已落盘即返回；多尺寸派生图在后台生成（同内容文件此前已生成过，不再重复） */
+  private UploadResp stored(UploadStorage.StoredFile f) {
+    if (!f.deduplicated()) {
+      derivatives.submit(storage.dir().resolve(f.path()), f.type());
+    }
+    return new UploadResp("/uploads/" + f.path(), f.size(), f.sha256());
+  }
+
+  public record UploadResp(String url, long size, String sha256) {}
 }
@@ -0,0 +1,27 @@
+package com.yitong.guides.web.api;
+
+import com.yitong.guides.upload.UploadFileServer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/** 上传文件下载（取代原先的静态资源映射），缓存头、Range 与零拷贝输出见 UploadFileServer */
+@RestController
+public class UploadFilesController {
+  private static final String PREFIX = "/uploads/";
+
+  private final UploadFileServer server;
+
+  public UploadFilesController(UploadFileServer server) {
+    this.server = server;
+  }
+
+  @RequestMapping(value = "/uploads/**", method = {RequestMethod.GET, RequestMethod.HEAD})
+  public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String uri = request.getRequestURI().substring(request.getContextPath().length());
+    server.serve(uri.substring(PREFIX.length()), request, response);
+  }
+}
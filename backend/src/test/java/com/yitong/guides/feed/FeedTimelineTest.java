@@ -0,0 +1,128 @@
+package com.yitong.guides.feed;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.yitong.guides.domain.GuideCategory;
+import com.yitong.guides.domain.User;
+import com.yitong.guides.repo.GuideCardView;
+import com.yitong.guides.repo.UserRepository;
+import com.yitong.guides.service.FollowService;
+import com.yitong.guides.service.GuideService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * 关注动态：关注时回填、发布时推送、删除与取消关注时清理、按容量裁剪；粉丝数达到阈值的作者改为读扩散，
+ * 与此前推送的条目归并去重。阈值与容量调小，每个用例使用新建的用户。
+ */
+@SpringBootTest(properties = {"app.feed.inboxSize=4", "app.feed.pullThreshold=3", "app.feed.backfill=2"})
+@ActiveProfiles("test")
+class FeedTimelineTest {
+  private static final AtomicInteger USERS = new AtomicInteger();
+
+  @Autowired FeedTimeline feed;
+  @Autowired FollowService followService;
+  @Autowired GuideService guideService;
+  @Autowired UserRepository userRepository;
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  void followBackfillsPublishFansOutAndRemovalsClean() {
+    long author = user();
+    long reader = user();
+    post(author);
+    long g2 = post(author);
+    long g3 = post(author);
+
+    followService.follow(reader, author);
+    // 只回填最近 backfill 篇
+    assertThat(ids(feed.seek(reader, null, null, 10))).containsExactly(g3, g2);
+
+    long g4 = post(author);
+    assertThat(ids(feed.seek(reader, null, null, 10))).containsExactly(g4, g3, g2);
+    assertThat(inboxRows(reader)).isEqualTo(3);
+
+    guideService.delete(g3, author);
+    assertThat(ids(feed.seek(reader, null, null, 10))).containsExactly(g4, g2);
+    assertThat(jdbc.queryForObject("select count(*) from feed_entries where guide_id = ?", Long.class, g3)).isZero();
+
+    followService.unfollow(reader, author);
+    assertThat(feed.seek(reader, null, null, 10)).isEmpty();
+    assertThat(inboxRows(reader)).isZero();
+  }
+
+  @Test
+  void trimKeepsNewestInboxSizeEntries() {
+    long author = user();
+    long reader = user();
+    followService.follow(reader, author);
+    List<Long> posted = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      posted.add(post(author));
+    }
+    assertThat(inboxRows(reader)).isEqualTo(6);
+
+    feed.trim();
+
+    assertThat(inboxRows(reader)).isEqualTo(4);
+    List<Long> newest = new ArrayList<>(posted.subList(2, 6));
+    Collections.reverse(newest);
+    assertThat(ids(feed.page(reader, 0, 10))).isEqualTo(newest);
+    // 偏移分页最多翻到收件箱容量
+    assertThat(ids(feed.page(reader, 1, 2))).isEqualTo(newest.subList(2, 4));
+    assertThat(feed.page(reader, 2, 2)).isEmpty();
+  }
+
+  @Test
+  void popularAuthorSwitchesToPullAndMergesWithoutDuplicates() {
+    long author = user();
+    long early = user();
+    long g0 = post(author);
+    followService.follow(early, author);
+    followService.follow(user(), author);
+    long late = user();
+    // 第 3 个粉丝：作者达到阈值，改为读扩散，不再回填
+    followService.follow(late, author);
+    assertThat(inboxRows(late)).isZero();
+
+    long g1 = post(author);
+    assertThat(jdbc.queryForObject("select count(*) from feed_entries where guide_id = ?", Long.class, g1)).isZero();
+
+    // early 的收件箱里还有推送模式时回填的 g0，与读扩散的结果按 id 去重
+    assertThat(ids(feed.seek(early, null, null, 10))).containsExactly(g1, g0);
+    assertThat(ids(feed.seek(late, null, null, 10))).containsExactly(g1, g0);
+
+    // 游标续读：第二页从第一页最后一条之后开始
+    GuideCardView first = feed.seek(late, null, null, 1).get(0);
+    assertThat(first.id()).isEqualTo(g1);
+    assertThat(ids(feed.seek(late, first.createdAt(), first.id(), 10))).containsExactly(g0);
+  }
+
+  private long user() {
+    int n = USERS.incrementAndGet();
+    User u = new User();
+    u.setUsername("feed" + n + "_" + System.nanoTime() % 100000);
+    u.setPasswordHash("x");
+    u.setDisplayName("动态用户" + n);
+    return userRepository.save(u).getId();
+  }
+
+  private long post(long author) {
+    return guideService.create(author, "动态", GuideCategory.TRAVEL, null, "正文").getId();
+  }
+
+  private long inboxRows(long owner) {
+    return jdbc.queryForObject("select count(*) from feed_entries where owner_id = ?", Long.class, owner);
+  }
+
+  private static List<Long> ids(List<GuideCardView> rows) {
+    return rows.stream().map(GuideCardView::id).toList();
+  }
+}
@@ -0,0 +1,148 @@
+package com.yitong.guides.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.yitong.guides.repo.FollowRepository;
+import com.yitong.guides.service.FollowChangedEvent;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.PageRequest;
+
+/**
+ * 关注关系索引：就绪前查库、重建后的计数/判断/分页/抽样、增删幂等，
+ * 以及重建期间到达的变更在换上新索引前被重放，重建失败不丢变更。
+ */
+class FollowGraphTest {
+  private final FollowRepository follows = mock(FollowRepository.class);
+  private final FollowGraph graph = new FollowGraph(follows);
+
+  @Test
+  void queriesDatabaseUntilFirstRebuild() {
+    when(follows.existsByUserIdAndFollowUserId(1L, 2L)).thenReturn(true);
+    when(follows.countByFollowUserId(2L)).thenReturn(7L);
+    when(follows.findFollowingIdsAfter(1L, 0L, PageRequest.of(0, 10))).thenReturn(List.of(2L, 3L));
+
+    assertThat(graph.isReady()).isFalse();
+    assertThat(graph.follows(1, 2)).isTrue();
+    assertThat(graph.followerCount(2)).isEqualTo(7);
+    assertThat(graph.following(1, null, 10)).containsExactly(2, 3);
+
+    rebuild(edges(new long[] {1, 2}));
+    assertThat(graph.isReady()).isTrue();
+    assertThat(graph.followerCount(2)).isEqualTo(1);
+    verify(follows, never()).countByUserId(anyLong());
+  }
+
+  @Test
+  void rebuiltIndexAnswersCountsMembershipAndPages() {
+    // 按 id 乱序给出，重建后数组有序
+    rebuild(edges(new long[] {1, 9}, new long[] {1, 3}, new long[] {1, 5}, new long[] {1, 7}, new long[] {2, 9},
+        new long[] {3, 9}));
+
+    assertThat(graph.followingCount(1)).isEqualTo(4);
+    assertThat(graph.followerCount(9)).isEqualTo(3);
+    assertThat(graph.followerCount(42)).isZero();
+    assertThat(graph.follows(1, 5)).isTrue();
+    assertThat(graph.follows(5, 1)).isFalse();
+    assertThat(graph.following(1, null, 2)).containsExactly(3, 5);
+    assertThat(graph.following(1, 5L, 10)).containsExactly(7, 9);
+    // 游标 id 不在列表里时从下一个更大的 id 开始
+    assertThat(graph.following(1, 6L, 10)).containsExactly(7, 9);
+    assertThat(graph.following(1, 9L, 10)).isEmpty();
+    assertThat(graph.followers(9, null, 10)).containsExactly(1, 2, 3);
+    assertThat(graph.following(42, null, 10)).isEmpty();
+  }
+
+  @Test
+  void sampleFollowingIsEvenlySpacedWhenOverMax() {
+    List<Object[]> rows = new ArrayList<>();
+    for (long target = 100; target < 110; target++) {
+      rows.add(new Object[] {(long) rows.size() + 1, 1L, target});
+    }
+    rebuild(rows);
+
+    assertThat(graph.sampleFollowing(1, 20)).hasSize(10);
+    assertThat(graph.sampleFollowing(1, 5)).containsExactly(100, 102, 104, 106, 108);
+    assertThat(graph.sampleFollowing(2, 5)).isEmpty();
+  }
+
+  @Test
+  void incrementalChangesAreIdempotent() {
+    rebuild(edges(new long[] {1, 2}));
+
+    graph.onFollowChanged(new FollowChangedEvent(1L, 3L, true));
+    graph.onFollowChanged(new FollowChangedEvent(1L, 3L, true));
+    assertThat(graph.following(1, null, 10)).containsExactly(2, 3);
+    assertThat(graph.followerCount(3)).isEqualTo(1);
+
+    graph.onFollowChanged(new FollowChangedEvent(1L, 2L, false));
+    graph.onFollowChanged(new FollowChangedEvent(1L, 2L, false));
+    graph.onFollowChanged(new FollowChangedEvent(77L, 88L, false));
+    assertThat(graph.following(1, null, 10)).containsExactly(3);
+    assertThat(graph.followerCount(2)).isZero();
+    assertThat(graph.followingCount(77)).isZero();
+  }
+
+  @Test
+  void changesDuringRebuildAreReplayedOntoNewIndex() {
+    rebuild(edges(new long[] {1, 2}));
+    // 第二次重建读第一批时：4 关注了 5（不在这一批快照里），1 取消关注 2（快照里还有）
+    when(follows.findEdgesAfter(any(Long.class), any())).thenAnswer(inv -> {
+      if ((Long) inv.getArgument(0) > 0) {
+        return List.of();
+      }
+      graph.onFollowChanged(new FollowChangedEvent(4L, 5L, true));
+      graph.onFollowChanged(new FollowChangedEvent(1L, 2L, false));
+      return edges(new long[] {1, 2}, new long[] {3, 2});
+    });
+
+    graph.rebuild();
+
+    assertThat(graph.follows(4, 5)).isTrue();
+    assertThat(graph.follows(1, 2)).isFalse();
+    assertThat(graph.followers(2, null, 10)).containsExactly(3);
+    // 重放记录已清空：之后的变更只作用一次
+    graph.onFollowChanged(new FollowChangedEvent(6L, 2L, true));
+    assertThat(graph.followers(2, null, 10)).containsExactly(3, 6);
+  }
+
+  @Test
+  void failedRebuildKeepsOldIndexAndStopsRecording() {
+    rebuild(edges(new long[] {1, 2}));
+    when(follows.findEdgesAfter(any(Long.class), any())).thenThrow(new DataAccessResourceFailureException("连接中断"));
+
+    assertThatThrownBy(graph::rebuild).isInstanceOf(DataAccessResourceFailureException.class);
+    assertThat(graph.isReady()).isTrue();
+    graph.onFollowChanged(new FollowChangedEvent(1L, 3L, true));
+    assertThat(graph.following(1, null, 10)).containsExactly(2, 3);
+
+    // 恢复后重建以数据库为准
+    rebuild(edges(new long[] {1, 2}, new long[] {1, 3}, new long[] {2, 3}));
+    assertThat(graph.followerCount(3)).isEqualTo(2);
+  }
+
+  /** 每对 {userId, followUserId} 一行，行 id 从 1 递增 */
+  private static List<Object[]> edges(long[]... pairs) {
+    List<Object[]> rows = new ArrayList<>();
+    for (long[] p : pairs) {
+      rows.add(new Object[] {(long) rows.size() + 1, p[0], p[1]});
+    }
+    return rows;
+  }
+
+  private void rebuild(List<Object[]> rows) {
+    // doReturn：上一次可能把 findEdgesAfter 桩成了抛异常
+    doReturn(rows, List.of()).when(follows).findEdgesAfter(any(Long.class), any());
+    graph.rebuild();
+  }
+}
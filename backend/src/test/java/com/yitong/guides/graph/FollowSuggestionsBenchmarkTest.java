@@ -0,0 +1,105 @@
+package com.yitong.guides.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.yitong.guides.repo.FollowRepository;
+import com.yitong.guides.repo.GuideRepository;
+import com.yitong.guides.service.FollowChangedEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * 推荐关注的单次计算耗时（不命中缓存）。生成 1M 用户、约 20M 条关注的图（可用 -Dbench.users / -Dbench.edges 调整）：
+ * 每人关注数在 [0, 2×平均] 间均匀分布，被关注者按平方分布偏向小 id，形成少数“大 V”。
+ * 分类加权的两次查库由 mock 仓库代替，只测图遍历与排序。目标：p99 低于 50ms。
+ * 默认不运行：mvn test -Dbenchmark=true -Dtest=FollowSuggestionsBenchmarkTest
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class FollowSuggestionsBenchmarkTest {
+  private static final long WARMUP_NANOS = 2_000_000_000L;
+  private static final long MEASURE_NANOS = 5_000_000_000L;
+  private static final int BATCH = 5000;
+
+  @Test
+  void twoHopOnGeneratedGraph() {
+    int users = Integer.getInteger("bench.users", 1_000_000);
+    long edges = Long.getLong("bench.edges", 20_000_000L);
+    long buildStart = System.nanoTime();
+    FollowGraph graph = new FollowGraph(generated(users, edges));
+    graph.rebuild();
+    double buildSec = (System.nanoTime() - buildStart) / 1e9;
+
+    GuideRepository guides = mock(GuideRepository.class);
+    when(guides.countInteractedByCategory(anyLong())).thenReturn(List.of());
+    when(guides.countByAuthorAndCategory(any())).thenReturn(List.of());
+    FollowSuggestions suggestions = new FollowSuggestions(graph, guides, 200, 10000, 600, 0);
+    try {
+      SplittableRandom random = new SplittableRandom(42);
+      long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+      while (System.nanoTime() < warmupEnd) {
+        once(suggestions, random.nextLong(1, users + 1));
+      }
+      long[] samples = new long[1024];
+      int n = 0;
+      long end = System.nanoTime() + MEASURE_NANOS;
+      while (System.nanoTime() < end) {
+        long userId = random.nextLong(1, users + 1);
+        long start = System.nanoTime();
+        once(suggestions, userId);
+        if (n == samples.length) {
+          samples = Arrays.copyOf(samples, n * 2);
+        }
+        samples[n++] = System.nanoTime() - start;
+      }
+      long[] sorted = Arrays.copyOf(samples, n);
+      Arrays.sort(sorted);
+      System.out.printf(
+          "[suggest %d users, %d edges, build %.1fs] %d requests p50=%.2fms p99=%.2fms max=%.2fms%n",
+          users, edges, buildSec, n, pct(sorted, 0.50), pct(sorted, 0.99), sorted[n - 1] / 1e6);
+    } finally {
+      suggestions.shutdown();
+    }
+  }
+
+  /** 先让该用户的缓存失效，再取 20 条，保证每次都重新计算 */
+  private static void once(FollowSuggestions suggestions, long userId) {
+    suggestions.onFollowChanged(new FollowChangedEvent(userId, 0L, true));
+    assertThat(suggestions.suggest(userId, 20)).hasSizeLessThanOrEqualTo(20);
+  }
+
+  /** 按 id 分批吐出生成的关注关系，与 findEdgesAfter 的分页方式一致 */
+  private static FollowRepository generated(int users, long edges) {
+    double avg = (double) edges / users;
+    SplittableRandom random = new SplittableRandom(7);
+    long[] state = {1, 0}; // 下一个关注者、已生成的边数
+    FollowRepository repo = mock(FollowRepository.class);
+    when(repo.findEdgesAfter(anyLong(), any())).thenAnswer(inv -> {
+      List<Object[]> batch = new ArrayList<>(BATCH);
+      while (batch.size() < BATCH && state[0] <= users) {
+        long from = state[0]++;
+        int degree = (int) (random.nextDouble() * 2 * avg);
+        for (int i = 0; i < degree; i++) {
+          double r = random.nextDouble();
+          long to = 1 + (long) (r * r * users);
+          if (to != from) {
+            batch.add(new Object[] {++state[1], from, to});
+          }
+        }
+      }
+      return batch;
+    });
+    return repo;
+  }
+
+  private static double pct(long[] sorted, double p) {
+    return sorted[Math.max(0, (int) Math.ceil(sorted.length * p) - 1)] / 1e6;
+  }
+}
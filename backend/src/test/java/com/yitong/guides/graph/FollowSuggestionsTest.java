@@ -0,0 +1,167 @@
+package com.yitong.guides.graph;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.yitong.guides.domain.GuideCategory;
+import com.yitong.guides.graph.FollowSuggestions.Suggestion;
+import com.yitong.guides.repo.FollowRepository;
+import com.yitong.guides.repo.GuideRepository;
+import com.yitong.guides.service.FollowChangedEvent;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 二跳推荐：命中计数、排除自己与已关注、分类加权、关注变化时缓存失效，以及缓存对不同 limit 的复用规则。
+ * 关注图由 mock 仓库一次性重建。
+ */
+class FollowSuggestionsTest {
+  private final List<Object[]> edges = new ArrayList<>();
+  private FollowRepository follows;
+  private GuideRepository guides;
+  private FollowGraph graph;
+  private FollowSuggestions suggestions;
+
+  @BeforeEach
+  void setUp() {
+    follows = mock(FollowRepository.class);
+    guides = mock(GuideRepository.class);
+    when(guides.countInteractedByCategory(anyLong())).thenReturn(List.of());
+    when(guides.countByAuthorAndCategory(any())).thenReturn(List.of());
+    graph = new FollowGraph(follows);
+    suggestions = new FollowSuggestions(graph, guides, 200, 100, 600, 2);
+  }
+
+  @AfterEach
+  void tearDown() {
+    suggestions.shutdown();
+  }
+
+  @Test
+  void countsSecondHopAndExcludesSelfAndFollowed() {
+    edge(1, 2, 3, 4);
+    edge(2, 5, 6, 1);
+    edge(3, 5, 4, 7);
+    edge(4, 5, 6);
+    build();
+
+    List<Suggestion> out = suggestions.suggest(1, 10);
+
+    assertThat(out).extracting(Suggestion::userId).containsExactly(5L, 6L, 7L);
+    assertThat(out).extracting(Suggestion::mutualCount).containsExactly(3, 2, 1);
+  }
+
+  @Test
+  void wideFirstHopIsSplitAndMerged() {
+    // 40 个第一跳节点，超过拆分阈值，由多个子任务计数后合并
+    for (long f = 301; f <= 340; f++) {
+      edge(300, f);
+      edge(f, 500, f + 1000);
+    }
+    build();
+
+    List<Suggestion> out = suggestions.suggest(300, 5);
+
+    assertThat(out.get(0).userId()).isEqualTo(500L);
+    assertThat(out.get(0).mutualCount()).isEqualTo(40);
+    assertThat(out).hasSize(5).allMatch(s -> s.userId() != 300);
+  }
+
+  @Test
+  void categoryAffinityBreaksEqualCounts() {
+    edge(1, 2, 3);
+    edge(2, 6, 7);
+    edge(3, 6, 7);
+    build();
+    when(guides.countInteractedByCategory(1L)).thenReturn(rows(new Object[] {GuideCategory.STUDY, 4L}));
+    when(guides.countByAuthorAndCategory(any()))
+        .thenReturn(rows(new Object[] {6L, GuideCategory.GAME, 3L}, new Object[] {7L, GuideCategory.STUDY, 2L}));
+
+    List<Suggestion> out = suggestions.suggest(1, 10);
+
+    // 二者都被 2 人关注；7 只写学习类，与我的偏好完全契合，得分翻倍
+    assertThat(out).extracting(Suggestion::userId).containsExactly(7L, 6L);
+    assertThat(out.get(0).score()).isEqualTo(4.0);
+    assertThat(out.get(1).score()).isEqualTo(2.0);
+  }
+
+  @Test
+  void ownFollowChangeInvalidatesCache() {
+    edge(1, 2);
+    edge(2, 5);
+    edge(8, 9);
+    build();
+    assertThat(suggestions.suggest(1, 10)).extracting(Suggestion::userId).containsExactly(5L);
+
+    // 只更新关注图时仍用缓存，但读取时会滤掉刚关注的人
+    follow(1, 5, false);
+    assertThat(suggestions.suggest(1, 10)).isEmpty();
+
+    follow(1, 8, true);
+    assertThat(suggestions.suggest(1, 10)).extracting(Suggestion::userId).containsExactly(9L);
+  }
+
+  @Test
+  void cachedResultCoversSmallerLimitsAndShortLists() {
+    edge(100, 101);
+    for (long c = 200; c < 230; c++) {
+      edge(101, c);
+    }
+    edge(1, 2);
+    edge(2, 5, 6, 7);
+    build();
+
+    // 至少按 20 条计算；不超过 20 的 limit 复用缓存，更大的重新计算
+    assertThat(suggestions.suggest(100, 5)).hasSize(5);
+    assertThat(suggestions.suggest(100, 20)).hasSize(20);
+    verify(guides, times(1)).countInteractedByCategory(100L);
+    assertThat(suggestions.suggest(100, 25)).hasSize(25);
+    verify(guides, times(2)).countInteractedByCategory(100L);
+
+    // 候选不足 computedFor 条说明已全部列出，更大的 limit 也不必重算
+    assertThat(suggestions.suggest(1, 10)).hasSize(3);
+    assertThat(suggestions.suggest(1, 50)).hasSize(3);
+    verify(guides, times(1)).countInteractedByCategory(1L);
+  }
+
+  @Test
+  void emptyUntilGraphIsReady() {
+    edge(1, 2);
+    edge(2, 5);
+    assertThat(suggestions.suggest(1, 10)).isEmpty();
+    build();
+    assertThat(suggestions.suggest(1, 10)).extracting(Suggestion::userId).containsExactly(5L);
+  }
+
+  private void edge(long from, long... to) {
+    for (long t : to) {
+      edges.add(new Object[] {(long) edges.size() + 1, from, t});
+    }
+  }
+
+  private void build() {
+    when(follows.findEdgesAfter(anyLong(), any())).thenReturn(List.copyOf(edges), List.of());
+    graph.rebuild();
+  }
+
+  /** 关注变化事件依次送到关注图与推荐缓存（与事务提交后的监听顺序无关） */
+  private void follow(long userId, long targetId, boolean invalidate) {
+    FollowChangedEvent event = new FollowChangedEvent(userId, targetId, true);
+    graph.onFollowChanged(event);
+    if (invalidate) {
+      suggestions.onFollowChanged(event);
+    }
+  }
+
+  private static List<Object[]> rows(Object[]... rows) {
+    return List.of(rows);
+  }
+}
@@ -0,0 +1,120 @@
+package com.yitong.guides.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yitong.guides.web.api.GuidesController;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * test profile 下 app.sqlstats.budget.enforce 为 true：接口在预算内正常返回，预算调低到实际语句数以下时请求失败。
+ * 注解值无法在运行时修改，调低的预算由 {@link LoweredBudgetController} 承担——它以更低的 @QueryBudget 执行与列表接口相同的处理。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(QueryBudgetEnforcementTest.LoweredBudgetController.class)
+class QueryBudgetEnforcementTest {
+  private static final String LIST = "GET /api/guides";
+  private static final String LOWERED = "GET /api/guides/lowered-budget";
+
+  /** 与 GET /api/guides?size=2 相同的处理（分页查询 + 总数查询），预算从 4 调低到 1 */
+  @RestController
+  static class LoweredBudgetController {
+    private final GuidesController guides;
+
+    LoweredBudgetController(GuidesController guides) {
+      this.guides = guides;
+    }
+
+    @QueryBudget(1)
+    @GetMapping("/api/guides/lowered-budget")
+    public Page<GuidesController.GuideCardResp> list() {
+      return guides.list(null, null, 0, 2, "latest");
+    }
+  }
+
+  @Autowired MockMvc mvc;
+  @Autowired SqlStats stats;
+  @Autowired ObjectMapper objectMapper;
+
+  @BeforeEach
+  void resetStats() {
+    stats.reset();
+  }
+
+  @Test
+  void listStaysWithinBudget() throws Exception {
+    mvc.perform(get("/api/guides")).andExpect(status().isOk());
+
+    SqlStats.EndpointReport r = report(LIST);
+    assertThat(r.maxStatements()).isPositive().isLessThanOrEqualTo(r.budget());
+    assertThat(r.overBudget()).isZero();
+  }
+
+  @Test
+  void loweredBudgetFailsTheRequest() throws Exception {
+    // 先走一遍真实接口，两次请求面对相同的缓存状态
+    mvc.perform(get("/api/guides").param("size", "2")).andExpect(status().isOk());
+    assertThat(report(LIST).overBudget()).isZero();
+
+    mvc.perform(get("/api/guides/lowered-budget")).andExpect(status().isInternalServerError());
+
+    SqlStats.EndpointReport r = report(LOWERED);
+    assertThat(r.budget()).isEqualTo(1);
+    assertThat(r.overBudget()).isEqualTo(1);
+    // 第二条（总数查询）在执行前被拦下
+    assertThat(r.maxStatements()).isEqualTo(2);
+  }
+
+  @Test
+  void streamingExportIsCountedOnTheAsyncThread() throws Exception {
+    String token = login("admin", "admin123");
+    MvcResult started =
+        mvc.perform(get("/api/admin/users/export").header("Authorization", "Bearer " + token))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    mvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+
+    // 导出语句在 StreamingResponseBody 的异步线程上执行，仍计入该请求
+    assertThat(report("GET /api/admin/users/export").maxStatements()).isPositive();
+  }
+
+  private String login(String username, String password) throws Exception {
+    String body =
+        mvc.perform(
+                post("/api/auth/login")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(Map.of("username", username, "password", password))))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    return objectMapper.readTree(body).get("token").asText();
+  }
+
+  private SqlStats.EndpointReport report(String endpoint) {
+    return stats.report().endpoints().stream()
+        .filter(e -> e.endpoint().equals(endpoint))
+        .findFirst()
+        .orElseThrow(() -> new AssertionError("没有 " + endpoint + " 的统计: " + stats.report().endpoints()));
+  }
+}
@@ -0,0 +1,110 @@
+package com.yitong.guides.ranking;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.yitong.guides.domain.GuideCategory;
+import com.yitong.guides.repo.CommentRepository;
+import com.yitong.guides.repo.GuideRepository;
+import com.yitong.guides.repo.GuideStatRow;
+import com.yitong.guides.repo.StudyCheckInRepository;
+import com.yitong.guides.service.GuideChangedEvent;
+import com.yitong.guides.service.GuideInteractionEvent;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** 热门排行：计数事件即时生效；重建期间发生的变更不会被切换丢掉 */
+class HotRankingTest {
+  private static final Instant T0 = Instant.parse("2026-01-01T00:00:00Z");
+
+  private final GuideRepository guides = mock(GuideRepository.class);
+  private final CommentRepository comments = mock(CommentRepository.class);
+  private final StudyCheckInRepository checkIns = mock(StudyCheckInRepository.class);
+  /** 模拟数据库中的当前行；删除即移除 */
+  private final Map<Long, GuideStatRow> db = new ConcurrentHashMap<>();
+  private HotRanking ranking;
+
+  @BeforeEach
+  void setUp() {
+    ranking = new HotRanking(guides, comments, checkIns, 10, 12);
+    // 1 比 2 晚发布一小时，互动相同时排在前面
+    db.put(1L, row(1L, T0.plusSeconds(3600), 0));
+    db.put(2L, row(2L, T0, 0));
+    db.put(3L, row(3L, T0, 0));
+    when(guides.findStatRowsAfter(eq(3L), any())).thenReturn(List.of());
+    when(guides.findStatRowsByIdIn(anyCollection())).thenAnswer(inv -> {
+      Collection<Long> ids = inv.getArgument(0);
+      return ids.stream().map(db::get).filter(r -> r != null).toList();
+    });
+    when(comments.countGroupByGuideId()).thenReturn(List.of());
+    when(checkIns.countGroupByGuideId()).thenReturn(List.of());
+    when(comments.countGroupByGuideIdIn(anyCollection())).thenReturn(List.of());
+    when(checkIns.countGroupByGuideIdIn(anyCollection())).thenReturn(List.of());
+  }
+
+  @Test
+  void interactionsReorderImmediately() {
+    when(guides.findStatRowsAfter(eq(0L), any())).thenReturn(List.copyOf(db.values()));
+    ranking.rebuild();
+    assertThat(ranking.page(null, 0, 10).ids()).containsExactly(1L, 3L, 2L);
+
+    for (int i = 0; i < 3; i++) {
+      ranking.onInteraction(new GuideInteractionEvent(2L, GuideInteractionEvent.Type.FAVORITE, 1));
+    }
+    assertThat(ranking.page(null, 0, 10).ids()).startsWith(2L);
+    assertThat(ranking.page(GuideCategory.TRAVEL, 0, 10).total()).isEqualTo(3);
+  }
+
+  @Test
+  void changesDuringRebuildSurviveTheSwap() {
+    when(guides.findStatRowsAfter(eq(0L), any())).thenAnswer(inv -> {
+      List<GuideStatRow> snapshot = List.of(db.get(1L), db.get(2L), db.get(3L));
+      // 批次读完之后：2 被点赞 100 次、3 被删除，事件在重建完成前送达
+      db.put(2L, row(2L, T0, 100));
+      ranking.onInteraction(new GuideInteractionEvent(2L, GuideInteractionEvent.Type.LIKE, 1));
+      db.remove(3L);
+      ranking.onGuideChanged(new GuideChangedEvent(3L, GuideChangedEvent.Type.DELETED));
+      return snapshot;
+    });
+
+    ranking.rebuild();
+
+    assertThat(ranking.page(null, 0, 10).ids()).containsExactly(2L, 1L);
+  }
+
+  @Test
+  void changeDuringRefreshIsPickedUpBeforeSwap() {
+    when(guides.findStatRowsAfter(eq(0L), any())).thenAnswer(inv -> {
+      List<GuideStatRow> snapshot = List.copyOf(db.values());
+      db.put(2L, row(2L, T0, 100));
+      ranking.onInteraction(new GuideInteractionEvent(2L, GuideInteractionEvent.Type.LIKE, 1));
+      return snapshot;
+    });
+    // 第一次重读时 3 又收到互动：需要再重读一轮才切换
+    when(guides.findStatRowsByIdIn(anyCollection())).thenAnswer(inv -> {
+      Collection<Long> ids = inv.getArgument(0);
+      if (ids.contains(2L) && db.get(3L).likeCount() == 0) {
+        db.put(3L, row(3L, T0, 1000));
+        ranking.onInteraction(new GuideInteractionEvent(3L, GuideInteractionEvent.Type.LIKE, 1));
+      }
+      return ids.stream().map(db::get).filter(r -> r != null).toList();
+    });
+
+    ranking.rebuild();
+
+    assertThat(ranking.page(null, 0, 10).ids()).containsExactly(3L, 2L, 1L);
+  }
+
+  private static GuideStatRow row(long id, Instant createdAt, long likes) {
+    return new GuideStatRow(id, GuideCategory.TRAVEL, createdAt, likes, 0L);
+  }
+}
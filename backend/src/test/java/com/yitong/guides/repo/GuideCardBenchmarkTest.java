@@ -0,0 +1,167 @@
+package com.yitong.guides.repo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.yitong.guides.domain.Guide;
+import jakarta.persistence.EntityManager;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 列表页读取量：卡片投影（CARD_SELECT，不取 contentMarkdown）与此前加载完整 Guide 实体（join fetch 作者）的对比。
+ * 内存库中批量插入攻略（默认 2000 篇、正文 8000 字，可用 -Dbench.guides / -Dbench.contentChars 调整），每页 10 张卡片
+ * （列表接口默认页大小），轮流取前 20 页，各自在只读事务中执行。
+ * 每页从数据库读出的字节数按同一页 SQL 结果集逐列累加（字符串按 UTF-8 计）；每页堆分配取当前线程
+ * ThreadMXBean 分配字节数增量的平均值。两种做法组装出的卡片 JSON 相同，接口响应体大小不变。
+ * 默认不运行：mvn test -Dbenchmark=true -Dtest=GuideCardBenchmarkTest
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest
+@ActiveProfiles("test")
+class GuideCardBenchmarkTest {
+  private static final long WARMUP_NANOS = 2_000_000_000L;
+  private static final long MEASURE_NANOS = 5_000_000_000L;
+  private static final int PAGE_SIZE = 10;
+  private static final int PAGES = 20;
+
+  private static final String ORDER = " where g.deleted = false order by g.createdAt desc, g.id desc";
+
+  @Autowired EntityManager em;
+  @Autowired JdbcTemplate jdbc;
+  @Autowired PlatformTransactionManager txManager;
+
+  @Test
+  void cardProjectionVersusEntity() {
+    int guides = Integer.getInteger("bench.guides", 2000);
+    int contentChars = Integer.getInteger("bench.contentChars", 8000);
+    seed(guides, contentChars);
+    TransactionTemplate tx = new TransactionTemplate(txManager);
+    tx.setReadOnly(true);
+
+    // 两种做法取到同样的一页
+    List<Long> cardIds = tx.execute(s -> cards(0).stream().map(GuideCardView::id).toList());
+    List<Long> entityIds = tx.execute(s -> entities(0).stream().map(Guide::getId).toList());
+    assertThat(cardIds).hasSize(PAGE_SIZE).isEqualTo(entityIds);
+
+    long cardBytes = sqlBytes(
+        "select g.id, g.author_id, g.title, g.category, g.template_key, g.created_at, g.updated_at,"
+            + " g.like_count, g.favorite_count, g.comment_count from guides g");
+    long entityBytes = sqlBytes("select g.*, u.* from guides g join users u on u.id = g.author_id");
+
+    IntConsumer card = p -> tx.executeWithoutResult(s -> {
+      for (GuideCardView v : cards(p)) {
+        v.title();
+      }
+    });
+    IntConsumer entity = p -> tx.executeWithoutResult(s -> {
+      for (Guide g : entities(p)) {
+        g.getAuthor().getDisplayName();
+      }
+    });
+    // 两条路径都预热后再计时，避免先测的一方承担 JIT 与查询计划缓存的开销
+    warmup(card);
+    warmup(entity);
+    double[] cardStats = measure(card);
+    double[] entityStats = measure(entity);
+    System.out.printf(
+        "[cards %d guides, %d chars] projection %.1fKB read, %.1fKB heap, p50=%.2fms p99=%.2fms;"
+            + " entity %.1fKB read, %.1fKB heap, p50=%.2fms p99=%.2fms per page%n",
+        guides, contentChars, cardBytes / 1024.0, cardStats[2] / 1024, cardStats[0], cardStats[1],
+        entityBytes / 1024.0, entityStats[2] / 1024, entityStats[0], entityStats[1]);
+  }
+
+  private List<GuideCardView> cards(int p) {
+    return em.createQuery(GuideRepository.CARD_SELECT + ORDER, GuideCardView.class)
+        .setFirstResult(p * PAGE_SIZE)
+        .setMaxResults(PAGE_SIZE)
+        .getResultList();
+  }
+
+  private List<Guide> entities(int p) {
+    return em.createQuery("select g from Guide g join fetch g.author" + ORDER, Guide.class)
+        .setFirstResult(p * PAGE_SIZE)
+        .setMaxResults(PAGE_SIZE)
+        .getResultList();
+  }
+
+  /** 前 PAGES 页结果集逐列字节数的每页平均值 */
+  private long sqlBytes(String select) {
+    long[] total = new long[1];
+    jdbc.query(
+        select + " where g.deleted = false order by g.created_at desc, g.id desc limit ?",
+        (ResultSet rs) -> {
+          ResultSetMetaData md = rs.getMetaData();
+          for (int c = 1; c <= md.getColumnCount(); c++) {
+            Object v = rs.getObject(c);
+            if (v instanceof String s) {
+              total[0] += s.getBytes(StandardCharsets.UTF_8).length;
+            } else if (v instanceof byte[] b) {
+              total[0] += b.length;
+            } else if (v != null) {
+              total[0] += 8;
+            }
+          }
+        },
+        PAGES * PAGE_SIZE);
+    return total[0] / PAGES;
+  }
+
+  private void seed(int guides, int contentChars) {
+    Long authorId = jdbc.queryForObject("select min(id) from users", Long.class);
+    jdbc.update(
+        """
+        insert into guides(author_id, title, category, template_key, content_markdown,
+          created_at, updated_at, deleted, like_count, favorite_count, comment_count)
+        select ?, concat('压测攻略 ', x), 'TRAVEL', null, repeat('攻', ?),
+          dateadd('SECOND', -x, current_timestamp), dateadd('SECOND', -x, current_timestamp), false, 0, 0, 0
+        from system_range(1, ?) r(x)
+        """,
+        authorId, contentChars, guides);
+  }
+
+  private static void warmup(IntConsumer op) {
+    long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+    for (int p = 0; System.nanoTime() < warmupEnd; p++) {
+      op.accept(p % PAGES);
+    }
+  }
+
+  /** 单线程循环取页，返回 {p50 毫秒, p99 毫秒, 每页平均分配字节} */
+  private static double[] measure(IntConsumer op) {
+    com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    int p = 0;
+    long[] samples = new long[1024];
+    int n = 0;
+    long allocatedBefore = mx.getCurrentThreadAllocatedBytes();
+    long end = System.nanoTime() + MEASURE_NANOS;
+    while (System.nanoTime() < end) {
+      long start = System.nanoTime();
+      op.accept(p++ % PAGES);
+      if (n == samples.length) {
+        samples = Arrays.copyOf(samples, n * 2);
+      }
+      samples[n++] = System.nanoTime() - start;
+    }
+    long allocated = mx.getCurrentThreadAllocatedBytes() - allocatedBefore;
+    long[] sorted = Arrays.copyOf(samples, n);
+    Arrays.sort(sorted);
+    return new double[] {pct(sorted, 0.50), pct(sorted, 0.99), (double) allocated / n};
+  }
+
+  private static double pct(long[] sorted, double p) {
+    return sorted[Math.max(0, (int) Math.ceil(sorted.length * p) - 1)] / 1e6;
+  }
+}
@@ -0,0 +1,97 @@
+package com.yitong.guides.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.yitong.guides.domain.Guide;
+import com.yitong.guides.domain.GuideCategory;
+import com.yitong.guides.repo.GuideRepository;
+import com.yitong.guides.service.GuideChangedEvent;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.StreamSupport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/** 检索索引：BM25 排序、分类过滤，以及重建期间的修改/删除不会被切换丢掉 */
+class GuideSearchIndexTest {
+  private final GuideRepository guides = mock(GuideRepository.class);
+  /** 模拟数据库中的当前攻略；删除即移除 */
+  private final Map<Long, Guide> db = new ConcurrentHashMap<>();
+  private GuideSearchIndex index;
+
+  @BeforeEach
+  void setUp() {
+    index = new GuideSearchIndex(guides);
+    db.put(1L, guide(1L, "chengdu hotpot", "spicy food tour", GuideCategory.TRAVEL));
+    db.put(2L, guide(2L, "museum day", "a quiet chengdu museum", GuideCategory.TRAVEL));
+    db.put(3L, guide(3L, "raid notes", "boss mechanics", GuideCategory.GAME));
+    when(guides.findByDeletedFalseAndIdGreaterThanOrderByIdAsc(eq(3L), any())).thenReturn(List.of());
+    when(guides.findById(any())).thenAnswer(inv -> Optional.ofNullable(db.get((Long) inv.getArgument(0))));
+    when(guides.findAllById(anyIterable())).thenAnswer(inv -> {
+      Iterable<Long> ids = inv.getArgument(0);
+      return StreamSupport.stream(ids.spliterator(), false).map(db::get).filter(g -> g != null).toList();
+    });
+  }
+
+  @Test
+  void titleMatchesRankFirstAndCategoryFilters() {
+    when(guides.findByDeletedFalseAndIdGreaterThanOrderByIdAsc(eq(0L), any()))
+        .thenReturn(List.of(db.get(1L), db.get(2L), db.get(3L)));
+    index.rebuild();
+
+    assertThat(index.isReady()).isTrue();
+    assertThat(index.search("chengdu", null, 0, 10).ids()).containsExactly(1L, 2L);
+    assertThat(index.search("museum", null, 0, 10).ids()).containsExactly(2L);
+    assertThat(index.search("boss", GuideCategory.TRAVEL, 0, 10).total()).isZero();
+    assertThat(index.search("boss", GuideCategory.GAME, 0, 10).ids()).containsExactly(3L);
+  }
+
+  @Test
+  void changesDuringRebuildSurviveTheSwap() {
+    when(guides.findByDeletedFalseAndIdGreaterThanOrderByIdAsc(eq(0L), any())).thenAnswer(inv -> {
+      List<Guide> snapshot = List.of(db.get(1L), db.get(2L), db.get(3L));
+      // 批次读完之后：1 改了标题、2 被删除，事件在重建完成前送达
+      db.put(1L, guide(1L, "xian noodles", "spicy food tour", GuideCategory.TRAVEL));
+      index.onGuideChanged(new GuideChangedEvent(1L, GuideChangedEvent.Type.UPDATED));
+      db.remove(2L);
+      index.onGuideChanged(new GuideChangedEvent(2L, GuideChangedEvent.Type.DELETED));
+      return snapshot;
+    });
+
+    index.rebuild();
+
+    assertThat(index.search("chengdu", null, 0, 10).ids()).isEmpty();
+    assertThat(index.search("museum", null, 0, 10).ids()).isEmpty();
+    assertThat(index.search("noodles", null, 0, 10).ids()).containsExactly(1L);
+  }
+
+  @Test
+  void failedRebuildKeepsServingTheOldIndex() {
+    when(guides.findByDeletedFalseAndIdGreaterThanOrderByIdAsc(eq(0L), any()))
+        .thenReturn(List.of(db.get(1L), db.get(2L), db.get(3L)))
+        .thenThrow(new IllegalStateException("db down"));
+    index.rebuild();
+    try {
+      index.rebuild();
+    } catch (IllegalStateException expected) {
+      // 预期失败
+    }
+    assertThat(index.search("chengdu", null, 0, 10).ids()).containsExactly(1L, 2L);
+  }
+
+  private static Guide guide(long id, String title, String content, GuideCategory category) {
+    Guide g = mock(Guide.class);
+    when(g.getId()).thenReturn(id);
+    when(g.getTitle()).thenReturn(title);
+    when(g.getContentMarkdown()).thenReturn(content);
+    when(g.getCategory()).thenReturn(category);
+    return g;
+  }
+}
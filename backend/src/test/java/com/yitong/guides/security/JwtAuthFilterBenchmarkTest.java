@@ -0,0 +1,90 @@
+package com.yitong.guides.security;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.yitong.guides.repo.UserRepository;
+import jakarta.servlet.FilterChain;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * JwtAuthFilter 每请求耗时：已验签令牌缓存开启与关闭对比。同一批令牌（模拟 200 个在线会话）反复请求，
+ * 用户状态表已预热，只测过滤器本身（不经 Spring Security 过滤链与 Tomcat）。
+ * 默认不运行：mvn test -Dbenchmark=true -Dtest=JwtAuthFilterBenchmarkTest
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class JwtAuthFilterBenchmarkTest {
+  private static final long WARMUP_NANOS = 2_000_000_000L;
+  private static final long MEASURE_NANOS = 5_000_000_000L;
+  private static final int SESSIONS = 200;
+
+  /** 共用一个：MockHttpServletRequest(method, uri) 每次都新建 MockServletContext，开销会盖过被测代码 */
+  private static final MockServletContext SERVLET_CONTEXT = new MockServletContext();
+
+  private static final FilterChain CHAIN = (req, resp) -> assertNotNull(
+      SecurityContextHolder.getContext().getAuthentication());
+
+  @AfterEach
+  void clearContext() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void cachedVersusVerifyEveryRequest() throws Exception {
+    JwtService jwtService = new JwtService("CHANGE_ME_TO_A_LONG_RANDOM_STRING", "yitong-guides", 10080);
+    UserRepository users = mock(UserRepository.class);
+    when(users.findTokenState(anyLong())).thenAnswer(inv -> {
+      List<Object[]> rows = new ArrayList<>();
+      rows.add(new Object[] {inv.getArgument(0), 0, true, 0});
+      return rows;
+    });
+    UserTokenStates states = new UserTokenStates(users);
+    List<MockHttpServletRequest> requests = new ArrayList<>();
+    for (long id = 1; id <= SESSIONS; id++) {
+      MockHttpServletRequest req = new MockHttpServletRequest(SERVLET_CONTEXT, "GET", "/api/guides");
+      req.addHeader("Authorization", "Bearer " + jwtService.issueToken(id, "user" + id, "USER", 0));
+      requests.add(req);
+    }
+
+    double cached = measure(new JwtAuthFilter(jwtService, new VerifiedTokenCache(true, 10000), states), requests);
+    double uncached = measure(new JwtAuthFilter(jwtService, new VerifiedTokenCache(false, 10000), states), requests);
+    System.out.printf(
+        "[jwt filter] cache on %.0f ns/op, cache off %.0f ns/op (%.1fx)%n", cached, uncached, uncached / cached);
+  }
+
+  /** 单线程轮流发送各会话的请求，返回每次过滤的平均纳秒数 */
+  private static double measure(JwtAuthFilter filter, List<MockHttpServletRequest> requests) throws Exception {
+    MockHttpServletResponse resp = new MockHttpServletResponse();
+    long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+    int i = 0;
+    while (System.nanoTime() < warmupEnd) {
+      once(filter, requests.get(i++ % requests.size()), resp);
+    }
+    long ops = 0;
+    long start = System.nanoTime();
+    long end = start + MEASURE_NANOS;
+    while (System.nanoTime() < end) {
+      for (int k = 0; k < 100; k++) {
+        once(filter, requests.get(i++ % requests.size()), resp);
+      }
+      ops += 100;
+    }
+    return (System.nanoTime() - start) / (double) ops;
+  }
+
+  private static void once(JwtAuthFilter filter, MockHttpServletRequest req, MockHttpServletResponse resp)
+      throws Exception {
+    SecurityContextHolder.clearContext();
+    filter.doFilter(req, resp, CHAIN);
+  }
+}
@@ -0,0 +1,142 @@
+package com.yitong.guides.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.yitong.guides.repo.UserRepository;
+import com.yitong.guides.service.UserChangedEvent;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * JwtAuthFilter + VerifiedTokenCache + UserTokenStates：缓存命中跳过验签，但每次仍按内存中的用户状态
+ * 与令牌版本放行；版本递增、禁用、封禁后缓存中的令牌立即失效。用户表用 mock 仓库代替。
+ */
+class JwtAuthFilterTest {
+  private static final long USER = 7L;
+
+  private JwtService jwtService;
+  private VerifiedTokenCache cache;
+  private UserRepository users;
+  private UserTokenStates states;
+  private JwtAuthFilter filter;
+
+  @BeforeEach
+  void setUp() {
+    jwtService = spy(new JwtService("test-secret-test-secret-test-secret", "yitong-guides", 60));
+    cache = new VerifiedTokenCache(true, 100);
+    users = mock(UserRepository.class);
+    states = new UserTokenStates(users);
+    filter = new JwtAuthFilter(jwtService, cache, states);
+    userRow(0, true, 0);
+  }
+
+  @AfterEach
+  void clearContext() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void validTokenIsVerifiedOnceThenServedFromCache() throws Exception {
+    String token = jwtService.issueToken(USER, "alice", "USER", 0);
+
+    Authentication first = authenticate(token);
+    Authentication second = authenticate(token);
+
+    assertThat(first).isNotNull();
+    assertThat(((AuthUser) first.getPrincipal()).id()).isEqualTo(USER);
+    assertThat(first.getAuthorities()).extracting(Object::toString).containsExactly("ROLE_USER");
+    assertThat(second).isSameAs(first);
+    verify(jwtService, times(1)).verify(anyString());
+  }
+
+  @Test
+  void bumpedVersionRejectsCachedToken() throws Exception {
+    String old = jwtService.issueToken(USER, "alice", "USER", 0);
+    assertThat(authenticate(old)).isNotNull();
+
+    // 改密码/改角色：版本 +1，提交后事件刷新内存状态
+    userRow(0, true, 1);
+    states.onUserChanged(new UserChangedEvent(USER));
+
+    assertThat(authenticate(old)).isNull();
+    assertThat(authenticate(jwtService.issueToken(USER, "alice", "USER", 1))).isNotNull();
+  }
+
+  @Test
+  void disabledUserIsRejectedEvenWhenCached() throws Exception {
+    String token = jwtService.issueToken(USER, "alice", "USER", 0);
+    assertThat(authenticate(token)).isNotNull();
+
+    userRow(0, false, 0);
+    states.onUserChanged(new UserChangedEvent(USER));
+
+    assertThat(authenticate(token)).isNull();
+  }
+
+  @Test
+  void bannedAndMissingUsersAreRejected() throws Exception {
+    userRow(1, true, 0);
+    assertThat(authenticate(jwtService.issueToken(USER, "alice", "USER", 0))).isNull();
+
+    when(users.findTokenState(8L)).thenReturn(List.of());
+    assertThat(authenticate(jwtService.issueToken(8L, "ghost", "USER", 0))).isNull();
+  }
+
+  @Test
+  void invalidTokenIsAnonymousAndNotCached() throws Exception {
+    String token = jwtService.issueToken(USER, "alice", "USER", 0);
+    String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+    JwtService other = new JwtService("another-secret-another-secret-xx", "yitong-guides", 60);
+
+    assertThat(authenticate(tampered)).isNull();
+    assertThat(authenticate(other.issueToken(USER, "alice", "ADMIN", 0))).isNull();
+    assertThat(authenticate(tampered)).isNull();
+    verify(jwtService, times(2)).verify(tampered);
+  }
+
+  @Test
+  void cacheDropsExpiredEntriesAndStaysBounded() {
+    Authentication a = new TestingAuthenticationToken("a", null);
+    long now = System.currentTimeMillis();
+    cache.put("expired", a, now - 1);
+    assertThat(cache.get("expired")).isNull();
+
+    List<String> tokens = new ArrayList<>();
+    for (int i = 0; i < 150; i++) {
+      tokens.add("t" + i);
+      cache.put("t" + i, a, now + 60_000);
+    }
+    assertThat(cache.get(tokens.get(149))).isSameAs(a);
+    assertThat(tokens.stream().filter(t -> cache.get(t) != null).count()).isLessThanOrEqualTo(100);
+  }
+
+  /** 走一次过滤器，返回写入 SecurityContext 的认证（匿名为 null） */
+  private Authentication authenticate(String token) throws Exception {
+    SecurityContextHolder.clearContext();
+    MockHttpServletRequest req = new MockHttpServletRequest("GET", "/api/me");
+    req.addHeader("Authorization", "Bearer " + token);
+    filter.doFilter(req, new MockHttpServletResponse(), new MockFilterChain());
+    return SecurityContextHolder.getContext().getAuthentication();
+  }
+
+  private void userRow(int status, boolean enabled, int version) {
+    List<Object[]> rows = new ArrayList<>();
+    rows.add(new Object[] {USER, status, enabled, version});
+    when(users.findTokenState(USER)).thenReturn(rows);
+  }
+}
@@ -0,0 +1,141 @@
+package com.yitong.guides.security;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * 登录洪峰下的读接口延迟：先只跑读请求（列表页），再在同样的读负载上叠加 32 个并发、持续输错密码的登录请求，
+ * 比较两段的 p50/p99，并统计登录请求得到的状态码。限流阈值调到不起作用，让每次登录都走到 bcrypt。
+ * 默认使用有界哈希线程池（app.security.bcrypt.*）；加 -Dapp.security.bcrypt.threads=32
+ * -Dapp.security.bcrypt.queueSize=10000 可近似此前在请求线程上直接计算哈希的情形作对照。
+ * 默认不运行：mvn test -Dbenchmark=true -Dtest=LoginFloodBenchmarkTest
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+      "app.security.login.perUser.capacity=1000",
+      "app.security.login.perUser.refillPerMinute=6000000",
+      "app.security.login.perIp.capacity=1000",
+      "app.security.login.perIp.refillPerMinute=6000000"
+    })
+@ActiveProfiles("test")
+class LoginFloodBenchmarkTest {
+  private static final long WARMUP_NANOS = 2_000_000_000L;
+  private static final long MEASURE_NANOS = 5_000_000_000L;
+  private static final int READERS = 4;
+  private static final int ATTACKERS = 32;
+
+  @LocalServerPort int port;
+
+  private final HttpClient client =
+      HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+
+  @Test
+  void readLatencyDuringLoginFlood() throws Exception {
+    HttpRequest read = HttpRequest.newBuilder(URI.create(base() + "/api/guides?size=10")).GET().build();
+    HttpRequest login = HttpRequest.newBuilder(URI.create(base() + "/api/auth/login"))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"alice\",\"password\":\"wrong-password\"}"))
+        .build();
+
+    double[] quiet = readPhase(read, null, null);
+    Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    double[] flooded = readPhase(read, login, statuses);
+
+    System.out.printf(
+        "[login flood] bcrypt.threads=%s reads alone p50=%.1fms p99=%.1fms; with %d login threads p50=%.1fms p99=%.1fms;"
+            + " login statuses %s%n",
+        System.getProperty("app.security.bcrypt.threads", "default"),
+        quiet[0], quiet[1], ATTACKERS, flooded[0], flooded[1], statuses);
+  }
+
+  /** 读线程预热后统计一段时间；login 不为 null 时同时运行登录洪峰，状态码计入 statuses */
+  private double[] readPhase(HttpRequest read, HttpRequest login, Map<Integer, LongAdder> statuses)
+      throws Exception {
+    AtomicBoolean stop = new AtomicBoolean();
+    List<Thread> attackers = new ArrayList<>();
+    if (login != null) {
+      for (int i = 0; i < ATTACKERS; i++) {
+        attackers.add(start(() -> {
+          while (!stop.get()) {
+            statuses.computeIfAbsent(status(login), k -> new LongAdder()).increment();
+          }
+        }));
+      }
+    }
+    long measureFrom = System.nanoTime() + WARMUP_NANOS;
+    long measureTo = measureFrom + MEASURE_NANOS;
+    long[][] samples = new long[READERS][];
+    List<Thread> readers = new ArrayList<>();
+    for (int r = 0; r < READERS; r++) {
+      int reader = r;
+      readers.add(start(() -> {
+        long[] s = new long[1024];
+        int n = 0;
+        while (true) {
+          long begin = System.nanoTime();
+          if (begin >= measureTo) {
+            break;
+          }
+          int code = status(read);
+          long end = System.nanoTime();
+          if (begin >= measureFrom && code == 200) {
+            if (n == s.length) {
+              s = Arrays.copyOf(s, n * 2);
+            }
+            s[n++] = end - begin;
+          }
+        }
+        samples[reader] = Arrays.copyOf(s, n);
+      }));
+    }
+    for (Thread t : readers) {
+      t.join();
+    }
+    stop.set(true);
+    for (Thread t : attackers) {
+      t.join();
+    }
+    long[] all = Arrays.stream(samples).flatMapToLong(Arrays::stream).sorted().toArray();
+    return new double[] {pct(all, 0.50), pct(all, 0.99)};
+  }
+
+  private int status(HttpRequest request) {
+    try {
+      return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    } catch (Exception e) {
+      return -1;
+    }
+  }
+
+  private String base() {
+    return "http://localhost:" + port;
+  }
+
+  private static Thread start(Runnable body) {
+    Thread t = new Thread(body);
+    t.setDaemon(true);
+    t.start();
+    return t;
+  }
+
+  private static double pct(long[] sorted, double p) {
+    return sorted.length == 0 ? Double.NaN : sorted[Math.max(0, (int) Math.ceil(sorted.length * p) - 1)] / 1e6;
+  }
+}
@@ -0,0 +1,92 @@
+package com.yitong.guides.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.yitong.guides.web.api.ApiException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+/** 登录令牌桶：用尽后 429、成功登录清空用户名计数、按 IP 限流、随时间补充，以及并发取令牌不超发 */
+class LoginThrottleTest {
+
+  @Test
+  void locksOutUsernameAfterCapacityAndResetsOnSuccess() {
+    LoginThrottle throttle = new LoginThrottle(3, 1, 100, 100);
+    for (int i = 0; i < 3; i++) {
+      throttle.acquireLogin("10.0.0." + i, "Alice");
+    }
+    // 换 IP、换大小写都算同一个用户名
+    assertTooMany(() -> throttle.acquireLogin("10.0.0.9", "alice"));
+
+    throttle.onLoginSuccess("ALICE");
+    throttle.acquireLogin("10.0.0.9", "alice");
+    // 其他用户名不受影响
+    throttle.acquireLogin("10.0.0.9", "bob");
+  }
+
+  @Test
+  void limitsAttemptsPerIpAcrossUsernames() {
+    LoginThrottle throttle = new LoginThrottle(100, 100, 4, 1);
+    for (int i = 0; i < 4; i++) {
+      throttle.acquireLogin("10.0.0.1", "user" + i);
+    }
+    assertTooMany(() -> throttle.acquireLogin("10.0.0.1", "someone"));
+    assertTooMany(() -> throttle.acquireRegister("10.0.0.1"));
+    throttle.acquireLogin("10.0.0.2", "someone");
+  }
+
+  @Test
+  void refillsOverTime() throws Exception {
+    // 每分钟 60 个，即每秒一个
+    LoginThrottle throttle = new LoginThrottle(1, 60, 100, 100);
+    throttle.acquireLogin("10.0.0.1", "alice");
+    assertTooMany(() -> throttle.acquireLogin("10.0.0.1", "alice"));
+    Thread.sleep(1100);
+    throttle.acquireLogin("10.0.0.1", "alice");
+  }
+
+  @Test
+  void concurrentAttemptsNeverExceedCapacity() throws Exception {
+    LoginThrottle throttle = new LoginThrottle(50, 1, 1000, 1);
+    AtomicInteger granted = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+          for (int i = 0; i < 50; i++) {
+            try {
+              throttle.acquireLogin("10.0.0.1", "alice");
+              granted.incrementAndGet();
+            } catch (ApiException ignored) {
+              // 被限流
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    // 每分钟补 1 个，测试期间最多多出 1 个
+    assertThat(granted.get()).isBetween(50, 51);
+  }
+
+  private static void assertTooMany(Runnable attempt) {
+    assertThatThrownBy(attempt::run)
+        .isInstanceOf(ApiException.class)
+        .extracting(e -> ((ApiException) e).getStatus())
+        .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+  }
+}
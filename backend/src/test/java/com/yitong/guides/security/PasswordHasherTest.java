@@ -0,0 +1,123 @@
+package com.yitong.guides.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.yitong.guides.web.api.ApiException;
+import java.lang.reflect.Field;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/** 有界哈希线程池：排队、队列满与等待超时返回 503、任务异常原样抛出；needsRehash 按强度判断 */
+class PasswordHasherTest {
+
+  @Test
+  void needsRehashOnlyBelowConfiguredStrength() {
+    PasswordHasher hasher = new PasswordHasher(new BCryptPasswordEncoder(5), 1, 4, 5000);
+    try {
+      String weak = new BCryptPasswordEncoder(4).encode("secret");
+      String current = hasher.encode("secret");
+
+      assertThat(hasher.needsRehash(weak)).isTrue();
+      assertThat(hasher.needsRehash(current)).isFalse();
+      assertThat(hasher.matches("secret", weak)).isTrue();
+      assertThat(hasher.matches("wrong", current)).isFalse();
+    } finally {
+      hasher.shutdown();
+    }
+  }
+
+  @Test
+  void queuesUpToLimitThenRejectsWith503() throws Exception {
+    BlockingEncoder encoder = new BlockingEncoder();
+    PasswordHasher hasher = new PasswordHasher(encoder, 1, 1, 5000);
+    try {
+      // 第一个占住唯一的线程，第二个进入队列，第三个被拒
+      CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> hasher.encode("a"));
+      assertThat(encoder.started.await(5, TimeUnit.SECONDS)).isTrue();
+      CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> hasher.encode("b"));
+      awaitQueued(hasher, 1);
+
+      assertUnavailable(() -> hasher.encode("c"));
+
+      encoder.release.countDown();
+      assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo("hash:a");
+      assertThat(queued.get(5, TimeUnit.SECONDS)).isEqualTo("hash:b");
+      assertThat(hasher.encode("d")).isEqualTo("hash:d");
+    } finally {
+      encoder.release.countDown();
+      hasher.shutdown();
+    }
+  }
+
+  @Test
+  void waitingPastTimeoutReturns503() throws Exception {
+    BlockingEncoder encoder = new BlockingEncoder();
+    PasswordHasher hasher = new PasswordHasher(encoder, 1, 4, 100);
+    try {
+      long start = System.nanoTime();
+      assertUnavailable(() -> hasher.encode("slow"));
+      assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isBetween(100L, 3000L);
+    } finally {
+      encoder.release.countDown();
+      hasher.shutdown();
+    }
+  }
+
+  @Test
+  void encoderExceptionsPropagate() {
+    PasswordHasher hasher = new PasswordHasher(new BCryptPasswordEncoder(4), 1, 4, 5000);
+    try {
+      assertThatThrownBy(() -> hasher.encode(null)).isInstanceOf(IllegalArgumentException.class);
+    } finally {
+      hasher.shutdown();
+    }
+  }
+
+  /** 提交发生在另一个线程上：等到队列里确实有 n 个任务 */
+  private static void awaitQueued(PasswordHasher hasher, int n) throws Exception {
+    Field field = PasswordHasher.class.getDeclaredField("executor");
+    field.setAccessible(true);
+    ThreadPoolExecutor executor = (ThreadPoolExecutor) field.get(hasher);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (executor.getQueue().size() < n && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    assertThat(executor.getQueue()).hasSize(n);
+  }
+
+  private static void assertUnavailable(Runnable call) {
+    assertThatThrownBy(call::run)
+        .isInstanceOf(ApiException.class)
+        .extracting(e -> ((ApiException) e).getStatus())
+        .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
+  /** encode 阻塞到 release 放行 */
+  private static final class BlockingEncoder implements PasswordEncoder {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    @Override
+    public String encode(CharSequence raw) {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return "hash:" + raw;
+    }
+
+    @Override
+    public boolean matches(CharSequence raw, String encoded) {
+      return encoded.equals("hash:" + raw);
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.yitong.guides.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.yitong.guides.repo.UserRepository;
+import com.yitong.guides.service.UserChangedEvent;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.DefaultApplicationArguments;
+
+/**
+ * 用户令牌状态表：启动批量加载后不查库；表中缺失的用户查库一次并记住（库中没有按已禁用处理）；
+ * 批量加载与回退查询不覆盖事件写入的较新状态；enabled/tokenVersion 为 null 时视为启用、版本 0。
+ */
+class UserTokenStatesTest {
+  private final UserRepository users = mock(UserRepository.class);
+  private final UserTokenStates states = new UserTokenStates(users);
+
+  @Test
+  void loadedUsersAreCheckedInMemory() {
+    when(users.findTokenStatesAfter(any(), any()))
+        .thenReturn(rows(row(1L, 0, true, 0), row(2L, 0, null, null), row(3L, 0, true, 2)), List.of());
+    states.run(new DefaultApplicationArguments());
+
+    assertThat(states.isCurrent(1, 0)).isTrue();
+    assertThat(states.isCurrent(1, 1)).isFalse();
+    assertThat(states.isCurrent(2, 0)).isTrue();
+    assertThat(states.isCurrent(3, 2)).isTrue();
+    assertThat(states.isCurrent(3, 0)).isFalse();
+    verify(users, never()).findTokenState(anyLong());
+  }
+
+  @Test
+  void unknownUserIsLookedUpOnceAndRemembered() {
+    when(users.findTokenState(5L)).thenReturn(rows(row(5L, 0, true, 1)));
+
+    // 版本 0 的令牌不会因为“表里没有”而被放行
+    assertThat(states.isCurrent(5, 0)).isFalse();
+    assertThat(states.isCurrent(5, 1)).isTrue();
+    assertThat(states.isCurrent(5, 1)).isTrue();
+    verify(users, times(1)).findTokenState(5L);
+  }
+
+  @Test
+  void missingRowCountsAsDisabled() {
+    when(users.findTokenState(6L)).thenReturn(List.of());
+
+    assertThat(states.isCurrent(6, 0)).isFalse();
+    assertThat(states.isCurrent(6, 0)).isFalse();
+    verify(users, times(1)).findTokenState(6L);
+  }
+
+  @Test
+  void bannedOrDisabledUsersAreRejected() {
+    when(users.findTokenState(7L)).thenReturn(rows(row(7L, 1, true, 0)));
+    when(users.findTokenState(8L)).thenReturn(rows(row(8L, 0, false, 0)));
+
+    assertThat(states.isCurrent(7, 0)).isFalse();
+    assertThat(states.isCurrent(8, 0)).isFalse();
+  }
+
+  @Test
+  void batchLoadDoesNotOverwriteNewerEventState() {
+    // 事件先到（改了密码，版本 1），批量加载读到的是旧快照（版本 0）
+    when(users.findTokenState(1L)).thenReturn(rows(row(1L, 0, true, 1)));
+    states.onUserChanged(new UserChangedEvent(1L));
+    when(users.findTokenStatesAfter(any(), any())).thenReturn(rows(row(1L, 0, true, 0)), List.of());
+    states.run(new DefaultApplicationArguments());
+
+    assertThat(states.isCurrent(1, 1)).isTrue();
+    assertThat(states.isCurrent(1, 0)).isFalse();
+  }
+
+  @Test
+  void eventOverwritesAndDeletedUserBecomesDisabled() {
+    when(users.findTokenState(9L)).thenReturn(rows(row(9L, 0, true, 0)));
+    assertThat(states.isCurrent(9, 0)).isTrue();
+
+    when(users.findTokenState(9L)).thenReturn(rows(row(9L, 0, true, 3)));
+    states.onUserChanged(new UserChangedEvent(9L));
+    assertThat(states.isCurrent(9, 3)).isTrue();
+
+    when(users.findTokenState(9L)).thenReturn(List.of());
+    states.onUserChanged(new UserChangedEvent(9L));
+    assertThat(states.isCurrent(9, 3)).isFalse();
+  }
+
+  private static Object[] row(Long id, int status, Boolean enabled, Integer version) {
+    return new Object[] {id, status, enabled, version};
+  }
+
+  private static List<Object[]> rows(Object[]... rows) {
+    return new ArrayList<>(List.of(rows));
+  }
+}
@@ -0,0 +1,120 @@
+package com.yitong.guides.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.yitong.guides.repo.GuideCardView;
+import com.yitong.guides.repo.GuideFavoriteRepository;
+import com.yitong.guides.repo.GuideLikeRepository;
+import com.yitong.guides.repo.GuideRepository;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * 列表页 p99：冗余计数列（卡片查询直接带出点赞/收藏数）与此前每张卡片各查一次 COUNT(*) 的对比。
+ * 内存库中批量造数据（默认 2 万篇攻略、100 万点赞、20 万收藏，可用 -Dbench.guides / -Dbench.likes 调整），
+ * 并给 guide_likes / guide_favorites 补上 guide_id 索引，让旧做法按最好情况计时。每页 50 张卡片，轮流取前 20 页。
+ * 默认不运行：mvn test -Dbenchmark=true -Dtest=GuideCountersBenchmarkTest
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest
+@ActiveProfiles("test")
+class GuideCountersBenchmarkTest {
+  private static final long WARMUP_NANOS = 2_000_000_000L;
+  private static final long MEASURE_NANOS = 5_000_000_000L;
+  private static final int PAGE_SIZE = 50;
+  private static final int PAGES = 20;
+
+  @Autowired GuideRepository guideRepository;
+  @Autowired GuideLikeRepository likeRepository;
+  @Autowired GuideFavoriteRepository favoriteRepository;
+  @Autowired GuideStatsReconciler reconciler;
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  void listPageP99() {
+    int guides = Integer.getInteger("bench.guides", 20_000);
+    int likes = Integer.getInteger("bench.likes", 1_000_000);
+    seed(guides, likes, likes / 5);
+
+    // 两种做法返回相同的计数
+    for (GuideCardView card : page(0)) {
+      assertThat(card.likeCount()).isEqualTo(likeRepository.countByGuideId(card.id()));
+      assertThat(card.favoriteCount()).isEqualTo(favoriteRepository.countByGuideId(card.id()));
+    }
+
+    double[] counters = measure(p -> page(p));
+    double[] perCard = measure(p -> {
+      for (GuideCardView card : page(p)) {
+        likeRepository.countByGuideId(card.id());
+        favoriteRepository.countByGuideId(card.id());
+      }
+    });
+    System.out.printf(
+        "[list %d guides, %d likes] counters p50=%.2fms p99=%.2fms, per-card COUNT p50=%.2fms p99=%.2fms%n",
+        guides, likes, counters[0], counters[1], perCard[0], perCard[1]);
+  }
+
+  private List<GuideCardView> page(int p) {
+    return guideRepository.search(null, null, PageRequest.of(p, PAGE_SIZE)).getContent();
+  }
+
+  /** 批量插入攻略与点赞/收藏（每个 (用户, 攻略) 组合唯一），再由校准任务写入冗余计数 */
+  private void seed(int guides, int likes, int favorites) {
+    Long authorId = jdbc.queryForObject("select min(id) from users", Long.class);
+    jdbc.update(
+        """
+        insert into guides(author_id, title, category, template_key, content_markdown,
+          created_at, updated_at, deleted, like_count, favorite_count, comment_count)
+        select ?, concat('压测攻略 ', x), 'STUDY', null, repeat('内容', 200),
+          dateadd('SECOND', -x, current_timestamp), dateadd('SECOND', -x, current_timestamp), false, 0, 0, 0
+        from system_range(1, ?) r(x)
+        """,
+        authorId, guides);
+    long firstId = jdbc.queryForObject("select max(id) from guides", Long.class) - guides + 1;
+    String pairs =
+        """
+        insert into %s(user_id, guide_id, created_at)
+        select 100000 + x / ?, ? + mod(x, ?), current_timestamp from system_range(0, ? - 1) r(x)
+        """;
+    jdbc.update(pairs.formatted("guide_likes"), guides, firstId, guides, likes);
+    jdbc.update(pairs.formatted("guide_favorites"), guides, firstId, guides, favorites);
+    jdbc.execute("create index if not exists bench_like_guide on guide_likes(guide_id)");
+    jdbc.execute("create index if not exists bench_favorite_guide on guide_favorites(guide_id)");
+    reconciler.reconcile();
+  }
+
+  /** 单线程循环取页，返回 {p50, p99} 毫秒 */
+  private static double[] measure(IntConsumer op) {
+    long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+    int p = 0;
+    while (System.nanoTime() < warmupEnd) {
+      op.accept(p++ % PAGES);
+    }
+    long[] samples = new long[1024];
+    int n = 0;
+    long end = System.nanoTime() + MEASURE_NANOS;
+    while (System.nanoTime() < end) {
+      long start = System.nanoTime();
+      op.accept(p++ % PAGES);
+      if (n == samples.length) {
+        samples = Arrays.copyOf(samples, n * 2);
+      }
+      samples[n++] = System.nanoTime() - start;
+    }
+    long[] sorted = Arrays.copyOf(samples, n);
+    Arrays.sort(sorted);
+    return new double[] {pct(sorted, 0.50), pct(sorted, 0.99)};
+  }
+
+  private static double pct(long[] sorted, double p) {
+    return sorted[Math.max(0, (int) Math.ceil(sorted.length * p) - 1)] / 1e6;
+  }
+}
@@ -0,0 +1,131 @@
+package com.yitong.guides.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.yitong.guides.repo.GuideRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * guides 上的点赞/收藏冗余计数：点赞、取消（含重复操作）与并发切换后计数始终等于关系表行数；
+ * 人为制造漂移后 GuideStatsReconciler 能改回来。点赞不校验用户是否存在，这里直接用不存在的用户 id 区分并发用户。
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class GuideCountersTest {
+  @Autowired GuideService guideService;
+  @Autowired GuideStatsReconciler reconciler;
+  @Autowired GuideRepository guideRepository;
+  @Autowired JdbcTemplate jdbc;
+
+  private long guideId;
+
+  @BeforeEach
+  void pickGuide() {
+    guideId = guideRepository.search(null, null, PageRequest.of(0, 1)).getContent().get(0).id();
+  }
+
+  @Test
+  void likeAndUnlikeKeepCountInStep() {
+    long base = likes();
+    guideService.like(guideId, 9001L);
+    guideService.like(guideId, 9001L);
+    guideService.like(guideId, 9002L);
+    assertThat(likes()).isEqualTo(base + 2).isEqualTo(likeRows());
+
+    guideService.unlike(guideId, 9001L);
+    guideService.unlike(guideId, 9001L);
+    assertThat(likes()).isEqualTo(base + 1).isEqualTo(likeRows());
+
+    guideService.unlike(guideId, 9002L);
+    assertThat(likes()).isEqualTo(base).isEqualTo(likeRows());
+  }
+
+  @Test
+  void favoriteAndUnfavoriteKeepCountInStep() {
+    long base = favorites();
+    guideService.favorite(guideId, 9011L);
+    guideService.favorite(guideId, 9011L);
+    assertThat(favorites()).isEqualTo(base + 1).isEqualTo(favoriteRows());
+
+    guideService.unfavorite(guideId, 9011L);
+    guideService.unfavorite(guideId, 9011L);
+    assertThat(favorites()).isEqualTo(base).isEqualTo(favoriteRows());
+  }
+
+  @Test
+  void concurrentTogglesMatchRows() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        long userId = 9100L + t;
+        futures.add(pool.submit(() -> {
+          Random random = new Random(userId);
+          for (int i = 0; i < 20; i++) {
+            if (random.nextBoolean()) {
+              guideService.like(guideId, userId);
+            } else {
+              guideService.unlike(guideId, userId);
+            }
+            if (random.nextBoolean()) {
+              guideService.favorite(guideId, userId);
+            } else {
+              guideService.unfavorite(guideId, userId);
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+    assertThat(likes()).isEqualTo(likeRows());
+    assertThat(favorites()).isEqualTo(favoriteRows());
+  }
+
+  @Test
+  void reconcileRepairsDrift() {
+    guideService.like(guideId, 9201L);
+    guideService.favorite(guideId, 9201L);
+    jdbc.update(
+        "update guides set like_count = 99, favorite_count = null, comment_count = -3 where id = ?", guideId);
+
+    reconciler.reconcile();
+
+    assertThat(likes()).isEqualTo(likeRows());
+    assertThat(favorites()).isEqualTo(favoriteRows());
+    assertThat(jdbc.queryForObject("select comment_count from guides where id = ?", Long.class, guideId))
+        .isEqualTo(jdbc.queryForObject("select count(*) from comments where guide_id = ?", Long.class, guideId));
+  }
+
+  private long likes() {
+    return jdbc.queryForObject("select like_count from guides where id = ?", Long.class, guideId);
+  }
+
+  private long favorites() {
+    return jdbc.queryForObject("select favorite_count from guides where id = ?", Long.class, guideId);
+  }
+
+  private long likeRows() {
+    return jdbc.queryForObject("select count(*) from guide_likes where guide_id = ?", Long.class, guideId);
+  }
+
+  private long favoriteRows() {
+    return jdbc.queryForObject("select count(*) from guide_favorites where guide_id = ?", Long.class, guideId);
+  }
+}
@@ -0,0 +1,110 @@
+package com.yitong.guides.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.yitong.guides.domain.GuideCategory;
+import com.yitong.guides.repo.GuideDetailView;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/** 详情缓存：命中不重复加载、失效换 ETag、加载期间被失效的结果不入缓存、状态随 LRU 有界 */
+class GuideDetailCacheTest {
+
+  @Test
+  void hitReusesEntryAndEvictChangesEtag() {
+    GuideDetailCache cache = new GuideDetailCache(10, 300);
+    AtomicInteger loads = new AtomicInteger();
+
+    GuideDetailCache.Entry first = cache.get(1L, () -> view(1L, loads.incrementAndGet()));
+    GuideDetailCache.Entry again = cache.get(1L, () -> view(1L, loads.incrementAndGet()));
+    assertThat(again).isSameAs(first);
+    assertThat(loads).hasValue(1);
+
+    cache.evict(1L);
+    GuideDetailCache.Entry reloaded = cache.get(1L, () -> view(1L, loads.incrementAndGet()));
+    assertThat(loads).hasValue(2);
+    assertThat(reloaded.etag()).isNotEqualTo(first.etag());
+    // 其他攻略的失效不影响本条
+    cache.evict(2L);
+    assertThat(cache.get(1L, () -> view(1L, loads.incrementAndGet()))).isSameAs(reloaded);
+  }
+
+  @Test
+  void etagsNeverRepeatForSameGuide() {
+    GuideDetailCache cache = new GuideDetailCache(1, 300);
+    String before = cache.get(1L, () -> view(1L, 0)).etag();
+    // 被 LRU 挤出后重新加载，不会回到旧的 ETag
+    cache.get(2L, () -> view(2L, 0));
+    assertThat(cache.get(1L, () -> view(1L, 0)).etag()).isNotEqualTo(before);
+  }
+
+  @Test
+  void valueLoadedAcrossInvalidationIsReturnedButNotCached() {
+    GuideDetailCache cache = new GuideDetailCache(10, 300);
+    AtomicInteger loads = new AtomicInteger();
+
+    // 加载进行中（已读过库）时攻略被修改并失效
+    GuideDetailCache.Entry stale = cache.get(1L, () -> {
+      GuideDetailView v = view(1L, loads.incrementAndGet());
+      cache.evict(1L);
+      return v;
+    });
+    assertThat(stale.view().likeCount()).isEqualTo(1);
+    assertThat(cache.size()).isZero();
+
+    GuideDetailCache.Entry fresh = cache.get(1L, () -> view(1L, loads.incrementAndGet()));
+    assertThat(fresh.view().likeCount()).isEqualTo(2);
+    assertThat(fresh.etag()).isNotEqualTo(stale.etag());
+    assertThat(cache.get(1L, () -> view(1L, loads.incrementAndGet()))).isSameAs(fresh);
+    assertThat(cache.loadingCount()).isZero();
+  }
+
+  @Test
+  void invalidationOfOtherGuideDuringLoadStillCaches() {
+    GuideDetailCache cache = new GuideDetailCache(10, 300);
+    GuideDetailCache.Entry e = cache.get(1L, () -> {
+      cache.evict(2L);
+      return view(1L, 0);
+    });
+    assertThat(cache.get(1L, () -> view(1L, 99))).isSameAs(e);
+  }
+
+  @Test
+  void stateStaysBoundedAfterManyInvalidations() {
+    GuideDetailCache cache = new GuideDetailCache(3, 300);
+    for (long id = 1; id <= 10_000; id++) {
+      long guideId = id;
+      cache.get(guideId, () -> view(guideId, 0));
+      cache.evict(guideId);
+      cache.get(guideId, () -> view(guideId, 0));
+    }
+    assertThat(cache.size()).isEqualTo(3);
+    assertThat(cache.loadingCount()).isZero();
+  }
+
+  @Test
+  void failedLoadIsNotCachedAndLeavesNoState() {
+    GuideDetailCache cache = new GuideDetailCache(10, 300);
+    assertThatThrownBy(() -> cache.get(1L, () -> {
+      throw new IllegalStateException("boom");
+    })).isInstanceOf(IllegalStateException.class);
+    assertThat(cache.size()).isZero();
+    assertThat(cache.loadingCount()).isZero();
+  }
+
+  @Test
+  void expiredEntryIsReloaded() {
+    GuideDetailCache cache = new GuideDetailCache(10, 0);
+    AtomicInteger loads = new AtomicInteger();
+    cache.get(1L, () -> view(1L, loads.incrementAndGet()));
+    cache.get(1L, () -> view(1L, loads.incrementAndGet()));
+    assertThat(loads).hasValue(2);
+  }
+
+  private static GuideDetailView view(long id, long likes) {
+    Instant now = Instant.now();
+    return new GuideDetailView(id, 1L, "标题", GuideCategory.TRAVEL, null, "正文", now, now, likes, 0L, 0L);
+  }
+}
@@ -0,0 +1,150 @@
+package com.yitong.guides.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.yitong.guides.repo.GuideRepository;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * 点赞/收藏写后合并：同一用户的反复切换只落最后状态、重复点赞与取消不存在的点赞不改计数、
+ * 未落库期间读己之写、积压达到上限时同步落库、落库期间的新操作保留到下一次。
+ * 定时落库间隔调到足够长，落库时机由测试控制；用不存在的用户 id 区分用户。
+ */
+@SpringBootTest(
+    properties = {
+      "app.interactions.writeBehind.enabled=true",
+      "app.interactions.writeBehind.flushMs=3600000",
+      "app.interactions.writeBehind.maxPending=8"
+    })
+@ActiveProfiles("test")
+class InteractionWriteBehindTest {
+  private static final GuideInteractionEvent.Type LIKE = GuideInteractionEvent.Type.LIKE;
+  private static final GuideInteractionEvent.Type FAVORITE = GuideInteractionEvent.Type.FAVORITE;
+
+  @Autowired GuideService guideService;
+  @Autowired InteractionWriteBehind writeBehind;
+  @Autowired GuideRepository guideRepository;
+  @Autowired JdbcTemplate jdbc;
+  @Autowired PlatformTransactionManager txManager;
+
+  private long guideId;
+
+  @BeforeEach
+  void pickGuide() {
+    writeBehind.flush();
+    guideId = guideRepository.search(null, null, PageRequest.of(0, 1)).getContent().get(0).id();
+  }
+
+  @Test
+  void togglesCoalesceToLastStateAndFlushInOneBatch() {
+    long base = count("like_count");
+    guideService.like(guideId, 9201L);
+    guideService.unlike(guideId, 9201L);
+    guideService.like(guideId, 9201L);
+    guideService.favorite(guideId, 9201L);
+    guideService.unfavorite(guideId, 9201L);
+
+    // 落库之前数据库不变，查看者看到的是自己的最新操作
+    assertThat(rows("guide_likes", 9201L)).isZero();
+    assertThat(count("like_count")).isEqualTo(base);
+    GuideService.ViewerFlags flags = guideService.viewerFlags(guideId, 9201L);
+    assertThat(flags.liked()).isTrue();
+    assertThat(flags.favorited()).isFalse();
+    assertThat(guideService.pendingTag(guideId, 9201L)).isEqualTo("-pLf");
+
+    writeBehind.flush();
+
+    assertThat(rows("guide_likes", 9201L)).isEqualTo(1);
+    assertThat(rows("guide_favorites", 9201L)).isZero();
+    assertThat(count("like_count")).isEqualTo(base + 1);
+    assertThat(writeBehind.pendingState(LIKE, 9201L, guideId)).isNull();
+    assertThat(guideService.pendingTag(guideId, 9201L)).isEmpty();
+    assertThat(guideService.viewerFlags(guideId, 9201L).liked()).isTrue();
+  }
+
+  @Test
+  void repeatedAndNoOpStatesDoNotMoveCounters() {
+    guideService.like(guideId, 9211L);
+    writeBehind.flush();
+    long likes = count("like_count");
+    long favorites = count("favorite_count");
+
+    // 已点赞再点赞、从未收藏却取消收藏：落库后都没有实际影响的行
+    guideService.like(guideId, 9211L);
+    guideService.unfavorite(guideId, 9211L);
+    writeBehind.flush();
+
+    assertThat(rows("guide_likes", 9211L)).isEqualTo(1);
+    assertThat(count("like_count")).isEqualTo(likes);
+    assertThat(count("favorite_count")).isEqualTo(favorites);
+
+    guideService.unlike(guideId, 9211L);
+    writeBehind.flush();
+    assertThat(rows("guide_likes", 9211L)).isZero();
+    assertThat(count("like_count")).isEqualTo(likes - 1);
+  }
+
+  @Test
+  void reachingMaxPendingFlushesSynchronously() {
+    long base = count("like_count");
+    for (long user = 9221; user < 9221 + 8; user++) {
+      guideService.like(guideId, user);
+    }
+    // 第 8 条触发调用线程直接落库
+    assertThat(count("like_count")).isEqualTo(base + 8);
+    assertThat(writeBehind.pendingState(LIKE, 9221L, guideId)).isNull();
+  }
+
+  @Test
+  void changeMadeDuringFlushIsKeptForNextFlush() {
+    // 单独的实例：落库事务内发布事件时，模拟同一用户又取消了点赞
+    InteractionWriteBehind[] holder = new InteractionWriteBehind[1];
+    List<Object> published = new ArrayList<>();
+    holder[0] = new InteractionWriteBehind(true, 1000, jdbc, txManager, event -> {
+      published.add(event);
+      if (published.size() == 1) {
+        holder[0].submit(LIKE, 9241L, guideId, false);
+      }
+    });
+    InteractionWriteBehind wb = holder[0];
+    long base = count("like_count");
+
+    wb.submit(LIKE, 9241L, guideId, true);
+    wb.flush();
+    assertThat(rows("guide_likes", 9241L)).isEqualTo(1);
+    assertThat(count("like_count")).isEqualTo(base + 1);
+    assertThat(wb.pendingState(LIKE, 9241L, guideId)).isFalse();
+
+    wb.flush();
+    assertThat(rows("guide_likes", 9241L)).isZero();
+    assertThat(count("like_count")).isEqualTo(base);
+    assertThat(wb.pendingState(LIKE, 9241L, guideId)).isNull();
+    assertThat(published).hasSize(2);
+  }
+
+  @Test
+  void disabledInstanceReportsNoPendingState() {
+    InteractionWriteBehind off = new InteractionWriteBehind(false, 1000, jdbc, txManager, event -> {});
+    off.submit(FAVORITE, 9251L, guideId, true);
+    assertThat(off.pendingState(FAVORITE, 9251L, guideId)).isNull();
+  }
+
+  private long count(String column) {
+    Long v = jdbc.queryForObject("select " + column + " from guides where id = ?", Long.class, guideId);
+    return v == null ? 0 : v;
+  }
+
+  private long rows(String table, long userId) {
+    return jdbc.queryForObject(
+        "select count(*) from " + table + " where guide_id = ? and user_id = ?", Long.class, guideId, userId);
+  }
+}
@@ -0,0 +1,74 @@
+package com.yitong.guides.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+
+import com.yitong.guides.domain.User;
+import com.yitong.guides.security.PasswordHasher;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * 登录时透明重算哈希：旧强度的哈希在登录成功后换成当前强度（令牌版本不变）；
+ * 重算期间密码被并发修改时不覆盖新密码。
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class UserServiceLoginTest {
+  private static final BCryptPasswordEncoder WEAK = new BCryptPasswordEncoder(4);
+
+  @Autowired UserService userService;
+  @Autowired JdbcTemplate jdbc;
+  @SpyBean PasswordHasher passwordHasher;
+
+  @Test
+  void weakHashIsUpgradedOnLogin() {
+    setHash("alice", WEAK.encode("123456"));
+    int version = tokenVersion("alice");
+
+    User u = userService.validateLogin("alice", "123456");
+
+    String stored = hash("alice");
+    assertThat(stored).startsWith("$2a$10$").isEqualTo(u.getPasswordHash());
+    assertThat(passwordHasher.needsRehash(stored)).isFalse();
+    assertThat(tokenVersion("alice")).isEqualTo(version);
+    assertThat(userService.validateLogin("alice", "123456").getId()).isEqualTo(u.getId());
+  }
+
+  @Test
+  void concurrentPasswordChangeWinsOverRehash() {
+    String weak = WEAK.encode("123456");
+    String changed = WEAK.encode("another-password");
+    setHash("bob", weak);
+    // 重算哈希（在事务外排队计算）期间，用户在别处改了密码
+    doAnswer(inv -> {
+          setHash("bob", changed);
+          return inv.callRealMethod();
+        })
+        .when(passwordHasher)
+        .encode("123456");
+
+    User u = userService.validateLogin("bob", "123456");
+
+    assertThat(hash("bob")).isEqualTo(changed);
+    assertThat(u.getPasswordHash()).isEqualTo(weak);
+  }
+
+  private void setHash(String username, String hash) {
+    jdbc.update("update users set password_hash = ? where username = ?", hash, username);
+  }
+
+  private String hash(String username) {
+    return jdbc.queryForObject("select password_hash from users where username = ?", String.class, username);
+  }
+
+  private int tokenVersion(String username) {
+    Integer v = jdbc.queryForObject("select token_version from users where username = ?", Integer.class, username);
+    return v == null ? 0 : v;
+  }
+}
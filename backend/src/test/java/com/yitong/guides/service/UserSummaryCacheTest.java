@@ -0,0 +1,124 @@
+package com.yitong.guides.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.yitong.guides.domain.User;
+import com.yitong.guides.repo.UserRepository;
+import com.yitong.guides.repo.UserSummary;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * 用户摘要缓存：命中不查库、未命中合并为一次 in 查询；按 id 失效后重新加载；加载期间发生失效时不回填旧值；
+ * 超过上限整体清空。最后一例走真实的 UserService，验证事务提交后的 UserChangedEvent 会让缓存失效。
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class UserSummaryCacheTest {
+
+  @Autowired UserSummaryCache cache;
+  @Autowired UserService userService;
+  @Autowired UserRepository userRepository;
+
+  private final UserRepository users = mock(UserRepository.class);
+
+  @Test
+  void missesAreLoadedInOneQueryAndHitsStayInMemory() {
+    answer();
+    UserSummaryCache c = new UserSummaryCache(users, 100);
+
+    Map<Long, UserSummary> first = c.getAll(Arrays.asList(1L, 2L, 2L, null, 99L));
+    assertThat(first).containsOnlyKeys(1L, 2L);
+    verify(users, times(1)).findSummariesByIdIn(List.of(1L, 2L, 99L));
+
+    Map<Long, UserSummary> second = c.getAll(List.of(1L, 2L));
+    assertThat(second.get(1L).displayName()).isEqualTo("用户 1");
+    verify(users, times(1)).findSummariesByIdIn(anyCollection());
+
+    // 只查未命中的那一个
+    c.getAll(List.of(1L, 3L));
+    verify(users).findSummariesByIdIn(List.of(3L));
+  }
+
+  @Test
+  void evictReloadsFromDatabase() {
+    answer();
+    UserSummaryCache c = new UserSummaryCache(users, 100);
+    assertThat(c.get(5L).displayName()).isEqualTo("用户 5");
+
+    when(users.findSummariesByIdIn(anyCollection())).thenReturn(List.of(summary(5L, "改名后", 0)));
+    assertThat(c.get(5L).displayName()).isEqualTo("用户 5");
+    c.onUserChanged(new UserChangedEvent(5L));
+    assertThat(c.get(5L).displayName()).isEqualTo("改名后");
+  }
+
+  @Test
+  void loadOverlappingInvalidationIsNotCached() {
+    UserSummaryCache c = new UserSummaryCache(users, 100);
+    // 查库返回旧值的同时，另一个事务提交了改名并失效
+    when(users.findSummariesByIdIn(anyCollection())).thenAnswer(inv -> {
+      c.evict(7L);
+      return List.of(summary(7L, "旧名", 0));
+    });
+    assertThat(c.get(7L).displayName()).isEqualTo("旧名");
+
+    when(users.findSummariesByIdIn(anyCollection())).thenReturn(List.of(summary(7L, "新名", 0)));
+    assertThat(c.get(7L).displayName()).isEqualTo("新名");
+    assertThat(c.get(7L).displayName()).isEqualTo("新名");
+    verify(users, times(2)).findSummariesByIdIn(anyCollection());
+  }
+
+  @Test
+  void overflowClearsInsteadOfGrowing() {
+    answer();
+    UserSummaryCache c = new UserSummaryCache(users, 3);
+    c.getAll(List.of(1L, 2L, 3L));
+    c.getAll(List.of(4L));
+    c.getAll(List.of(4L));
+    verify(users, times(1)).findSummariesByIdIn(List.of(4L));
+
+    // 1 已随清空被丢弃，需要重新加载
+    c.getAll(List.of(1L));
+    verify(users).findSummariesByIdIn(List.of(1L));
+    assertThat(UserSummaryCache.publicName(null)).isEqualTo(User.displayNamePublic(2, null));
+  }
+
+  @Test
+  void committedUserChangeEvictsSharedCache() {
+    User u = new User();
+    u.setUsername("summary018");
+    u.setPasswordHash("x");
+    u.setDisplayName("摘要");
+    long id = userRepository.save(u).getId();
+    assertThat(UserSummaryCache.publicName(cache.get(id))).isEqualTo("摘要");
+
+    userService.deactivateUser(id);
+
+    UserSummary after = cache.get(id);
+    assertThat(after.status()).isEqualTo(2);
+    assertThat(UserSummaryCache.publicName(after)).isEqualTo(User.displayNamePublic(2, "摘要"));
+  }
+
+  /** 查库时按传入的 id 返回“用户 n”，id >= 90 的视为不存在 */
+  private void answer() {
+    when(users.findSummariesByIdIn(anyCollection())).thenAnswer(inv -> {
+      Collection<Long> ids = inv.getArgument(0);
+      return ids.stream().filter(id -> id < 90).map(id -> summary(id, "用户 " + id, 0)).toList();
+    });
+  }
+
+  private static UserSummary summary(long id, String displayName, int status) {
+    return new UserSummary(id, "u" + id, displayName, status, true);
+  }
+}
@@ -0,0 +1,287 @@
+package com.yitong.guides.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 派生图：按请求宽度选档、EXIF Orientation 解析（含截断与畸形的 APP1 段）、像素数上限与多帧 GIF 跳过，
+ * 以及按方向转正后的派生尺寸。图片均在测试中现场生成。
+ */
+class ImageDerivativesTest {
+
+  @TempDir Path dir;
+
+  private ImageDerivatives derivatives;
+
+  @AfterEach
+  void tearDown() {
+    if (derivatives != null) {
+      derivatives.shutdown();
+    }
+  }
+
+  @Test
+  void pickReturnsSmallestConfiguredWidthNotBelowRequest() {
+    // 无序、重复与非正数的配置会被整理成 320, 640, 1280
+    derivatives = new ImageDerivatives(new int[] {640, 0, 1280, 320, 640, -5}, 0.82f, 40_000_000L, 1, 10);
+
+    assertThat(derivatives.pick(0)).isZero();
+    assertThat(derivatives.pick(-1)).isZero();
+    assertThat(derivatives.pick(1)).isEqualTo(320);
+    assertThat(derivatives.pick(320)).isEqualTo(320);
+    assertThat(derivatives.pick(321)).isEqualTo(640);
+    assertThat(derivatives.pick(1280)).isEqualTo(1280);
+    assertThat(derivatives.pick(1281)).isZero();
+    assertThat(ImageDerivatives.derivativeName("ab.cd.jpg", 640)).isEqualTo("ab.cd@640.jpg");
+  }
+
+  @Test
+  void pickWithoutWidthsAlwaysUsesOriginal() {
+    derivatives = new ImageDerivatives(new int[0], 0.82f, 40_000_000L, 1, 10);
+    assertThat(derivatives.pick(100)).isZero();
+  }
+
+  @Test
+  void readsOrientationInBothByteOrders() throws Exception {
+    assertThat(ImageDerivatives.exifOrientation(file("le.jpg", jpegWithApp1(tiff(true, 6))))).isEqualTo(6);
+    assertThat(ImageDerivatives.exifOrientation(file("be.jpg", jpegWithApp1(tiff(false, 8))))).isEqualTo(8);
+    // Orientation 之前还有别的段（APP0）
+    byte[] app0 = segment(0xE0, "JFIF\0".getBytes());
+    assertThat(ImageDerivatives.exifOrientation(file("app0.jpg", concat(soi(), app0, app1(tiff(true, 3))))))
+        .isEqualTo(3);
+  }
+
+  @Test
+  void missingOrInvalidOrientationDefaultsToOne() throws Exception {
+    assertThat(ImageDerivatives.exifOrientation(file("png.jpg", new byte[] {(byte) 0x89, 'P', 'N', 'G'})))
+        .isEqualTo(1);
+    assertThat(ImageDerivatives.exifOrientation(file("plain.jpg", concat(soi(), segment(0xE0, new byte[8])))))
+        .isEqualTo(1);
+    assertThat(ImageDerivatives.exifOrientation(file("nine.jpg", jpegWithApp1(tiff(true, 9))))).isEqualTo(1);
+    assertThat(ImageDerivatives.exifOrientation(dir.resolve("missing.jpg"))).isEqualTo(1);
+    // SOS 之后的内容不再扫描
+    byte[] sos = segment(0xDA, new byte[4]);
+    assertThat(ImageDerivatives.exifOrientation(file("sos.jpg", concat(soi(), sos, app1(tiff(true, 6))))))
+        .isEqualTo(1);
+  }
+
+  @Test
+  void truncatedOrMalformedApp1NeverReadsPastSegment() throws Exception {
+    byte[] full = tiff(true, 6);
+    // 段长只覆盖到 TIFF 头的一部分，后面紧跟的字节看起来像 TIFF 头的剩余部分
+    for (int keep = 0; keep < 8; keep++) {
+      byte[] cut = Arrays.copyOf(full, keep);
+      byte[] bytes = concat(soi(), app1(cut), Arrays.copyOfRange(full, keep, full.length));
+      assertThat(ImageDerivatives.exifOrientation(file("cut" + keep + ".jpg", bytes))).as("keep %d", keep).isEqualTo(1);
+    }
+    // IFD 表项被截断：段内放不下完整的 12 字节表项
+    byte[] shortEntry = Arrays.copyOf(full, full.length - 4);
+    assertThat(ImageDerivatives.exifOrientation(file("entry.jpg", jpegWithApp1(shortEntry)))).isEqualTo(1);
+    // 文件本身在 APP1 中途结束（段长声明大于实际内容）
+    byte[] app1 = app1(full);
+    byte[] truncatedFile = Arrays.copyOf(concat(soi(), app1), 2 + 4 + 6 + 10);
+    assertThat(ImageDerivatives.exifOrientation(file("eof.jpg", truncatedFile))).isEqualTo(1);
+    // IFD 偏移指向段外或为负、表项数远超段长
+    byte[] farIfd = full.clone();
+    farIfd[4] = (byte) 0xF0;
+    farIfd[7] = 0x7F;
+    assertThat(ImageDerivatives.exifOrientation(file("far.jpg", jpegWithApp1(farIfd)))).isEqualTo(1);
+    byte[] negativeIfd = full.clone();
+    negativeIfd[7] = (byte) 0xFF;
+    assertThat(ImageDerivatives.exifOrientation(file("neg.jpg", jpegWithApp1(negativeIfd)))).isEqualTo(1);
+    byte[] manyEntries = full.clone();
+    manyEntries[8] = (byte) 0xFF;
+    manyEntries[9] = (byte) 0xFF;
+    manyEntries[10] = 0;
+    assertThat(ImageDerivatives.exifOrientation(file("many.jpg", jpegWithApp1(manyEntries)))).isEqualTo(1);
+    // 字节序标记错误、段长小于 2
+    byte[] badOrder = full.clone();
+    badOrder[0] = 'X';
+    assertThat(ImageDerivatives.exifOrientation(file("order.jpg", jpegWithApp1(badOrder)))).isEqualTo(1);
+    byte[] zeroLength = concat(soi(), new byte[] {(byte) 0xFF, (byte) 0xE1, 0, 0});
+    assertThat(ImageDerivatives.exifOrientation(file("zero.jpg", zeroLength))).isEqualTo(1);
+  }
+
+  @Test
+  void derivesOnlyNarrowerWidths() throws Exception {
+    derivatives = new ImageDerivatives(new int[] {320, 640, 1280}, 0.82f, 40_000_000L, 1, 10);
+    Path png = dir.resolve("a.png");
+    ImageIO.write(noise(800, 400, BufferedImage.TYPE_INT_RGB), "png", png.toFile());
+
+    derivatives.submit(png, ImageType.PNG);
+    awaitDone(1);
+
+    assertThat(derivatives.stats().processed()).isEqualTo(1);
+    assertThat(size(dir.resolve("a@320.png"))).containsExactly(320, 160);
+    assertThat(size(dir.resolve("a@640.png"))).containsExactly(640, 320);
+    assertThat(dir.resolve("a@1280.png")).doesNotExist();
+  }
+
+  @Test
+  void rotatedJpegIsDerivedUpright() throws Exception {
+    derivatives = new ImageDerivatives(new int[] {320, 640}, 0.82f, 40_000_000L, 1, 10);
+    // 存储为 200x800，Orientation 6（顺时针转 90 度显示），显示尺寸 800x200
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    ImageIO.write(noise(200, 800, BufferedImage.TYPE_INT_RGB), "jpg", encoded);
+    byte[] jpeg = encoded.toByteArray();
+    Path file = file("r.jpg", concat(soi(), app1(tiff(true, 6)), Arrays.copyOfRange(jpeg, 2, jpeg.length)));
+    assertThat(ImageDerivatives.exifOrientation(file)).isEqualTo(6);
+
+    derivatives.submit(file, ImageType.JPG);
+    awaitDone(1);
+
+    assertThat(size(dir.resolve("r@320.jpg"))).containsExactly(320, 80);
+    assertThat(size(dir.resolve("r@640.jpg"))).containsExactly(640, 160);
+  }
+
+  @Test
+  void imagesAboveMaxPixelsAreSkipped() throws Exception {
+    derivatives = new ImageDerivatives(new int[] {320}, 0.82f, 100_000L, 1, 10);
+    Path big = dir.resolve("big.png");
+    ImageIO.write(noise(400, 400, BufferedImage.TYPE_INT_RGB), "png", big.toFile());
+
+    derivatives.submit(big, ImageType.PNG);
+    awaitDone(1);
+
+    assertThat(derivatives.stats().skipped()).isEqualTo(1);
+    assertThat(derivatives.stats().derivatives()).isZero();
+    assertThat(dir.resolve("big@320.png")).doesNotExist();
+  }
+
+  @Test
+  void animatedGifIsSkippedButStillGifIsDerived() throws Exception {
+    derivatives = new ImageDerivatives(new int[] {320}, 0.82f, 40_000_000L, 1, 10);
+    Path animated = dir.resolve("anim.gif");
+    writeGif(animated, 2);
+    Path still = dir.resolve("still.gif");
+    writeGif(still, 1);
+
+    derivatives.submit(animated, ImageType.GIF);
+    derivatives.submit(still, ImageType.GIF);
+    awaitDone(2);
+
+    assertThat(dir.resolve("anim@320.gif")).doesNotExist();
+    assertThat(size(dir.resolve("still@320.gif"))).containsExactly(320, 320);
+    assertThat(derivatives.stats().skipped()).isEqualTo(1);
+    assertThat(derivatives.stats().processed()).isEqualTo(1);
+  }
+
+  // ---- 构造测试图片与 JPEG 段 ----
+
+  /** 只含 IFD0 一个 Orientation 表项的 TIFF 块（18 字节） */
+  private static byte[] tiff(boolean littleEndian, int orientation) {
+    byte[] t = new byte[8 + 2 + 12];
+    if (littleEndian) {
+      t[0] = 'I';
+      t[1] = 'I';
+      t[2] = 42;
+      t[4] = 8;
+      t[8] = 1;
+      t[10] = 0x12;
+      t[11] = 0x01;
+      t[12] = 3;
+      t[14] = 1;
+      t[18] = (byte) orientation;
+    } else {
+      t[0] = 'M';
+      t[1] = 'M';
+      t[3] = 42;
+      t[7] = 8;
+      t[9] = 1;
+      t[10] = 0x01;
+      t[11] = 0x12;
+      t[13] = 3;
+      t[17] = 1;
+      t[19] = (byte) orientation;
+    }
+    return t;
+  }
+
+  private static byte[] soi() {
+    return new byte[] {(byte) 0xFF, (byte) 0xD8};
+  }
+
+  private static byte[] app1(byte[] tiff) {
+    return segment(0xE1, concat("Exif\0\0".getBytes(), tiff));
+  }
+
+  private static byte[] jpegWithApp1(byte[] tiff) {
+    return concat(soi(), app1(tiff), new byte[] {(byte) 0xFF, (byte) 0xD9});
+  }
+
+  private static byte[] segment(int marker, byte[] payload) {
+    int len = payload.length + 2;
+    return concat(new byte[] {(byte) 0xFF, (byte) marker, (byte) (len >> 8), (byte) len}, payload);
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] p : parts) {
+      out.writeBytes(p);
+    }
+    return out.toByteArray();
+  }
+
+  private Path file(String name, byte[] bytes) throws Exception {
+    return Files.write(dir.resolve(name), bytes);
+  }
+
+  /** 随机像素：重新编码后缩小的派生图一定比原图小 */
+  private static BufferedImage noise(int w, int h, int type) {
+    BufferedImage img = new BufferedImage(w, h, type);
+    Random r = new Random(w * 31L + h);
+    for (int y = 0; y < h; y++) {
+      for (int x = 0; x < w; x++) {
+        img.setRGB(x, y, r.nextInt(0x1000000));
+      }
+    }
+    return img;
+  }
+
+  private static void writeGif(Path file, int frames) throws Exception {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+    try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+      writer.setOutput(out);
+      writer.prepareWriteSequence(null);
+      for (int i = 0; i < frames; i++) {
+        writer.writeToSequence(new IIOImage(noise(400, 400, BufferedImage.TYPE_BYTE_INDEXED), null, null), null);
+      }
+      writer.endWriteSequence();
+    } finally {
+      writer.dispose();
+    }
+  }
+
+  private static int[] size(Path file) throws Exception {
+    assertThat(file).exists();
+    BufferedImage img = ImageIO.read(file.toFile());
+    return new int[] {img.getWidth(), img.getHeight()};
+  }
+
+  /** 后台任务结束（处理、跳过或失败）的数量达到 n */
+  private void awaitDone(int n) throws Exception {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+    while (System.nanoTime() < deadline) {
+      ImageDerivatives.Stats s = derivatives.stats();
+      if (s.processed() + s.skipped() + s.failed() >= n) {
+        return;
+      }
+      Thread.sleep(10);
+    }
+    throw new AssertionError("派生任务未在时限内完成: " + derivatives.stats());
+  }
+}
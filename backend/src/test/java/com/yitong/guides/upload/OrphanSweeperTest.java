@@ -0,0 +1,161 @@
+package com.yitong.guides.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.yitong.guides.domain.Guide;
+import com.yitong.guides.domain.UploadRef;
+import com.yitong.guides.repo.GuideRepository;
+import com.yitong.guides.repo.UploadRefRepository;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/** 孤儿回收：回填完成标记之前不动任何文件；之后只隔离未被引用的文件，重新引用时移回 */
+class OrphanSweeperTest {
+  private static final String REFERENCED = "ab/cd/aaaa.png";
+  private static final String ORPHAN = "ab/cd/bbbb.png";
+
+  @TempDir Path dir;
+
+  private final UploadRefRepository refs = mock(UploadRefRepository.class);
+  private final GuideRepository guides = mock(GuideRepository.class);
+  private UploadStorage storage;
+  private OrphanSweeper sweeper;
+  private UploadRefs uploadRefs;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    storage = new UploadStorage(dir.toString(), 1024 * 1024);
+    sweeper = new OrphanSweeper(
+        storage, refs, new HotFileCache(true, 1024 * 1024, 65536),
+        true, 100, 24, 168);
+    uploadRefs = new UploadRefs(refs, guides, sweeper, mock(PlatformTransactionManager.class));
+    writeOld(REFERENCED);
+    writeOld(ORPHAN);
+    // 只有 REFERENCED 被未删除的攻略引用
+    when(refs.findLivePathsIn(anyCollection())).thenAnswer(inv -> {
+      Collection<String> paths = inv.getArgument(0);
+      return paths.contains(REFERENCED) ? List.of(REFERENCED) : List.of();
+    });
+  }
+
+  @Test
+  void partialBackfillKeepsSweeperIdle() {
+    // 回填在第二批中断：ORPHAN 实际被第二批里的攻略引用，只是引用行还没写入，按 upload_refs 看像孤儿
+    Guide g = guide(1L, "![](/uploads/" + REFERENCED + ")");
+    when(guides.findByDeletedFalseAndIdGreaterThanOrderByIdAsc(eq(0L), any())).thenReturn(List.of(g));
+    when(guides.findByDeletedFalseAndIdGreaterThanOrderByIdAsc(eq(1L), any()))
+        .thenThrow(new DataAccessResourceFailureException("连接中断"));
+
+    assertThatThrownBy(() -> uploadRefs.run(null)).isInstanceOf(DataAccessResourceFailureException.class);
+    verify(refs, never()).save(argThat(r -> UploadRefs.BACKFILL_MARKER.equals(r.getPath())));
+
+    sweeper.sweep();
+    sweeper.sweep();
+    assertThat(dir.resolve(REFERENCED)).exists();
+    assertThat(dir.resolve(ORPHAN)).exists();
+    verify(refs, never()).findLivePathsIn(anyCollection());
+    assertThat(sweeper.stats().rounds()).isZero();
+  }
+
+  @Test
+  void completedBackfillWritesMarkerAfterLastBatch() {
+    Guide g = guide(1L, "![](/uploads/" + REFERENCED + ")");
+    when(guides.findByDeletedFalseAndIdGreaterThanOrderByIdAsc(eq(0L), any())).thenReturn(List.of(g));
+    when(guides.findByDeletedFalseAndIdGreaterThanOrderByIdAsc(eq(1L), any())).thenReturn(List.of());
+
+    uploadRefs.run(null);
+
+    InOrder order = inOrder(refs);
+    order.verify(refs).saveAll(argThat(rs -> rs.iterator().next().getPath().equals(REFERENCED)));
+    order.verify(refs).save(argThat(r -> UploadRefs.BACKFILL_MARKER.equals(r.getPath()) && r.getGuideId() == 0L));
+  }
+
+  @Test
+  void afterMarkerOnlyOrphansAreQuarantinedAndRestorable() {
+    when(refs.existsByPath(UploadRefs.BACKFILL_MARKER)).thenReturn(true);
+
+    sweeper.sweep();
+    assertThat(dir.resolve(REFERENCED)).exists();
+    assertThat(dir.resolve(ORPHAN)).doesNotExist();
+    assertThat(dir.resolve(".quarantine").resolve(ORPHAN)).exists();
+    assertThat(sweeper.stats().quarantined()).isEqualTo(1);
+
+    sweeper.restore(List.of(ORPHAN));
+    assertThat(dir.resolve(ORPHAN)).exists();
+    assertThat(dir.resolve(".quarantine").resolve(ORPHAN)).doesNotExist();
+  }
+
+  @Test
+  void recheckUnderMoveLockSparesFilesReferencedMeanwhile() {
+    when(refs.existsByPath(UploadRefs.BACKFILL_MARKER)).thenReturn(true);
+    // 第一次批量查询时 ORPHAN 还未被引用，隔离前重查时已被引用
+    when(refs.findLivePathsIn(anyCollection()))
+        .thenReturn(List.of(REFERENCED))
+        .thenReturn(List.of(ORPHAN));
+
+    sweeper.sweep();
+    assertThat(dir.resolve(ORPHAN)).exists();
+    assertThat(sweeper.stats().quarantined()).isZero();
+  }
+
+  @Test
+  void reuploadDuringSweepSparesFile() throws Exception {
+    when(refs.existsByPath(UploadRefs.BACKFILL_MARKER)).thenReturn(true);
+    byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R'};
+    String path = storage.store(new ByteArrayInputStream(png)).path();
+    Files.setLastModifiedTime(dir.resolve(path), FileTime.from(Instant.now().minus(48, ChronoUnit.HOURS)));
+    // 批量查询之后、隔离之前，同内容被重新上传（命中已有文件，只刷新修改时间）
+    AtomicBoolean reuploaded = new AtomicBoolean();
+    when(refs.findLivePathsIn(anyCollection())).thenAnswer(inv -> {
+      Collection<String> paths = inv.getArgument(0);
+      if (paths.contains(path) && reuploaded.compareAndSet(false, true)) {
+        assertThat(storage.store(new ByteArrayInputStream(png)).deduplicated()).isTrue();
+      }
+      return paths.contains(REFERENCED) ? List.of(REFERENCED) : List.of();
+    });
+
+    sweeper.sweep();
+    assertThat(reuploaded).isTrue();
+    assertThat(dir.resolve(path)).exists();
+    assertThat(dir.resolve(".quarantine").resolve(path)).doesNotExist();
+    assertThat(dir.resolve(ORPHAN)).doesNotExist();
+    assertThat(sweeper.stats().quarantined()).isEqualTo(1);
+  }
+
+  private void writeOld(String rel) throws Exception {
+    Path p = dir.resolve(rel);
+    Files.createDirectories(p.getParent());
+    Files.write(p, new byte[] {(byte) 0x89, 'P', 'N', 'G'});
+    Files.setLastModifiedTime(p, FileTime.from(Instant.now().minus(48, ChronoUnit.HOURS)));
+  }
+
+  private static Guide guide(long id, String markdown) {
+    Guide g = mock(Guide.class);
+    when(g.getId()).thenReturn(id);
+    when(g.getContentMarkdown()).thenReturn(markdown);
+    return g;
+  }
+}
@@ -0,0 +1,75 @@
+package com.yitong.guides.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.yitong.guides.domain.GuideCategory;
+import com.yitong.guides.repo.UploadRefRepository;
+import com.yitong.guides.repo.UserRepository;
+import com.yitong.guides.service.GuideService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * 攻略正文引用的上传文件：地址提取（派生图、查询串归一到原图，拒绝 .. 与 //，只认 /uploads/ 下的地址），
+ * 以及创建/修改攻略时 upload_refs 按差量同步、启动回填写入完成标记。
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class UploadRefsTest {
+  private static final String A = "ab/cd/" + "a".repeat(64) + ".png";
+  private static final String B = "12/34/" + "b".repeat(64) + ".jpg";
+
+  @Autowired GuideService guideService;
+  @Autowired UploadRefRepository refRepository;
+  @Autowired UserRepository userRepository;
+
+  @Test
+  void scanNormalizesDerivativesAndQueryStrings() {
+    String md = """
+        ![封面](/uploads/%s)
+        ![缩略](http://localhost:8080/uploads/%s?w=640)
+        <img src="/uploads/%s">
+        ![派生](/uploads/%s)
+        旧版平铺文件 /uploads/0f1e2d3c-uuid.webp 也算
+        """.formatted(A, A, B, B.replace(".jpg", "@1280.jpg"));
+
+    assertThat(UploadRefs.scan(md)).containsExactly(A, B, "0f1e2d3c-uuid.webp");
+  }
+
+  @Test
+  void scanIgnoresTraversalAndOtherPrefixes() {
+    assertThat(UploadRefs.scan(null)).isEmpty();
+    assertThat(UploadRefs.scan("")).isEmpty();
+    assertThat(UploadRefs.scan("/uploads/ab/../../etc/passwd.png")).isEmpty();
+    assertThat(UploadRefs.scan("/uploads/ab//cd.png")).isEmpty();
+    assertThat(UploadRefs.scan("/uploads/.incoming/x.png")).isEmpty();
+    assertThat(UploadRefs.scan("/static/ab/cd.png 与 /uploads/ab/cd")).isEmpty();
+    assertThat(UploadRefs.scan("/uploads/ab/" + "x".repeat(300) + ".png")).isEmpty();
+  }
+
+  @Test
+  void createAndUpdateSyncRefsByDiff() {
+    long author = userRepository.findByUsername("alice").orElseThrow().getId();
+    long guideId = guideService
+        .create(author, "引用同步", GuideCategory.TRAVEL, null, "![](/uploads/" + A + ") ![](/uploads/" + B + ")")
+        .getId();
+    assertThat(refRepository.findPathsByGuideId(guideId)).containsExactlyInAnyOrder(A, B);
+    assertThat(refRepository.findGuideIdsByPath(A)).contains(guideId);
+
+    // 去掉 B、A 改用派生图地址：A 的引用保留，B 的删除
+    guideService.update(guideId, author, "引用同步", GuideCategory.TRAVEL, null,
+        "![](/uploads/" + A.replace(".png", "@640.png") + ")");
+    assertThat(refRepository.findPathsByGuideId(guideId)).containsExactly(A);
+    assertThat(refRepository.findGuideIdsByPath(B)).doesNotContain(guideId);
+
+    guideService.update(guideId, author, "引用同步", GuideCategory.TRAVEL, null, "没有图片了");
+    assertThat(refRepository.findPathsByGuideId(guideId)).isEmpty();
+  }
+
+  @Test
+  void startupBackfillLeavesMarker() {
+    assertThat(refRepository.existsByPath(UploadRefs.BACKFILL_MARKER)).isTrue();
+  }
+}
@@ -0,0 +1,179 @@
+package com.yitong.guides.upload;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+/**
+ * /uploads/** 吞吐对比：UploadFileServer 与此前使用的 Spring ResourceHttpRequestHandler（addResourceHandlers 方式），
+ * 同一目录、同一批文件，在进程内用 Mock 请求循环调用，不经网络与 Tomcat（因此 sendfile 分支不参与）。
+ * 默认不运行：mvn test -Dbenchmark=true -Dtest=UploadServeBenchmarkTest
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class UploadServeBenchmarkTest {
+  private static final long WARMUP_NANOS = 2_000_000_000L;
+  private static final long MEASURE_NANOS = 5_000_000_000L;
+
+  /** 共用一个：MockHttpServletRequest(method, uri) 每次都新建 MockServletContext，开销会盖过被测代码 */
+  private static final MockServletContext SERVLET_CONTEXT = new MockServletContext();
+
+  @TempDir Path dir;
+
+  private ImageDerivatives derivatives;
+  private UploadFileServer server;
+  private ResourceHttpRequestHandler resourceHandler;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    derivatives = new ImageDerivatives(new int[] {320, 640, 1280}, 0.82f, 40_000_000L, 1, 10);
+    UploadStorage storage = new UploadStorage(dir.toString(), 10 * 1024 * 1024);
+    server = new UploadFileServer(storage, derivatives, new HotFileCache(true, 32 * 1024 * 1024, 256 * 1024), 49152);
+    resourceHandler = new ResourceHttpRequestHandler();
+    resourceHandler.setLocations(List.of(new FileSystemResource(dir.toString() + "/")));
+    resourceHandler.setServletContext(SERVLET_CONTEXT);
+    resourceHandler.afterPropertiesSet();
+  }
+
+  @AfterEach
+  void tearDown() {
+    derivatives.shutdown();
+  }
+
+  @Test
+  void smallFile() throws Exception {
+    compare(writeFile(8 * 1024), 8 * 1024);
+  }
+
+  @Test
+  void largeFile() throws Exception {
+    compare(writeFile(512 * 1024), 512 * 1024);
+  }
+
+  /** 写一个内容寻址路径下的 PNG（魔数 + 随机内容），返回相对路径 */
+  private String writeFile(int size) throws Exception {
+    byte[] data = new byte[size];
+    new Random(size).nextBytes(data);
+    byte[] magic = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    System.arraycopy(magic, 0, data, 0, magic.length);
+    String name = String.format("%064x", size);
+    String rel = "ab/cd/" + name + ".png";
+    Path file = dir.resolve(rel);
+    Files.createDirectories(file.getParent());
+    Files.write(file, data);
+    return rel;
+  }
+
+  private void compare(String rel, int size) throws Exception {
+    byte[] expected = Files.readAllBytes(dir.resolve(rel));
+    assertArrayEquals(expected, viaServer(rel).getContentAsByteArray());
+    assertArrayEquals(expected, viaResourceHandler(rel).getContentAsByteArray());
+    // 条件请求：两者都应返回 304
+    MockHttpServletResponse first = viaServer(rel);
+    MockHttpServletRequest cond = request(rel);
+    cond.addHeader("If-None-Match", first.getHeader("ETag"));
+    MockHttpServletResponse notModified = new BulkResponse();
+    server.serve(rel, cond, notModified);
+    assertEquals(HttpServletResponse.SC_NOT_MODIFIED, notModified.getStatus());
+
+    double serverOps = measure(() -> viaServer(rel));
+    double handlerOps = measure(() -> viaResourceHandler(rel));
+    System.out.printf(
+        "[uploads %dKB] UploadFileServer %.0f req/s, ResourceHttpRequestHandler %.0f req/s (%.2fx)%n",
+        size / 1024, serverOps, handlerOps, serverOps / handlerOps);
+  }
+
+  private MockHttpServletResponse viaServer(String rel) throws Exception {
+    MockHttpServletResponse resp = new BulkResponse();
+    server.serve(rel, request(rel), resp);
+    assertEquals(200, resp.getStatus());
+    return resp;
+  }
+
+  private MockHttpServletResponse viaResourceHandler(String rel) throws Exception {
+    MockHttpServletRequest req = request(rel);
+    req.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, rel);
+    MockHttpServletResponse resp = new BulkResponse();
+    resourceHandler.handleRequest(req, resp);
+    assertEquals(200, resp.getStatus());
+    return resp;
+  }
+
+  private static MockHttpServletRequest request(String rel) {
+    MockHttpServletRequest req = new MockHttpServletRequest(SERVLET_CONTEXT, "GET", "/uploads/" + rel);
+    req.setAttribute("org.apache.tomcat.sendfile.support", Boolean.FALSE);
+    return req;
+  }
+
+  /** MockHttpServletResponse 的输出流逐字节写入并 flush，大文件时它本身就是瓶颈；这里换成批量写入 */
+  private static final class BulkResponse extends MockHttpServletResponse {
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final ServletOutputStream out =
+        new ServletOutputStream() {
+          @Override
+          public void write(int b) {
+            body.write(b);
+          }
+
+          @Override
+          public void write(byte[] b, int off, int len) {
+            body.write(b, off, len);
+          }
+
+          @Override
+          public boolean isReady() {
+            return true;
+          }
+
+          @Override
+          public void setWriteListener(WriteListener listener) {}
+        };
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+      return out;
+    }
+
+    @Override
+    public byte[] getContentAsByteArray() {
+      return body.toByteArray();
+    }
+  }
+
+  private interface Call {
+    void run() throws Exception;
+  }
+
+  /** 先预热 2s，再计时 5s，返回每秒请求数 */
+  private static double measure(Call call) throws Exception {
+    long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+    while (System.nanoTime() < warmupEnd) {
+      call.run();
+    }
+    long start = System.nanoTime();
+    long ops = 0;
+    while (System.nanoTime() - start < MEASURE_NANOS) {
+      call.run();
+      ops++;
+    }
+    return ops / ((System.nanoTime() - start) / 1e9);
+  }
+}
@@ -0,0 +1,203 @@
+package com.yitong.guides.upload;
+
+import com.yitong.guides.domain.User;
+import com.yitong.guides.repo.UserRepository;
+import com.yitong.guides.security.JwtService;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * 大图上传的磁盘写入与堆分配：同一批 8MB 图片（每次内容不同，不命中去重）分别走表单上传（Tomcat 先把 part 落到临时文件，
+ * 再读出来写入上传目录）与流式上传（请求体直接写入上传目录），4 个线程并发。
+ * 磁盘写入取本进程 /proc/self/io 的 write_bytes 增量（只在 Linux 上有），堆分配取 Tomcat 工作线程（http-nio-*）
+ * 的 ThreadMXBean 分配字节数增量，两者都按成功上传次数平均。
+ * 默认不运行：mvn test -Dbenchmark=true -Dtest=UploadStorageBenchmarkTest
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class UploadStorageBenchmarkTest {
+  private static final int FILE_BYTES = 8 * 1024 * 1024;
+  private static final int THREADS = 4;
+  private static final int WARMUP_UPLOADS = 8;
+  private static final int MEASURE_UPLOADS = 40;
+  private static final String BOUNDARY = "----yitong-bench-boundary";
+
+  @LocalServerPort int port;
+  @Autowired JwtService jwtService;
+  @Autowired UserRepository userRepository;
+  @Autowired UploadStorage storage;
+
+  private final HttpClient client =
+      HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+  private final AtomicInteger sequence = new AtomicInteger();
+  private String token;
+
+  @Test
+  void multipartVersusStreaming() throws Exception {
+    User alice = userRepository.findByUsername("alice").orElseThrow();
+    token = jwtService.issueToken(alice.getId(), alice.getUsername(), "USER", alice.getTokenVersion());
+
+    phase(true, WARMUP_UPLOADS);
+    phase(false, WARMUP_UPLOADS);
+    Result multipart = phase(true, MEASURE_UPLOADS);
+    Result streaming = phase(false, MEASURE_UPLOADS);
+
+    System.out.printf("[upload] %dMB x %d, %d threads%n", FILE_BYTES >> 20, MEASURE_UPLOADS, THREADS);
+    System.out.println("[upload] multipart " + multipart);
+    System.out.println("[upload] streaming " + streaming);
+  }
+
+  /** 并发上传 uploads 次，结束后清空上传目录 */
+  private Result phase(boolean multipart, int uploads) throws Exception {
+    AtomicInteger remaining = new AtomicInteger(uploads);
+    LongAdder ok = new LongAdder();
+    long[][] samples = new long[THREADS][];
+    long ioBefore = writeBytes();
+    long heapBefore = workerAllocatedBytes();
+    long begin = System.nanoTime();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      int thread = t;
+      threads.add(start(() -> {
+        byte[] png = new byte[FILE_BYTES];
+        new Random(thread).nextBytes(png);
+        byte[] magic = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+        System.arraycopy(magic, 0, png, 0, magic.length);
+        long[] s = new long[uploads];
+        int n = 0;
+        while (remaining.getAndDecrement() > 0) {
+          // 每次改几个字节，内容寻址下不会命中已有文件
+          int seq = sequence.incrementAndGet();
+          png[16] = (byte) seq;
+          png[17] = (byte) (seq >> 8);
+          png[18] = (byte) thread;
+          long start = System.nanoTime();
+          if (send(multipart ? multipartRequest(png) : streamingRequest(png)) == 200) {
+            s[n++] = System.nanoTime() - start;
+            ok.increment();
+          }
+        }
+        samples[thread] = Arrays.copyOf(s, n);
+      }));
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    double seconds = (System.nanoTime() - begin) / 1e9;
+    long io = writeBytes() - ioBefore;
+    long heap = workerAllocatedBytes() - heapBefore;
+    long[] all = Arrays.stream(samples).flatMapToLong(Arrays::stream).sorted().toArray();
+    long done = Math.max(1, ok.sum());
+    clearUploads();
+    return new Result(ok.sum(), done / seconds, io / done, heap / done, pct(all, 0.50), pct(all, 0.99));
+  }
+
+  private HttpRequest streamingRequest(byte[] png) {
+    return HttpRequest.newBuilder(URI.create(base() + "/api/upload"))
+        .header("Authorization", "Bearer " + token)
+        .header("Content-Type", "image/png")
+        .POST(HttpRequest.BodyPublishers.ofByteArray(png))
+        .build();
+  }
+
+  private HttpRequest multipartRequest(byte[] png) {
+    byte[] head = ("--" + BOUNDARY + "\r\n"
+        + "Content-Disposition: form-data; name=\"file\"; filename=\"a.png\"\r\n"
+        + "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+    byte[] tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8);
+    return HttpRequest.newBuilder(URI.create(base() + "/api/upload"))
+        .header("Authorization", "Bearer " + token)
+        .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+        .POST(HttpRequest.BodyPublishers.concat(
+            HttpRequest.BodyPublishers.ofByteArray(head),
+            HttpRequest.BodyPublishers.ofByteArray(png),
+            HttpRequest.BodyPublishers.ofByteArray(tail)))
+        .build();
+  }
+
+  private int send(HttpRequest request) {
+    try {
+      return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    } catch (Exception e) {
+      return -1;
+    }
+  }
+
+  private void clearUploads() throws Exception {
+    try (Stream<Path> s = Files.walk(storage.dir())) {
+      for (Path p : s.filter(Files::isRegularFile).toList()) {
+        Files.deleteIfExists(p);
+      }
+    }
+  }
+
+  /** 本进程累计提交给块设备层的写入字节数；非 Linux 返回 0 */
+  private static long writeBytes() throws Exception {
+    Path io = Path.of("/proc/self/io");
+    if (!Files.exists(io)) {
+      return 0;
+    }
+    for (String line : Files.readAllLines(io)) {
+      if (line.startsWith("write_bytes:")) {
+        return Long.parseLong(line.substring("write_bytes:".length()).trim());
+      }
+    }
+    return 0;
+  }
+
+  /** Tomcat 工作线程累计分配的堆字节数（工作线程在预热后常驻，增量即本段请求处理的分配） */
+  private static long workerAllocatedBytes() {
+    com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long total = 0;
+    for (Thread t : Thread.getAllStackTraces().keySet()) {
+      if (t.getName().startsWith("http-nio-")) {
+        total += Math.max(0, mx.getThreadAllocatedBytes(t.getId()));
+      }
+    }
+    return total;
+  }
+
+  private String base() {
+    return "http://localhost:" + port;
+  }
+
+  private static Thread start(Runnable body) {
+    Thread t = new Thread(body);
+    t.setDaemon(true);
+    t.start();
+    return t;
+  }
+
+  private static double pct(long[] sorted, double p) {
+    return sorted.length == 0 ? Double.NaN : sorted[Math.max(0, (int) Math.ceil(sorted.length * p) - 1)] / 1e6;
+  }
+
+  private record Result(long uploads, double perSecond, long diskBytes, long heapBytes, double p50, double p99) {
+    @Override
+    public String toString() {
+      return String.format("ok=%d %.1f/s disk=%.1fMB/upload heap=%.1fMB/upload p50=%.1fms p99=%.1fms",
+          uploads, perSecond, diskBytes / 1048576.0, heapBytes / 1048576.0, p50, p99);
+    }
+  }
+}
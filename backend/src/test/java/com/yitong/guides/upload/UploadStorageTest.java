@@ -0,0 +1,210 @@
+package com.yitong.guides.upload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.yitong.guides.web.api.ApiException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+
+/** 上传落盘：按魔数拒绝非图片且不读完请求体、大小上限中止并清理临时文件、同内容复用同一文件（含并发） */
+class UploadStorageTest {
+  private static final int MAX_BYTES = 256 * 1024;
+
+  @TempDir Path dir;
+
+  @Test
+  void storesUnderContentAddressedPath() throws Exception {
+    UploadStorage storage = new UploadStorage(dir.toString(), MAX_BYTES);
+    byte[] png = png(1000, 1);
+
+    UploadStorage.StoredFile f = storage.store(new ByteArrayInputStream(png));
+
+    assertThat(f.type()).isEqualTo(ImageType.PNG);
+    assertThat(f.size()).isEqualTo(1000);
+    assertThat(f.deduplicated()).isFalse();
+    assertThat(f.sha256()).hasSize(64);
+    assertThat(f.path()).isEqualTo(f.sha256().substring(0, 2) + "/" + f.sha256().substring(2, 4) + "/"
+        + f.sha256() + ".png");
+    assertThat(Files.readAllBytes(dir.resolve(f.path()))).isEqualTo(png);
+    assertThat(incomingFiles()).isEmpty();
+  }
+
+  @Test
+  void rejectsNonImageAfterReadingOnlyTheHead() {
+    UploadStorage storage = new UploadStorage(dir.toString(), MAX_BYTES);
+    // 一个"无限长"的非图片请求体：拒绝时最多读过一个缓冲区
+    CountingStream body = new CountingStream(Long.MAX_VALUE, (byte) 'x');
+
+    assertStatus(() -> storage.store(body), HttpStatus.BAD_REQUEST);
+    assertThat(body.read).isLessThanOrEqualTo(64 * 1024);
+    assertThat(dir.resolve(".incoming")).doesNotExist();
+  }
+
+  @Test
+  void rejectsEmptyAndTruncatedHeads() {
+    UploadStorage storage = new UploadStorage(dir.toString(), MAX_BYTES);
+
+    assertStatus(() -> storage.store(InputStream.nullInputStream()), HttpStatus.BAD_REQUEST);
+    assertStatus(() -> storage.store(new ByteArrayInputStream(Arrays.copyOf(png(64, 1), 5))),
+        HttpStatus.BAD_REQUEST);
+  }
+
+  @Test
+  void stopsReadingAndCleansUpPastSizeCap() throws Exception {
+    UploadStorage storage = new UploadStorage(dir.toString(), MAX_BYTES);
+    CountingStream body = new CountingStream(100L * MAX_BYTES, (byte) 0);
+    body.head = png(16, 1);
+
+    assertStatus(() -> storage.store(body), HttpStatus.PAYLOAD_TOO_LARGE);
+    assertThat(body.read).isLessThanOrEqualTo(MAX_BYTES + 64 * 1024);
+    assertThat(incomingFiles()).isEmpty();
+    assertThat(storedFiles()).isEmpty();
+
+    assertStatus(() -> storage.checkDeclaredLength(MAX_BYTES + 1), HttpStatus.PAYLOAD_TOO_LARGE);
+    storage.checkDeclaredLength(MAX_BYTES);
+    storage.checkDeclaredLength(-1);
+  }
+
+  @Test
+  void exactlyAtCapIsAccepted() {
+    UploadStorage storage = new UploadStorage(dir.toString(), MAX_BYTES);
+    assertThat(storage.store(new ByteArrayInputStream(png(MAX_BYTES, 1))).size()).isEqualTo(MAX_BYTES);
+  }
+
+  @Test
+  void sameContentReusesFileAndRefreshesModifiedTime() throws Exception {
+    UploadStorage storage = new UploadStorage(dir.toString(), MAX_BYTES);
+    byte[] png = png(4096, 2);
+    UploadStorage.StoredFile first = storage.store(new ByteArrayInputStream(png));
+    Path file = dir.resolve(first.path());
+    Instant old = Instant.now().minus(48, ChronoUnit.HOURS);
+    Files.setLastModifiedTime(file, FileTime.from(old));
+
+    UploadStorage.StoredFile again = storage.store(new ByteArrayInputStream(png));
+
+    assertThat(again.deduplicated()).isTrue();
+    assertThat(again.path()).isEqualTo(first.path());
+    assertThat(again.sha256()).isEqualTo(first.sha256());
+    assertThat(Files.getLastModifiedTime(file).toInstant()).isAfter(old.plus(47, ChronoUnit.HOURS));
+    assertThat(storedFiles()).containsExactly(file);
+    assertThat(incomingFiles()).isEmpty();
+
+    UploadStorage.StoredFile other = storage.store(new ByteArrayInputStream(png(4096, 3)));
+    assertThat(other.deduplicated()).isFalse();
+    assertThat(other.path()).isNotEqualTo(first.path());
+  }
+
+  @Test
+  void concurrentUploadsOfSameContentKeepOneFile() throws Exception {
+    UploadStorage storage = new UploadStorage(dir.toString(), MAX_BYTES);
+    byte[] png = png(128 * 1024, 4);
+    List<UploadStorage.StoredFile> results = new CopyOnWriteArrayList<>();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+          results.add(storage.store(new ByteArrayInputStream(png)));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(results).hasSize(8);
+    assertThat(results.stream().filter(f -> !f.deduplicated())).hasSize(1);
+    assertThat(results.stream().map(UploadStorage.StoredFile::path).distinct()).hasSize(1);
+    assertThat(Files.readAllBytes(dir.resolve(results.get(0).path()))).isEqualTo(png);
+    assertThat(storedFiles()).hasSize(1);
+    assertThat(incomingFiles()).isEmpty();
+  }
+
+  /** PNG 魔数 + 随机内容 */
+  private static byte[] png(int size, long seed) {
+    byte[] data = new byte[size];
+    new Random(seed).nextBytes(data);
+    byte[] magic = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    System.arraycopy(magic, 0, data, 0, Math.min(magic.length, size));
+    return data;
+  }
+
+  private List<Path> incomingFiles() throws Exception {
+    Path incoming = dir.resolve(".incoming");
+    if (!Files.exists(incoming)) {
+      return List.of();
+    }
+    try (Stream<Path> s = Files.list(incoming)) {
+      return s.toList();
+    }
+  }
+
+  /** 上传目录下除临时目录外的所有文件 */
+  private List<Path> storedFiles() throws Exception {
+    try (Stream<Path> s = Files.walk(dir)) {
+      return s.filter(Files::isRegularFile).filter(p -> !dir.relativize(p).startsWith(".incoming")).toList();
+    }
+  }
+
+  private static void assertStatus(Runnable call, HttpStatus status) {
+    assertThatThrownBy(call::run)
+        .isInstanceOf(ApiException.class)
+        .extracting(e -> ((ApiException) e).getStatus())
+        .isEqualTo(status);
+  }
+
+  /** 指定长度的请求体：先给出 head，其余字节都是 fill；记录被读走的字节数 */
+  private static final class CountingStream extends InputStream {
+    private final long length;
+    private final byte fill;
+    byte[] head = new byte[0];
+    long read;
+
+    CountingStream(long length, byte fill) {
+      this.length = length;
+      this.fill = fill;
+    }
+
+    @Override
+    public int read() {
+      byte[] one = new byte[1];
+      return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (read >= length) {
+        return -1;
+      }
+      int n = (int) Math.min(len, length - read);
+      for (int i = 0; i < n; i++) {
+        long pos = read + i;
+        b[off + i] = pos < head.length ? head[(int) pos] : fill;
+      }
+      read += n;
+      return n;
+    }
+  }
+}
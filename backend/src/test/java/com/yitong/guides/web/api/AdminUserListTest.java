@@ -0,0 +1,171 @@
+package com.yitong.guides.web.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * 管理端用户列表：分页与总数头、状态/角色/启用/用户名前缀筛选（role、enabled 为 null 的旧数据分别算作 USER、启用，
+ * 前缀中的 _ 按字面匹配）；NDJSON 导出跨越分批边界不重不漏、不含密码哈希；非管理员不可访问。
+ * 造 520 个 ex17_ 开头的用户：第 i 个 status = (i % 10 == 0 ? 1 : 0)，
+ * enabled 按 i % 4 依次为 false/null/true/true，role 按 i % 5 依次为 ADMIN/null/USER/USER/USER。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AdminUserListTest {
+  private static final int USERS = 520;
+  private static final String PREFIX = "ex17_";
+
+  @Autowired MockMvc mvc;
+  @Autowired ObjectMapper objectMapper;
+  @Autowired JdbcTemplate jdbc;
+
+  @BeforeEach
+  void seed() {
+    Long existing = jdbc.queryForObject("select count(*) from users where username like 'ex17%'", Long.class);
+    if (existing != null && existing > 0) {
+      return;
+    }
+    jdbc.update(
+        """
+        insert into users(username, password_hash, display_name, role, enabled, status, created_at)
+        select concat('ex17_', lpad(cast(x as varchar), 4, '0')), 'x', concat('导出 ', x),
+          case mod(x, 5) when 0 then 'ADMIN' when 1 then null else 'USER' end,
+          case mod(x, 4) when 0 then false when 1 then null else true end,
+          case when mod(x, 10) = 0 then 1 else 0 end,
+          current_timestamp
+        from system_range(1, ?) r(x)
+        """,
+        USERS);
+    // 若前缀中的 _ 被当成通配符，这个用户也会被匹配到
+    jdbc.update("insert into users(username, password_hash, display_name, status, created_at)"
+        + " values ('ex17a', 'x', '诱饵', 0, current_timestamp)");
+  }
+
+  @Test
+  void pagesCarryTotalCountHeader() throws Exception {
+    String admin = login("admin", "admin123");
+    MockHttpServletResponse first = list(admin, "username=" + PREFIX + "&size=200");
+    assertThat(first.getHeader("X-Total-Count")).isEqualTo(String.valueOf(USERS));
+    List<String> names = usernames(objectMapper.readTree(first.getContentAsString(StandardCharsets.UTF_8)));
+    assertThat(names).hasSize(200).isSorted();
+    assertThat(names.get(0)).isEqualTo("ex17_0001");
+
+    MockHttpServletResponse last = list(admin, "username=" + PREFIX + "&size=200&page=2");
+    List<String> tail = usernames(objectMapper.readTree(last.getContentAsString(StandardCharsets.UTF_8)));
+    assertThat(tail).hasSize(USERS - 400);
+    assertThat(tail.get(tail.size() - 1)).isEqualTo("ex17_0520");
+  }
+
+  @Test
+  void filtersByStatusRoleEnabledAndPrefix() throws Exception {
+    String admin = login("admin", "admin123");
+    assertThat(total(admin, "status=1")).isEqualTo(USERS / 10);
+    assertThat(total(admin, "role=ADMIN")).isEqualTo(USERS / 5);
+    // role 为 null 的算作 USER
+    assertThat(total(admin, "role=USER")).isEqualTo(USERS * 4 / 5);
+    assertThat(total(admin, "enabled=false")).isEqualTo(USERS / 4);
+    // enabled 为 null 的算作启用
+    assertThat(total(admin, "enabled=true")).isEqualTo(USERS * 3 / 4);
+    assertThat(total(admin, "status=1&enabled=false")).isEqualTo(USERS / 20);
+    assertThat(total(admin, "status=2")).isZero();
+    assertThat(list(admin, "username=ex17a").getHeader("X-Total-Count")).isEqualTo("1");
+  }
+
+  @Test
+  void exportStreamsAllMatchesAcrossBatchesWithoutHashes() throws Exception {
+    String admin = login("admin", "admin123");
+    List<JsonNode> lines = export(admin, "username=" + PREFIX);
+
+    assertThat(lines).hasSize(USERS);
+    List<Long> ids = lines.stream().map(n -> n.get("id").asLong()).toList();
+    assertThat(ids).isSorted().doesNotHaveDuplicates();
+    assertThat(lines).allSatisfy(n -> {
+      assertThat(n.has("passwordHash")).isFalse();
+      assertThat(n.get("username").asText()).startsWith(PREFIX);
+    });
+    JsonNode legacy = lines.get(0);
+    assertThat(legacy.get("role").asText()).isEqualTo("USER");
+    assertThat(legacy.get("enabled").asBoolean()).isTrue();
+
+    List<JsonNode> banned = export(admin, "username=" + PREFIX + "&status=1&enabled=false");
+    assertThat(banned).hasSize(USERS / 20);
+    assertThat(banned).allSatisfy(n -> {
+      assertThat(n.get("status").asInt()).isEqualTo(1);
+      assertThat(n.get("enabled").asBoolean()).isFalse();
+    });
+  }
+
+  @Test
+  void nonAdminIsForbidden() throws Exception {
+    String alice = login("alice", "123456");
+    mvc.perform(get("/api/admin/users").header("Authorization", alice)).andExpect(status().isForbidden());
+    mvc.perform(get("/api/admin/users/export").header("Authorization", alice)).andExpect(status().isForbidden());
+  }
+
+  private MockHttpServletResponse list(String token, String query) throws Exception {
+    return mvc.perform(get("/api/admin/users?" + query).header("Authorization", token))
+        .andExpect(status().isOk())
+        .andReturn()
+        .getResponse();
+  }
+
+  /** 限定在本测试造的用户中的筛选结果总数 */
+  private int total(String token, String query) throws Exception {
+    return Integer.parseInt(list(token, "username=" + PREFIX + "&" + query).getHeader("X-Total-Count"));
+  }
+
+  private List<JsonNode> export(String token, String query) throws Exception {
+    MvcResult started = mvc.perform(get("/api/admin/users/export?" + query).header("Authorization", token))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    MockHttpServletResponse r = mvc.perform(asyncDispatch(started)).andExpect(status().isOk()).andReturn().getResponse();
+    assertThat(r.getContentType()).startsWith("application/x-ndjson");
+    List<JsonNode> lines = new ArrayList<>();
+    for (String line : r.getContentAsString(StandardCharsets.UTF_8).split("\n")) {
+      if (!line.isEmpty()) {
+        lines.add(objectMapper.readTree(line));
+      }
+    }
+    return lines;
+  }
+
+  private static List<String> usernames(JsonNode array) {
+    List<String> out = new ArrayList<>();
+    array.forEach(n -> out.add(n.get("username").asText()));
+    return out;
+  }
+
+  private String login(String username, String password) throws Exception {
+    String body = mvc.perform(post("/api/auth/login")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(Map.of("username", username, "password", password))))
+        .andExpect(status().isOk())
+        .andReturn()
+        .getResponse()
+        .getContentAsString();
+    return "Bearer " + objectMapper.readTree(body).get("token").asText();
+  }
+}
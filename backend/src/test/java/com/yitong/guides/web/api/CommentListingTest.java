@@ -0,0 +1,128 @@
+package com.yitong.guides.web.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+/** 评论列表：旧接口只返回最早一页并给出续读游标；游标分页按时间正序接续、不重不漏 */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class CommentListingTest {
+
+  @Autowired MockMvc mvc;
+  @Autowired ObjectMapper objectMapper;
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  void legacyListIsCappedAndHandsOverToCursor() throws Exception {
+    int total = GuidesController.LEGACY_COMMENT_LIMIT + 13;
+    long guideId = guideWithComments(total);
+
+    MockHttpServletResponse legacy =
+        mvc.perform(get("/api/guides/" + guideId + "/comments")).andExpect(status().isOk()).andReturn().getResponse();
+    List<String> contents = contents(objectMapper.readTree(legacy.getContentAsString(StandardCharsets.UTF_8)));
+    assertThat(contents).hasSize(GuidesController.LEGACY_COMMENT_LIMIT);
+    assertThat(contents.get(0)).isEqualTo("评论 1");
+    String cursor = legacy.getHeader("X-Next-Cursor");
+    assertThat(cursor).isNotBlank();
+
+    // 从旧接口给的游标接着读
+    JsonNode rest = page(guideId, cursor, 50);
+    assertThat(rest.get("hasNext").asBoolean()).isFalse();
+    assertThat(rest.get("nextCursor").isNull()).isTrue();
+    contents.addAll(contents(rest.get("items")));
+    assertThat(contents).hasSize(total).doesNotHaveDuplicates();
+    assertThat(contents.get(total - 1)).isEqualTo("评论 " + total);
+  }
+
+  @Test
+  void cursorPagesWalkAllCommentsInOrder() throws Exception {
+    int total = 23;
+    long guideId = guideWithComments(total);
+    List<String> seen = new ArrayList<>();
+    String cursor = "";
+    int pages = 0;
+    while (cursor != null) {
+      JsonNode page = page(guideId, cursor, 10);
+      seen.addAll(contents(page.get("items")));
+      cursor = page.get("hasNext").asBoolean() ? page.get("nextCursor").asText() : null;
+      pages++;
+    }
+    assertThat(pages).isEqualTo(3);
+    List<String> expected = new ArrayList<>();
+    for (int i = 1; i <= total; i++) {
+      expected.add("评论 " + i);
+    }
+    assertThat(seen).isEqualTo(expected);
+  }
+
+  @Test
+  void shortListHasNoCursorHeader() throws Exception {
+    long guideId = guideWithComments(3);
+    MockHttpServletResponse r =
+        mvc.perform(get("/api/guides/" + guideId + "/comments")).andExpect(status().isOk()).andReturn().getResponse();
+    assertThat(contents(objectMapper.readTree(r.getContentAsString(StandardCharsets.UTF_8)))).hasSize(3);
+    assertThat(r.getHeader("X-Next-Cursor")).isNull();
+  }
+
+  @Test
+  void unknownGuideIs404() throws Exception {
+    mvc.perform(get("/api/guides/987654/comments")).andExpect(status().isNotFound());
+    mvc.perform(get("/api/guides/987654/comments").param("cursor", "")).andExpect(status().isNotFound());
+  }
+
+  private JsonNode page(long guideId, String cursor, int size) throws Exception {
+    String body = mvc.perform(get("/api/guides/" + guideId + "/comments")
+            .param("cursor", cursor)
+            .param("size", String.valueOf(size)))
+        .andExpect(status().isOk())
+        .andReturn()
+        .getResponse()
+        .getContentAsString(StandardCharsets.UTF_8);
+    return objectMapper.readTree(body);
+  }
+
+  /** 新建一篇攻略并插入 n 条评论："评论 1" 最早；每两条共用一个时间戳，覆盖同一时刻按 id 排序 */
+  private long guideWithComments(int n) {
+    Long userId = jdbc.queryForObject("select min(id) from users", Long.class);
+    jdbc.update(
+        """
+        insert into guides(author_id, title, category, content_markdown, created_at, updated_at, deleted,
+          like_count, favorite_count, comment_count)
+        values (?, '评论分页', 'TRAVEL', '正文', current_timestamp, current_timestamp, false, 0, 0, 0)
+        """,
+        userId);
+    long guideId = jdbc.queryForObject("select max(id) from guides", Long.class);
+    jdbc.update(
+        """
+        insert into comments(guide_id, user_id, content, created_at)
+        select ?, ?, concat('评论 ', x), dateadd('SECOND', (x + 1) / 2 - 100000, current_timestamp)
+        from system_range(1, ?) r(x)
+        """,
+        guideId, userId, n);
+    return guideId;
+  }
+
+  private static List<String> contents(JsonNode items) {
+    List<String> out = new ArrayList<>();
+    for (JsonNode c : items) {
+      out.add(c.get("content").asText());
+    }
+    return out;
+  }
+}
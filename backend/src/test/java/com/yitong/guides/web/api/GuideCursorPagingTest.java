@@ -0,0 +1,143 @@
+package com.yitong.guides.web.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * 列表游标分页：逐页读完与按 (时间, id) 倒序的全量结果一致（含同一时刻的多篇）；不支持的组合返回 400。
+ * 卡片查看者状态：按请求顺序去重返回，未登录被安全过滤器拒绝（403），超过 100 个 id 400。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class GuideCursorPagingTest {
+
+  @Autowired MockMvc mvc;
+  @Autowired ObjectMapper objectMapper;
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  void cursorWalkMatchesKeysetOrderIncludingTies() throws Exception {
+    insertGuides(7, "GAME");
+    for (String sort : new String[] {"latest", "updated"}) {
+      String column = sort.equals("updated") ? "updated_at" : "created_at";
+      List<Long> expected = jdbc.queryForList(
+          "select id from guides where deleted = false and category = 'GAME' order by " + column + " desc, id desc",
+          Long.class);
+      List<Long> seen = new ArrayList<>();
+      String cursor = "";
+      while (cursor != null) {
+        JsonNode page = json(mvc.perform(get("/api/guides")
+            .param("category", "GAME")
+            .param("sort", sort)
+            .param("size", "3")
+            .param("cursor", cursor)));
+        page.get("items").forEach(c -> seen.add(c.get("id").asLong()));
+        assertThat(page.get("items").size()).isLessThanOrEqualTo(3);
+        cursor = page.get("hasNext").asBoolean() ? page.get("nextCursor").asText() : null;
+      }
+      assertThat(seen).as(sort).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  void unsupportedCursorRequestsAreRejected() throws Exception {
+    mvc.perform(get("/api/guides").param("cursor", "").param("q", "攻略")).andExpect(status().isBadRequest());
+    mvc.perform(get("/api/guides").param("cursor", "").param("sort", "hot")).andExpect(status().isBadRequest());
+    mvc.perform(get("/api/guides").param("cursor", "garbage")).andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void viewerStateFollowsRequestOrderWithoutDuplicates() throws Exception {
+    long[] ids = insertGuides(2, "TRAVEL");
+    String token = login("cathy");
+    mvc.perform(post("/api/guides/" + ids[0] + "/like").header("Authorization", token))
+        .andExpect(status().isNoContent());
+    mvc.perform(post("/api/guides/" + ids[1] + "/favorite").header("Authorization", token))
+        .andExpect(status().isNoContent());
+
+    JsonNode states = json(mvc.perform(post("/api/guides/viewer-state")
+        .header("Authorization", token)
+        .contentType(MediaType.APPLICATION_JSON)
+        .content(objectMapper.writeValueAsString(Map.of("ids", List.of(ids[1], ids[0], ids[1], 987654L))))));
+
+    assertThat(states).hasSize(3);
+    assertThat(states.get(0).get("guideId").asLong()).isEqualTo(ids[1]);
+    assertThat(states.get(0).get("liked").asBoolean()).isFalse();
+    assertThat(states.get(0).get("favorited").asBoolean()).isTrue();
+    assertThat(states.get(1).get("guideId").asLong()).isEqualTo(ids[0]);
+    assertThat(states.get(1).get("liked").asBoolean()).isTrue();
+    assertThat(states.get(1).get("favorited").asBoolean()).isFalse();
+    // 不存在的攻略所有标记都是 false
+    assertThat(states.get(2).get("guideId").asLong()).isEqualTo(987654L);
+    assertThat(states.get(2).get("liked").asBoolean()).isFalse();
+    assertThat(states.get(2).get("followingAuthor").asBoolean()).isFalse();
+  }
+
+  @Test
+  void viewerStateRequiresLoginAndBoundsIds() throws Exception {
+    String body = objectMapper.writeValueAsString(Map.of("ids", List.of(1L)));
+    mvc.perform(post("/api/guides/viewer-state").contentType(MediaType.APPLICATION_JSON).content(body))
+        .andExpect(status().isForbidden());
+
+    String token = login("cathy");
+    List<Long> tooMany = LongStream.rangeClosed(1, 101).boxed().toList();
+    mvc.perform(post("/api/guides/viewer-state")
+            .header("Authorization", token)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(Map.of("ids", tooMany))))
+        .andExpect(status().isBadRequest());
+  }
+
+  /** 插入 n 篇同一时刻创建、同一时刻更新的攻略，返回 id */
+  private long[] insertGuides(int n, String category) {
+    Long authorId = jdbc.queryForObject("select min(id) from users", Long.class);
+    jdbc.update(
+        """
+        insert into guides(author_id, title, category, content_markdown, created_at, updated_at, deleted,
+          like_count, favorite_count, comment_count)
+        select ?, concat('游标 ', x), ?, '正文', timestamp '2020-01-01 00:00:00',
+          timestamp '2020-01-02 00:00:00', false, 0, 0, 0
+        from system_range(1, ?) r(x)
+        """,
+        authorId, category, n);
+    long last = jdbc.queryForObject("select max(id) from guides", Long.class);
+    return LongStream.rangeClosed(last - n + 1, last).toArray();
+  }
+
+  private JsonNode json(org.springframework.test.web.servlet.ResultActions result) throws Exception {
+    String body = result.andExpect(status().isOk()).andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+    return objectMapper.readTree(body);
+  }
+
+  private String login(String username) throws Exception {
+    String body =
+        mvc.perform(
+                post("/api/auth/login")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(Map.of("username", username, "password", "123456"))))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    return "Bearer " + objectMapper.readTree(body).get("token").asText();
+  }
+}
@@ -0,0 +1,105 @@
+package com.yitong.guides.web.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+/** 详情 ETag：未变化时 If-None-Match 返回 304；互动后 ETag 变化；登录用户与匿名用户的 ETag 互不通用 */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class GuideDetailEtagTest {
+
+  @Autowired MockMvc mvc;
+  @Autowired ObjectMapper objectMapper;
+
+  private long id;
+
+  @BeforeEach
+  void firstGuide() throws Exception {
+    String body = mvc.perform(get("/api/guides").param("size", "1")).andReturn().getResponse().getContentAsString();
+    id = objectMapper.readTree(body).get("content").get(0).get("id").asLong();
+  }
+
+  @Test
+  void anonymousRevalidationReturns304UntilGuideChanges() throws Exception {
+    String etag = etag(null);
+    assertThat(etag).startsWith("\"").endsWith("\"");
+    assertNotModified(etag, null);
+
+    String token = login("bob");
+    mvc.perform(post("/api/guides/" + id + "/comments")
+            .header("Authorization", token)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"content\":\"有用\"}"))
+        .andExpect(status().is2xxSuccessful());
+
+    String changed = etag(null);
+    assertThat(changed).isNotEqualTo(etag);
+    mvc.perform(get("/api/guides/" + id).header(HttpHeaders.IF_NONE_MATCH, etag)).andExpect(status().isOk());
+    assertNotModified(changed, null);
+  }
+
+  @Test
+  void viewerEtagChangesWithOwnLikeAndDiffersFromAnonymous() throws Exception {
+    String token = login("cathy");
+    String anonymous = etag(null);
+    String viewer = etag(token);
+    assertThat(viewer).isNotEqualTo(anonymous);
+    assertNotModified(viewer, token);
+    // 匿名 ETag 不能让登录用户拿到 304（点赞状态等不同）
+    mvc.perform(get("/api/guides/" + id).header("Authorization", token).header(HttpHeaders.IF_NONE_MATCH, anonymous))
+        .andExpect(status().isOk());
+
+    mvc.perform(post("/api/guides/" + id + "/like").header("Authorization", token))
+        .andExpect(status().isNoContent());
+    String liked = etag(token);
+    assertThat(liked).isNotEqualTo(viewer);
+    mvc.perform(get("/api/guides/" + id).header("Authorization", token).header(HttpHeaders.IF_NONE_MATCH, viewer))
+        .andExpect(status().isOk());
+  }
+
+  private String etag(String token) throws Exception {
+    var request = get("/api/guides/" + id);
+    if (token != null) {
+      request.header("Authorization", token);
+    }
+    String etag = mvc.perform(request).andExpect(status().isOk()).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    assertThat(etag).isNotBlank();
+    return etag;
+  }
+
+  private void assertNotModified(String etag, String token) throws Exception {
+    var request = get("/api/guides/" + id).header(HttpHeaders.IF_NONE_MATCH, etag);
+    if (token != null) {
+      request.header("Authorization", token);
+    }
+    mvc.perform(request).andExpect(status().isNotModified());
+  }
+
+  private String login(String username) throws Exception {
+    String body =
+        mvc.perform(
+                post("/api/auth/login")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(Map.of("username", username, "password", "123456"))))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    return "Bearer " + objectMapper.readTree(body).get("token").asText();
+  }
+}
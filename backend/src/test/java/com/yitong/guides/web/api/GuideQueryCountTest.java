@@ -0,0 +1,111 @@
+package com.yitong.guides.web.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yitong.guides.metrics.SqlStats;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+/**
+ * 列表、详情、我的收藏三个读接口的 SQL 语句数（取自 {@link SqlStats}）：数量固定，不随行数增长。
+ * 每个断言前先请求一次列表，让作者摘要进入缓存，语句数只反映接口自身的查询。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class GuideQueryCountTest {
+  private static final String LIST = "GET /api/guides";
+  private static final String DETAIL = "GET /api/guides/{id}";
+  private static final String FAVORITES = "GET /api/me/favorites";
+
+  @Autowired MockMvc mvc;
+  @Autowired SqlStats stats;
+  @Autowired ObjectMapper objectMapper;
+
+  private List<Long> guideIds;
+
+  @BeforeEach
+  void warmUp() throws Exception {
+    String body = mvc.perform(get("/api/guides").param("size", "50")).andReturn().getResponse().getContentAsString();
+    guideIds = new ArrayList<>();
+    for (JsonNode card : objectMapper.readTree(body).get("content")) {
+      guideIds.add(card.get("id").asLong());
+    }
+    assertThat(guideIds).hasSizeGreaterThanOrEqualTo(3);
+  }
+
+  @Test
+  void listIsOnePageQueryPlusCount() throws Exception {
+    // 不足一页时不查总数
+    assertThat(statements(LIST, get("/api/guides").param("size", "50"))).isEqualTo(1);
+    assertThat(statements(LIST, get("/api/guides").param("size", "2"))).isEqualTo(2);
+  }
+
+  @Test
+  void detailPublicPartIsOneQueryThenCached() throws Exception {
+    long id = guideIds.get(0);
+    String token = login("bob");
+    // 点赞再取消会让详情缓存失效
+    mvc.perform(post("/api/guides/" + id + "/like").header("Authorization", token)).andExpect(status().isNoContent());
+    mvc.perform(delete("/api/guides/" + id + "/like").header("Authorization", token)).andExpect(status().isNoContent());
+
+    assertThat(statements(DETAIL, get("/api/guides/" + id))).isEqualTo(1);
+    assertThat(statements(DETAIL, get("/api/guides/" + id))).isZero();
+    // 登录用户的点赞/收藏/打卡状态一次批量取回
+    assertThat(statements(DETAIL, get("/api/guides/" + id).header("Authorization", token))).isEqualTo(1);
+  }
+
+  @Test
+  void favoritesDoNotGrowWithCount() throws Exception {
+    String token = login("cathy");
+    mvc.perform(post("/api/guides/" + guideIds.get(0) + "/favorite").header("Authorization", token))
+        .andExpect(status().isNoContent());
+    assertThat(statements(FAVORITES, get("/api/me/favorites").header("Authorization", token))).isEqualTo(2);
+
+    for (Long id : guideIds.subList(1, 3)) {
+      mvc.perform(post("/api/guides/" + id + "/favorite").header("Authorization", token))
+          .andExpect(status().isNoContent());
+    }
+    assertThat(statements(FAVORITES, get("/api/me/favorites").header("Authorization", token))).isEqualTo(2);
+  }
+
+  /** 单独执行一次请求，返回它执行的语句数 */
+  private long statements(String endpoint, RequestBuilder request) throws Exception {
+    stats.reset();
+    mvc.perform(request).andExpect(status().is2xxSuccessful());
+    return stats.report().endpoints().stream()
+        .filter(e -> e.endpoint().equals(endpoint))
+        .findFirst()
+        .orElseThrow(() -> new AssertionError("没有 " + endpoint + " 的统计"))
+        .maxStatements();
+  }
+
+  private String login(String username) throws Exception {
+    String body =
+        mvc.perform(
+                post("/api/auth/login")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(Map.of("username", username, "password", "123456"))))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    return "Bearer " + objectMapper.readTree(body).get("token").asText();
+  }
+}
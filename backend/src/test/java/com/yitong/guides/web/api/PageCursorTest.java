@@ -0,0 +1,50 @@
+package com.yitong.guides.web.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+/** 游标编码：往返保留纳秒与 id、URL 安全无填充；空串为第一页；任何畸形输入都是 400 */
+class PageCursorTest {
+
+  @Test
+  void roundTripsTimestampAndId() {
+    Instant ts = Instant.ofEpochSecond(1_700_000_000L, 123_456_789);
+    String token = PageCursor.encode(ts, 42L);
+
+    assertThat(PageCursor.decode(token)).isEqualTo(new PageCursor(ts, 42L));
+    assertThat(token).doesNotContain("+", "/", "=");
+    // 纪元之前与纳秒为 0 的时间也能往返
+    Instant old = Instant.ofEpochSecond(-86_400L);
+    assertThat(PageCursor.decode(PageCursor.encode(old, Long.MAX_VALUE))).isEqualTo(new PageCursor(old, Long.MAX_VALUE));
+  }
+
+  @Test
+  void blankMeansFirstPage() {
+    assertThat(PageCursor.decode(null)).isSameAs(PageCursor.FIRST);
+    assertThat(PageCursor.decode("")).isSameAs(PageCursor.FIRST);
+    assertThat(PageCursor.decode("  ")).isSameAs(PageCursor.FIRST);
+  }
+
+  @Test
+  void malformedTokensAreBadRequest() {
+    for (String raw : new String[] {"abc", "1.2", "1:2", "x.1:2", "1.x:2", "1.2:x", ".:"}) {
+      assertBadRequest(Base64.getUrlEncoder().encodeToString(raw.getBytes(StandardCharsets.UTF_8)));
+    }
+    assertBadRequest("not base64 !");
+    assertBadRequest("%%%");
+  }
+
+  private static void assertBadRequest(String token) {
+    assertThatThrownBy(() -> PageCursor.decode(token))
+        .as(token)
+        .isInstanceOf(ApiException.class)
+        .extracting(e -> ((ApiException) e).getStatus())
+        .isEqualTo(HttpStatus.BAD_REQUEST);
+  }
+}
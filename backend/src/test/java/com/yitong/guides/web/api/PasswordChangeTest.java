@@ -0,0 +1,71 @@
+package com.yitong.guides.web.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * 令牌版本：启动后注册的用户直接可用；修改密码让已签发的令牌失效，响应带回的新令牌可继续使用，
+ * 旧密码不能再登录。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PasswordChangeTest {
+
+  @Autowired MockMvc mvc;
+  @Autowired ObjectMapper objectMapper;
+
+  @Test
+  void passwordChangeRevokesOldTokenAndReturnsFreshOne() throws Exception {
+    mvc.perform(post("/api/auth/register")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(json(Map.of("username", "pwchange", "password", "old-pass", "displayName", "改密"))))
+        .andExpect(status().isCreated());
+    String old = login("pwchange", "old-pass");
+    mvc.perform(get("/api/me").header("Authorization", "Bearer " + old)).andExpect(status().isOk());
+
+    String body = mvc.perform(patch("/api/me/password")
+            .header("Authorization", "Bearer " + old)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(json(Map.of("oldPassword", "old-pass", "newPassword", "new-pass"))))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+    String fresh = objectMapper.readTree(body).get("token").asText();
+
+    assertThat(fresh).isNotEqualTo(old);
+    mvc.perform(get("/api/me").header("Authorization", "Bearer " + old)).andExpect(status().is4xxClientError());
+    mvc.perform(get("/api/me").header("Authorization", "Bearer " + fresh)).andExpect(status().isOk());
+    mvc.perform(post("/api/auth/login")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(json(Map.of("username", "pwchange", "password", "old-pass"))))
+        .andExpect(status().is4xxClientError());
+    assertThat(login("pwchange", "new-pass")).isNotBlank();
+  }
+
+  private String login(String username, String password) throws Exception {
+    String body = mvc.perform(post("/api/auth/login")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(json(Map.of("username", username, "password", password))))
+        .andExpect(status().isOk())
+        .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+    return objectMapper.readTree(body).get("token").asText();
+  }
+
+  private String json(Object value) throws Exception {
+    return objectMapper.writeValueAsString(value);
+  }
+}
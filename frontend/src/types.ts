@@ -46,6 +46,7 @@ export type CheckInRecord = {
 }
 
 export type Comment = { id: number; userName: string; content: string; createdAt: string }
+export type CursorPage<T> = { items: T[]; nextCursor: string | null; hasNext: boolean }
 export type CheckIn = { id: number; day: string; progress: number; note?: string | null; createdAt: string }
 
 export type UserRole = 'USER' | 'ADMIN'